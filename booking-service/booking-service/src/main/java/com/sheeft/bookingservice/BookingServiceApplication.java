@@ -1,61 +1,84 @@
 package com.sheeft.bookingservice;
 
+import com.sheeft.bookingservice.service.DispatchService;
+import com.sheeft.bookingservice.service.TaxiAvailabilityReplica;
 import com.sheeft.bookingservice.service.TaxiBookingService;
+import com.saber.taxiconfig.capture.TrafficCaptureConfig;
 import com.saber.taxiconfig.config.RedisConfig;
+import com.saber.taxiconfig.startup.StartupConfig;
+import com.saber.taxiconfig.startup.StartupReport;
 import com.springboot.taximodel.dto.request.TaxiBookedEventDTO;
 import com.springboot.taximodel.enums.TaxiType;
 import com.springboot.taximodel.util.LocationGenerator;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.Date;
 import java.util.UUID;
 
 @SpringBootApplication
-@Import(RedisConfig.class)
+@EnableScheduling
+@Import({RedisConfig.class, TrafficCaptureConfig.class, StartupConfig.class})
 public class BookingServiceApplication {
 
 	public static void main(String[] args) {
 
-		SpringApplication.run(BookingServiceApplication.class, args);
+		SpringApplication application = new SpringApplication(BookingServiceApplication.class);
+		// Records the startup steps for the StartupReport and the actuator startup endpoint.
+		application.setApplicationStartup(new BufferingApplicationStartup(StartupReport.BUFFER_CAPACITY));
+		application.run(args);
 	}
 
 	/**
 	 * Bean definition for an ApplicationRunner that initializes taxi booking data in the application.
+	 * Only active with the "dev" profile, and run in the background so that it does not delay readiness.
+	 * mvn spring-boot:run enables that profile, a packaged jar needs --spring.profiles.active=dev.
 	 * @param taxiBookingService The service responsible for business logic related to taxi bookings.
 	 * @return ApplicationRunner An ApplicationRunner instance that performs
 	 * initialization tasks when the application starts.
 	 */
 	@Bean
+	@Profile("dev")
 	public ApplicationRunner applicationRunner(TaxiBookingService taxiBookingService){
 
-		// Return an ApplicationRunner that performs tasks when the application starts.
-		return args -> {
-
-			// Loop to create and book 3 MINI taxis with random locations and current date.
-			for (int i = 0; i < 3; i++){
-				taxiBookingService.book(new TaxiBookedEventDTO(UUID.randomUUID().toString(),
-						LocationGenerator.getLocation(79.865072, 6.927610, 3000),
-						LocationGenerator.getLocation(79.865072, 6.927610, 3000),
-						new Date(), 1l, TaxiType.MINI)).subscribe();
-			}
-
-			for (int i = 0;i<3;i++) {
-				taxiBookingService.book(new TaxiBookedEventDTO(UUID.randomUUID().toString(),
-						LocationGenerator.getLocation(79.865072, 6.927610, 3000),
-						LocationGenerator.getLocation(79.865072, 6.927610, 3000),
-						new Date(), 1l, TaxiType.NANO)).subscribe();
-			}
-			for (int i = 0;i<3;i++) {
-				taxiBookingService.book(new TaxiBookedEventDTO(UUID.randomUUID().toString(),
-						LocationGenerator.getLocation(79.865072, 6.927610, 3000),
-						LocationGenerator.getLocation(79.865072, 6.927610, 3000),
-						new Date(), 1l,
-						TaxiType.VAN)).subscribe(); // Subscribe to trigger the booking operation asynchronously
-			}
-		};
+		// Return an ApplicationRunner that books 3 taxis of each type with random locations and the current date.
+		return args -> Flux.just(TaxiType.MINI, TaxiType.NANO, TaxiType.VAN)
+				.flatMap(taxiType -> Flux.range(0, 3)
+						.flatMap(i -> taxiBookingService.book(new TaxiBookedEventDTO(UUID.randomUUID().toString(),
+								LocationGenerator.getLocation(79.865072, 6.927610, 3000),
+								LocationGenerator.getLocation(79.865072, 6.927610, 3000),
+								new Date(), 1l, taxiType, null))))
+				.subscribeOn(Schedulers.boundedElastic())
+				.subscribe(); // Subscribe to trigger the booking operations asynchronously
+	}
+
+	/**
+	 * Bean definition for configuring a Redis message listener container.
+	 * @param connectionFactory The RedisConnectionFactory to be used for connecting to Redis.
+	 * @param taxiAvailabilityReplica The local replica of taxi type and status, fed by the taxi service's changes.
+	 * @param dispatchService The dispatch service, woken by offers for drivers long-polling this instance.
+	 * @return RedisMessageListenerContainer A configured Redis message listener container
+	 * that listens to messages from Redis channels.
+	 */
+	@Bean
+	public RedisMessageListenerContainer container(RedisConnectionFactory connectionFactory,
+				TaxiAvailabilityReplica taxiAvailabilityReplica, DispatchService dispatchService){
+
+		RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+		container.setConnectionFactory(connectionFactory);
+		container.addMessageListener(taxiAvailabilityReplica, new ChannelTopic(RedisConfig.TAXI_CHANGE_CHANNEL));
+		container.addMessageListener(dispatchService, new ChannelTopic(RedisConfig.DISPATCH_OFFER_CHANNEL));
+		return container;
 	}
 }
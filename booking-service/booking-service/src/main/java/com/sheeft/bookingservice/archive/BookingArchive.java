@@ -0,0 +1,572 @@
+package com.sheeft.bookingservice.archive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append-only local archive of booking hashes, kept in numbered segment files under booking.archive.dir.
+ * Each segment is a log of deflate compressed records plus an index file of (booking ID, booked time, offset)
+ * entries, and each segment keeps its booked time range so time range scans only read the segments that overlap.
+ * Only the active segment's IDs are held in memory, so the heap is bounded by booking.archive.segment-bytes rather
+ * than the size of the archive. A sealed segment gets a lookup file of (ID hash, offset) pairs sorted by hash,
+ * which is memory mapped with its log and binary searched; a hash match is confirmed against the record's ID.
+ * Records store the raw hash fields, so restoring a booking goes through the same converter as a Redis read.
+ */
+@Component
+public class BookingArchive implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingArchive.class);
+
+    private static final String LOG_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String LOOKUP_SUFFIX = ".ids";
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    // A record is a header of compressed and raw lengths followed by the compressed fields.
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    // A lookup file starts with the booked time range and the entry count, followed by (hash, offset) pairs.
+    private static final int LOOKUP_HEADER_BYTES = 24;
+    private static final int LOOKUP_ENTRY_BYTES = 16;
+
+    // Booking records are a few hundred bytes, too small for deflate to learn from, so prime it with the field names.
+    private static final byte[] DICTIONARY = ("_class com.sheeft.bookingservice.model.TaxiBooking taxiBookingId "
+            + "start.x start.y end.x end.y startTime endTime bookedTime acceptedTime customerId bookingStatus "
+            + "ACTIVE CANCELLED COMPLETED reasonToCancel cancelTime taxiId taxiType MINI NANO VAN")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final String ID_FIELD = "taxiBookingId";
+    private static final String BOOKED_TIME_FIELD = "bookedTime";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+    private volatile Segment active;
+
+    public BookingArchive(@Value("${booking.archive.dir:archive}") String directory,
+                          @Value("${booking.archive.segment-bytes:67108864}") long maxSegmentBytes) throws IOException {
+        this.directory = Paths.get(directory);
+        this.maxSegmentBytes = maxSegmentBytes;
+        Files.createDirectories(this.directory);
+        List<Integer> numbers;
+        try (Stream<Path> files = Files.list(this.directory)) {
+            numbers = files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.startsWith(SEGMENT_PREFIX) && n.endsWith(LOG_SUFFIX))
+                    .map(n -> Integer.parseInt(n.substring(SEGMENT_PREFIX.length(), n.length() - LOG_SUFFIX.length())))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (int i = 0; i < numbers.size() - 1; i++) {
+            Segment sealed = new Segment(numbers.get(i));
+            sealed.size = Files.size(sealed.log);
+            if (!Files.exists(sealed.lookup)) {
+                // Segments sealed before lookup files existed.
+                writeLookup(sealed, readLocations(sealed));
+            }
+            openLookup(sealed);
+            sealed.locations = null;
+            map(sealed);
+            segments.put(sealed.number, sealed);
+        }
+        if (numbers.isEmpty()) {
+            openActive(new Segment(0));
+        } else {
+            Segment last = new Segment(numbers.get(numbers.size() - 1));
+            recover(last);
+            openActive(last);
+        }
+        LOGGER.info("Opened booking archive {} with {} segments and {} bookings",
+                this.directory, segments.size(), size());
+    }
+
+    /**
+     * Appends bookings and forces them to disk before returning, so the caller may then delete them from Redis.
+     * @param bookings The hash fields of each booking, keyed by booking ID.
+     * @throws IOException if the archive cannot be written.
+     */
+    public synchronized void append(Map<String, Map<String, String>> bookings) throws IOException {
+        if (bookings.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<String, Map<String, String>> booking : bookings.entrySet()) {
+            if (active.size >= maxSegmentBytes) {
+                rotate();
+            }
+            Map<String, String> fields = booking.getValue();
+            if (!booking.getKey().equals(fields.get(ID_FIELD))) {
+                // Lookups confirm hash matches against the stored ID, and recovery re-indexes by it.
+                fields = new LinkedHashMap<>(fields);
+                fields.put(ID_FIELD, booking.getKey());
+            }
+            byte[] record = encode(fields);
+            long offset = active.size;
+            active.logChannel.write(ByteBuffer.wrap(record), offset);
+            active.size += record.length;
+            long bookedTime = parseTime(fields.get(BOOKED_TIME_FIELD));
+            active.indexOut.writeUTF(booking.getKey());
+            active.indexOut.writeLong(bookedTime);
+            active.indexOut.writeLong(offset);
+            active.include(bookedTime);
+            active.locations.put(booking.getKey(), offset);
+        }
+        // The log must be durable before the index, the index can always be rebuilt from the log.
+        active.logChannel.force(false);
+        active.indexOut.flush();
+    }
+
+    /**
+     * @param taxiBookingId The ID of the booking.
+     * @return boolean true if the booking is archived.
+     */
+    public boolean contains(String taxiBookingId) {
+        return find(taxiBookingId) != null;
+    }
+
+    /**
+     * Reads an archived booking, searching the newest segment first so the latest copy wins.
+     * @param taxiBookingId The ID of the booking.
+     * @return Map<String, String> The hash fields of the booking, or null if it is not archived.
+     */
+    public Map<String, String> find(String taxiBookingId) {
+        try {
+            Hit hit = locate(taxiBookingId);
+            return hit == null ? null : hit.fields;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read archived booking " + taxiBookingId, e);
+        }
+    }
+
+    /**
+     * Reads archived bookings booked in a time range, skipping segments whose range does not overlap.
+     * @param from The start of the range, epoch milliseconds, inclusive.
+     * @param to The end of the range, epoch milliseconds, exclusive.
+     * @param limit The maximum number of bookings to return.
+     * @return Map<String, Map<String, String>> The hash fields of the bookings, keyed by booking ID.
+     */
+    public Map<String, Map<String, String>> findBookedBetween(long from, long to, int limit) {
+        Map<String, Map<String, String>> bookings = new LinkedHashMap<>();
+        try {
+            for (Segment segment : segments.values()) {
+                if (segment.maxBookedTime < from || segment.minBookedTime >= to) {
+                    continue;
+                }
+                for (IndexEntry entry : readIndex(segment)) {
+                    if (bookings.size() == limit) {
+                        return bookings;
+                    }
+                    if (entry.bookedTime < from || entry.bookedTime >= to) {
+                        continue;
+                    }
+                    // Only the latest copy of a booking counts, an interrupted archive run may leave an older one.
+                    Hit hit = locate(entry.taxiBookingId);
+                    if (hit != null && hit.segment == segment && hit.offset == entry.offset) {
+                        bookings.put(entry.taxiBookingId, hit.fields);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to scan booking archive", e);
+        }
+        return bookings;
+    }
+
+    /**
+     * @return int The number of archived booking copies, a booking archived again by an interrupted run counts
+     * once per segment it is in.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.count();
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        active.close();
+    }
+
+    private Hit locate(String taxiBookingId) throws IOException {
+        long hash = hash(taxiBookingId);
+        for (Segment segment : segments.descendingMap().values()) {
+            Map<String, Long> locations = segment.locations;
+            if (locations != null) {
+                Long offset = locations.get(taxiBookingId);
+                if (offset != null) {
+                    return new Hit(segment, offset, read(segment, offset));
+                }
+                continue;
+            }
+            ByteBuffer lookup = segment.lookupMapped;
+            int count = segment.lookupCount;
+            // Lower bound of the hash, then every entry sharing it.
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (lookup.getLong(LOOKUP_HEADER_BYTES + middle * LOOKUP_ENTRY_BYTES) < hash) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int i = low; i < count && lookup.getLong(LOOKUP_HEADER_BYTES + i * LOOKUP_ENTRY_BYTES) == hash; i++) {
+                long offset = lookup.getLong(LOOKUP_HEADER_BYTES + i * LOOKUP_ENTRY_BYTES + 8);
+                Map<String, String> fields = read(segment, offset);
+                if (taxiBookingId.equals(fields.get(ID_FIELD))) {
+                    return new Hit(segment, offset, fields);
+                }
+            }
+        }
+        return null;
+    }
+
+    private Map<String, String> read(Segment segment, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        ByteBuffer body;
+        MappedByteBuffer mapped = segment.mapped;
+        if (mapped != null) {
+            header.putLong(0, mapped.getLong((int) offset));
+            body = mapped.duplicate();
+            body.position((int) offset + RECORD_HEADER_BYTES).limit((int) offset + RECORD_HEADER_BYTES + header.getInt(0));
+        } else {
+            // The active segment is still growing, read it positionally instead of remapping on every append.
+            try (FileChannel channel = FileChannel.open(segment.log, StandardOpenOption.READ)) {
+                channel.read(header, offset);
+                body = ByteBuffer.allocate(header.getInt(0));
+                channel.read(body, offset + RECORD_HEADER_BYTES);
+                body.flip();
+            }
+        }
+        byte[] compressed = new byte[body.remaining()];
+        body.get(compressed);
+        return decode(compressed, header.getInt(4));
+    }
+
+    static byte[] encode(Map<String, String> fields) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream(512);
+        try (DataOutputStream out = new DataOutputStream(raw)) {
+            out.writeInt(fields.size());
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                out.writeUTF(field.getKey());
+                out.writeUTF(field.getValue());
+            }
+        }
+        byte[] input = raw.toByteArray();
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(input.length);
+            byte[] buffer = new byte[512];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + compressed.size());
+            record.putInt(compressed.size()).putInt(input.length).put(compressed.toByteArray());
+            return record.array();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static Map<String, String> decode(byte[] compressed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        byte[] raw = new byte[rawLength];
+        try {
+            inflater.setInput(compressed);
+            int read = inflater.inflate(raw);
+            if (read == 0 && inflater.needsDictionary()) {
+                inflater.setDictionary(DICTIONARY);
+                read = inflater.inflate(raw);
+            }
+            if (read != rawLength) {
+                throw new IOException("Corrupt archive record");
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt archive record", e);
+        } finally {
+            inflater.end();
+        }
+        Map<String, String> fields = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                fields.put(in.readUTF(), in.readUTF());
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Reads the latest offset of each booking in a segment from its index file, and its booked time range.
+     */
+    private Map<String, Long> readLocations(Segment segment) throws IOException {
+        Map<String, Long> locations = new LinkedHashMap<>();
+        for (IndexEntry entry : readIndex(segment)) {
+            segment.include(entry.bookedTime);
+            locations.put(entry.taxiBookingId, entry.offset);
+        }
+        return locations;
+    }
+
+    private List<IndexEntry> readIndex(Segment segment) throws IOException {
+        List<IndexEntry> entries = new ArrayList<>();
+        if (!Files.exists(segment.index)) {
+            return entries;
+        }
+        try (InputStream file = Files.newInputStream(segment.index);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            while (true) {
+                String taxiBookingId = in.readUTF();
+                long bookedTime = in.readLong();
+                long offset = in.readLong();
+                entries.add(new IndexEntry(taxiBookingId, bookedTime, offset));
+            }
+        } catch (EOFException e) {
+            // End of the index, a torn last entry is recovered from the log.
+        }
+        return entries;
+    }
+
+    /**
+     * Writes the lookup file of a sealed segment, through a temporary file so a crash never leaves a torn one;
+     * a missing lookup file is rebuilt from the index on the next start.
+     */
+    private static void writeLookup(Segment segment, Map<String, Long> locations) throws IOException {
+        long[][] entries = new long[locations.size()][];
+        int i = 0;
+        for (Map.Entry<String, Long> location : locations.entrySet()) {
+            entries[i++] = new long[] {hash(location.getKey()), location.getValue()};
+        }
+        Arrays.sort(entries, Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+        Path temporary = segment.lookup.resolveSibling(segment.lookup.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeLong(segment.minBookedTime);
+            out.writeLong(segment.maxBookedTime);
+            out.writeLong(entries.length);
+            for (long[] entry : entries) {
+                out.writeLong(entry[0]);
+                out.writeLong(entry[1]);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporary, segment.lookup, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void openLookup(Segment segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.lookup, StandardOpenOption.READ)) {
+            MappedByteBuffer lookup = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            segment.minBookedTime = lookup.getLong(0);
+            segment.maxBookedTime = lookup.getLong(8);
+            segment.lookupCount = (int) lookup.getLong(16);
+            segment.lookupMapped = lookup;
+        }
+    }
+
+    /**
+     * Brings the index of the last segment up to date with its log after an unclean shutdown:
+     * drops a torn record at the end of the log and re-indexes complete records the index missed.
+     */
+    private void recover(Segment segment) throws IOException {
+        List<IndexEntry> entries = readIndex(segment);
+        long logSize = Files.size(segment.log);
+        long indexed = 0;
+        try (FileChannel channel = FileChannel.open(segment.log, StandardOpenOption.READ)) {
+            if (!entries.isEmpty()) {
+                long last = entries.get(entries.size() - 1).offset;
+                indexed = last + RECORD_HEADER_BYTES + readHeader(channel, last).getInt(0);
+            }
+        }
+        // Rewrite the index from its complete entries so a torn entry does not precede the recovered ones.
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(segment.index)))) {
+            for (IndexEntry entry : entries) {
+                out.writeUTF(entry.taxiBookingId);
+                out.writeLong(entry.bookedTime);
+                out.writeLong(entry.offset);
+                segment.include(entry.bookedTime);
+                segment.locations.put(entry.taxiBookingId, entry.offset);
+            }
+            long offset = indexed;
+            try (FileChannel channel = FileChannel.open(segment.log, StandardOpenOption.READ)) {
+                while (offset + RECORD_HEADER_BYTES <= logSize) {
+                    ByteBuffer header = readHeader(channel, offset);
+                    long end = offset + RECORD_HEADER_BYTES + header.getInt(0);
+                    if (end > logSize) {
+                        break;
+                    }
+                    Map<String, String> fields = read(segment, offset);
+                    String taxiBookingId = fields.get(ID_FIELD);
+                    long bookedTime = parseTime(fields.get(BOOKED_TIME_FIELD));
+                    out.writeUTF(taxiBookingId);
+                    out.writeLong(bookedTime);
+                    out.writeLong(offset);
+                    segment.include(bookedTime);
+                    segment.locations.put(taxiBookingId, offset);
+                    offset = end;
+                }
+            }
+            if (offset < logSize) {
+                LOGGER.warn("Truncating torn record at {} of archive segment {}", offset, segment.log);
+                try (FileChannel channel = FileChannel.open(segment.log, StandardOpenOption.WRITE)) {
+                    channel.truncate(offset);
+                }
+            }
+            segment.size = offset;
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        channel.read(header, offset);
+        return header;
+    }
+
+    private void openActive(Segment segment) throws IOException {
+        segment.logChannel = FileChannel.open(segment.log, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        segment.indexOut = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(segment.index, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+        segment.mapped = null;
+        segments.put(segment.number, segment);
+        active = segment;
+    }
+
+    private void rotate() throws IOException {
+        Segment sealed = active;
+        sealed.close();
+        writeLookup(sealed, sealed.locations);
+        map(sealed);
+        openLookup(sealed);
+        // Readers fall back to the lookup file once the in-memory IDs are released.
+        sealed.locations = null;
+        openActive(new Segment(sealed.number + 1));
+    }
+
+    private static void map(Segment segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.log, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            segment.mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.size);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units of a booking ID, part of the lookup file format.
+     */
+    static long hash(String taxiBookingId) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < taxiBookingId.length(); i++) {
+            hash ^= taxiBookingId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long parseTime(String millis) {
+        return millis == null ? 0 : Long.parseLong(millis);
+    }
+
+    private final class Segment {
+        private final int number;
+        private final Path log;
+        private final Path index;
+        private final Path lookup;
+        private volatile MappedByteBuffer mapped;
+        private volatile long minBookedTime = Long.MAX_VALUE;
+        private volatile long maxBookedTime = Long.MIN_VALUE;
+        // The latest offset per booking ID while the segment is active, null once it is sealed.
+        private volatile Map<String, Long> locations = new ConcurrentHashMap<>();
+        private volatile MappedByteBuffer lookupMapped;
+        private volatile int lookupCount;
+        private long size;
+        private FileChannel logChannel;
+        private DataOutputStream indexOut;
+
+        private Segment(int number) {
+            this.number = number;
+            String name = SEGMENT_PREFIX + String.format("%08d", number);
+            this.log = directory.resolve(name + LOG_SUFFIX);
+            this.index = directory.resolve(name + INDEX_SUFFIX);
+            this.lookup = directory.resolve(name + LOOKUP_SUFFIX);
+        }
+
+        private void include(long bookedTime) {
+            minBookedTime = Math.min(minBookedTime, bookedTime);
+            maxBookedTime = Math.max(maxBookedTime, bookedTime);
+        }
+
+        private int count() {
+            Map<String, Long> current = locations;
+            return current != null ? current.size() : lookupCount;
+        }
+
+        private void close() throws IOException {
+            indexOut.close();
+            logChannel.force(true);
+            logChannel.close();
+        }
+    }
+
+    private static final class IndexEntry {
+        private final String taxiBookingId;
+        private final long bookedTime;
+        private final long offset;
+
+        private IndexEntry(String taxiBookingId, long bookedTime, long offset) {
+            this.taxiBookingId = taxiBookingId;
+            this.bookedTime = bookedTime;
+            this.offset = offset;
+        }
+    }
+
+    private static final class Hit {
+        private final Segment segment;
+        private final long offset;
+        private final Map<String, String> fields;
+
+        private Hit(Segment segment, long offset, Map<String, String> fields) {
+            this.segment = segment;
+            this.offset = offset;
+            this.fields = fields;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.sheeft.bookingservice.archive;
+
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.sheeft.bookingservice.service.BookingTimeIndex;
+import com.springboot.taximodel.enums.TaxiBookingStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves completed and cancelled bookings out of Redis into the local BookingArchive, so Redis memory follows
+ * live demand rather than history. A booking is only deleted from Redis once its archived copy is on disk;
+ * if a run is interrupted in between, the next run archives it again and the newer copy wins.
+ * The archive is local to the instance, so it is off by default; with several replicas set booking.archive.enabled
+ * on the one whose archive directory serves archived lookups.
+ * Bookings are aged by the closedTime this service stamps when completing or cancelling them.
+ */
+@Service
+public class BookingArchiver {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingArchiver.class);
+
+    private static final String ARCHIVE_LOCK_KEY = "TaxiBooking:Archive:Lock";
+
+    private static final int PAGE_SIZE = 500;
+
+    private static final String CLOSED_TIME_FIELD = "closedTime";
+
+    // Bookings closed before closedTime was stored are aged by the latest of these, stored as epoch milliseconds.
+    private static final String[] TIME_FIELDS = {"bookedTime", "acceptedTime", "cancelTime", "endTime"};
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final BookingArchive bookingArchive;
+    private final BookingTimeIndex bookingTimeIndex;
+    private final boolean enabled;
+    private final long minAgeMillis;
+    private final Duration lockTimeout;
+    private final RedisScript<Long> releaseLockScript =
+            RedisScript.of(new ClassPathResource("scripts/release-lock.lua"), Long.class);
+
+    public BookingArchiver(StringRedisTemplate stringRedisTemplate, BookingArchive bookingArchive,
+                           BookingTimeIndex bookingTimeIndex,
+                           @Value("${booking.archive.enabled:false}") boolean enabled,
+                           @Value("${booking.archive.min-age-minutes:60}") long minAgeMinutes,
+                           @Value("${booking.archive.interval-ms:60000}") long intervalMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.bookingArchive = bookingArchive;
+        this.bookingTimeIndex = bookingTimeIndex;
+        this.enabled = enabled;
+        this.minAgeMillis = Duration.ofMinutes(minAgeMinutes).toMillis();
+        this.lockTimeout = Duration.ofMillis(intervalMillis);
+    }
+
+    /**
+     * Archives every booking closed for at least booking.archive.min-age-minutes, holding a lock so replicas that
+     * enabled archiving do not run concurrently. The lock is released when the run ends.
+     */
+    @Scheduled(fixedDelayString = "${booking.archive.interval-ms:60000}",
+            initialDelayString = "${booking.archive.interval-ms:60000}")
+    public void archive() {
+        if (!enabled) {
+            return;
+        }
+        String token = UUID.randomUUID().toString();
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(ARCHIVE_LOCK_KEY, token, lockTimeout))) {
+            return;
+        }
+        try {
+            archiveClosedBookings();
+        } finally {
+            stringRedisTemplate.execute(releaseLockScript, List.of(ARCHIVE_LOCK_KEY), token);
+        }
+    }
+
+    private void archiveClosedBookings() {
+        long archiveBefore = System.currentTimeMillis() - minAgeMillis;
+        int archived = 0;
+        List<String> page = new ArrayList<>(PAGE_SIZE);
+        try (Cursor<String> cursor = stringRedisTemplate.opsForSet()
+                .scan(TaxiBooking.KEYSPACE, ScanOptions.scanOptions().count(PAGE_SIZE).build())) {
+            while (cursor.hasNext()) {
+                page.add(cursor.next());
+                if (page.size() == PAGE_SIZE) {
+                    archived += archivePage(page, archiveBefore);
+                    page.clear();
+                }
+            }
+            if (!page.isEmpty()) {
+                archived += archivePage(page, archiveBefore);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error while archiving bookings, {} archived so far", archived, e);
+            return;
+        }
+        if (archived > 0) {
+            LOGGER.info("Archived {} bookings, {} bookings in the archive", archived, bookingArchive.size());
+        }
+    }
+
+    /**
+     * Reads one page of bookings in one pipelined round trip, appends the terminal ones to the archive
+     * and deletes them, with their set, geo set and time index entries, in a second one.
+     */
+    @SuppressWarnings("unchecked")
+    private int archivePage(List<String> taxiBookingIds, long archiveBefore) throws IOException {
+        List<Object> hashes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            taxiBookingIds.forEach(id -> stringConnection.hGetAll(getTaxiBookingKey(id)));
+            return null;
+        });
+
+        Map<String, Map<String, String>> terminal = new LinkedHashMap<>();
+        for (int i = 0; i < taxiBookingIds.size(); i++) {
+            Map<String, String> fields = (Map<String, String>) hashes.get(i);
+            if (fields != null && isTerminal(fields) && closedTime(fields) < archiveBefore) {
+                terminal.put(taxiBookingIds.get(i), fields);
+            }
+        }
+        if (terminal.isEmpty()) {
+            return 0;
+        }
+
+        bookingArchive.append(terminal);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            terminal.forEach((id, fields) -> {
+                stringConnection.del(getTaxiBookingKey(id));
+                stringConnection.sRem(TaxiBooking.KEYSPACE, id);
+                String taxiType = fields.get("taxiType");
+                if (taxiType != null) {
+                    stringConnection.zRem(taxiType + "-Bookings", id);
+                    bookingTimeIndex.remove(stringConnection, id, TaxiType.valueOf(taxiType),
+                            toMillis(fields.get("createdTime")), toMillis(fields.get("startTime")));
+                } else {
+                    // Bookings made before the type was stored may be in any booking geo set.
+                    for (TaxiType type : TaxiType.values()) {
+                        stringConnection.zRem(type + "-Bookings", id);
+                    }
+                }
+            });
+            return null;
+        });
+        return terminal.size();
+    }
+
+    private static Long toMillis(String value) {
+        return value == null ? null : Long.valueOf(value);
+    }
+
+    private static boolean isTerminal(Map<String, String> fields) {
+        String status = fields.get("bookingStatus");
+        return TaxiBookingStatus.COMPLETED.name().equals(status) || TaxiBookingStatus.CANCELLED.name().equals(status);
+    }
+
+    private static long closedTime(Map<String, String> fields) {
+        String closedTime = fields.get(CLOSED_TIME_FIELD);
+        if (closedTime != null) {
+            return Long.parseLong(closedTime);
+        }
+        long last = 0;
+        for (String field : TIME_FIELDS) {
+            String value = fields.get(field);
+            if (value != null) {
+                last = Math.max(last, Long.parseLong(value));
+            }
+        }
+        return last;
+    }
+
+    private static String getTaxiBookingKey(String taxiBookingId) {
+        return TaxiBooking.KEYSPACE + ":" + taxiBookingId;
+    }
+}
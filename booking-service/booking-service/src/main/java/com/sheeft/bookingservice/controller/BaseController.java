@@ -1,6 +1,8 @@
 package com.sheeft.bookingservice.controller;
 
+import com.sheeft.bookingservice.exception.TaxiBookingConflictException;
 import com.sheeft.bookingservice.exception.TaxiBookingIdNotFoundException;
+import com.sheeft.bookingservice.exception.TaxiUnavailableException;
 import com.springboot.taximodel.dto.response.ErrorDTO;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -21,4 +23,37 @@ public class BaseController {
         return new ResponseEntity<ErrorDTO>(new ErrorDTO(e.getMessage(),
                 HttpStatus.BAD_REQUEST.value()), HttpStatus.BAD_REQUEST);
     }
+
+    /**
+     * Handles TaxiBookingConflictException and returns a ResponseEntity with an ErrorDTO.
+     * @param e The TaxiBookingConflictException that was thrown.
+     * @return ResponseEntity<ErrorDTO> A response entity containing the error details and HTTP status.
+     */
+    @ExceptionHandler(TaxiBookingConflictException.class)
+    public ResponseEntity<ErrorDTO> handleTaxiBookingConflictException(TaxiBookingConflictException e){
+        return new ResponseEntity<ErrorDTO>(new ErrorDTO(e.getMessage(),
+                HttpStatus.CONFLICT.value()), HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Handles TaxiUnavailableException and returns a ResponseEntity with an ErrorDTO.
+     * @param e The TaxiUnavailableException that was thrown.
+     * @return ResponseEntity<ErrorDTO> A response entity containing the error details and HTTP status.
+     */
+    @ExceptionHandler(TaxiUnavailableException.class)
+    public ResponseEntity<ErrorDTO> handleTaxiUnavailableException(TaxiUnavailableException e){
+        return new ResponseEntity<ErrorDTO>(new ErrorDTO(e.getMessage(),
+                HttpStatus.CONFLICT.value()), HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Handles IllegalArgumentException raised by request validation and returns a ResponseEntity with an ErrorDTO.
+     * @param e The IllegalArgumentException that was thrown.
+     * @return ResponseEntity<ErrorDTO> A response entity containing the error details and HTTP status.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorDTO> handleIllegalArgumentException(IllegalArgumentException e){
+        return new ResponseEntity<ErrorDTO>(new ErrorDTO(e.getMessage(),
+                HttpStatus.BAD_REQUEST.value()), HttpStatus.BAD_REQUEST);
+    }
 }
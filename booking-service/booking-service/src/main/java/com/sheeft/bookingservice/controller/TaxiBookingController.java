@@ -1,26 +1,45 @@
 package com.sheeft.bookingservice.controller;
 
+import com.sheeft.bookingservice.converter.TaxiBookingToDTOConverter;
+import com.sheeft.bookingservice.service.DispatchService;
 import com.sheeft.bookingservice.service.TaxiBookingService;
+import com.sheeft.bookingservice.service.TaxiBulkBookingService;
+import com.springboot.taximodel.dto.request.DispatchOfferDTO;
 import com.springboot.taximodel.dto.request.TaxiBookedEventDTO;
 import com.springboot.taximodel.dto.request.TaxiBookingAcceptedEventDTO;
 import com.springboot.taximodel.dto.request.TaxiBookingCanceledEventDTO;
 import com.springboot.taximodel.dto.response.TaxiBookedEventResponseDTO;
 import com.springboot.taximodel.dto.response.TaxiBookingAcceptedEventResponseDTO;
 import com.springboot.taximodel.dto.response.TaxiBookingCanceledEventResponseDTO;
+import com.springboot.taximodel.dto.response.TaxiBookingDTO;
+import com.springboot.taximodel.dto.response.TaxiBookingHistoryResponseDTO;
 import com.springboot.taximodel.dto.response.TaxiBookingResponseDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkBookingResponseDTO;
 import com.springboot.taximodel.enums.TaxiType;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
 @RequestMapping("/taxibookings")
 @RestController
 public class TaxiBookingController {
 
     private final TaxiBookingService taxiBookingService;
+    private final DispatchService dispatchService;
+    private final TaxiBulkBookingService taxiBulkBookingService;
+    private final TaxiBookingToDTOConverter taxiBookingToDTOConverter = new TaxiBookingToDTOConverter();
 
-    public TaxiBookingController(TaxiBookingService taxiBookingService) {
+    public TaxiBookingController(TaxiBookingService taxiBookingService, DispatchService dispatchService,
+                                 TaxiBulkBookingService taxiBulkBookingService) {
         this.taxiBookingService = taxiBookingService;
+        this.dispatchService = dispatchService;
+        this.taxiBulkBookingService = taxiBulkBookingService;
     }
 
     /**
@@ -37,6 +56,17 @@ public class TaxiBookingController {
                         .getTaxiBookingId()));
     }
 
+    /**
+     * Endpoint to book many taxis at once, for corporate and event clients.
+     * @param taxiBookedEventDTOs The bookings to make, at most booking.bulk.max-bookings per request.
+     * @return Mono<TaxiBulkBookingResponseDTO> A reactive type that emits the counts and, in request order,
+     * the booking ID or the reason for rejection of every booking.
+     */
+    @PostMapping("/bulk")
+    public Mono<TaxiBulkBookingResponseDTO> bookAll(@RequestBody List<TaxiBookedEventDTO> taxiBookedEventDTOs) {
+        return Mono.just(taxiBulkBookingService.book(taxiBookedEventDTOs));
+    }
+
     /**
      * Endpoint to cancel a taxi booking.
      *
@@ -69,19 +99,89 @@ public class TaxiBookingController {
     }
 
     /**
-     * Endpoint to retrieve taxi bookings of a specified type within a given radius from a specified location.
+     * Endpoint to retrieve taxi bookings of a specified type within a given radius from a specified location,
+     * optionally narrowed to recent bookings or to a scheduled pickup time window.
      * @param taxiType The type of taxi bookings to retrieve.
      * @param latitude The latitude of the center point for the search radius.
      * @param longitude The longitude of the center point for the search radius.
      * @param radius The radius (in kilometers) within which to search for taxi bookings. Defaults to 1 km if not provided.
+     * @param bookedWithinMinutes Only bookings made within this many minutes, up to
+     * booking.time-index.booked-retention-minutes.
+     * @param pickupFrom Only bookings scheduled for pickup at or after this ISO date-time, together with pickupTo.
+     * @param pickupTo Only bookings scheduled for pickup before this ISO date-time, together with pickupFrom.
      */
     @GetMapping
     public Flux<TaxiBookingResponseDTO> getBookings(@RequestParam("type") TaxiType taxiType,
                                                     @RequestParam("latitude") Double latitude,
                                                     @RequestParam("longitude") Double longitude,
-                                                    @RequestParam(value = "radius", defaultValue = "1") Double radius) {
+                                                    @RequestParam(value = "radius", defaultValue = "1") Double radius,
+                                                    @RequestParam(value = "bookedWithinMinutes", required = false)
+                                                            Integer bookedWithinMinutes,
+                                                    @RequestParam(value = "pickupFrom", required = false)
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date pickupFrom,
+                                                    @RequestParam(value = "pickupTo", required = false)
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date pickupTo) {
         // Map each GeoResult to a TaxiBookingResponseDTO, extracting the taxi booking name from the GeoLocation.
-        return taxiBookingService.getBookings(taxiType, latitude, longitude, radius)
+        return taxiBookingService.getBookings(taxiType, latitude, longitude, radius, bookedWithinMinutes,
+                        pickupFrom, pickupTo)
                 .map(r -> new TaxiBookingResponseDTO(r.getContent().getName()));
     }
+
+    /**
+     * Endpoint to retrieve the booking history of a customer, most recent first, one page at a time.
+     * @param customerId The ID of the customer.
+     * @param before The nextCursor of the previous page; omit for the first page.
+     * @param size The number of bookings per page. Defaults to 20.
+     * @return Mono<TaxiBookingHistoryResponseDTO> A reactive type that emits the bookings of the page
+     * and the cursor of the next page.
+     */
+    @GetMapping("/customers/{customerId}")
+    public Mono<TaxiBookingHistoryResponseDTO> getCustomerBookings(
+            @PathVariable("customerId") Long customerId,
+            @RequestParam(value = "before", required = false) String before,
+            @RequestParam(value = "size", defaultValue = "20") Integer size) {
+        return taxiBookingService.getCustomerBookings(customerId, before, size);
+    }
+
+    /**
+     * Endpoint to retrieve a taxi booking by its ID, including bookings that have been archived.
+     * @param taxiBookingId The ID of the taxi booking.
+     * @return Mono<TaxiBookingDTO> A reactive type that emits the booking.
+     */
+    @GetMapping("/{taxiBookingId}")
+    public Mono<TaxiBookingDTO> getBooking(@PathVariable("taxiBookingId") String taxiBookingId) {
+        return taxiBookingService.getBooking(taxiBookingId).map(taxiBookingToDTOConverter::convert);
+    }
+
+    /**
+     * Endpoint to retrieve archived taxi bookings booked within a time range.
+     * @param from The start of the range, inclusive, as an ISO date-time.
+     * @param to The end of the range, exclusive, as an ISO date-time.
+     * @param limit The maximum number of bookings to return. Defaults to 1000.
+     * @return Flux<TaxiBookingDTO> A reactive type that emits the archived bookings.
+     */
+    @GetMapping("/archive")
+    public Flux<TaxiBookingDTO> getArchivedBookings(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date to,
+            @RequestParam(value = "limit", defaultValue = "1000") Integer limit) {
+        return taxiBookingService.getArchivedBookings(from, to, limit).map(taxiBookingToDTOConverter::convert);
+    }
+
+    /**
+     * Endpoint for a driver to wait for the next booking offered to them, replacing polling of the booking search.
+     * Drivers connected to taxi-service over WebSocket receive the same offers pushed to them.
+     * @param taxiId The ID of the driver's taxi.
+     * @param waitSeconds How long to wait for an offer. Defaults to 20, capped at booking.dispatch.max-wait-seconds.
+     * @return Mono<ResponseEntity<DispatchOfferDTO>> A reactive type that emits the oldest pending offer,
+     * or 204 No Content if none arrived in time.
+     */
+    @GetMapping("/offers/{taxiId}")
+    public Mono<ResponseEntity<DispatchOfferDTO>> getNextOffer(
+            @PathVariable("taxiId") String taxiId,
+            @RequestParam(value = "waitSeconds", defaultValue = "20") Integer waitSeconds) {
+        return dispatchService.nextOffer(taxiId, Duration.ofSeconds(Math.max(0, waitSeconds)))
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.noContent().build());
+    }
 }
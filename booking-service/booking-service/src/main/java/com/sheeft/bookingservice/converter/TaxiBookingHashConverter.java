@@ -0,0 +1,58 @@
+package com.sheeft.bookingservice.converter;
+
+import com.sheeft.bookingservice.model.TaxiBooking;
+import org.springframework.data.redis.core.convert.Bucket;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Maps booking hash fields, as read with HGETALL or restored from the archive, to a TaxiBooking and back
+ * with the same converter the repository uses, so the layout never diverges from TaxiBookingRepository.
+ */
+@Component
+public class TaxiBookingHashConverter {
+
+    private final RedisConverter redisConverter;
+
+    public TaxiBookingHashConverter(RedisConverter redisConverter) {
+        this.redisConverter = redisConverter;
+    }
+
+    /**
+     * @param taxiBookingId The ID of the booking, taken from its key.
+     * @param fields The hash fields of the booking.
+     * @return TaxiBooking The booking, or null if there are no fields.
+     */
+    public TaxiBooking read(String taxiBookingId, Map<String, String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        Map<byte[], byte[]> raw = new HashMap<>(fields.size() * 2);
+        fields.forEach((field, value) -> raw.put(field.getBytes(StandardCharsets.UTF_8),
+                value.getBytes(StandardCharsets.UTF_8)));
+        TaxiBooking taxiBooking = redisConverter.read(TaxiBooking.class, new RedisData(Bucket.newBucketFromRawMap(raw)));
+        if (taxiBooking != null) {
+            taxiBooking.setTaxiBookingId(taxiBookingId);
+        }
+        return taxiBooking;
+    }
+
+    /**
+     * @param taxiBooking The booking to write.
+     * @return Map<String, String> The hash fields TaxiBookingRepository.save would write for the booking.
+     */
+    public Map<String, String> write(TaxiBooking taxiBooking) {
+        RedisData redisData = new RedisData();
+        redisConverter.write(taxiBooking, redisData);
+        Map<String, String> fields = new LinkedHashMap<>();
+        redisData.getBucket().rawMap().forEach((field, value) -> fields.put(
+                new String(field, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8)));
+        return fields;
+    }
+}
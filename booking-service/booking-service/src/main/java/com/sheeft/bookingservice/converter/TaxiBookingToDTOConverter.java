@@ -0,0 +1,33 @@
+package com.sheeft.bookingservice.converter;
+
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.dto.response.TaxiBookingDTO;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.geo.Point;
+
+/**
+ * Converter class for converting a stored TaxiBooking to the TaxiBookingDTO returned by the API.
+ */
+public class TaxiBookingToDTOConverter implements Converter<TaxiBooking, TaxiBookingDTO> {
+
+    /**
+     * Converts a TaxiBooking object to a TaxiBookingDTO object.
+     * @param taxiBooking The TaxiBooking object to be converted.
+     * @return TaxiBookingDTO The converted TaxiBookingDTO object.
+     */
+    @Override
+    public TaxiBookingDTO convert(TaxiBooking taxiBooking) {
+        return new TaxiBookingDTO(taxiBooking.getTaxiBookingId(),
+                toLocation(taxiBooking.getStart()), taxiBooking.getStartTime(),
+                toLocation(taxiBooking.getEnd()), taxiBooking.getEndTime(),
+                taxiBooking.getBookedTime(), taxiBooking.getAcceptedTime(), taxiBooking.getCustomerId(),
+                taxiBooking.getBookingStatus(), taxiBooking.getReasonToCancel(), taxiBooking.getCancelTime(),
+                taxiBooking.getTaxiId(), taxiBooking.getTaxiType());
+    }
+
+    private static LocationDTO toLocation(Point point) {
+        // Points hold (longitude, latitude).
+        return point == null ? null : new LocationDTO(point.getY(), point.getX(), null);
+    }
+}
@@ -0,0 +1,12 @@
+package com.sheeft.bookingservice.exception;
+
+/**
+ * Custom exception thrown when a taxi booking was changed by another request before this one could change it,
+ * such as a booking another taxi already accepted.
+ */
+public class TaxiBookingConflictException extends RuntimeException {
+
+    public TaxiBookingConflictException(String message){
+        super(message);
+    }
+}
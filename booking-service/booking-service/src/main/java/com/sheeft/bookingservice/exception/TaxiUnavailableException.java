@@ -0,0 +1,11 @@
+package com.sheeft.bookingservice.exception;
+
+/**
+ * Custom exception thrown when a taxi tries to accept a booking while it is not available.
+ */
+public class TaxiUnavailableException extends RuntimeException {
+
+    public TaxiUnavailableException(String message){
+        super(message);
+    }
+}
@@ -7,6 +7,7 @@
 package com.sheeft.bookingservice.model;
 
 import com.springboot.taximodel.enums.TaxiBookingStatus;
+import com.springboot.taximodel.enums.TaxiType;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,7 +17,7 @@ import org.springframework.data.redis.core.RedisHash;
 
 import java.util.Date;
 
-@RedisHash("TaxiBooking")
+@RedisHash(TaxiBooking.KEYSPACE)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -29,6 +30,9 @@ public class TaxiBooking {
    org.springframework.data.annotation.Id. Those two items are responsible for creating the actual key
    used to persist the hash.
 */
+    // Keyspace of the booking hashes, also the name of the set indexing all booking IDs.
+    public static final String KEYSPACE = "TaxiBooking";
+
     @Id
     private String taxiBookingId;
 
@@ -53,4 +57,12 @@ public class TaxiBooking {
     private Date cancelTime;
 
     private String taxiId;
+
+    private TaxiType taxiType;
+
+    // When this service created the booking, unlike the bookedTime a client may send.
+    private Date createdTime;
+
+    // When this service completed or cancelled the booking, null while it is open.
+    private Date closedTime;
 }
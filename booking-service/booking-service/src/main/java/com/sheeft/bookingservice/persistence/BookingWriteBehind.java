@@ -0,0 +1,209 @@
+package com.sheeft.bookingservice.persistence;
+
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.springboot.taximodel.util.WriteBehindBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.geo.Point;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Copies booking state to the relational store behind the request path. Changes are coalesced per booking
+ * in a bounded buffer and flushed on a schedule with batched upserts, so a SQL outage or slowdown only grows
+ * the lag, never booking latency. Redis stays the system of record; the table is for durable reporting.
+ * A batch the database rejects for its data is written row by row, and rows that still fail are logged and counted
+ * as booking.write-behind.dead-lettered instead of being retried forever.
+ */
+@Component
+public class BookingWriteBehind {
+
+    /**
+     * Longest booking ID the taxi_booking table holds, see schema.sql.
+     */
+    public static final int MAX_TAXI_BOOKING_ID_LENGTH = 64;
+
+    /**
+     * Longest cancellation reason the taxi_booking table holds, see schema.sql.
+     */
+    public static final int MAX_REASON_TO_CANCEL_LENGTH = 1024;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingWriteBehind.class);
+
+    // H2 upsert; see schema.sql for the table.
+    private static final String UPSERT = "MERGE INTO taxi_booking (taxi_booking_id, customer_id, taxi_id, taxi_type, "
+            + "booking_status, start_latitude, start_longitude, end_latitude, end_longitude, booked_time, "
+            + "accepted_time, start_time, end_time, cancel_time, reason_to_cancel, updated_at) "
+            + "KEY (taxi_booking_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int[] ROW_TYPES = {Types.VARCHAR, Types.BIGINT, Types.VARCHAR, Types.VARCHAR,
+            Types.VARCHAR, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.DOUBLE, Types.TIMESTAMP,
+            Types.TIMESTAMP, Types.TIMESTAMP, Types.TIMESTAMP, Types.TIMESTAMP, Types.VARCHAR, Types.TIMESTAMP};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WriteBehindBuffer<String, TaxiBooking> buffer;
+    private final int batchSize;
+    private final Counter written;
+    private final Counter failed;
+    private final Counter deadLettered;
+    private final Timer flushTimer;
+
+    public BookingWriteBehind(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                              @Value("${booking.write-behind.capacity:100000}") int capacity,
+                              @Value("${booking.write-behind.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buffer = new WriteBehindBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.written = meterRegistry.counter("booking.write-behind.written");
+        this.failed = meterRegistry.counter("booking.write-behind.failed");
+        this.deadLettered = meterRegistry.counter("booking.write-behind.dead-lettered");
+        this.flushTimer = meterRegistry.timer("booking.write-behind.flush");
+        Gauge.builder("booking.write-behind.pending", buffer, WriteBehindBuffer::size)
+                .description("Bookings waiting to be written").register(meterRegistry);
+        Gauge.builder("booking.write-behind.lag", buffer, WriteBehindBuffer::lagMillis)
+                .description("Age of the oldest unwritten booking change").baseUnit("milliseconds")
+                .register(meterRegistry);
+        FunctionCounter.builder("booking.write-behind.coalesced", buffer, WriteBehindBuffer::coalesced)
+                .register(meterRegistry);
+        FunctionCounter.builder("booking.write-behind.rejected", buffer, WriteBehindBuffer::rejected)
+                .description("Changes dropped because the buffer was full").register(meterRegistry);
+        FunctionCounter.builder("booking.write-behind.retries-dropped", buffer, WriteBehindBuffer::retriesDropped)
+                .description("Failed changes dropped instead of retried because the buffer was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the current state of a booking. Never blocks.
+     * @param taxiBooking The booking as saved to Redis.
+     */
+    public void enqueue(TaxiBooking taxiBooking) {
+        if (!buffer.offer(taxiBooking.getTaxiBookingId(), taxiBooking)) {
+            LOGGER.warn("Write-behind buffer full, booking {} not persisted", taxiBooking.getTaxiBookingId());
+        }
+    }
+
+    /**
+     * Writes all pending bookings in batches of booking.write-behind.batch-size.
+     */
+    @Scheduled(fixedDelayString = "${booking.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        List<WriteBehindBuffer.Entry<String, TaxiBooking>> batch;
+        while (!(batch = buffer.drain(batchSize)).isEmpty()) {
+            if (!write(batch)) {
+                // Leave the rest for the next run rather than hammering a failing database.
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private boolean write(List<WriteBehindBuffer.Entry<String, TaxiBooking>> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        batch.forEach(e -> rows.add(toRow(e.getValue(), now)));
+        try {
+            flushTimer.record(() -> jdbcTemplate.batchUpdate(UPSERT, rows, ROW_TYPES));
+            written.increment(batch.size());
+            return true;
+        } catch (DataAccessException e) {
+            if (isTransient(e)) {
+                LOGGER.error("Error while writing {} bookings, will retry", batch.size(), e);
+                failed.increment(batch.size());
+                retry(batch);
+                return false;
+            }
+            // The database rejected some row; write them one by one so the others are not held back with it.
+            LOGGER.warn("Batch of {} bookings rejected, writing them one by one", batch.size(), e);
+            return writeRows(batch, rows);
+        }
+    }
+
+    private boolean writeRows(List<WriteBehindBuffer.Entry<String, TaxiBooking>> batch, List<Object[]> rows) {
+        for (int i = 0; i < batch.size(); i++) {
+            try {
+                jdbcTemplate.update(UPSERT, rows.get(i), ROW_TYPES);
+                written.increment();
+            } catch (DataAccessException e) {
+                if (isTransient(e)) {
+                    LOGGER.error("Error while writing {} bookings, will retry", batch.size() - i, e);
+                    failed.increment(batch.size() - i);
+                    retry(batch.subList(i, batch.size()));
+                    return false;
+                }
+                // Retrying a row the database rejects would only block its later changes for good.
+                LOGGER.error("Booking {} rejected by the database, not persisted", batch.get(i).getKey(), e);
+                deadLettered.increment();
+            }
+        }
+        return true;
+    }
+
+    private void retry(List<WriteBehindBuffer.Entry<String, TaxiBooking>> entries) {
+        int dropped = 0;
+        for (WriteBehindBuffer.Entry<String, TaxiBooking> entry : entries) {
+            if (!buffer.retry(entry.getKey(), entry.getValue(), entry.getSince())) {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            LOGGER.warn("Write-behind buffer full, {} failed bookings dropped instead of retried", dropped);
+        }
+    }
+
+    /**
+     * Whether a write may succeed when repeated unchanged, as after an outage, rather than being rejected for its
+     * data.
+     */
+    private static boolean isTransient(DataAccessException e) {
+        return e instanceof TransientDataAccessException || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    private static Object[] toRow(TaxiBooking taxiBooking, Timestamp now) {
+        Point start = taxiBooking.getStart();
+        Point end = taxiBooking.getEnd();
+        return new Object[]{
+                taxiBooking.getTaxiBookingId(),
+                taxiBooking.getCustomerId(),
+                taxiBooking.getTaxiId(),
+                taxiBooking.getTaxiType() == null ? null : taxiBooking.getTaxiType().name(),
+                taxiBooking.getBookingStatus() == null ? null : taxiBooking.getBookingStatus().name(),
+                start == null ? null : start.getY(),
+                start == null ? null : start.getX(),
+                end == null ? null : end.getY(),
+                end == null ? null : end.getX(),
+                toTimestamp(taxiBooking.getBookedTime()),
+                toTimestamp(taxiBooking.getAcceptedTime()),
+                toTimestamp(taxiBooking.getStartTime()),
+                toTimestamp(taxiBooking.getEndTime()),
+                toTimestamp(taxiBooking.getCancelTime()),
+                taxiBooking.getReasonToCancel(),
+                now};
+    }
+
+    private static Timestamp toTimestamp(Date date) {
+        return date == null ? null : new Timestamp(date.getTime());
+    }
+}
@@ -0,0 +1,242 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.converter.TaxiBookingHashConverter;
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.sheeft.bookingservice.persistence.BookingWriteBehind;
+import com.springboot.taximodel.converter.LocationToPointConverter;
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.dto.request.TaxiBookedEventDTO;
+import com.springboot.taximodel.enums.TaxiBookingStatus;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taximodel.util.HeatmapKeys;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Creates bookings with create-booking.lua, which writes the booking hash, its keyspace index entry, its geo members,
+ * its open booking count and its customer history entry atomically in a single round trip. A booking is therefore
+ * either fully indexed or not written at all, and creating one with an ID that already exists changes nothing,
+ * so clients can safely retry with the taxiBookingId they sent. The booking stores a hash of the request it was
+ * created from, which tells such a retry apart from a different booking reusing the ID.
+ */
+@Component
+public class BookingCreator {
+
+    /**
+     * Result of {@link #create} when the booking was created.
+     */
+    public static final long CREATED = 1;
+
+    /**
+     * Result of {@link #create} when the booking had already been created from the same request.
+     */
+    public static final long EXISTS = 0;
+
+    /**
+     * Result of {@link #create} when a booking with the same ID was created from a different request.
+     */
+    public static final long CONFLICT = -1;
+
+    // The limit of GEOADD, beyond it the script would fail after nothing else was checked.
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TaxiBookingHashConverter taxiBookingHashConverter;
+    private final BookingWriteBehind bookingWriteBehind;
+    private final BookingTimeIndex bookingTimeIndex;
+    private final RedisScript<Long> createBookingScript =
+            RedisScript.of(new ClassPathResource("scripts/create-booking.lua"), Long.class);
+    private final LocationToPointConverter locationToPointConverter = new LocationToPointConverter();
+
+    public BookingCreator(ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+                          StringRedisTemplate stringRedisTemplate, TaxiBookingHashConverter taxiBookingHashConverter,
+                          BookingWriteBehind bookingWriteBehind, BookingTimeIndex bookingTimeIndex) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.taxiBookingHashConverter = taxiBookingHashConverter;
+        this.bookingWriteBehind = bookingWriteBehind;
+        this.bookingTimeIndex = bookingTimeIndex;
+    }
+
+    /**
+     * @param taxiBookedEventDTO The booking request.
+     * @return TaxiBooking A new active booking, keeping the ID chosen by the client if it sent one.
+     * @throws IllegalArgumentException if the taxi type or a valid start location is missing, or the ID is longer
+     * than the relational store holds.
+     */
+    public TaxiBooking newBooking(TaxiBookedEventDTO taxiBookedEventDTO) {
+        LocationDTO start = taxiBookedEventDTO.getStart();
+        String taxiBookingId = taxiBookedEventDTO.getTaxiBookingId();
+        if (taxiBookingId != null
+                && (taxiBookingId.isEmpty() || taxiBookingId.length() > BookingWriteBehind.MAX_TAXI_BOOKING_ID_LENGTH)) {
+            throw new IllegalArgumentException("taxiBookingId must have 1 to "
+                    + BookingWriteBehind.MAX_TAXI_BOOKING_ID_LENGTH + " characters");
+        }
+        if (taxiBookedEventDTO.getTaxiType() == null) {
+            throw new IllegalArgumentException("taxiType is required");
+        }
+        if (start == null || start.getLatitude() == null || start.getLongitude() == null
+                || Math.abs(start.getLatitude()) > MAX_LATITUDE || Math.abs(start.getLongitude()) > 180) {
+            throw new IllegalArgumentException("start requires a latitude within " + MAX_LATITUDE
+                    + " and a longitude within 180 degrees");
+        }
+        TaxiBooking taxiBooking = new TaxiBooking();
+        taxiBooking.setTaxiBookingId(taxiBookedEventDTO.getTaxiBookingId() != null
+                ? taxiBookedEventDTO.getTaxiBookingId() : UUID.randomUUID().toString());
+        taxiBooking.setEnd(locationToPointConverter.convert(taxiBookedEventDTO.getEnd()));
+        taxiBooking.setStart(locationToPointConverter.convert(taxiBookedEventDTO.getStart()));
+        // Bookings without a booked time are booked now. The time index goes by the created time set below,
+        // which unlike the booked time is not up to the client.
+        taxiBooking.setBookedTime(taxiBookedEventDTO.getBookedTime() != null
+                ? taxiBookedEventDTO.getBookedTime() : new Date());
+        taxiBooking.setStartTime(taxiBookedEventDTO.getStartTime());
+        taxiBooking.setCustomerId(taxiBookedEventDTO.getCustomerId());
+        taxiBooking.setBookingStatus(TaxiBookingStatus.ACTIVE);
+        taxiBooking.setTaxiType(taxiBookedEventDTO.getTaxiType());
+        taxiBooking.setCreatedTime(new Date());
+        return taxiBooking;
+    }
+
+    /**
+     * Hashes what a client asked for in a booking request, so that retries of one request hash the same.
+     * The booked time is left out: the request defaults it to the time it was read, which differs between retries.
+     * @param taxiBookedEventDTO The booking request.
+     * @return String The Base64 SHA-256 of the request.
+     */
+    public static String requestHash(TaxiBookedEventDTO taxiBookedEventDTO) {
+        StringBuilder request = new StringBuilder()
+                .append(taxiBookedEventDTO.getTaxiType()).append('|')
+                .append(taxiBookedEventDTO.getCustomerId()).append('|');
+        appendLocation(request, taxiBookedEventDTO.getStart());
+        appendLocation(request, taxiBookedEventDTO.getEnd());
+        appendTime(request, taxiBookedEventDTO.getStartTime());
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(request.toString().getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Creates a booking in one scripted round trip and queues it for the relational store.
+     * @param taxiBooking The booking to create, with its ID, start location and taxi type set.
+     * @param requestHash The {@link #requestHash} of the request the booking was made from.
+     * @return Mono<Long> A reactive type that emits {@link #CREATED}, {@link #EXISTS} or {@link #CONFLICT}.
+     */
+    public Mono<Long> create(TaxiBooking taxiBooking, String requestHash) {
+        return reactiveRedisTemplate.execute(createBookingScript, getKeys(taxiBooking),
+                        getArgs(taxiBooking, requestHash))
+                .next()
+                .doOnNext(outcome -> {
+                    if (outcome == CREATED) {
+                        bookingWriteBehind.enqueue(taxiBooking);
+                    }
+                });
+    }
+
+    /**
+     * Creates many bookings with one pipelined EVALSHA per booking, so a whole batch costs a single round trip.
+     * Each booking is still created atomically on its own, and one failing does not affect the others.
+     * @param taxiBookings The bookings to create, with their IDs, start locations and taxi types set.
+     * @param requestHashes The {@link #requestHash} of the request of each booking, in the same order.
+     * @return List<Object> Per booking and in order, {@link #CREATED}, {@link #EXISTS} or {@link #CONFLICT}
+     * as a Long, or the exception Redis failed it with.
+     */
+    public List<Object> createAll(List<TaxiBooking> taxiBookings, List<String> requestHashes) {
+        String sha = stringRedisTemplate.execute((RedisCallback<String>) connection ->
+                ((StringRedisConnection) connection).scriptLoad(createBookingScript.getScriptAsString()));
+        List<Object> results;
+        try {
+            results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (int i = 0; i < taxiBookings.size(); i++) {
+                    List<String> keysAndArgs = getKeys(taxiBookings.get(i));
+                    int keyCount = keysAndArgs.size();
+                    keysAndArgs.addAll(getArgs(taxiBookings.get(i), requestHashes.get(i)));
+                    stringConnection.evalSha(sha, ReturnType.INTEGER, keyCount, keysAndArgs.toArray(new String[0]));
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            // The results of the other bookings are still there, next to the failures.
+            results = e.getPipelineResult();
+        }
+        for (int i = 0; i < taxiBookings.size(); i++) {
+            if (Long.valueOf(CREATED).equals(results.get(i))) {
+                bookingWriteBehind.enqueue(taxiBookings.get(i));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The keys of create-booking.lua, only as many as the booking uses.
+     */
+    private List<String> getKeys(TaxiBooking taxiBooking) {
+        List<String> keys = new ArrayList<>(7);
+        keys.add(TaxiBooking.KEYSPACE + ":" + taxiBooking.getTaxiBookingId());
+        keys.add(TaxiBooking.KEYSPACE);
+        keys.add(TaxiBookingService.getTaxiTypeBookings(taxiBooking.getTaxiType()));
+        keys.add(HeatmapKeys.openBookings(taxiBooking.getTaxiType()));
+        keys.addAll(bookingTimeIndex.getKeys(taxiBooking));
+        if (taxiBooking.getCustomerId() != null) {
+            keys.add(BookingHistoryService.getCustomerIndexKey(taxiBooking.getCustomerId()));
+        }
+        return keys;
+    }
+
+    private List<String> getArgs(TaxiBooking taxiBooking, String requestHash) {
+        double longitude = taxiBooking.getStart().getX();
+        double latitude = taxiBooking.getStart().getY();
+        List<String> args = new ArrayList<>();
+        args.add(taxiBooking.getTaxiBookingId());
+        args.add(Double.toString(longitude));
+        args.add(Double.toString(latitude));
+        args.add(Long.toString(GeoCell.cellOf(longitude, latitude, HeatmapKeys.BITS_PER_AXIS)));
+        args.add(taxiBooking.getCustomerId() == null ? ""
+                : Long.toString((long) BookingHistoryService.score(taxiBooking)));
+        args.addAll(bookingTimeIndex.getArgs(taxiBooking));
+        args.add(requestHash);
+        for (Map.Entry<String, String> field : taxiBookingHashConverter.write(taxiBooking).entrySet()) {
+            args.add(field.getKey());
+            args.add(field.getValue());
+        }
+        return args;
+    }
+
+    private static void appendLocation(StringBuilder request, LocationDTO location) {
+        if (location != null) {
+            request.append(location.getLatitude()).append(',').append(location.getLongitude());
+        }
+        request.append('|');
+    }
+
+    private static void appendTime(StringBuilder request, Date time) {
+        if (time != null) {
+            request.append(time.getTime());
+        }
+        request.append('|');
+    }
+}
@@ -0,0 +1,82 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.converter.TaxiBookingHashConverter;
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.springboot.taximodel.enums.TaxiBookingStatus;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taximodel.util.HeatmapKeys;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes only the changed fields of a booking hash with update-booking.lua, instead of TaxiBookingRepository.save
+ * deleting and rewriting every field. The script first checks that the booking still has the status and taxi it
+ * had when the change was decided on, so two drivers accepting the same booking cannot both win, and adjusts the
+ * open booking heatmap in the same step.
+ */
+@Component
+public class BookingFieldStore {
+
+    /**
+     * Result of {@link #update} when the booking was changed by someone else in the meantime.
+     */
+    public static final long CONFLICT = 0;
+
+    /**
+     * Result of {@link #update} when the booking does not exist.
+     */
+    public static final long NOT_FOUND = -1;
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final TaxiBookingHashConverter taxiBookingHashConverter;
+    private final RedisScript<Long> updateBookingScript =
+            RedisScript.of(new ClassPathResource("scripts/update-booking.lua"), Long.class);
+
+    public BookingFieldStore(ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+                             TaxiBookingHashConverter taxiBookingHashConverter) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.taxiBookingHashConverter = taxiBookingHashConverter;
+    }
+
+    /**
+     * Writes some fields of a booking, provided its stored status and taxi are still the expected ones.
+     * @param taxiBooking The booking after the change.
+     * @param expectedStatus The status the booking had when it was read.
+     * @param expectedTaxiId The taxi the booking had when it was read, null for none.
+     * @param fields The names of the fields to write, a field without a value is deleted.
+     * @return Mono<Long> A reactive type that emits 1 if the booking was updated, {@link #CONFLICT}
+     * or {@link #NOT_FOUND}.
+     */
+    public Mono<Long> update(TaxiBooking taxiBooking, TaxiBookingStatus expectedStatus, String expectedTaxiId,
+                             String... fields) {
+        boolean wasOpen = expectedStatus == TaxiBookingStatus.ACTIVE && expectedTaxiId == null;
+        boolean isOpen = BookingHeatmapService.isOpen(taxiBooking);
+        // Bookings stored before the taxi type was recorded are left to the heatmap reconciliation.
+        boolean moveInHeatmap = wasOpen != isOpen && taxiBooking.getTaxiType() != null
+                && taxiBooking.getStart() != null;
+        long cell = moveInHeatmap ? GeoCell.cellOf(taxiBooking.getStart().getX(), taxiBooking.getStart().getY(),
+                HeatmapKeys.BITS_PER_AXIS) : 0;
+
+        List<String> keys = Arrays.asList(TaxiBooking.KEYSPACE + ":" + taxiBooking.getTaxiBookingId(),
+                moveInHeatmap ? HeatmapKeys.openBookings(taxiBooking.getTaxiType()) : "");
+        List<String> args = new ArrayList<>(4 + fields.length * 2);
+        args.add(expectedStatus == null ? "" : expectedStatus.name());
+        args.add(expectedTaxiId == null ? "" : expectedTaxiId);
+        args.add(Long.toString(cell));
+        args.add(isOpen ? "1" : "-1");
+        Map<String, String> values = taxiBookingHashConverter.write(taxiBooking);
+        for (String field : fields) {
+            args.add(field);
+            args.add(values.getOrDefault(field, ""));
+        }
+        return reactiveRedisTemplate.execute(updateBookingScript, keys, args).next();
+    }
+}
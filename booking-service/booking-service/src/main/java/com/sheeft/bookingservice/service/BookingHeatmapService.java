@@ -0,0 +1,119 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.springboot.taximodel.enums.TaxiBookingStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taximodel.util.HeatmapKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains per (TaxiType, geo cell) counts of open bookings, that is active bookings no taxi has accepted yet.
+ * Counts are updated incrementally by the booking scripts and rebuilt periodically from the booking geo sets.
+ */
+@Service
+public class BookingHeatmapService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BookingHeatmapService.class);
+
+    private static final String RECONCILE_LOCK_KEY = "Heatmap:Reconcile:Bookings";
+
+    private static final int RECONCILE_PAGE_SIZE = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration reconcileInterval;
+
+    public BookingHeatmapService(StringRedisTemplate stringRedisTemplate,
+                                 @Value("${booking.heatmap.reconcile-interval-ms:300000}") long reconcileIntervalMillis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.reconcileInterval = Duration.ofMillis(reconcileIntervalMillis);
+    }
+
+    /**
+     * @param taxiBooking The booking to check.
+     * @return boolean true if the booking is active and not yet accepted by a taxi.
+     */
+    public static boolean isOpen(TaxiBooking taxiBooking) {
+        return taxiBooking.getBookingStatus() == TaxiBookingStatus.ACTIVE && taxiBooking.getTaxiId() == null;
+    }
+
+    /**
+     * Rebuilds the open booking counts from the booking geo sets. Only one replica reconciles per interval.
+     */
+    @Scheduled(fixedDelayString = "${booking.heatmap.reconcile-interval-ms:300000}",
+            initialDelayString = "${booking.heatmap.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                .setIfAbsent(RECONCILE_LOCK_KEY, "1", reconcileInterval))) {
+            return;
+        }
+        for (TaxiType taxiType : TaxiType.values()) {
+            Map<String, Long> counts = new HashMap<>();
+            List<ZSetOperations.TypedTuple<String>> page = new ArrayList<>(RECONCILE_PAGE_SIZE);
+            try (Cursor<ZSetOperations.TypedTuple<String>> cursor = stringRedisTemplate.opsForZSet()
+                    .scan(taxiType + "-Bookings", ScanOptions.scanOptions().count(RECONCILE_PAGE_SIZE).build())) {
+                while (cursor.hasNext()) {
+                    page.add(cursor.next());
+                    if (page.size() == RECONCILE_PAGE_SIZE) {
+                        countPage(page, counts);
+                        page.clear();
+                    }
+                }
+            }
+            if (!page.isEmpty()) {
+                countPage(page, counts);
+            }
+            replaceCounts(HeatmapKeys.openBookings(taxiType), counts);
+            LOGGER.info("Reconciled {} heatmap: {} cells with open bookings", taxiType, counts.size());
+        }
+    }
+
+    /**
+     * Counts the open bookings of one ZSCAN page, reading their state in one pipelined round trip.
+     */
+    private void countPage(List<ZSetOperations.TypedTuple<String>> page, Map<String, Long> counts) {
+        List<Object> states = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            page.forEach(t -> stringConnection.hMGet("TaxiBooking:" + t.getValue(), "bookingStatus", "taxiId"));
+            return null;
+        });
+        for (int i = 0; i < page.size(); i++) {
+            List<?> state = (List<?>) states.get(i);
+            if (TaxiBookingStatus.ACTIVE.name().equals(state.get(0)) && state.get(1) == null) {
+                String cell = Long.toString(GeoCell.cellOfHash(page.get(i).getScore().longValue(),
+                        HeatmapKeys.BITS_PER_AXIS));
+                counts.merge(cell, 1L, Long::sum);
+            }
+        }
+    }
+
+    private void replaceCounts(String key, Map<String, Long> counts) {
+        if (counts.isEmpty()) {
+            stringRedisTemplate.delete(key);
+            return;
+        }
+        // Build the new counts aside and swap them in atomically.
+        String rebuildKey = key + ":rebuild";
+        Map<String, String> values = new HashMap<>();
+        counts.forEach((cell, count) -> values.put(cell, Long.toString(count)));
+        stringRedisTemplate.delete(rebuildKey);
+        stringRedisTemplate.opsForHash().putAll(rebuildKey, values);
+        stringRedisTemplate.rename(rebuildKey, key);
+    }
+}
@@ -0,0 +1,166 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.archive.BookingArchive;
+import com.sheeft.bookingservice.converter.TaxiBookingHashConverter;
+import com.sheeft.bookingservice.converter.TaxiBookingToDTOConverter;
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.springboot.taximodel.dto.response.TaxiBookingDTO;
+import com.springboot.taximodel.dto.response.TaxiBookingHistoryResponseDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains a per customer index of bookings, a sorted set scored by creation time, and serves
+ * booking history from it one page at a time. Archived bookings stay in the index and are read from the archive.
+ * Pages are addressed by a (score, booking ID) cursor, so bookings created in the same millisecond are neither
+ * skipped nor repeated at a page boundary.
+ */
+@Service
+public class BookingHistoryService {
+
+    private static final String CUSTOMER_INDEX_PREFIX = "TaxiBooking:customer:";
+    private static final char CURSOR_SEPARATOR = ':';
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TaxiBookingHashConverter taxiBookingHashConverter;
+    private final BookingArchive bookingArchive;
+    private final TaxiBookingToDTOConverter taxiBookingToDTOConverter = new TaxiBookingToDTOConverter();
+    private final int maxPageSize;
+    @SuppressWarnings("rawtypes")
+    private final RedisScript<List> historyPageScript =
+            RedisScript.of(new ClassPathResource("scripts/history-page.lua"), List.class);
+
+    public BookingHistoryService(ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+                                 StringRedisTemplate stringRedisTemplate,
+                                 TaxiBookingHashConverter taxiBookingHashConverter, BookingArchive bookingArchive,
+                                 @Value("${booking.history.max-page-size:100}") int maxPageSize) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.taxiBookingHashConverter = taxiBookingHashConverter;
+        this.bookingArchive = bookingArchive;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Adds a booking to the index of its customer. Re-indexing a booking is harmless, so callers index on every
+     * change, which also backfills bookings created before the index existed.
+     * @param taxiBooking The booking to index.
+     * @return Mono<Boolean> A reactive type that completes once the booking is indexed.
+     */
+    public Mono<Boolean> index(TaxiBooking taxiBooking) {
+        if (taxiBooking.getCustomerId() == null) {
+            return Mono.just(false);
+        }
+        return reactiveRedisTemplate.opsForZSet()
+                .add(getCustomerIndexKey(taxiBooking.getCustomerId()), taxiBooking.getTaxiBookingId(), score(taxiBooking));
+    }
+
+    /**
+     * Reads one page of the booking history of a customer, most recent first.
+     * The page IDs come from a single history-page.lua call and the bookings from a single pipelined read,
+     * both made on a boundedElastic thread.
+     * @param customerId The ID of the customer.
+     * @param before The nextCursor of the previous page, null for the first page.
+     * @param size The page size, capped at booking.history.max-page-size.
+     * @return Mono<TaxiBookingHistoryResponseDTO> A reactive type that emits the page and the cursor of the next one.
+     * @throws IllegalArgumentException if the size is not positive or the cursor is malformed.
+     */
+    public Mono<TaxiBookingHistoryResponseDTO> getHistory(Long customerId, String before, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        int pageSize = Math.min(size, maxPageSize);
+        String afterScore = "";
+        String afterId = "";
+        if (before != null) {
+            int separator = before.indexOf(CURSOR_SEPARATOR);
+            if (separator <= 0 || separator == before.length() - 1) {
+                throw new IllegalArgumentException("Malformed cursor " + before);
+            }
+            // Throws NumberFormatException, an IllegalArgumentException, on a malformed score.
+            afterScore = Long.toString(Long.parseLong(before.substring(0, separator)));
+            afterId = before.substring(separator + 1);
+        }
+        String cursorScore = afterScore;
+        String cursorId = afterId;
+        // The reads below block on Redis, and on the archive for archived bookings, so keep them off the caller.
+        return Mono.fromCallable(() -> readPage(customerId, cursorScore, cursorId, pageSize))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @SuppressWarnings("unchecked")
+    private TaxiBookingHistoryResponseDTO readPage(Long customerId, String afterScore, String afterId, int pageSize) {
+        // Booking IDs and scores, alternating.
+        List<String> page = stringRedisTemplate.execute(historyPageScript,
+                List.of(getCustomerIndexKey(customerId)), afterScore, afterId, Integer.toString(pageSize));
+        if (page == null || page.isEmpty()) {
+            return new TaxiBookingHistoryResponseDTO(customerId, List.of(), null);
+        }
+
+        List<String> taxiBookingIds = new ArrayList<>(page.size() / 2);
+        for (int i = 0; i < page.size(); i += 2) {
+            taxiBookingIds.add(page.get(i));
+        }
+        List<Object> hashes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            taxiBookingIds.forEach(id -> stringConnection.hGetAll(TaxiBooking.KEYSPACE + ":" + id));
+            return null;
+        });
+
+        List<TaxiBookingDTO> bookings = new ArrayList<>(taxiBookingIds.size());
+        for (int i = 0; i < taxiBookingIds.size(); i++) {
+            TaxiBooking taxiBooking = read(taxiBookingIds.get(i), hashes.get(i));
+            if (taxiBooking != null) {
+                bookings.add(taxiBookingToDTOConverter.convert(taxiBooking));
+            }
+        }
+        String nextCursor = taxiBookingIds.size() < pageSize ? null
+                : cursor((long) Double.parseDouble(page.get(page.size() - 1)), page.get(page.size() - 2));
+        return new TaxiBookingHistoryResponseDTO(customerId, bookings, nextCursor);
+    }
+
+    /**
+     * Maps a booking hash, falling back to the archive once the booking has been moved out of Redis.
+     * @return TaxiBooking The booking, or null if it exists in neither.
+     */
+    @SuppressWarnings("unchecked")
+    private TaxiBooking read(String taxiBookingId, Object hash) {
+        Map<String, String> fields = (Map<String, String>) hash;
+        if (fields == null || fields.isEmpty()) {
+            fields = bookingArchive.find(taxiBookingId);
+        }
+        return taxiBookingHashConverter.read(taxiBookingId, fields);
+    }
+
+    /**
+     * The score must not change when a booking is re-indexed, so it only comes from stored times. Bookings created
+     * before the creation time was recorded fall back to their booked time, and sort as oldest without either.
+     */
+    static double score(TaxiBooking taxiBooking) {
+        if (taxiBooking.getCreatedTime() != null) {
+            return taxiBooking.getCreatedTime().getTime();
+        }
+        return taxiBooking.getBookedTime() != null ? taxiBooking.getBookedTime().getTime() : 0;
+    }
+
+    private static String cursor(long score, String taxiBookingId) {
+        return Long.toString(score) + CURSOR_SEPARATOR + taxiBookingId;
+    }
+
+    static String getCustomerIndexKey(Long customerId) {
+        return CUSTOMER_INDEX_PREFIX + customerId;
+    }
+}
@@ -0,0 +1,188 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.saber.taxiconfig.hedge.HedgedRedisReader;
+import com.springboot.taximodel.enums.TaxiType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Spatial-temporal index of bookings: per taxi type, one geo set per booking.time-index.bucket-minutes time bucket,
+ * once by the time the booking was made and once by scheduled pickup time. A window query runs GEORADIUS on just the
+ * buckets that overlap the window. Members carry their exact time as "<taxiBookingId>@<epoch millis>", so the partial
+ * buckets at the edges of the window are trimmed without reading a single booking hash.
+ * The booked timeline uses the server's creation time rather than the booked time a client may send, which can be
+ * stale or ahead: a bucket chosen by it would expire at once or never fall inside a recent window.
+ * The buckets are written by create-booking.lua together with the booking and expire on their own, booked buckets
+ * booking.time-index.booked-retention-minutes after they end and pickup buckets pickup-retention-minutes after,
+ * so dropping old buckets costs nothing.
+ */
+@Component
+public class BookingTimeIndex {
+
+    private static final char TIME_SEPARATOR = '@';
+
+    /**
+     * The time a bucket is chosen by, BOOKED being when the booking was created.
+     */
+    public enum Timeline {
+        BOOKED("Booked"),
+        PICKUP("Pickup");
+
+        private final String keyPart;
+
+        Timeline(String keyPart) {
+            this.keyPart = keyPart;
+        }
+    }
+
+    private final HedgedRedisReader hedgedRedisReader;
+    private final long bucketMillis;
+    private final long bookedRetentionMillis;
+    private final long pickupRetentionMillis;
+    private final int maxWindowBuckets;
+
+    public BookingTimeIndex(HedgedRedisReader hedgedRedisReader,
+                            @Value("${booking.time-index.bucket-minutes:15}") long bucketMinutes,
+                            @Value("${booking.time-index.booked-retention-minutes:240}") long bookedRetentionMinutes,
+                            @Value("${booking.time-index.pickup-retention-minutes:60}") long pickupRetentionMinutes,
+                            @Value("${booking.time-index.max-window-buckets:96}") int maxWindowBuckets) {
+        this.hedgedRedisReader = hedgedRedisReader;
+        this.bucketMillis = bucketMinutes * 60_000;
+        this.bookedRetentionMillis = bookedRetentionMinutes * 60_000;
+        this.pickupRetentionMillis = pickupRetentionMinutes * 60_000;
+        this.maxWindowBuckets = maxWindowBuckets;
+    }
+
+    /**
+     * @return long How far back booked time windows can reach, older buckets have expired.
+     */
+    public long getBookedRetentionMillis() {
+        return bookedRetentionMillis;
+    }
+
+    /**
+     * @param taxiBooking A new booking, with its created time set.
+     * @return List<String> The booked bucket key, then the pickup bucket key if the booking has a pickup time,
+     * as KEYS[5] and the optional KEYS[6] of create-booking.lua.
+     */
+    public List<String> getKeys(TaxiBooking taxiBooking) {
+        TaxiType taxiType = taxiBooking.getTaxiType();
+        Date startTime = taxiBooking.getStartTime();
+        List<String> keys = new ArrayList<>(2);
+        keys.add(getBucketKey(taxiType, Timeline.BOOKED, bucketOf(taxiBooking.getCreatedTime().getTime())));
+        if (startTime != null) {
+            keys.add(getBucketKey(taxiType, Timeline.PICKUP, bucketOf(startTime.getTime())));
+        }
+        return keys;
+    }
+
+    /**
+     * @param taxiBooking A new booking, with its created time set.
+     * @return List<String> The member and expiry, in epoch seconds, of the booked bucket and then of the pickup
+     * bucket, as ARGV[6] to ARGV[9] of create-booking.lua.
+     */
+    public List<String> getArgs(TaxiBooking taxiBooking) {
+        List<String> args = new ArrayList<>(4);
+        long created = taxiBooking.getCreatedTime().getTime();
+        args.add(getMember(taxiBooking.getTaxiBookingId(), created));
+        args.add(Long.toString(expireAt(created, bookedRetentionMillis)));
+        Date startTime = taxiBooking.getStartTime();
+        args.add(startTime == null ? "" : getMember(taxiBooking.getTaxiBookingId(), startTime.getTime()));
+        args.add(startTime == null ? "0" : Long.toString(expireAt(startTime.getTime(), pickupRetentionMillis)));
+        return args;
+    }
+
+    /**
+     * Queues the removal of a booking from its buckets on a pipelined connection.
+     * Buckets that already expired are simply not there any more.
+     * @param connection The pipelined connection.
+     * @param taxiBookingId The ID of the booking.
+     * @param taxiType The taxi type of the booking.
+     * @param createdMillis The created time of the booking, null if it has none.
+     * @param startMillis The pickup time of the booking, null if it has none.
+     */
+    public void remove(StringRedisConnection connection, String taxiBookingId, TaxiType taxiType,
+                       Long createdMillis, Long startMillis) {
+        if (createdMillis != null) {
+            connection.zRem(getBucketKey(taxiType, Timeline.BOOKED, bucketOf(createdMillis)),
+                    getMember(taxiBookingId, createdMillis));
+        }
+        if (startMillis != null) {
+            connection.zRem(getBucketKey(taxiType, Timeline.PICKUP, bucketOf(startMillis)),
+                    getMember(taxiBookingId, startMillis));
+        }
+    }
+
+    /**
+     * Finds the bookings of a taxi type within an area whose creation or pickup time falls in a window.
+     * @param taxiType The taxi type of the bookings.
+     * @param area The area to search.
+     * @param timeline Whether the window applies to the created or to the pickup time.
+     * @param from The start of the window, inclusive.
+     * @param to The end of the window, exclusive.
+     * @return Flux<GeoResult<RedisGeoCommands.GeoLocation<String>>> The bookings, named by their ID.
+     * @throws IllegalArgumentException if the window is empty or spans more than booking.time-index.max-window-buckets
+     * buckets.
+     */
+    public Flux<GeoResult<RedisGeoCommands.GeoLocation<String>>> search(TaxiType taxiType, Circle area,
+                                                                        Timeline timeline, Date from, Date to) {
+        long fromMillis = from.getTime();
+        long toMillis = to.getTime();
+        if (fromMillis >= toMillis) {
+            throw new IllegalArgumentException("The end of the time window must be after its start");
+        }
+        long firstBucket = bucketOf(fromMillis);
+        long lastBucket = bucketOf(toMillis - 1);
+        if (lastBucket - firstBucket >= maxWindowBuckets) {
+            throw new IllegalArgumentException("The time window can span at most " + maxWindowBuckets * bucketMillis
+                    / 60_000 + " minutes");
+        }
+        List<String> keys = new ArrayList<>();
+        for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+            keys.add(getBucketKey(taxiType, timeline, bucket));
+        }
+        // Each booking is in exactly one bucket per timeline, the buckets need no merging beyond concatenation.
+        return Flux.fromIterable(keys)
+                .flatMap(key -> hedgedRedisReader.read(template -> template.opsForGeo().radius(key, area)))
+                .filter(result -> {
+                    long time = timeOf(result.getContent().getName());
+                    return time >= fromMillis && time < toMillis;
+                })
+                .map(result -> new GeoResult<>(new RedisGeoCommands.GeoLocation<>(
+                        idOf(result.getContent().getName()), result.getContent().getPoint()), result.getDistance()));
+    }
+
+    private long bucketOf(long millis) {
+        return Math.floorDiv(millis, bucketMillis);
+    }
+
+    private long expireAt(long millis, long retentionMillis) {
+        return ((bucketOf(millis) + 1) * bucketMillis + retentionMillis) / 1000;
+    }
+
+    private static String getBucketKey(TaxiType taxiType, Timeline timeline, long bucket) {
+        return TaxiBookingService.getTaxiTypeBookings(taxiType) + ":" + timeline.keyPart + ":" + bucket;
+    }
+
+    private static String getMember(String taxiBookingId, long millis) {
+        return taxiBookingId + TIME_SEPARATOR + millis;
+    }
+
+    private static String idOf(String member) {
+        return member.substring(0, member.lastIndexOf(TIME_SEPARATOR));
+    }
+
+    private static long timeOf(String member) {
+        return Long.parseLong(member.substring(member.lastIndexOf(TIME_SEPARATOR) + 1));
+    }
+}
@@ -0,0 +1,290 @@
+package com.sheeft.bookingservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.saber.taxiconfig.config.RedisConfig;
+import com.springboot.taximodel.dto.request.DispatchOfferDTO;
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.enums.DispatchOfferStatus;
+import com.springboot.taximodel.enums.TaxiStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pushes a new booking to the inboxes of the nearest available drivers instead of waiting for them to poll.
+ * An inbox is a Redis list per taxi, capped and expiring; every offer is also published on
+ * {@link RedisConfig#DISPATCH_OFFER_CHANNEL} so taxi-service can relay it to drivers connected over WebSocket at
+ * once. Drivers long-polling this service do not hold a Redis connection each: the instance listens on the same
+ * channel once, and an offer for a waiting taxi wakes its poll, which then pops the inbox. The inbox stays the
+ * source of truth, so an offer taken by a poll on another instance is not delivered twice, and an offer whose
+ * message was missed is found by the driver's next poll. Offers still waiting are withdrawn as soon as the
+ * booking is accepted or cancelled.
+ */
+@Service
+public class DispatchService implements MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchService.class);
+
+    private static final String INBOX_PREFIX = "Inbox:";
+
+    // Hash of taxi ID to the exact offer pushed to it, needed to remove the offer from each inbox.
+    private static final String OFFER_PREFIX = "Offer:";
+
+    // Taxis are stored under their Taxi:<id> hash by taxi-service.
+    private static final String TAXI_KEY_PREFIX = "Taxi:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final boolean enabled;
+    private final int drivers;
+    private final double radiusKm;
+    private final Duration offerTtl;
+    private final int inboxCapacity;
+    private final Duration maxWait;
+    private final Counter offers;
+    private final Counter withdrawals;
+    private final Timer fanOutTimer;
+    // Polls waiting on this instance, by taxi ID.
+    private final Map<String, Set<Sinks.One<Boolean>>> waiting = new ConcurrentHashMap<>();
+
+    public DispatchService(StringRedisTemplate stringRedisTemplate,
+                           ReactiveRedisTemplate<String, String> reactiveRedisTemplate, MeterRegistry meterRegistry,
+                           @Value("${booking.dispatch.enabled:true}") boolean enabled,
+                           @Value("${booking.dispatch.drivers:5}") int drivers,
+                           @Value("${booking.dispatch.radius-km:5}") double radiusKm,
+                           @Value("${booking.dispatch.offer-ttl-seconds:30}") long offerTtlSeconds,
+                           @Value("${booking.dispatch.inbox-capacity:20}") int inboxCapacity,
+                           @Value("${booking.dispatch.max-wait-seconds:25}") long maxWaitSeconds) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.enabled = enabled;
+        this.drivers = drivers;
+        this.radiusKm = radiusKm;
+        this.offerTtl = Duration.ofSeconds(offerTtlSeconds);
+        this.inboxCapacity = inboxCapacity;
+        this.maxWait = Duration.ofSeconds(maxWaitSeconds);
+        this.offers = meterRegistry.counter("booking.dispatch.offers");
+        this.withdrawals = meterRegistry.counter("booking.dispatch.withdrawals");
+        this.fanOutTimer = meterRegistry.timer("booking.dispatch.fan-out");
+    }
+
+    /**
+     * Offers a new booking to the booking.dispatch.drivers nearest available taxis of its type.
+     * A failure is logged and does not fail the booking, drivers can still find it by searching.
+     * @param taxiBooking The booking just created.
+     */
+    public void offer(TaxiBooking taxiBooking) {
+        if (!enabled || taxiBooking.getStart() == null) {
+            return;
+        }
+        try {
+            fanOutTimer.record(() -> fanOut(taxiBooking));
+        } catch (RuntimeException e) {
+            LOGGER.error("Error while dispatching booking {}", taxiBooking.getTaxiBookingId(), e);
+        }
+    }
+
+    /**
+     * Removes the offers of a booking from every inbox they are still waiting in.
+     * @param taxiBookingId The ID of the booking that was accepted or cancelled.
+     */
+    public void withdraw(String taxiBookingId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            String offerKey = OFFER_PREFIX + taxiBookingId;
+            Map<String, String> offered = stringRedisTemplate.<String, String>opsForHash().entries(offerKey);
+            if (offered.isEmpty()) {
+                return;
+            }
+            List<String> withdrawn = new ArrayList<>(offered.size());
+            for (String payload : offered.values()) {
+                DispatchOfferDTO offer = objectMapper.readValue(payload, DispatchOfferDTO.class);
+                offer.setStatus(DispatchOfferStatus.WITHDRAWN);
+                withdrawn.add(objectMapper.writeValueAsString(offer));
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                offered.forEach((taxiId, payload) -> stringConnection.lRem(INBOX_PREFIX + taxiId, 0, payload));
+                stringConnection.del(offerKey);
+                withdrawn.forEach(w -> stringConnection.publish(RedisConfig.DISPATCH_OFFER_CHANNEL, w));
+                return null;
+            });
+            withdrawals.increment(offered.size());
+        } catch (JsonProcessingException | RuntimeException e) {
+            LOGGER.error("Error while withdrawing offers of booking {}", taxiBookingId, e);
+        }
+    }
+
+    /**
+     * Waits for the next offer in a driver's inbox, skipping offers that expired while waiting.
+     * @param taxiId The ID of the taxi.
+     * @param wait How long to wait, capped at booking.dispatch.max-wait-seconds.
+     * @return Mono<DispatchOfferDTO> A reactive type that emits the oldest pending offer, or completes empty
+     * if none arrived in time.
+     */
+    public Mono<DispatchOfferDTO> nextOffer(String taxiId, Duration wait) {
+        long deadline = System.currentTimeMillis() + Math.min(wait.toMillis(), maxWait.toMillis());
+        return nextOffer(taxiId, deadline);
+    }
+
+    /**
+     * Wakes the polls waiting for the taxi of an offer published on {@link RedisConfig#DISPATCH_OFFER_CHANNEL}.
+     */
+    @Override
+    public void onMessage(Message message, @Nullable byte[] pattern) {
+        if (waiting.isEmpty()) {
+            return;
+        }
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            DispatchOfferDTO offer = objectMapper.readValue(payload, DispatchOfferDTO.class);
+            if (offer.getStatus() != DispatchOfferStatus.OFFERED) {
+                return;
+            }
+            Set<Sinks.One<Boolean>> polls = waiting.get(offer.getTaxiId());
+            if (polls != null) {
+                polls.forEach(poll -> poll.tryEmitValue(true));
+            }
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Ignoring unreadable offer {}", payload, e);
+        }
+    }
+
+    private Mono<DispatchOfferDTO> nextOffer(String taxiId, long deadline) {
+        return Mono.defer(() -> {
+            // Registered before the inbox is read, so an offer pushed in between still wakes the poll.
+            Sinks.One<Boolean> arrival = Sinks.one();
+            waiting.computeIfAbsent(taxiId, id -> ConcurrentHashMap.newKeySet()).add(arrival);
+            return pop(INBOX_PREFIX + taxiId)
+                    .switchIfEmpty(Mono.defer(() -> {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (remaining <= 0) {
+                            return Mono.empty();
+                        }
+                        return arrival.asMono()
+                                .timeout(Duration.ofMillis(remaining), Mono.just(false))
+                                .flatMap(arrived -> arrived ? nextOffer(taxiId, deadline) : Mono.empty());
+                    }))
+                    .doFinally(signal -> waiting.computeIfPresent(taxiId, (id, polls) -> {
+                        polls.remove(arrival);
+                        return polls.isEmpty() ? null : polls;
+                    }));
+        });
+    }
+
+    /**
+     * Pops the oldest live offer of an inbox, dropping the expired ones before it.
+     */
+    private Mono<DispatchOfferDTO> pop(String inboxKey) {
+        return reactiveRedisTemplate.opsForList().rightPop(inboxKey)
+                .flatMap(payload -> parseLive(payload).map(Mono::just).orElseGet(() -> pop(inboxKey)));
+    }
+
+    private Optional<DispatchOfferDTO> parseLive(String payload) {
+        try {
+            DispatchOfferDTO offer = objectMapper.readValue(payload, DispatchOfferDTO.class);
+            return offer.getExpiresTime() != null && offer.getExpiresTime().getTime() < System.currentTimeMillis()
+                    ? Optional.empty() : Optional.of(offer);
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Dropping unreadable offer {}", payload, e);
+            return Optional.empty();
+        }
+    }
+
+    private void fanOut(TaxiBooking taxiBooking) {
+        Point start = taxiBooking.getStart();
+        // Fetch more candidates than needed, some of them will be busy.
+        RedisGeoCommands.GeoRadiusCommandArgs args = RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
+                .includeDistance().sortAscending().limit(drivers * 4L);
+        GeoResults<RedisGeoCommands.GeoLocation<String>> nearest = stringRedisTemplate.opsForGeo()
+                .radius(taxiBooking.getTaxiType().toString(), new Circle(start, new Distance(radiusKm, Metrics.KILOMETERS)),
+                        args);
+        if (nearest == null || nearest.getContent().isEmpty()) {
+            return;
+        }
+        List<GeoResult<RedisGeoCommands.GeoLocation<String>>> candidates = nearest.getContent();
+        List<Object> statuses = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            candidates.forEach(c -> stringConnection.hGet(TAXI_KEY_PREFIX + c.getContent().getName(), "taxiStatus"));
+            return null;
+        });
+
+        Date now = new Date();
+        Date expires = new Date(now.getTime() + offerTtl.toMillis());
+        LocationDTO pickup = new LocationDTO(start.getY(), start.getX(), null);
+        LocationDTO dropOff = taxiBooking.getEnd() == null ? null
+                : new LocationDTO(taxiBooking.getEnd().getY(), taxiBooking.getEnd().getX(), null);
+        Map<String, String> payloads = new LinkedHashMap<>();
+        for (int i = 0; i < candidates.size() && payloads.size() < drivers; i++) {
+            if (!TaxiStatus.AVAILABLE.name().equals(statuses.get(i))) {
+                continue;
+            }
+            String taxiId = candidates.get(i).getContent().getName();
+            DispatchOfferDTO offer = new DispatchOfferDTO(taxiBooking.getTaxiBookingId(), taxiId,
+                    taxiBooking.getTaxiType(), pickup, dropOff, candidates.get(i).getDistance().getValue(),
+                    DispatchOfferStatus.OFFERED, now, expires);
+            try {
+                payloads.put(taxiId, objectMapper.writeValueAsString(offer));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        if (payloads.isEmpty()) {
+            return;
+        }
+
+        String offerKey = OFFER_PREFIX + taxiBooking.getTaxiBookingId();
+        long ttlMillis = offerTtl.toMillis();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            payloads.forEach((taxiId, payload) -> {
+                String inboxKey = INBOX_PREFIX + taxiId;
+                // Newest first; the oldest, most likely stale, offers fall off a full inbox.
+                stringConnection.lPush(inboxKey, payload);
+                stringConnection.lTrim(inboxKey, 0, inboxCapacity - 1);
+                stringConnection.pExpire(inboxKey, ttlMillis);
+                stringConnection.publish(RedisConfig.DISPATCH_OFFER_CHANNEL, payload);
+            });
+            stringConnection.hMSet(offerKey, payloads);
+            stringConnection.pExpire(offerKey, ttlMillis);
+            return null;
+        });
+        offers.increment(payloads.size());
+    }
+}
@@ -0,0 +1,236 @@
+package com.sheeft.bookingservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sheeft.bookingservice.exception.TaxiUnavailableException;
+import com.springboot.taximodel.dto.request.TaxiChangedEventDTO;
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eventually consistent replica of the type and status of every taxi, so accepting a booking can check the taxi
+ * in-process instead of calling the taxi service on the hottest write.
+ * It is fed by the changes taxi-service publishes on RedisConfig.TAXI_CHANGE_CHANNEL, and loaded from the Taxi
+ * hashes at startup and again every booking.taxi-replica.resync-interval-ms, which covers changes published while
+ * this instance was not subscribed. A change only replaces an entry older than itself, so a resync racing a change
+ * never rolls it back. A taxi missing from the replica is read from Redis once.
+ * The age of each change when it arrives is recorded as the booking.taxi-replica.lag timer; it is measured against
+ * the publisher's clock, so skew between hosts shows up in it too.
+ */
+@Component
+public class TaxiAvailabilityReplica implements MessageListener, ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaxiAvailabilityReplica.class);
+
+    private static final String TAXI_KEYSPACE = "Taxi";
+    private static final String TAXI_TYPE_FIELD = "taxiType";
+    private static final String TAXI_STATUS_FIELD = "taxiStatus";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, TaxiState> taxis = new ConcurrentHashMap<>();
+    private final int pageSize;
+    private final Timer lag;
+    private final Counter misses;
+
+    public TaxiAvailabilityReplica(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                                   @Value("${booking.taxi-replica.page-size:1000}") int pageSize) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.pageSize = pageSize;
+        this.lag = Timer.builder("booking.taxi-replica.lag")
+                .description("Time from a taxi change in the taxi service until it reached the replica")
+                .register(meterRegistry);
+        this.misses = meterRegistry.counter("booking.taxi-replica.misses");
+        Gauge.builder("booking.taxi-replica.taxis", taxis, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Checks that a taxi may accept a booking.
+     * @param taxiId The ID of the taxi accepting the booking.
+     * @param taxiType The taxi type of the booking, null if the booking has none.
+     * @throws IllegalArgumentException if the taxi is missing, unknown or of another type than the booking.
+     * @throws TaxiUnavailableException if the taxi is not available.
+     */
+    public void checkAcceptable(String taxiId, TaxiType taxiType) {
+        if (taxiId == null) {
+            throw new IllegalArgumentException("taxiId is required");
+        }
+        TaxiState state = taxis.get(taxiId);
+        if (state == null) {
+            state = load(taxiId);
+        }
+        if (state == null) {
+            throw new IllegalArgumentException("Taxi Id " + taxiId + " Not Found");
+        }
+        if (taxiType != null && state.taxiType != taxiType) {
+            throw new IllegalArgumentException("Taxi Id " + taxiId + " is a " + state.taxiType
+                    + " taxi, the booking needs a " + taxiType + " taxi");
+        }
+        if (state.taxiStatus != TaxiStatus.AVAILABLE) {
+            throw new TaxiUnavailableException("Taxi Id " + taxiId + " is " + state.taxiStatus);
+        }
+    }
+
+    /**
+     * Marks a taxi occupied as soon as it accepted a booking here, ahead of the change the taxi service publishes,
+     * so it cannot accept a second booking on this instance in between.
+     * @param taxiId The ID of the taxi.
+     */
+    public void markOccupied(String taxiId) {
+        TaxiState state = taxis.get(taxiId);
+        if (state != null) {
+            apply(taxiId, new TaxiState(state.taxiType, TaxiStatus.OCCUPIED, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Applies the changes of one message, a JSON array of TaxiChangedEventDTO.
+     */
+    @Override
+    public void onMessage(Message message, @Nullable byte[] pattern) {
+        try {
+            TaxiChangedEventDTO[] changes = objectMapper.readValue(message.getBody(), TaxiChangedEventDTO[].class);
+            long now = System.currentTimeMillis();
+            for (TaxiChangedEventDTO change : changes) {
+                long time = change.getTime() == null ? now : change.getTime().getTime();
+                apply(change.getTaxiId(), new TaxiState(change.getTaxiType(), change.getTaxiStatus(), time));
+                lag.record(Math.max(0, now - time), TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error while reading taxi changes", e);
+        }
+    }
+
+    /**
+     * Loads the replica before the application reports ready.
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        resync();
+    }
+
+    /**
+     * Reloads every taxi from Redis, walking the taxi ID set with SSCAN and reading each page in one pipelined
+     * round trip. Taxis that are gone from Redis and did not change since the resync started are dropped.
+     */
+    @Scheduled(fixedDelayString = "${booking.taxi-replica.resync-interval-ms:300000}",
+            initialDelayString = "${booking.taxi-replica.resync-interval-ms:300000}")
+    public void resync() {
+        long started = System.currentTimeMillis();
+        Set<String> seen = new HashSet<>();
+        List<String> page = new ArrayList<>(pageSize);
+        try (Cursor<String> cursor = stringRedisTemplate.opsForSet()
+                .scan(TAXI_KEYSPACE, ScanOptions.scanOptions().count(pageSize).build())) {
+            while (cursor.hasNext()) {
+                page.add(cursor.next());
+                if (page.size() == pageSize) {
+                    loadPage(page, seen);
+                    page.clear();
+                }
+            }
+        }
+        if (!page.isEmpty()) {
+            loadPage(page, seen);
+        }
+        taxis.entrySet().removeIf(e -> !seen.contains(e.getKey()) && e.getValue().time < started);
+        LOGGER.info("Resynced {} taxis in {} ms", taxis.size(), System.currentTimeMillis() - started);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void loadPage(List<String> taxiIds, Set<String> seen) {
+        long time = System.currentTimeMillis();
+        List<Object> states = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            taxiIds.forEach(id -> stringConnection.hMGet(getTaxiKey(id), TAXI_TYPE_FIELD, TAXI_STATUS_FIELD));
+            return null;
+        });
+        for (int i = 0; i < taxiIds.size(); i++) {
+            TaxiState state = toState(taxiIds.get(i), (List<String>) states.get(i), time);
+            // Skip dangling index entries whose hash has already been removed, and hashes that cannot be read.
+            // Either way the taxi is dropped from the replica like a removed one.
+            if (state != null) {
+                apply(taxiIds.get(i), state);
+                seen.add(taxiIds.get(i));
+            }
+        }
+    }
+
+    private TaxiState load(String taxiId) {
+        misses.increment();
+        List<String> fields = stringRedisTemplate.<String, String>opsForHash()
+                .multiGet(getTaxiKey(taxiId), List.of(TAXI_TYPE_FIELD, TAXI_STATUS_FIELD));
+        TaxiState state = toState(taxiId, fields, System.currentTimeMillis());
+        if (state == null) {
+            return null;
+        }
+        apply(taxiId, state);
+        return taxis.get(taxiId);
+    }
+
+    private void apply(String taxiId, TaxiState state) {
+        if (taxiId == null || state.taxiType == null || state.taxiStatus == null) {
+            return;
+        }
+        taxis.merge(taxiId, state, (current, update) -> update.time >= current.time ? update : current);
+    }
+
+    /**
+     * @return TaxiState The state in a taxi hash, or null if the hash is missing or holds an unknown type or status,
+     * which is logged rather than thrown so one bad hash cannot fail a whole resync.
+     */
+    private static TaxiState toState(String taxiId, List<String> fields, long time) {
+        if (fields == null || fields.get(0) == null || fields.get(1) == null) {
+            return null;
+        }
+        try {
+            return new TaxiState(TaxiType.valueOf(fields.get(0)), TaxiStatus.valueOf(fields.get(1)), time);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Skipping taxi {} with unreadable type {} or status {}", taxiId, fields.get(0), fields.get(1));
+            return null;
+        }
+    }
+
+    private static String getTaxiKey(String taxiId) {
+        return TAXI_KEYSPACE + ":" + taxiId;
+    }
+
+    private static final class TaxiState {
+        private final TaxiType taxiType;
+        private final TaxiStatus taxiStatus;
+        // When this state was current, in epoch milliseconds.
+        private final long time;
+
+        private TaxiState(TaxiType taxiType, TaxiStatus taxiStatus, long time) {
+            this.taxiType = taxiType;
+            this.taxiStatus = taxiStatus;
+            this.time = time;
+        }
+    }
+}
@@ -8,26 +8,36 @@ package com.sheeft.bookingservice.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sheeft.bookingservice.archive.BookingArchive;
+import com.sheeft.bookingservice.converter.TaxiBookingHashConverter;
+import com.sheeft.bookingservice.exception.TaxiBookingConflictException;
 import com.sheeft.bookingservice.exception.TaxiBookingIdNotFoundException;
+import com.sheeft.bookingservice.exception.TaxiUnavailableException;
 import com.sheeft.bookingservice.model.TaxiBooking;
+import com.sheeft.bookingservice.persistence.BookingWriteBehind;
 import com.sheeft.bookingservice.repo.TaxiBookingRepository;
 import com.saber.taxiconfig.config.RedisConfig;
-import com.springboot.taximodel.converter.LocationToPointConverter;
+import com.saber.taxiconfig.hedge.HedgedRedisReader;
 import com.springboot.taximodel.dto.request.TaxiBookedEventDTO;
 import com.springboot.taximodel.dto.request.TaxiBookingAcceptedEventDTO;
 import com.springboot.taximodel.dto.request.TaxiBookingCanceledEventDTO;
+import com.springboot.taximodel.dto.response.TaxiBookingHistoryResponseDTO;
 import com.springboot.taximodel.enums.TaxiBookingStatus;
 import com.springboot.taximodel.enums.TaxiType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.geo.*;
 import org.springframework.data.redis.connection.RedisGeoCommands;
-import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.Optional;
 
 @Service
@@ -35,44 +45,82 @@ public class TaxiBookingService {
 
     private static Logger LOGGER = LoggerFactory.getLogger(TaxiBookingService.class);
 
+    // Booking hash fields written by the status changes.
+    private static final String BOOKING_STATUS_FIELD = "bookingStatus";
+    private static final String REASON_TO_CANCEL_FIELD = "reasonToCancel";
+    private static final String CANCEL_TIME_FIELD = "cancelTime";
+    private static final String TAXI_ID_FIELD = "taxiId";
+    private static final String ACCEPTED_TIME_FIELD = "acceptedTime";
+    private static final String CLOSED_TIME_FIELD = "closedTime";
+
     private final RedisTemplate<String, String> redisTemplate;
-    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
     private final TaxiBookingRepository taxiBookingRepository;
+    private final BookingFieldStore bookingFieldStore;
+    private final BookingHistoryService bookingHistoryService;
+    private final BookingArchive bookingArchive;
+    private final TaxiBookingHashConverter taxiBookingHashConverter;
+    private final BookingWriteBehind bookingWriteBehind;
+    private final HedgedRedisReader hedgedRedisReader;
+    private final DispatchService dispatchService;
+    private final BookingCreator bookingCreator;
+    private final BookingTimeIndex bookingTimeIndex;
+    private final TaxiAvailabilityReplica taxiAvailabilityReplica;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final LocationToPointConverter locationToPointConverter = new LocationToPointConverter();
 
     public TaxiBookingService(RedisTemplate<String, String>
-                                      redisTemplate, ReactiveRedisTemplate<String, String>
-            reactiveRedisTemplate, TaxiBookingRepository taxiBookingRepository) {
+                                      redisTemplate, TaxiBookingRepository taxiBookingRepository,
+                              BookingFieldStore bookingFieldStore,
+                              BookingHistoryService bookingHistoryService, BookingArchive bookingArchive,
+                              TaxiBookingHashConverter taxiBookingHashConverter,
+                              BookingWriteBehind bookingWriteBehind, HedgedRedisReader hedgedRedisReader,
+                              DispatchService dispatchService, BookingCreator bookingCreator,
+                              BookingTimeIndex bookingTimeIndex, TaxiAvailabilityReplica taxiAvailabilityReplica) {
 
         this.redisTemplate = redisTemplate;
-        this.reactiveRedisTemplate = reactiveRedisTemplate;
         this.taxiBookingRepository = taxiBookingRepository;
+        this.bookingFieldStore = bookingFieldStore;
+        this.bookingHistoryService = bookingHistoryService;
+        this.bookingArchive = bookingArchive;
+        this.taxiBookingHashConverter = taxiBookingHashConverter;
+        this.bookingWriteBehind = bookingWriteBehind;
+        this.hedgedRedisReader = hedgedRedisReader;
+        this.dispatchService = dispatchService;
+        this.bookingCreator = bookingCreator;
+        this.bookingTimeIndex = bookingTimeIndex;
+        this.taxiAvailabilityReplica = taxiAvailabilityReplica;
 
     }
 
     /**
-     * Books a taxi based on the provided TaxiBookedEventDTO and returns a Mono<TaxiBooking>
+     * Books a taxi based on the provided TaxiBookedEventDTO and returns a Mono<TaxiBooking>.
+     * The booking and all its indexes are written in one atomic round trip by {@link BookingCreator}.
+     * Booking again with the taxiBookingId of an existing booking returns that booking instead of creating another,
+     * provided the request is the same one; a different booking reusing the ID is a conflict.
      * @param taxiBookedEventDTO The data transfer object containing the details needed to book a taxi.
      *                 This includes the start and end locations, booking time, customer ID, and taxi type.
      * @return Mono<TaxiBooking> A reactive type that emits the saved TaxiBooking object once the booking is complete.
+     * @throws IllegalArgumentException if the taxi type or a valid start location is missing, or the taxiBookingId
+     * is longer than the relational store holds.
+     * @throws TaxiBookingConflictException if the taxiBookingId belongs to a booking made from another request.
      */
     public Mono<TaxiBooking> book(TaxiBookedEventDTO taxiBookedEventDTO) {
-        // Create a new TaxiBooking object.
-        TaxiBooking taxiBooking = new TaxiBooking();
-        taxiBooking.setEnd(locationToPointConverter.convert(taxiBookedEventDTO.getEnd()));
-        taxiBooking.setStart(locationToPointConverter.convert(taxiBookedEventDTO.getStart()));
-        taxiBooking.setBookedTime(taxiBookedEventDTO.getBookedTime());
-        taxiBooking.setCustomerId(taxiBookedEventDTO.getCustomerId());
-        taxiBooking.setBookingStatus(TaxiBookingStatus.ACTIVE);
-        TaxiBooking savedTaxiBooking = taxiBookingRepository.save(taxiBooking);
-        return reactiveRedisTemplate
-                .opsForGeo()
-                .add(getTaxiTypeBookings(
-                 taxiBookedEventDTO.getTaxiType()),
-                 taxiBooking.getStart(),     // Use the start location as the point
-                 taxiBooking.getTaxiBookingId())
-                .flatMap(l -> Mono.just(savedTaxiBooking));
+        TaxiBooking taxiBooking = bookingCreator.newBooking(taxiBookedEventDTO);
+        return bookingCreator.create(taxiBooking, BookingCreator.requestHash(taxiBookedEventDTO))
+                .flatMap(outcome -> {
+                    if (outcome == BookingCreator.CONFLICT) {
+                        return Mono.error(getTaxiBookingConflictException(taxiBooking.getTaxiBookingId(),
+                                "already belongs to a different booking"));
+                    }
+                    if (outcome == BookingCreator.EXISTS) {
+                        // A retry of a booking that was already made. getBooking blocks on Redis, which would
+                        // deadlock the Redis event loop this result arrives on.
+                        return Mono.defer(() -> getBooking(taxiBooking.getTaxiBookingId()))
+                                .subscribeOn(Schedulers.boundedElastic());
+                    }
+                    return Mono.fromRunnable(() -> dispatchService.offer(taxiBooking)) // Push it to the nearest drivers
+                            .subscribeOn(Schedulers.boundedElastic()) // The fan-out blocks on Redis
+                            .thenReturn(taxiBooking);
+                });
     }
 
 
@@ -86,16 +134,33 @@ public class TaxiBookingService {
      * @return Mono<TaxiBooking> A reactive type that emits the updated TaxiBooking
      * object once the cancellation is complete.
      * @throws TaxiBookingIdNotFoundException if no TaxiBooking is found with the given ID.
+     * @throws TaxiBookingConflictException if the booking was changed by another request in the meantime.
+     * @throws IllegalArgumentException if the reason is longer than the relational store holds.
      */
     public Mono<TaxiBooking> cancel(String taxiBookingId, TaxiBookingCanceledEventDTO canceledEventDTO){
+        String reason = canceledEventDTO.getReason();
+        if (reason != null && reason.length() > BookingWriteBehind.MAX_REASON_TO_CANCEL_LENGTH) {
+            throw new IllegalArgumentException("reason can have at most "
+                    + BookingWriteBehind.MAX_REASON_TO_CANCEL_LENGTH + " characters");
+        }
         Optional<TaxiBooking> taxiBookingOptional = taxiBookingRepository.findById(taxiBookingId);
         // Check if the TaxiBooking object is present.
         if (taxiBookingOptional.isPresent()){
             TaxiBooking taxiBooking = taxiBookingOptional.get();
+            TaxiBookingStatus previousStatus = taxiBooking.getBookingStatus();
+            String previousTaxiId = taxiBooking.getTaxiId();
             taxiBooking.setBookingStatus(TaxiBookingStatus.CANCELLED); // Set the booking status of the TaxiBooking to CANCELLED.
             taxiBooking.setReasonToCancel(canceledEventDTO.getReason()); // Set the reason for cancellation based on the canceledEventDTO.
             taxiBooking.setCancelTime(canceledEventDTO.getCancelTime());
-            return Mono.just(taxiBookingRepository.save(taxiBooking));
+            setClosedTime(taxiBooking, previousStatus);
+            return update(taxiBooking, previousStatus, previousTaxiId,
+                    BOOKING_STATUS_FIELD, REASON_TO_CANCEL_FIELD, CANCEL_TIME_FIELD, CLOSED_TIME_FIELD)
+                    .flatMap(savedTaxiBooking ->
+                            // Drivers must not keep accepting a cancelled booking.
+                            Mono.fromRunnable(() -> dispatchService.withdraw(taxiBookingId))
+                                    .subscribeOn(Schedulers.boundedElastic()) // The withdrawal blocks on Redis
+                                    .then(bookingHistoryService.index(savedTaxiBooking))
+                                    .thenReturn(savedTaxiBooking));
         } else {
             throw getTaxiBookingIdNotFoundException(taxiBookingId);
         }
@@ -111,6 +176,9 @@ public class TaxiBookingService {
      *                         such as the taxi ID and the acceptance time.
      * @return Mono<TaxiBooking> A reactive type that emits the updated TaxiBooking object once the acceptance is complete.
      * @throws TaxiBookingIdNotFoundException if no TaxiBooking is found with the given ID.
+     * @throws TaxiBookingConflictException if the booking is no longer active or another taxi accepted it first.
+     * @throws IllegalArgumentException if the taxi is unknown or of another type than the booking.
+     * @throws TaxiUnavailableException if the taxi is not available.
      */
     public Mono<TaxiBooking> accept(String taxiBookingId, TaxiBookingAcceptedEventDTO acceptedEventDTO){
     Optional<TaxiBooking> taxiBookingOptional = taxiBookingRepository.findById(taxiBookingId);
@@ -118,13 +186,28 @@ public class TaxiBookingService {
         // Check if the TaxiBooking object is present.
         if (taxiBookingOptional.isPresent()){
             TaxiBooking taxiBooking = taxiBookingOptional.get();
+            String previousTaxiId = taxiBooking.getTaxiId();
+            if (previousTaxiId != null) {
+                if (previousTaxiId.equals(acceptedEventDTO.getTaxiId())) {
+                    // A retry of an acceptance that already went through.
+                    return Mono.just(taxiBooking);
+                }
+                throw getTaxiBookingConflictException(taxiBookingId, "has already been accepted by another taxi");
+            }
+            if (taxiBooking.getBookingStatus() != TaxiBookingStatus.ACTIVE) {
+                throw getTaxiBookingConflictException(taxiBookingId, "is " + taxiBooking.getBookingStatus());
+            }
+            // Checked against the local replica, without a call to the taxi service.
+            taxiAvailabilityReplica.checkAcceptable(acceptedEventDTO.getTaxiId(), taxiBooking.getTaxiType());
 
             // Set the taxi ID and accepted time based on the acceptedEventDTO.
             taxiBooking.setTaxiId(acceptedEventDTO.getTaxiId());
             taxiBooking.setAcceptedTime(acceptedEventDTO.getAcceptedTime());
 
-            return Mono.just(taxiBookingRepository.save(taxiBooking))
-                    .doOnSuccess(t -> {
+            // Only succeeds if the booking is still active and unaccepted, the first of two racing drivers wins.
+            return update(taxiBooking, TaxiBookingStatus.ACTIVE, null, TAXI_ID_FIELD, ACCEPTED_TIME_FIELD)
+                    .flatMap(savedTaxiBooking -> Mono.fromRunnable(() -> {
+                taxiAvailabilityReplica.markOccupied(acceptedEventDTO.getTaxiId());
                 try{
                     // Convert the acceptedEventDTO to a JSON string and send it to the Redis channel.
                     redisTemplate.convertAndSend(
@@ -134,7 +217,12 @@ public class TaxiBookingService {
                     // Log an error if there is an issue with JSON processing.
                     LOGGER.error("Error while sending message to Channel {}", RedisConfig.ACCEPTED_EVENT_CHANNEL, e);
                 }
-            });
+                // The other drivers offered this booking can stop considering it.
+                dispatchService.withdraw(taxiBookingId);
+            })
+                    // The update completes on the Redis event loop, which the publish and withdrawal block on.
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .thenReturn(savedTaxiBooking));
         }else{
             throw getTaxiBookingIdNotFoundException(taxiBookingId);
         }
@@ -154,11 +242,57 @@ public class TaxiBookingService {
     public Flux<GeoResult<RedisGeoCommands.GeoLocation<String>>> getBookings(
             TaxiType taxiType, Double latitude, Double longitude, Double radius) {
 
-        return reactiveRedisTemplate.opsForGeo().radius(
-                getTaxiTypeBookings(taxiType),                      // Use the taxi type to get the bookings key
-                new Circle(                                         // Define the search area with the specified location and radius
-                        new Point(longitude, latitude),             // Set the center point of the search area
-                        new Distance(radius, Metrics.KILOMETERS))); // Set the radius for the search area in kilometers
+        Circle area = new Circle(                           // Define the search area with the specified location and radius
+                new Point(longitude, latitude),             // Set the center point of the search area
+                new Distance(radius, Metrics.KILOMETERS));  // Set the radius for the search area in kilometers
+        // Hedged across the read replicas, a slow node no longer sets the tail latency.
+        return hedgedRedisReader.read(template -> template.opsForGeo().radius(
+                getTaxiTypeBookings(taxiType), area));      // Use the taxi type to get the bookings key
+    }
+
+    /**
+     * Retrieves bookings of a specified TaxiType within a given radius from a specified location, optionally only
+     * those booked within the last minutes or those scheduled for pickup within a time window.
+     * Windowed searches are answered by the time bucketed {@link BookingTimeIndex}.
+     *
+     * @param taxiType The type of taxi for which bookings are to be retrieved.
+     * @param latitude The latitude of the center point for the search radius.
+     * @param longitude The longitude of the center point for the search radius.
+     * @param radius The radius (in kilometers) within which to search for bookings.
+     * @param bookedWithinMinutes Only bookings made within this many minutes, null for any booked time.
+     * @param pickupFrom Only bookings scheduled for pickup at or after this time, requires pickupTo.
+     * @param pickupTo Only bookings scheduled for pickup before this time, requires pickupFrom.
+     * @return Flux<GeoResult<RedisGeoCommands.GeoLocation<String>>> A reactive type that emits the bookings
+     * within the specified radius and time window.
+     * @throws IllegalArgumentException if the time window is incomplete, combines both kinds of window,
+     * or reaches further than the index keeps bookings.
+     */
+    public Flux<GeoResult<RedisGeoCommands.GeoLocation<String>>> getBookings(
+            TaxiType taxiType, Double latitude, Double longitude, Double radius,
+            Integer bookedWithinMinutes, Date pickupFrom, Date pickupTo) {
+        boolean pickupWindow = pickupFrom != null || pickupTo != null;
+        if (bookedWithinMinutes == null && !pickupWindow) {
+            return getBookings(taxiType, latitude, longitude, radius);
+        }
+        if (bookedWithinMinutes != null && pickupWindow) {
+            throw new IllegalArgumentException("bookedWithinMinutes cannot be combined with a pickup time window");
+        }
+        Circle area = new Circle(new Point(longitude, latitude), new Distance(radius, Metrics.KILOMETERS));
+        if (pickupWindow) {
+            if (pickupFrom == null || pickupTo == null) {
+                throw new IllegalArgumentException("A pickup time window requires both pickupFrom and pickupTo");
+            }
+            return bookingTimeIndex.search(taxiType, area, BookingTimeIndex.Timeline.PICKUP, pickupFrom, pickupTo);
+        }
+        long windowMillis = Duration.ofMinutes(bookedWithinMinutes).toMillis();
+        if (bookedWithinMinutes <= 0 || windowMillis > bookingTimeIndex.getBookedRetentionMillis()) {
+            throw new IllegalArgumentException("bookedWithinMinutes must be between 1 and "
+                    + Duration.ofMillis(bookingTimeIndex.getBookedRetentionMillis()).toMinutes());
+        }
+        long now = System.currentTimeMillis();
+        // The end is exclusive, bookings made this very millisecond are still included.
+        return bookingTimeIndex.search(taxiType, area, BookingTimeIndex.Timeline.BOOKED,
+                new Date(now - windowMillis), new Date(now + 1));
     }
 
     /**
@@ -169,6 +303,7 @@ public class TaxiBookingService {
      * @param taxiBookingStatus The new status to be set for the taxi booking.
      * @return Mono<TaxiBooking> A reactive type that emits the updated TaxiBooking object once the status update is complete.
      * @throws TaxiBookingIdNotFoundException if no TaxiBooking is found with the given ID.
+     * @throws TaxiBookingConflictException if the booking was changed by another request in the meantime.
      */
     public Mono<TaxiBooking> updateBookingStatus(String taxiBookingId, TaxiBookingStatus taxiBookingStatus) {
         Optional<TaxiBooking> taxiBookingOptional = taxiBookingRepository.findById(taxiBookingId);
@@ -176,20 +311,115 @@ public class TaxiBookingService {
         // Check if the TaxiBooking object is present.
         if (taxiBookingOptional.isPresent()) {
             TaxiBooking taxiBooking = taxiBookingOptional.get();
+            TaxiBookingStatus previousStatus = taxiBooking.getBookingStatus();
 
             // Set the booking status of the TaxiBooking to the new status (ACTIVE, CANCELLED, COMPLETED).
             taxiBooking.setBookingStatus(taxiBookingStatus);
-            return Mono.just(taxiBookingRepository.save(taxiBooking));
+            setClosedTime(taxiBooking, previousStatus);
+            return update(taxiBooking, previousStatus, taxiBooking.getTaxiId(), BOOKING_STATUS_FIELD, CLOSED_TIME_FIELD)
+                    .flatMap(savedTaxiBooking ->
+                            bookingHistoryService.index(savedTaxiBooking).thenReturn(savedTaxiBooking));
         } else {
             throw getTaxiBookingIdNotFoundException(taxiBookingId);
         }
     }
 
+    /**
+     * Retrieves a taxi booking by its ID, reading it from the archive once it has been moved out of Redis.
+     * @param taxiBookingId The ID of the taxi booking.
+     * @return Mono<TaxiBooking> A reactive type that emits the TaxiBooking.
+     * @throws TaxiBookingIdNotFoundException if no TaxiBooking is found with the given ID.
+     */
+    public Mono<TaxiBooking> getBooking(String taxiBookingId) {
+        Optional<TaxiBooking> taxiBookingOptional = taxiBookingRepository.findById(taxiBookingId);
+        if (taxiBookingOptional.isPresent()) {
+            return Mono.just(taxiBookingOptional.get());
+        }
+        TaxiBooking archived = taxiBookingHashConverter.read(taxiBookingId, bookingArchive.find(taxiBookingId));
+        if (archived == null) {
+            throw getTaxiBookingIdNotFoundException(taxiBookingId);
+        }
+        return Mono.just(archived);
+    }
+
+    /**
+     * Retrieves archived taxi bookings booked within a time range.
+     * @param from The start of the range, inclusive.
+     * @param to The end of the range, exclusive.
+     * @param limit The maximum number of bookings to return.
+     * @return Flux<TaxiBooking> A reactive type that emits the archived bookings.
+     */
+    public Flux<TaxiBooking> getArchivedBookings(Date from, Date to, int limit) {
+        List<TaxiBooking> taxiBookings = new ArrayList<>();
+        bookingArchive.findBookedBetween(from.getTime(), to.getTime(), limit)
+                .forEach((id, fields) -> taxiBookings.add(taxiBookingHashConverter.read(id, fields)));
+        return Flux.fromIterable(taxiBookings);
+    }
+
+    /**
+     * Retrieves one page of the booking history of a customer, most recent first.
+     * @param customerId The ID of the customer.
+     * @param before The cursor returned with the previous page, null for the first page.
+     * @param size The number of bookings per page.
+     * @return Mono<TaxiBookingHistoryResponseDTO> A reactive type that emits the page and the cursor of the next one.
+     */
+    public Mono<TaxiBookingHistoryResponseDTO> getCustomerBookings(Long customerId, String before, int size) {
+        return bookingHistoryService.getHistory(customerId, before, size);
+    }
+
+    /**
+     * Writes the changed fields of a booking, provided its status and taxi are still the ones it was read with,
+     * and queues the booking for the relational store. The open booking heatmap is adjusted in the same step.
+     * @param taxiBooking The booking after the change.
+     * @param expectedStatus The status the booking was read with.
+     * @param expectedTaxiId The taxi the booking was read with, null for none.
+     * @param fields The names of the changed fields.
+     * @return Mono<TaxiBooking> A reactive type that emits the booking once it is updated.
+     * @throws TaxiBookingConflictException if the booking was changed in the meantime.
+     */
+    private Mono<TaxiBooking> update(TaxiBooking taxiBooking, TaxiBookingStatus expectedStatus, String expectedTaxiId,
+                                     String... fields) {
+        String taxiBookingId = taxiBooking.getTaxiBookingId();
+        return bookingFieldStore.update(taxiBooking, expectedStatus, expectedTaxiId, fields)
+                .map(result -> {
+                    if (result == BookingFieldStore.NOT_FOUND) {
+                        // Archived since it was read.
+                        throw getTaxiBookingIdNotFoundException(taxiBookingId);
+                    }
+                    if (result == BookingFieldStore.CONFLICT) {
+                        throw getTaxiBookingConflictException(taxiBookingId, "was changed by another request");
+                    }
+                    // The relational store merges whole rows, the full booking read above is queued.
+                    bookingWriteBehind.enqueue(taxiBooking);
+                    return taxiBooking;
+                });
+    }
+
+    /**
+     * Stamps when a booking was completed or cancelled, which the archiver ages it by, and clears it if the booking
+     * is opened again. A booking that was already closed keeps its original time.
+     */
+    private static void setClosedTime(TaxiBooking taxiBooking, TaxiBookingStatus previousStatus) {
+        if (!isClosed(taxiBooking.getBookingStatus())) {
+            taxiBooking.setClosedTime(null);
+        } else if (!isClosed(previousStatus) || taxiBooking.getClosedTime() == null) {
+            taxiBooking.setClosedTime(new Date());
+        }
+    }
+
+    private static boolean isClosed(TaxiBookingStatus taxiBookingStatus) {
+        return taxiBookingStatus == TaxiBookingStatus.COMPLETED || taxiBookingStatus == TaxiBookingStatus.CANCELLED;
+    }
+
     private TaxiBookingIdNotFoundException getTaxiBookingIdNotFoundException(String taxiBookingId) {
         return new TaxiBookingIdNotFoundException("Taxi Booking Id "+taxiBookingId+" Not Found");
     }
 
-    private String getTaxiTypeBookings(TaxiType taxiType) {
+    private TaxiBookingConflictException getTaxiBookingConflictException(String taxiBookingId, String reason) {
+        return new TaxiBookingConflictException("Taxi Booking Id "+taxiBookingId+" "+reason);
+    }
+
+    static String getTaxiTypeBookings(TaxiType taxiType) {
 
         return taxiType.toString()+"-Bookings";
     }
@@ -0,0 +1,131 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.springboot.taximodel.dto.request.TaxiBookedEventDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkBookingResponseDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkBookingResultDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes many bookings at once, for corporate and event clients.
+ * Each batch of booking.bulk.batch-size bookings is created in one pipelined round trip, every booking atomically
+ * on its own, so invalid or duplicate bookings are reported per item rather than failing the whole request.
+ */
+@Service
+public class TaxiBulkBookingService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaxiBulkBookingService.class);
+
+    private final BookingCreator bookingCreator;
+    private final DispatchService dispatchService;
+    private final int batchSize;
+    private final int maxBookings;
+
+    public TaxiBulkBookingService(BookingCreator bookingCreator, DispatchService dispatchService,
+                                  @Value("${booking.bulk.batch-size:500}") int batchSize,
+                                  @Value("${booking.bulk.max-bookings:10000}") int maxBookings) {
+        this.bookingCreator = bookingCreator;
+        this.dispatchService = dispatchService;
+        this.batchSize = batchSize;
+        this.maxBookings = maxBookings;
+    }
+
+    /**
+     * Makes the given bookings. As with a single booking, a booking whose taxiBookingId was already made from the
+     * same request counts as booked and is left unchanged, which makes retrying a partly failed request safe,
+     * while one whose taxiBookingId belongs to a different booking is rejected as a conflict.
+     * @param taxiBookedEventDTOs The bookings to make.
+     * @return TaxiBulkBookingResponseDTO The counts and the outcome of every booking, in request order.
+     * @throws IllegalArgumentException if more than booking.bulk.max-bookings bookings are given.
+     */
+    public TaxiBulkBookingResponseDTO book(List<TaxiBookedEventDTO> taxiBookedEventDTOs) {
+        if (taxiBookedEventDTOs.size() > maxBookings) {
+            throw new IllegalArgumentException("At most " + maxBookings + " bookings are allowed per request");
+        }
+        long start = System.currentTimeMillis();
+        List<TaxiBulkBookingResultDTO> results = new ArrayList<>(taxiBookedEventDTOs.size());
+        List<TaxiBooking> created = new ArrayList<>();
+        List<TaxiBooking> existing = new ArrayList<>();
+        List<TaxiBooking> batch = new ArrayList<>(batchSize);
+        List<String> batchHashes = new ArrayList<>(batchSize);
+        List<TaxiBulkBookingResultDTO> batchResults = new ArrayList<>(batchSize);
+        for (int i = 0; i < taxiBookedEventDTOs.size(); i++) {
+            TaxiBookedEventDTO taxiBookedEventDTO = taxiBookedEventDTOs.get(i);
+            TaxiBulkBookingResultDTO result = new TaxiBulkBookingResultDTO((long) i,
+                    taxiBookedEventDTO == null ? null : taxiBookedEventDTO.getTaxiBookingId(), null);
+            results.add(result);
+            try {
+                if (taxiBookedEventDTO == null) {
+                    throw new IllegalArgumentException("Booking is empty");
+                }
+                TaxiBooking taxiBooking = bookingCreator.newBooking(taxiBookedEventDTO);
+                result.setTaxiBookingId(taxiBooking.getTaxiBookingId());
+                batch.add(taxiBooking);
+                batchHashes.add(BookingCreator.requestHash(taxiBookedEventDTO));
+                batchResults.add(result);
+            } catch (IllegalArgumentException e) {
+                result.setMessage(e.getMessage());
+            }
+            if (batch.size() == batchSize) {
+                createBatch(batch, batchHashes, batchResults, created, existing);
+            }
+        }
+        createBatch(batch, batchHashes, batchResults, created, existing);
+        // Bookings made by an earlier attempt were offered to drivers then.
+        offer(created);
+
+        long booked = created.size() + existing.size();
+        long rejected = taxiBookedEventDTOs.size() - booked;
+        long elapsedMillis = System.currentTimeMillis() - start;
+        LOGGER.info("Bulk booking of {} bookings: {} booked, {} of them already, {} rejected in {} ms",
+                taxiBookedEventDTOs.size(), booked, existing.size(), rejected, elapsedMillis);
+        return new TaxiBulkBookingResponseDTO((long) taxiBookedEventDTOs.size(), booked, rejected,
+                elapsedMillis, results);
+    }
+
+    private void createBatch(List<TaxiBooking> batch, List<String> batchHashes,
+                             List<TaxiBulkBookingResultDTO> batchResults, List<TaxiBooking> created,
+                             List<TaxiBooking> existing) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Object> outcomes = bookingCreator.createAll(batch, batchHashes);
+        for (int i = 0; i < batch.size(); i++) {
+            Object outcome = outcomes.get(i);
+            if (Long.valueOf(BookingCreator.CREATED).equals(outcome)) {
+                created.add(batch.get(i));
+            } else if (Long.valueOf(BookingCreator.EXISTS).equals(outcome)) {
+                existing.add(batch.get(i));
+            } else if (outcome instanceof Exception) {
+                batchResults.get(i).setMessage("Booking failed: " + ((Exception) outcome).getMessage());
+            } else {
+                batchResults.get(i).setMessage("Taxi Booking Id " + batch.get(i).getTaxiBookingId()
+                        + " already belongs to a different booking");
+            }
+        }
+        batch.clear();
+        batchHashes.clear();
+        batchResults.clear();
+    }
+
+    /**
+     * Offers the new bookings to drivers off the request thread, the response does not wait for thousands
+     * of fan-outs.
+     */
+    private void offer(List<TaxiBooking> created) {
+        if (created.isEmpty()) {
+            return;
+        }
+        Mono.fromRunnable(() -> created.forEach(dispatchService::offer))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe();
+    }
+}
@@ -0,0 +1,21 @@
+CREATE TABLE IF NOT EXISTS taxi_booking (
+    taxi_booking_id  VARCHAR(64) PRIMARY KEY,
+    customer_id      BIGINT,
+    taxi_id          VARCHAR(64),
+    taxi_type        VARCHAR(16),
+    booking_status   VARCHAR(16),
+    start_latitude   DOUBLE,
+    start_longitude  DOUBLE,
+    end_latitude     DOUBLE,
+    end_longitude    DOUBLE,
+    booked_time      TIMESTAMP,
+    accepted_time    TIMESTAMP,
+    start_time       TIMESTAMP,
+    end_time         TIMESTAMP,
+    cancel_time      TIMESTAMP,
+    reason_to_cancel VARCHAR(1024),
+    updated_at       TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS taxi_booking_customer ON taxi_booking (customer_id, booked_time);
+CREATE INDEX IF NOT EXISTS taxi_booking_booked_time ON taxi_booking (booked_time);
@@ -0,0 +1,36 @@
+-- Creates a booking atomically: its hash, keyspace index entry, geo members, open booking count and history entry.
+-- KEYS[1] booking hash, KEYS[2] booking keyspace set, KEYS[3] booking geo set of the taxi type,
+-- KEYS[4] open booking heatmap of the taxi type, KEYS[5] booked time bucket geo set,
+-- then the pickup time bucket geo set if the booking has a pickup time,
+-- then the customer history index if the booking has a customer
+-- ARGV[1] booking ID, ARGV[2] longitude, ARGV[3] latitude, ARGV[4] heatmap cell of the start location,
+-- ARGV[5] history score, empty without a customer, ARGV[6] booked time bucket member,
+-- ARGV[7] booked time bucket expiry in epoch seconds, ARGV[8] pickup time bucket member, empty without a pickup time,
+-- ARGV[9] pickup time bucket expiry, ARGV[10] hash of the booking request,
+-- ARGV[11..] hash fields and values as written by the repository converter
+-- Returns 1 if the booking was created, 0 if a booking with the same ID was already created from the same request,
+-- -1 if a booking with the same ID exists from a different request.
+if redis.call('EXISTS', KEYS[1]) == 1 then
+    local requestHash = redis.call('HGET', KEYS[1], 'requestHash')
+    -- Bookings created before request hashes were stored cannot be told apart from a retry.
+    if not requestHash or requestHash == ARGV[10] then
+        return 0
+    end
+    return -1
+end
+redis.call('HMSET', KEYS[1], 'requestHash', ARGV[10], unpack(ARGV, 11))
+redis.call('SADD', KEYS[2], ARGV[1])
+redis.call('GEOADD', KEYS[3], ARGV[2], ARGV[3], ARGV[1])
+redis.call('HINCRBY', KEYS[4], ARGV[4], 1)
+redis.call('GEOADD', KEYS[5], ARGV[2], ARGV[3], ARGV[6])
+redis.call('EXPIREAT', KEYS[5], ARGV[7])
+local key = 6
+if ARGV[8] ~= '' then
+    redis.call('GEOADD', KEYS[key], ARGV[2], ARGV[3], ARGV[8])
+    redis.call('EXPIREAT', KEYS[key], ARGV[9])
+    key = key + 1
+end
+if ARGV[5] ~= '' then
+    redis.call('ZADD', KEYS[key], ARGV[5], ARGV[1])
+end
+return 1
@@ -0,0 +1,42 @@
+-- Reads one page of a customer's booking history, most recent first, after a (score, booking ID) cursor.
+-- Bookings sharing a score are ordered by ID, descending as ZREVRANGEBYSCORE returns them, so a page boundary
+-- between them neither skips nor repeats one.
+-- KEYS[1] customer history index
+-- ARGV[1] score of the last booking of the previous page, empty for the first page,
+-- ARGV[2] ID of that booking, ARGV[3] page size
+-- Returns booking IDs and their scores, alternating.
+local size = tonumber(ARGV[3])
+local page = {}
+local max = '+inf'
+
+-- Byte order, as Redis orders members; Lua's < follows the server locale.
+local function precedes(a, b)
+    local n = math.min(#a, #b)
+    for i = 1, n do
+        local x, y = string.byte(a, i), string.byte(b, i)
+        if x ~= y then
+            return x < y
+        end
+    end
+    return #a < #b
+end
+
+if ARGV[1] ~= '' then
+    for _, id in ipairs(redis.call('ZREVRANGEBYSCORE', KEYS[1], ARGV[1], ARGV[1])) do
+        if #page == size * 2 then
+            break
+        end
+        if precedes(id, ARGV[2]) then
+            page[#page + 1] = id
+            page[#page + 1] = ARGV[1]
+        end
+    end
+    max = '(' .. ARGV[1]
+end
+if #page < size * 2 then
+    local rest = redis.call('ZREVRANGEBYSCORE', KEYS[1], max, '-inf', 'WITHSCORES', 'LIMIT', 0, size - #page / 2)
+    for _, value in ipairs(rest) do
+        page[#page + 1] = value
+    end
+end
+return page
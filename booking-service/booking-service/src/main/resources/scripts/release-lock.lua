@@ -0,0 +1,8 @@
+-- Releases a lock only if it is still held with the caller's token, so a run that outlived the lock timeout
+-- cannot release the lock another instance has taken since.
+-- KEYS[1] lock, ARGV[1] token the lock was taken with
+-- Returns 1 if the lock was released, 0 if it had expired or was taken by someone else.
+if redis.call('GET', KEYS[1]) == ARGV[1] then
+    return redis.call('DEL', KEYS[1])
+end
+return 0
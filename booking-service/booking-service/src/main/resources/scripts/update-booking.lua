@@ -0,0 +1,25 @@
+-- Changes some fields of a booking, provided it is still in the state the change was decided on,
+-- and moves it in or out of the open booking heatmap in the same step.
+-- KEYS[1] booking hash, KEYS[2] open booking heatmap of the taxi type, empty if the change does not open or close it
+-- ARGV[1] expected booking status, ARGV[2] expected taxi ID, empty for none,
+-- ARGV[3] heatmap cell of the start location, ARGV[4] heatmap delta,
+-- ARGV[5..] fields and values as written by the repository converter, an empty value deletes the field
+-- Returns 1 if the booking was updated, 0 if its state changed in the meantime, -1 if the booking does not exist.
+local state = redis.call('HMGET', KEYS[1], 'bookingStatus', 'taxiId')
+if not state[1] and redis.call('EXISTS', KEYS[1]) == 0 then
+    return -1
+end
+if (state[1] or '') ~= ARGV[1] or (state[2] or '') ~= ARGV[2] then
+    return 0
+end
+for i = 5, #ARGV, 2 do
+    if ARGV[i + 1] == '' then
+        redis.call('HDEL', KEYS[1], ARGV[i])
+    else
+        redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1])
+    end
+end
+if KEYS[2] ~= '' then
+    redis.call('HINCRBY', KEYS[2], ARGV[3], ARGV[4])
+end
+return 1
@@ -0,0 +1,140 @@
+package com.sheeft.bookingservice.archive;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordRoundTripsThroughTheDictionary() throws IOException {
+        Map<String, String> fields = booking("a", 1000, "COMPLETED");
+        fields.put("reasonToCancel", "Stau auf der Straße — 🚕");
+        byte[] record = BookingArchive.encode(fields);
+        ByteBuffer header = ByteBuffer.wrap(record, 0, 8);
+        int compressedLength = header.getInt();
+        int rawLength = header.getInt();
+        assertEquals(record.length - 8, compressedLength);
+        assertEquals(fields, BookingArchive.decode(Arrays.copyOfRange(record, 8, record.length), rawLength));
+    }
+
+    @Test
+    void findsBookingsAfterReopening() throws IOException {
+        BookingArchive archive = new BookingArchive(directory.toString(), 1 << 20);
+        archive.append(bookings(booking("a", 1000, "COMPLETED"), booking("b", 2000, "CANCELLED")));
+        archive.destroy();
+
+        archive = new BookingArchive(directory.toString(), 1 << 20);
+        assertEquals("COMPLETED", archive.find("a").get("bookingStatus"));
+        assertEquals("CANCELLED", archive.find("b").get("bookingStatus"));
+        assertNull(archive.find("c"));
+        assertEquals(2, archive.size());
+        archive.destroy();
+    }
+
+    @Test
+    void sealedSegmentsAreLookedUpOnDiskAndTheLatestCopyWins() throws IOException {
+        // Every append fills a segment, so each booking lands in a segment of its own.
+        BookingArchive archive = new BookingArchive(directory.toString(), 1);
+        for (int i = 0; i < 50; i++) {
+            archive.append(bookings(booking("booking-" + i, 1000 + i, "COMPLETED")));
+        }
+        // Archived again by a run interrupted before deleting it from Redis.
+        archive.append(bookings(booking("booking-7", 1007, "CANCELLED")));
+        assertEquals("CANCELLED", archive.find("booking-7").get("bookingStatus"));
+        assertEquals("COMPLETED", archive.find("booking-8").get("bookingStatus"));
+        assertTrue(archive.contains("booking-0"));
+        assertFalse(archive.contains("booking-50"));
+        archive.destroy();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(50, files.filter(p -> p.toString().endsWith(".ids")).count());
+        }
+        archive = new BookingArchive(directory.toString(), 1);
+        Map<String, Map<String, String>> found = archive.findBookedBetween(1005, 1010, 100);
+        assertEquals(5, found.size());
+        assertEquals("CANCELLED", found.get("booking-7").get("bookingStatus"));
+        assertEquals(1, archive.findBookedBetween(1000, 1010, 1).size());
+        assertEquals(0, archive.findBookedBetween(2000, 3000, 100).size());
+        archive.destroy();
+    }
+
+    @Test
+    void rebuildsMissingLookupFiles() throws IOException {
+        BookingArchive archive = new BookingArchive(directory.toString(), 1);
+        archive.append(bookings(booking("a", 1000, "COMPLETED")));
+        archive.append(bookings(booking("b", 2000, "COMPLETED")));
+        archive.append(bookings(booking("c", 3000, "COMPLETED")));
+        archive.destroy();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path lookup : (Iterable<Path>) files.filter(p -> p.toString().endsWith(".ids"))::iterator) {
+                Files.delete(lookup);
+            }
+        }
+
+        archive = new BookingArchive(directory.toString(), 1);
+        assertEquals("a", archive.find("a").get("taxiBookingId"));
+        assertEquals(1, archive.findBookedBetween(1500, 2500, 100).size());
+        archive.destroy();
+    }
+
+    @Test
+    void recoversFromATornRecordAndAMissedIndexEntry() throws IOException {
+        BookingArchive archive = new BookingArchive(directory.toString(), 1 << 20);
+        archive.append(bookings(booking("a", 1000, "COMPLETED")));
+        archive.destroy();
+        Path log = directory.resolve("segment-00000000.log");
+        Path index = directory.resolve("segment-00000000.idx");
+        // A complete record the index missed, followed by half of another one.
+        byte[] missed = BookingArchive.encode(booking("b", 2000, "CANCELLED"));
+        byte[] torn = Arrays.copyOf(BookingArchive.encode(booking("c", 3000, "CANCELLED")), 12);
+        Files.write(log, missed, StandardOpenOption.APPEND);
+        Files.write(log, torn, StandardOpenOption.APPEND);
+        long recoveredSize = Files.size(log) - torn.length;
+
+        archive = new BookingArchive(directory.toString(), 1 << 20);
+        assertEquals("CANCELLED", archive.find("b").get("bookingStatus"));
+        assertNull(archive.find("c"));
+        assertEquals(recoveredSize, Files.size(log));
+        assertTrue(Files.size(index) > 0);
+        archive.append(bookings(booking("d", 4000, "COMPLETED")));
+        assertEquals(3, archive.size());
+        archive.destroy();
+    }
+
+    private static Map<String, String> booking(String id, long bookedTime, String status) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("_class", "com.sheeft.bookingservice.model.TaxiBooking");
+        fields.put("taxiBookingId", id);
+        fields.put("bookedTime", Long.toString(bookedTime));
+        fields.put("bookingStatus", status);
+        fields.put("taxiType", "MINI");
+        return fields;
+    }
+
+    @SafeVarargs
+    private static Map<String, Map<String, String>> bookings(Map<String, String>... bookings) {
+        Map<String, Map<String, String>> byId = new LinkedHashMap<>();
+        for (Map<String, String> booking : bookings) {
+            byId.put(booking.get("taxiBookingId"), booking);
+        }
+        return byId;
+    }
+}
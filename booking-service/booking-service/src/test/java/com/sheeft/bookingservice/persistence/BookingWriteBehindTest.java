@@ -0,0 +1,81 @@
+package com.sheeft.bookingservice.persistence;
+
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.springboot.taximodel.enums.TaxiBookingStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BookingWriteBehindTest {
+
+    private EmbeddedDatabase database;
+    private JdbcTemplate jdbcTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private BookingWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder().generateUniqueName(true).setType(EmbeddedDatabaseType.H2)
+                .addScript("schema.sql").build();
+        jdbcTemplate = new JdbcTemplate(database);
+        meterRegistry = new SimpleMeterRegistry();
+        writeBehind = new BookingWriteBehind(jdbcTemplate, meterRegistry, 100, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void writesBatches() {
+        for (int i = 0; i < 25; i++) {
+            writeBehind.enqueue(booking("booking-" + i, null));
+        }
+        writeBehind.flush();
+
+        assertEquals(25, count());
+        assertEquals(25, meterRegistry.counter("booking.write-behind.written").count());
+        assertEquals(0, meterRegistry.get("booking.write-behind.pending").gauge().value());
+    }
+
+    @Test
+    void rowTheDatabaseRejectsDoesNotHoldBackItsBatch() {
+        writeBehind.enqueue(booking("booking-1", null));
+        writeBehind.enqueue(booking("booking-2", "x".repeat(BookingWriteBehind.MAX_REASON_TO_CANCEL_LENGTH + 1)));
+        writeBehind.enqueue(booking("x".repeat(BookingWriteBehind.MAX_TAXI_BOOKING_ID_LENGTH + 1), null));
+        writeBehind.enqueue(booking("booking-3", null));
+        writeBehind.flush();
+
+        assertEquals(List.of("booking-1", "booking-3"), jdbcTemplate.queryForList(
+                "SELECT taxi_booking_id FROM taxi_booking ORDER BY taxi_booking_id", String.class));
+        assertEquals(2, meterRegistry.counter("booking.write-behind.dead-lettered").count());
+        // Nothing is left to fail again on the next flush.
+        assertEquals(0, meterRegistry.get("booking.write-behind.pending").gauge().value());
+        writeBehind.flush();
+        assertEquals(2, meterRegistry.counter("booking.write-behind.dead-lettered").count());
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM taxi_booking", Integer.class);
+    }
+
+    private static TaxiBooking booking(String taxiBookingId, String reasonToCancel) {
+        TaxiBooking taxiBooking = new TaxiBooking();
+        taxiBooking.setTaxiBookingId(taxiBookingId);
+        taxiBooking.setBookingStatus(reasonToCancel == null ? TaxiBookingStatus.ACTIVE : TaxiBookingStatus.CANCELLED);
+        taxiBooking.setReasonToCancel(reasonToCancel);
+        taxiBooking.setBookedTime(new Date());
+        return taxiBooking;
+    }
+}
@@ -0,0 +1,166 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.converter.TaxiBookingHashConverter;
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.sheeft.bookingservice.persistence.BookingWriteBehind;
+import com.saber.taxiconfig.hedge.HedgedRedisReader;
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.dto.request.TaxiBookedEventDTO;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taximodel.util.HeatmapKeys;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class BookingCreatorTest {
+
+    private static final String CELL = Long.toString(GeoCell.cellOf(13.40, 52.52, HeatmapKeys.BITS_PER_AXIS));
+
+    private static EmbeddedRedis redis;
+
+    private StringRedisTemplate stringRedisTemplate;
+    private BookingWriteBehind bookingWriteBehind;
+    private BookingCreator creator;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redis = EmbeddedRedis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = redis.flushedTemplate();
+        MappingRedisConverter redisConverter = new MappingRedisConverter(new RedisMappingContext());
+        redisConverter.afterPropertiesSet();
+        bookingWriteBehind = mock(BookingWriteBehind.class);
+        creator = new BookingCreator(redis.reactiveTemplate(), stringRedisTemplate,
+                new TaxiBookingHashConverter(redisConverter), bookingWriteBehind,
+                new BookingTimeIndex(mock(HedgedRedisReader.class), 15, 240, 60, 96));
+    }
+
+    @Test
+    void createsTheBookingWithAllItsIndexes() {
+        TaxiBookedEventDTO request = request("b-1", 7L);
+
+        assertEquals(BookingCreator.CREATED, create(request));
+
+        assertEquals("MINI", stringRedisTemplate.opsForHash().get("TaxiBooking:b-1", "taxiType"));
+        assertEquals(BookingCreator.requestHash(request),
+                stringRedisTemplate.opsForHash().get("TaxiBooking:b-1", "requestHash"));
+        assertEquals(Boolean.TRUE, stringRedisTemplate.opsForSet().isMember(TaxiBooking.KEYSPACE, "b-1"));
+        assertNotNull(stringRedisTemplate.opsForGeo().position("MINI-Bookings", "b-1").get(0));
+        assertEquals("1", stringRedisTemplate.opsForHash().get(HeatmapKeys.openBookings(TaxiType.MINI), CELL));
+        assertNotNull(stringRedisTemplate.opsForZSet().score("TaxiBooking:customer:7", "b-1"));
+        List<String> bookedBuckets = List.copyOf(stringRedisTemplate.keys("MINI-Bookings:Booked:*"));
+        assertEquals(1, bookedBuckets.size());
+        assertTrue(stringRedisTemplate.getExpire(bookedBuckets.get(0)) > 0);
+        verify(bookingWriteBehind).enqueue(any());
+    }
+
+    @Test
+    void timeIndexGoesByTheServerTimeNotTheBookedTime() {
+        long now = System.currentTimeMillis();
+        TaxiBookedEventDTO stale = request("b-1", 7L);
+        stale.setBookedTime(new Date(now - Duration.ofDays(2).toMillis()));
+        TaxiBookedEventDTO ahead = request("b-2", 7L);
+        ahead.setBookedTime(new Date(now + Duration.ofDays(2).toMillis()));
+
+        create(stale);
+        create(ahead);
+
+        long bucket = now / Duration.ofMinutes(15).toMillis();
+        long indexed = 0;
+        for (String key : stringRedisTemplate.keys("MINI-Bookings:Booked:*")) {
+            // The next bucket if the clock just crossed into it.
+            long keyBucket = Long.parseLong(key.substring(key.lastIndexOf(':') + 1));
+            assertTrue(keyBucket == bucket || keyBucket == bucket + 1, key);
+            assertTrue(stringRedisTemplate.getExpire(key) > Duration.ofMinutes(240).getSeconds());
+            indexed += stringRedisTemplate.opsForZSet().size(key);
+        }
+        assertEquals(2, indexed);
+    }
+
+    @Test
+    void retryOfTheSameRequestChangesNothing() {
+        TaxiBookedEventDTO request = request("b-1", 7L);
+        create(request);
+
+        assertEquals(BookingCreator.EXISTS, create(request));
+
+        assertEquals("1", stringRedisTemplate.opsForHash().get(HeatmapKeys.openBookings(TaxiType.MINI), CELL));
+        assertEquals(1, stringRedisTemplate.opsForZSet().size("TaxiBooking:customer:7"));
+        verify(bookingWriteBehind, times(1)).enqueue(any());
+    }
+
+    @Test
+    void reusingAnIdForAnotherRequestConflicts() {
+        create(request("b-1", 7L));
+
+        assertEquals(BookingCreator.CONFLICT, create(request("b-1", 8L)));
+
+        assertEquals("7", stringRedisTemplate.opsForHash().get("TaxiBooking:b-1", "customerId"));
+        assertEquals(Boolean.FALSE, stringRedisTemplate.hasKey("TaxiBooking:customer:8"));
+        assertEquals("1", stringRedisTemplate.opsForHash().get(HeatmapKeys.openBookings(TaxiType.MINI), CELL));
+    }
+
+    @Test
+    void bookingStoredWithoutRequestHashCountsAsRetry() {
+        stringRedisTemplate.opsForHash().put("TaxiBooking:b-1", "customerId", "7");
+
+        assertEquals(BookingCreator.EXISTS, create(request("b-1", 8L)));
+        assertEquals("7", stringRedisTemplate.opsForHash().get("TaxiBooking:b-1", "customerId"));
+    }
+
+    @Test
+    void batchReportsEachBookingOnItsOwn() {
+        TaxiBookedEventDTO existing = request("b-1", 7L);
+        create(existing);
+        List<TaxiBookedEventDTO> requests = List.of(request("b-2", 7L), existing, request("b-1", 8L));
+
+        List<TaxiBooking> taxiBookings = List.of(creator.newBooking(requests.get(0)),
+                creator.newBooking(requests.get(1)), creator.newBooking(requests.get(2)));
+        List<Object> results = creator.createAll(taxiBookings, List.of(BookingCreator.requestHash(requests.get(0)),
+                BookingCreator.requestHash(requests.get(1)), BookingCreator.requestHash(requests.get(2))));
+
+        assertEquals(List.of(BookingCreator.CREATED, BookingCreator.EXISTS, BookingCreator.CONFLICT), results);
+        assertEquals("2", stringRedisTemplate.opsForHash().get(HeatmapKeys.openBookings(TaxiType.MINI), CELL));
+        assertEquals(2, stringRedisTemplate.opsForZSet().size("TaxiBooking:customer:7"));
+    }
+
+    private long create(TaxiBookedEventDTO request) {
+        return creator.create(creator.newBooking(request), BookingCreator.requestHash(request)).block();
+    }
+
+    private static TaxiBookedEventDTO request(String taxiBookingId, Long customerId) {
+        TaxiBookedEventDTO request = new TaxiBookedEventDTO();
+        request.setTaxiBookingId(taxiBookingId);
+        request.setTaxiType(TaxiType.MINI);
+        request.setCustomerId(customerId);
+        request.setStart(new LocationDTO(52.52, 13.40, null));
+        request.setEnd(new LocationDTO(52.50, 13.45, null));
+        return request;
+    }
+}
@@ -0,0 +1,158 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.converter.TaxiBookingHashConverter;
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.springboot.taximodel.enums.TaxiBookingStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taximodel.util.HeatmapKeys;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BookingFieldStoreTest {
+
+    private static final String CELL = Long.toString(GeoCell.cellOf(13.40, 52.52, HeatmapKeys.BITS_PER_AXIS));
+    private static final String HEATMAP = HeatmapKeys.openBookings(TaxiType.MINI);
+
+    private static EmbeddedRedis redis;
+
+    private StringRedisTemplate stringRedisTemplate;
+    private TaxiBookingHashConverter taxiBookingHashConverter;
+    private BookingFieldStore store;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redis = EmbeddedRedis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = redis.flushedTemplate();
+        MappingRedisConverter redisConverter = new MappingRedisConverter(new RedisMappingContext());
+        redisConverter.afterPropertiesSet();
+        taxiBookingHashConverter = new TaxiBookingHashConverter(redisConverter);
+        store = new BookingFieldStore(redis.reactiveTemplate(), taxiBookingHashConverter);
+    }
+
+    @Test
+    void acceptingTakesTheBookingOutOfTheHeatmap() {
+        TaxiBooking taxiBooking = stored("b-1");
+        taxiBooking.setTaxiId("t-1");
+        taxiBooking.setAcceptedTime(new Date());
+
+        assertEquals(1L, store.update(taxiBooking, TaxiBookingStatus.ACTIVE, null, "taxiId", "acceptedTime").block());
+
+        TaxiBooking read = read("b-1");
+        assertEquals("t-1", read.getTaxiId());
+        assertEquals(taxiBooking.getAcceptedTime(), read.getAcceptedTime());
+        assertEquals(TaxiBookingStatus.ACTIVE, read.getBookingStatus());
+        assertEquals("0", stringRedisTemplate.opsForHash().get(HEATMAP, CELL));
+    }
+
+    @Test
+    void reopeningPutsTheBookingBackAndDeletesClearedFields() {
+        TaxiBooking taxiBooking = stored("b-1");
+        taxiBooking.setBookingStatus(TaxiBookingStatus.CANCELLED);
+        taxiBooking.setClosedTime(new Date());
+        store.update(taxiBooking, TaxiBookingStatus.ACTIVE, null, "bookingStatus", "closedTime").block();
+        assertEquals("0", stringRedisTemplate.opsForHash().get(HEATMAP, CELL));
+
+        taxiBooking.setBookingStatus(TaxiBookingStatus.ACTIVE);
+        taxiBooking.setClosedTime(null);
+        assertEquals(1L, store.update(taxiBooking, TaxiBookingStatus.CANCELLED, null, "bookingStatus", "closedTime")
+                .block());
+
+        assertFalse(stringRedisTemplate.opsForHash().hasKey("TaxiBooking:b-1", "closedTime"));
+        assertEquals("1", stringRedisTemplate.opsForHash().get(HEATMAP, CELL));
+    }
+
+    @Test
+    void updateOfAChangedBookingConflicts() {
+        TaxiBooking taxiBooking = stored("b-1");
+        taxiBooking.setBookingStatus(TaxiBookingStatus.COMPLETED);
+
+        assertEquals(BookingFieldStore.CONFLICT,
+                store.update(taxiBooking, TaxiBookingStatus.CANCELLED, null, "bookingStatus").block());
+        assertEquals(BookingFieldStore.CONFLICT,
+                store.update(taxiBooking, TaxiBookingStatus.ACTIVE, "t-1", "bookingStatus").block());
+
+        assertEquals(TaxiBookingStatus.ACTIVE, read("b-1").getBookingStatus());
+        assertEquals("1", stringRedisTemplate.opsForHash().get(HEATMAP, CELL));
+    }
+
+    @Test
+    void updateOfAMissingBookingIsNotFound() {
+        assertEquals(BookingFieldStore.NOT_FOUND,
+                store.update(booking("b-1"), TaxiBookingStatus.ACTIVE, null, "bookingStatus").block());
+        assertFalse(stringRedisTemplate.hasKey("TaxiBooking:b-1"));
+        assertNull(stringRedisTemplate.opsForHash().get(HEATMAP, CELL));
+    }
+
+    @Test
+    void onlyOneOfTwoRacingDriversAccepts() {
+        for (int i = 0; i < 20; i++) {
+            String taxiBookingId = "b-" + i;
+            stored(taxiBookingId);
+            List<Long> results = Mono.zip(accept(taxiBookingId, "t-1"), accept(taxiBookingId, "t-2"),
+                    (first, second) -> List.of(first, second)).block();
+
+            assertEquals(1L, results.get(0) + results.get(1));
+            assertEquals(results.get(0) == 1L ? "t-1" : "t-2", read(taxiBookingId).getTaxiId());
+        }
+        assertEquals("0", stringRedisTemplate.opsForHash().get(HEATMAP, CELL));
+    }
+
+    private Mono<Long> accept(String taxiBookingId, String taxiId) {
+        TaxiBooking taxiBooking = read(taxiBookingId);
+        taxiBooking.setTaxiId(taxiId);
+        return Mono.defer(() -> store.update(taxiBooking, TaxiBookingStatus.ACTIVE, null, "taxiId"))
+                .subscribeOn(Schedulers.parallel());
+    }
+
+    /**
+     * Stores an open booking as create-booking.lua would, counted in the heatmap.
+     */
+    private TaxiBooking stored(String taxiBookingId) {
+        TaxiBooking taxiBooking = booking(taxiBookingId);
+        stringRedisTemplate.opsForHash().putAll(TaxiBooking.KEYSPACE + ":" + taxiBookingId,
+                taxiBookingHashConverter.write(taxiBooking));
+        stringRedisTemplate.opsForHash().increment(HEATMAP, CELL, 1);
+        return taxiBooking;
+    }
+
+    private TaxiBooking read(String taxiBookingId) {
+        return taxiBookingHashConverter.read(taxiBookingId, stringRedisTemplate.<String, String>opsForHash()
+                .entries(TaxiBooking.KEYSPACE + ":" + taxiBookingId));
+    }
+
+    private static TaxiBooking booking(String taxiBookingId) {
+        TaxiBooking taxiBooking = new TaxiBooking();
+        taxiBooking.setTaxiBookingId(taxiBookingId);
+        taxiBooking.setTaxiType(TaxiType.MINI);
+        taxiBooking.setStart(new Point(13.40, 52.52));
+        taxiBooking.setBookingStatus(TaxiBookingStatus.ACTIVE);
+        taxiBooking.setCreatedTime(new Date());
+        return taxiBooking;
+    }
+}
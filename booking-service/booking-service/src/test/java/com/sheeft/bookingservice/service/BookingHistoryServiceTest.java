@@ -0,0 +1,111 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.archive.BookingArchive;
+import com.sheeft.bookingservice.converter.TaxiBookingHashConverter;
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.springboot.taximodel.dto.response.TaxiBookingDTO;
+import com.springboot.taximodel.dto.response.TaxiBookingHistoryResponseDTO;
+import com.springboot.taximodel.enums.TaxiBookingStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+class BookingHistoryServiceTest {
+
+    private static final long CUSTOMER_ID = 7L;
+    private static final long CREATED = 1_700_000_000_000L;
+
+    private static EmbeddedRedis redis;
+
+    private StringRedisTemplate stringRedisTemplate;
+    private TaxiBookingHashConverter taxiBookingHashConverter;
+    private BookingHistoryService service;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redis = EmbeddedRedis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = redis.flushedTemplate();
+        MappingRedisConverter redisConverter = new MappingRedisConverter(new RedisMappingContext());
+        redisConverter.afterPropertiesSet();
+        taxiBookingHashConverter = new TaxiBookingHashConverter(redisConverter);
+        service = new BookingHistoryService(redis.reactiveTemplate(), stringRedisTemplate, taxiBookingHashConverter,
+                mock(BookingArchive.class), 100);
+    }
+
+    @Test
+    void pageBoundaryWithinEqualScoresNeitherSkipsNorRepeats() {
+        stored("o-1", CREATED - 1);
+        // Created in the same millisecond, they come in descending byte order: upper case before lower case
+        // and multi-byte characters after both, whatever the server locale.
+        for (String taxiBookingId : List.of("B-1", "a-1", "b-10", "b-9", "é-1")) {
+            stored(taxiBookingId, CREATED);
+        }
+        stored("n-1", CREATED + 1);
+
+        List<String> expected = List.of("n-1", "é-1", "b-9", "b-10", "a-1", "B-1", "o-1");
+        assertEquals(expected, readAll(2));
+        assertEquals(expected, readAll(3));
+        assertEquals(expected, readAll(7));
+    }
+
+    @Test
+    void lastPageHasNoCursor() {
+        stored("b-1", CREATED);
+
+        TaxiBookingHistoryResponseDTO page = service.getHistory(CUSTOMER_ID, null, 2).block();
+        assertEquals(1, page.getBookings().size());
+        assertNull(page.getNextCursor());
+
+        page = service.getHistory(CUSTOMER_ID, CREATED + ":b-1", 2).block();
+        assertEquals(List.of(), page.getBookings());
+        assertNull(page.getNextCursor());
+    }
+
+    private List<String> readAll(int size) {
+        List<String> taxiBookingIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            TaxiBookingHistoryResponseDTO page = service.getHistory(CUSTOMER_ID, cursor, size).block();
+            page.getBookings().stream().map(TaxiBookingDTO::getTaxiBookingId).forEach(taxiBookingIds::add);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return taxiBookingIds;
+    }
+
+    private void stored(String taxiBookingId, long createdTime) {
+        TaxiBooking taxiBooking = new TaxiBooking();
+        taxiBooking.setTaxiBookingId(taxiBookingId);
+        taxiBooking.setCustomerId(CUSTOMER_ID);
+        taxiBooking.setTaxiType(TaxiType.MINI);
+        taxiBooking.setStart(new Point(13.40, 52.52));
+        taxiBooking.setBookingStatus(TaxiBookingStatus.ACTIVE);
+        taxiBooking.setCreatedTime(new Date(createdTime));
+        stringRedisTemplate.opsForHash().putAll(TaxiBooking.KEYSPACE + ":" + taxiBookingId,
+                taxiBookingHashConverter.write(taxiBooking));
+        service.index(taxiBooking).block();
+    }
+}
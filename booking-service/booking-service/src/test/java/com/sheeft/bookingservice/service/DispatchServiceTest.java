@@ -0,0 +1,184 @@
+package com.sheeft.bookingservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.saber.taxiconfig.config.RedisConfig;
+import com.springboot.taximodel.dto.request.DispatchOfferDTO;
+import com.springboot.taximodel.enums.DispatchOfferStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatchServiceTest {
+
+    private static final double LONGITUDE = 13.40;
+    private static final double LATITUDE = 52.52;
+
+    private static EmbeddedRedis redis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StringRedisTemplate stringRedisTemplate;
+    private RedisMessageListenerContainer listenerContainer;
+    private DispatchService service;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redis = EmbeddedRedis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = redis.flushedTemplate();
+        service = new DispatchService(stringRedisTemplate, redis.reactiveTemplate(), new SimpleMeterRegistry(),
+                true, 2, 5, 30, 3, 2);
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redis.getConnectionFactory());
+        listenerContainer.addMessageListener(service, new ChannelTopic(RedisConfig.DISPATCH_OFFER_CHANNEL));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Test
+    void offersTheNearestAvailableTaxisUpToTheLimit() {
+        taxi("t-1", 0.001, "AVAILABLE");
+        taxi("t-2", 0.002, "OCCUPIED");
+        taxi("t-3", 0.003, "AVAILABLE");
+        taxi("t-4", 0.004, "AVAILABLE");
+        taxi("t-5", 1.0, "AVAILABLE");
+
+        service.offer(booking("b-1"));
+
+        assertEquals(1, stringRedisTemplate.opsForList().size("Inbox:t-1"));
+        assertEquals(1, stringRedisTemplate.opsForList().size("Inbox:t-3"));
+        assertFalse(stringRedisTemplate.hasKey("Inbox:t-2"));
+        assertFalse(stringRedisTemplate.hasKey("Inbox:t-4"));
+        assertFalse(stringRedisTemplate.hasKey("Inbox:t-5"));
+        assertEquals(Set.of("t-1", "t-3"), stringRedisTemplate.opsForHash().keys("Offer:b-1"));
+        assertTrue(stringRedisTemplate.getExpire("Inbox:t-1") > 0);
+    }
+
+    @Test
+    void fullInboxDropsTheOldestOffers() {
+        taxi("t-1", 0.001, "AVAILABLE");
+        for (int i = 1; i <= 5; i++) {
+            service.offer(booking("b-" + i));
+        }
+
+        assertEquals(3, stringRedisTemplate.opsForList().size("Inbox:t-1"));
+        assertEquals("b-3", next("t-1", Duration.ZERO).getTaxiBookingId());
+        assertEquals("b-4", next("t-1", Duration.ZERO).getTaxiBookingId());
+        assertEquals("b-5", next("t-1", Duration.ZERO).getTaxiBookingId());
+        assertNull(next("t-1", Duration.ZERO));
+    }
+
+    @Test
+    void waitingPollWakesOnANewOffer() {
+        taxi("t-1", 0.001, "AVAILABLE");
+        CompletableFuture<DispatchOfferDTO> poll = service.nextOffer("t-1", Duration.ofSeconds(2)).toFuture();
+        Mono.delay(Duration.ofMillis(200)).subscribe(t -> service.offer(booking("b-1")));
+
+        long started = System.currentTimeMillis();
+        DispatchOfferDTO offer = poll.join();
+
+        assertEquals("b-1", offer.getTaxiBookingId());
+        assertEquals(DispatchOfferStatus.OFFERED, offer.getStatus());
+        assertTrue(System.currentTimeMillis() - started < 1500);
+        assertEquals(0, stringRedisTemplate.opsForList().size("Inbox:t-1"));
+    }
+
+    @Test
+    void pollSkipsExpiredOffers() throws Exception {
+        long now = System.currentTimeMillis();
+        push("t-1", offer("b-1", new Date(now - 1000)));
+        push("t-1", offer("b-2", new Date(now + 30000)));
+
+        assertEquals("b-2", next("t-1", Duration.ZERO).getTaxiBookingId());
+        assertEquals(0, stringRedisTemplate.opsForList().size("Inbox:t-1"));
+    }
+
+    @Test
+    void pollCompletesEmptyAtItsDeadline() {
+        long started = System.currentTimeMillis();
+        assertNull(next("t-1", Duration.ofMillis(300)));
+        long elapsed = System.currentTimeMillis() - started;
+        assertTrue(elapsed >= 300 && elapsed < 1500, "waited " + elapsed + " ms");
+
+        // Waits are capped at booking.dispatch.max-wait-seconds.
+        started = System.currentTimeMillis();
+        assertNull(next("t-1", Duration.ofMinutes(1)));
+        elapsed = System.currentTimeMillis() - started;
+        assertTrue(elapsed >= 2000 && elapsed < 3500, "waited " + elapsed + " ms");
+    }
+
+    @Test
+    void withdrawRemovesWaitingOffers() {
+        taxi("t-1", 0.001, "AVAILABLE");
+        taxi("t-3", 0.003, "AVAILABLE");
+        service.offer(booking("b-1"));
+        service.offer(booking("b-2"));
+
+        service.withdraw("b-1");
+
+        assertFalse(stringRedisTemplate.hasKey("Offer:b-1"));
+        assertEquals("b-2", next("t-1", Duration.ZERO).getTaxiBookingId());
+        assertEquals("b-2", next("t-3", Duration.ZERO).getTaxiBookingId());
+        assertNull(next("t-1", Duration.ZERO));
+    }
+
+    private void taxi(String taxiId, double eastOfPickup, String taxiStatus) {
+        stringRedisTemplate.opsForGeo().add(TaxiType.MINI.toString(), new Point(LONGITUDE + eastOfPickup, LATITUDE),
+                taxiId);
+        stringRedisTemplate.opsForHash().put("Taxi:" + taxiId, "taxiStatus", taxiStatus);
+    }
+
+    private DispatchOfferDTO next(String taxiId, Duration wait) {
+        return service.nextOffer(taxiId, wait).block(Duration.ofSeconds(5));
+    }
+
+    private void push(String taxiId, DispatchOfferDTO offer) throws Exception {
+        stringRedisTemplate.opsForList().leftPush("Inbox:" + taxiId, objectMapper.writeValueAsString(offer));
+    }
+
+    private static DispatchOfferDTO offer(String taxiBookingId, Date expiresTime) {
+        return new DispatchOfferDTO(taxiBookingId, "t-1", TaxiType.MINI, null, null, 0.1,
+                DispatchOfferStatus.OFFERED, new Date(), expiresTime);
+    }
+
+    private static TaxiBooking booking(String taxiBookingId) {
+        TaxiBooking taxiBooking = new TaxiBooking();
+        taxiBooking.setTaxiBookingId(taxiBookingId);
+        taxiBooking.setTaxiType(TaxiType.MINI);
+        taxiBooking.setStart(new Point(LONGITUDE, LATITUDE));
+        return taxiBooking;
+    }
+}
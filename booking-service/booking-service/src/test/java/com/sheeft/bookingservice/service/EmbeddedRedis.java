@@ -0,0 +1,62 @@
+package com.sheeft.bookingservice.service;
+
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * A Redis server on a free port for tests that run the service's commands and scripts against a real server.
+ */
+final class EmbeddedRedis {
+
+    private final RedisServer redisServer;
+    private final LettuceConnectionFactory connectionFactory;
+
+    private EmbeddedRedis(RedisServer redisServer, LettuceConnectionFactory connectionFactory) {
+        this.redisServer = redisServer;
+        this.connectionFactory = connectionFactory;
+    }
+
+    static EmbeddedRedis start() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        RedisServer redisServer = new RedisServer(port);
+        redisServer.start();
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+        return new EmbeddedRedis(redisServer, connectionFactory);
+    }
+
+    void stop() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    LettuceConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    /**
+     * @return StringRedisTemplate A template on an emptied database.
+     */
+    StringRedisTemplate flushedTemplate() {
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+        stringRedisTemplate.execute(connection -> {
+            connection.flushDb();
+            return null;
+        }, true);
+        return stringRedisTemplate;
+    }
+
+    ReactiveRedisTemplate<String, String> reactiveTemplate() {
+        return new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.string());
+    }
+}
@@ -0,0 +1,145 @@
+package com.sheeft.bookingservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sheeft.bookingservice.exception.TaxiUnavailableException;
+import com.saber.taxiconfig.config.RedisConfig;
+import com.springboot.taximodel.dto.request.TaxiChangedEventDTO;
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TaxiAvailabilityReplicaTest {
+
+    private static EmbeddedRedis redis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StringRedisTemplate stringRedisTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private TaxiAvailabilityReplica replica;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redis = EmbeddedRedis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = redis.flushedTemplate();
+        meterRegistry = new SimpleMeterRegistry();
+        // A small page so a resync reads several.
+        replica = new TaxiAvailabilityReplica(stringRedisTemplate, meterRegistry, 2);
+    }
+
+    @Test
+    void changeOnlyReplacesAnOlderState() throws IOException {
+        long now = System.currentTimeMillis();
+        change("t-1", TaxiStatus.OCCUPIED, now);
+        change("t-1", TaxiStatus.AVAILABLE, now - 1000);
+
+        assertThrows(TaxiUnavailableException.class, () -> replica.checkAcceptable("t-1", TaxiType.MINI));
+
+        change("t-1", TaxiStatus.AVAILABLE, now + 1000);
+        replica.checkAcceptable("t-1", TaxiType.MINI);
+        assertEquals(0, misses());
+    }
+
+    @Test
+    void resyncDropsRemovedTaxis() {
+        for (int i = 1; i <= 5; i++) {
+            taxi("t-" + i, "MINI", "AVAILABLE");
+        }
+        replica.resync();
+        stringRedisTemplate.opsForSet().remove("Taxi", "t-2");
+        stringRedisTemplate.delete("Taxi:t-2");
+        // A dangling index entry is dropped like a removed taxi.
+        stringRedisTemplate.delete("Taxi:t-3");
+
+        replica.resync();
+
+        for (String taxiId : new String[] {"t-1", "t-4", "t-5"}) {
+            replica.checkAcceptable(taxiId, TaxiType.MINI);
+        }
+        assertEquals(0, misses());
+        assertThrows(IllegalArgumentException.class, () -> replica.checkAcceptable("t-2", TaxiType.MINI));
+        assertThrows(IllegalArgumentException.class, () -> replica.checkAcceptable("t-3", TaxiType.MINI));
+        assertEquals(2, misses());
+    }
+
+    @Test
+    void resyncSkipsUnreadableTaxis() {
+        taxi("t-1", "MINI", "AVAILABLE");
+        taxi("t-2", "BUS", "AVAILABLE");
+        taxi("t-3", "VAN", "PARKED");
+        taxi("t-4", "VAN", "AVAILABLE");
+
+        replica.resync();
+
+        replica.checkAcceptable("t-1", TaxiType.MINI);
+        replica.checkAcceptable("t-4", TaxiType.VAN);
+        assertEquals(0, misses());
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> replica.checkAcceptable("t-2", TaxiType.MINI));
+        assertEquals("Taxi Id t-2 Not Found", e.getMessage());
+        assertEquals(1, misses());
+    }
+
+    @Test
+    void acceptedTaxiIsOccupiedAtOnce() {
+        taxi("t-1", "MINI", "AVAILABLE");
+        replica.resync();
+
+        replica.markOccupied("t-1");
+
+        // Redis still says available until taxi-service publishes the change.
+        assertThrows(TaxiUnavailableException.class, () -> replica.checkAcceptable("t-1", TaxiType.MINI));
+        assertEquals(0, misses());
+    }
+
+    @Test
+    void missingTaxiIsReadFromRedisOnce() {
+        replica.resync();
+        taxi("t-1", "MINI", "AVAILABLE");
+
+        replica.checkAcceptable("t-1", TaxiType.MINI);
+        replica.checkAcceptable("t-1", TaxiType.MINI);
+
+        assertEquals(1, misses());
+        assertThrows(IllegalArgumentException.class, () -> replica.checkAcceptable("t-1", TaxiType.VAN));
+        assertThrows(IllegalArgumentException.class, () -> replica.checkAcceptable("t-9", TaxiType.MINI));
+        assertEquals(2, misses());
+    }
+
+    private void taxi(String taxiId, String taxiType, String taxiStatus) {
+        stringRedisTemplate.opsForSet().add("Taxi", taxiId);
+        stringRedisTemplate.opsForHash().put("Taxi:" + taxiId, "taxiType", taxiType);
+        stringRedisTemplate.opsForHash().put("Taxi:" + taxiId, "taxiStatus", taxiStatus);
+    }
+
+    private void change(String taxiId, TaxiStatus taxiStatus, long time) throws IOException {
+        TaxiChangedEventDTO[] changes = {new TaxiChangedEventDTO(taxiId, TaxiType.MINI, taxiStatus, new Date(time))};
+        replica.onMessage(new DefaultMessage(RedisConfig.TAXI_CHANGE_CHANNEL.getBytes(StandardCharsets.UTF_8),
+                objectMapper.writeValueAsBytes(changes)), null);
+    }
+
+    private double misses() {
+        return meterRegistry.counter("booking.taxi-replica.misses").count();
+    }
+}
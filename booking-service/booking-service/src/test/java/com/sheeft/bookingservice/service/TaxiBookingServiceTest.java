@@ -0,0 +1,154 @@
+package com.sheeft.bookingservice.service;
+
+import com.sheeft.bookingservice.archive.BookingArchive;
+import com.sheeft.bookingservice.converter.TaxiBookingHashConverter;
+import com.sheeft.bookingservice.model.TaxiBooking;
+import com.sheeft.bookingservice.persistence.BookingWriteBehind;
+import com.sheeft.bookingservice.repo.TaxiBookingRepository;
+import com.saber.taxiconfig.config.RedisConfig;
+import com.saber.taxiconfig.hedge.HedgedRedisReader;
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.dto.request.TaxiBookedEventDTO;
+import com.springboot.taximodel.dto.request.TaxiBookingAcceptedEventDTO;
+import com.springboot.taximodel.dto.request.TaxiBookingCanceledEventDTO;
+import com.springboot.taximodel.enums.TaxiBookingStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TaxiBookingServiceTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private static EmbeddedRedis redis;
+
+    private StringRedisTemplate stringRedisTemplate;
+    private TaxiBookingHashConverter taxiBookingHashConverter;
+    private RedisMessageListenerContainer listenerContainer;
+    private TaxiBookingService service;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redis = EmbeddedRedis.start();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        redis.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = redis.flushedTemplate();
+        MappingRedisConverter redisConverter = new MappingRedisConverter(new RedisMappingContext());
+        redisConverter.afterPropertiesSet();
+        taxiBookingHashConverter = new TaxiBookingHashConverter(redisConverter);
+        // The repository reads the same hash the scripts write.
+        TaxiBookingRepository taxiBookingRepository = mock(TaxiBookingRepository.class);
+        when(taxiBookingRepository.findById(anyString())).thenAnswer(invocation -> Optional.ofNullable(
+                taxiBookingHashConverter.read(invocation.getArgument(0), stringRedisTemplate.<String, String>opsForHash()
+                        .entries(TaxiBooking.KEYSPACE + ":" + invocation.getArgument(0)))));
+        BookingWriteBehind bookingWriteBehind = mock(BookingWriteBehind.class);
+        BookingArchive bookingArchive = mock(BookingArchive.class);
+        HedgedRedisReader hedgedRedisReader = mock(HedgedRedisReader.class);
+        BookingTimeIndex bookingTimeIndex = new BookingTimeIndex(hedgedRedisReader, 15, 240, 60, 96);
+        service = new TaxiBookingService(stringRedisTemplate, taxiBookingRepository,
+                new BookingFieldStore(redis.reactiveTemplate(), taxiBookingHashConverter),
+                new BookingHistoryService(redis.reactiveTemplate(), stringRedisTemplate, taxiBookingHashConverter,
+                        bookingArchive, 100),
+                bookingArchive, taxiBookingHashConverter, bookingWriteBehind, hedgedRedisReader,
+                new DispatchService(stringRedisTemplate, redis.reactiveTemplate(), new SimpleMeterRegistry(),
+                        true, 5, 5, 30, 20, 25),
+                new BookingCreator(redis.reactiveTemplate(), stringRedisTemplate, taxiBookingHashConverter,
+                        bookingWriteBehind, bookingTimeIndex),
+                bookingTimeIndex, new TaxiAvailabilityReplica(stringRedisTemplate, new SimpleMeterRegistry(), 100));
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(redis.getConnectionFactory());
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+
+        taxi("t-1", 0.001);
+        taxi("t-2", 0.002);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        listenerContainer.destroy();
+    }
+
+    @Test
+    void acceptPublishesAndWithdrawsTheOtherOffers() throws Exception {
+        CompletableFuture<String> accepted = new CompletableFuture<>();
+        listenerContainer.addMessageListener((message, pattern) ->
+                        accepted.complete(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RedisConfig.ACCEPTED_EVENT_CHANNEL));
+        book("b-1");
+        assertEquals(1, stringRedisTemplate.opsForList().size("Inbox:t-2"));
+
+        TaxiBooking taxiBooking = service.accept("b-1", new TaxiBookingAcceptedEventDTO("b-1", "t-1", new Date()))
+                .block(TIMEOUT);
+
+        assertEquals("t-1", taxiBooking.getTaxiId());
+        assertEquals("t-1", stringRedisTemplate.opsForHash().get("TaxiBooking:b-1", "taxiId"));
+        assertTrue(accepted.get(5, TimeUnit.SECONDS).contains("\"taxiId\":\"t-1\""));
+        assertFalse(stringRedisTemplate.hasKey("Offer:b-1"));
+        assertEquals(0, stringRedisTemplate.opsForList().size("Inbox:t-2"));
+    }
+
+    @Test
+    void cancelWithdrawsTheOffersAndIndexesTheBooking() {
+        book("b-1");
+
+        TaxiBooking taxiBooking = service.cancel("b-1", new TaxiBookingCanceledEventDTO("b-1", "changed plans",
+                new Date())).block(TIMEOUT);
+
+        assertEquals(TaxiBookingStatus.CANCELLED, taxiBooking.getBookingStatus());
+        assertEquals("CANCELLED", stringRedisTemplate.opsForHash().get("TaxiBooking:b-1", "bookingStatus"));
+        assertNotNull(stringRedisTemplate.opsForHash().get("TaxiBooking:b-1", "closedTime"));
+        assertFalse(stringRedisTemplate.hasKey("Offer:b-1"));
+        assertEquals(0, stringRedisTemplate.opsForList().size("Inbox:t-1"));
+        assertNotNull(stringRedisTemplate.opsForZSet().score("TaxiBooking:customer:7", "b-1"));
+    }
+
+    private void book(String taxiBookingId) {
+        TaxiBookedEventDTO request = new TaxiBookedEventDTO();
+        request.setTaxiBookingId(taxiBookingId);
+        request.setTaxiType(TaxiType.MINI);
+        request.setCustomerId(7L);
+        request.setStart(new LocationDTO(52.52, 13.40, null));
+        service.book(request).block(TIMEOUT);
+    }
+
+    private void taxi(String taxiId, double eastOfPickup) {
+        stringRedisTemplate.opsForSet().add("Taxi", taxiId);
+        stringRedisTemplate.opsForHash().put("Taxi:" + taxiId, "taxiType", "MINI");
+        stringRedisTemplate.opsForHash().put("Taxi:" + taxiId, "taxiStatus", "AVAILABLE");
+        stringRedisTemplate.opsForGeo().add("MINI", new Point(13.40 + eastOfPickup, 52.52), taxiId);
+    }
+}
@@ -0,0 +1,40 @@
+#!/bin/sh
+# Builds an AppCDS class data archive for a service from a training run, and a launcher that starts the service
+# with it. Class data sharing cannot read classes nested in a Spring Boot fat jar, so the jar is unpacked into an
+# application jar and its libraries, and the service runs from those with a plain class path.
+#
+# Usage: scripts/appcds.sh <service fat jar> [output directory]
+# The training run starts the service with the prod profile and exits as soon as it is ready, so it needs the
+# same Redis the service normally connects to. Pass extra Spring arguments through TRAINING_ARGS.
+# Rebuild the archive with every release, the JVM ignores an archive that no longer matches the class path.
+set -e
+
+JAR=$(cd "$(dirname "$1")" && pwd)/$(basename "$1")
+OUT=${2:-$(dirname "$JAR")/appcds}
+
+rm -rf "$OUT"
+mkdir -p "$OUT/unpacked"
+(cd "$OUT/unpacked" && jar -xf "$JAR")
+MAIN_CLASS=$(sed -n 's/^Start-Class: *//p' "$OUT/unpacked/META-INF/MANIFEST.MF" | tr -d '\r')
+
+# The archive only holds classes from jars, never from directories.
+jar -cf "$OUT/application.jar" -C "$OUT/unpacked/BOOT-INF/classes" .
+mv "$OUT/unpacked/BOOT-INF/lib" "$OUT/lib"
+rm -rf "$OUT/unpacked"
+
+cd "$OUT"
+# Relative and in a fixed order, the class path at runtime has to match the one the archive was dumped with.
+CLASS_PATH=application.jar$(ls lib/*.jar | sort | sed 's/^/:/' | tr -d '\n')
+
+java -Xshare:off -XX:DumpLoadedClassList=classes.lst -cp "$CLASS_PATH" "$MAIN_CLASS" \
+    --spring.profiles.active=prod --taxi.startup.exit-when-ready=true $TRAINING_ARGS
+java -Xshare:dump -XX:SharedClassListFile=classes.lst -XX:SharedArchiveFile=app.jsa -cp "$CLASS_PATH"
+
+cat > start.sh <<LAUNCHER
+#!/bin/sh
+cd "\$(dirname "\$0")"
+exec java -XX:SharedArchiveFile=app.jsa -Xshare:auto \$JAVA_OPTS -cp "$CLASS_PATH" $MAIN_CLASS \\
+    --spring.profiles.active=prod "\$@"
+LAUNCHER
+chmod +x start.sh
+echo "AppCDS archive written to $OUT/app.jsa, start the service with $OUT/start.sh"
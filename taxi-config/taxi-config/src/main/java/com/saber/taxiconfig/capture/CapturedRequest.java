@@ -0,0 +1,70 @@
+package com.saber.taxiconfig.capture;
+
+/**
+ * One captured HTTP request together with how the service answered it at capture time.
+ */
+public final class CapturedRequest {
+
+    private final long arrivalMicros;
+    private final String clientId;
+    private final String method;
+    private final String uri;
+    private final String contentType;
+    private final byte[] body;
+    private final int status;
+    private final long durationMicros;
+
+    /**
+     * @param arrivalMicros When the request arrived, in microseconds since the epoch.
+     * @param clientId The client that sent the request, requests of one client are replayed in order.
+     * @param method The HTTP method.
+     * @param uri The path and query string.
+     * @param contentType The content type of the body, empty if there is none.
+     * @param body The request body, empty if there is none.
+     * @param status The response status the service answered with.
+     * @param durationMicros How long the service took to answer.
+     */
+    public CapturedRequest(long arrivalMicros, String clientId, String method, String uri, String contentType,
+                           byte[] body, int status, long durationMicros) {
+        this.arrivalMicros = arrivalMicros;
+        this.clientId = clientId;
+        this.method = method;
+        this.uri = uri;
+        this.contentType = contentType;
+        this.body = body;
+        this.status = status;
+        this.durationMicros = durationMicros;
+    }
+
+    public long getArrivalMicros() {
+        return arrivalMicros;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+}
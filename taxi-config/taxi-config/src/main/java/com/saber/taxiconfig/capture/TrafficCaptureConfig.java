@@ -0,0 +1,49 @@
+package com.saber.taxiconfig.capture;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Registers the traffic capture filter when taxi.capture.enabled is true.
+ * The filter only sees the paths listed in taxi.capture.url-patterns, the controllers of each service, less those in
+ * taxi.capture.exclude-paths such as the driver WebSocket handshake. The values of the query parameters listed in
+ * taxi.capture.redacted-params are replaced before they are written.
+ */
+@Configuration
+@ConditionalOnProperty(name = "taxi.capture.enabled", havingValue = "true")
+public class TrafficCaptureConfig {
+
+    @Bean
+    public TrafficLogWriter trafficLogWriter(MeterRegistry meterRegistry,
+                                             @Value("${taxi.capture.dir:capture}") String directory,
+                                             @Value("${taxi.capture.max-file-bytes:268435456}") long maxFileBytes,
+                                             @Value("${taxi.capture.queue-capacity:65536}") int queueCapacity,
+                                             @Value("${taxi.capture.flush-ms:1000}") long flushMillis)
+            throws IOException {
+        return new TrafficLogWriter(Paths.get(directory), maxFileBytes, queueCapacity, flushMillis, meterRegistry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<TrafficCaptureFilter> trafficCaptureFilter(
+            TrafficLogWriter trafficLogWriter,
+            @Value("${taxi.capture.url-patterns:/taxis/*,/taxibookings/*}") String[] urlPatterns,
+            @Value("${taxi.capture.client-header:X-Client-Id}") String clientHeader,
+            @Value("${taxi.capture.max-body-bytes:65536}") int maxBodyBytes,
+            @Value("${taxi.capture.exclude-paths:/taxis/connect}") String[] excludePaths,
+            @Value("${taxi.capture.redacted-params:token,access_token,password,secret}") String[] redactedParams) {
+        FilterRegistrationBean<TrafficCaptureFilter> registration = new FilterRegistrationBean<>(
+                new TrafficCaptureFilter(trafficLogWriter, clientHeader, maxBodyBytes, excludePaths, redactedParams));
+        registration.addUrlPatterns(urlPatterns);
+        // Outermost, so the captured duration covers every other filter.
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
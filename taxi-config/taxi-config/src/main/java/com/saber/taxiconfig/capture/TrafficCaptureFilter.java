@@ -0,0 +1,162 @@
+package com.saber.taxiconfig.capture;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Captures the requests passing through it, with their arrival time, client, body and outcome, for later replay
+ * with {@link TrafficReplay}. The body is copied as the controller reads it, so the request is not buffered twice.
+ * Controllers returning Mono or Flux complete asynchronously, their outcome is recorded once the response is done.
+ * WebSocket handshakes and the excluded paths are never captured, and the values of credential-like query
+ * parameters are redacted before a request is written, so capture files do not hold replayable secrets.
+ */
+public class TrafficCaptureFilter extends OncePerRequestFilter {
+
+    private static final String FORWARDED_FOR_HEADER = "X-Forwarded-For";
+
+    private static final String REDACTED = "REDACTED";
+
+    private final TrafficLogWriter writer;
+    private final String clientHeader;
+    private final int maxBodyBytes;
+    private final List<String> excludedPaths;
+    private final Set<String> redactedParameters;
+
+    /**
+     * @param writer The writer of the capture files.
+     * @param clientHeader The header identifying the client. Without it the forwarded or remote address is used.
+     * @param maxBodyBytes Requests with larger bodies, such as bulk uploads, are not captured.
+     * @param excludedPaths Paths not captured, together with everything below them.
+     * @param redactedParameters Query parameters whose values are replaced, matched ignoring case.
+     */
+    public TrafficCaptureFilter(TrafficLogWriter writer, String clientHeader, int maxBodyBytes,
+                                String[] excludedPaths, String[] redactedParameters) {
+        this.writer = writer;
+        this.clientHeader = clientHeader;
+        this.maxBodyBytes = maxBodyBytes;
+        this.excludedPaths = Arrays.stream(excludedPaths).map(String::trim).filter(p -> !p.isEmpty())
+                .collect(Collectors.toList());
+        this.redactedParameters = Arrays.stream(redactedParameters).map(p -> p.trim().toLowerCase(Locale.ROOT))
+                .filter(p -> !p.isEmpty()).collect(Collectors.toSet());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if ("websocket".equalsIgnoreCase(request.getHeader("Upgrade"))) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (String excluded : excludedPaths) {
+            if (path.equals(excluded) || path.startsWith(excluded.endsWith("/") ? excluded : excluded + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getContentLengthLong() > maxBodyBytes) {
+            writer.skip();
+            chain.doFilter(request, response);
+            return;
+        }
+        long arrivalMicros = writer.nowMicros();
+        long startNanos = System.nanoTime();
+        ContentCachingRequestWrapper cachingRequest = new ContentCachingRequestWrapper(request, maxBodyBytes);
+        try {
+            chain.doFilter(cachingRequest, response);
+        } catch (IOException | ServletException | RuntimeException e) {
+            record(cachingRequest, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, arrivalMicros, startNanos);
+            throw e;
+        }
+        if (!request.isAsyncStarted()) {
+            record(cachingRequest, response.getStatus(), arrivalMicros, startNanos);
+            return;
+        }
+        // A timed out or failed async request still completes, so completion alone records every outcome once.
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                record(cachingRequest, response.getStatus(), arrivalMicros, startNanos);
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+    }
+
+    private void record(ContentCachingRequestWrapper request, int status, long arrivalMicros, long startNanos) {
+        byte[] body = request.getContentAsByteArray();
+        // A body the controller never read, or read beyond the limit, cannot be replayed faithfully.
+        long contentLength = request.getContentLengthLong();
+        if (contentLength > 0 ? body.length != contentLength : body.length >= maxBodyBytes) {
+            writer.skip();
+            return;
+        }
+        String uri = request.getQueryString() == null ? request.getRequestURI()
+                : request.getRequestURI() + "?" + redact(request.getQueryString());
+        String contentType = request.getContentType() == null ? "" : request.getContentType();
+        writer.record(new CapturedRequest(arrivalMicros, clientOf(request), request.getMethod(), uri, contentType,
+                body, status, (System.nanoTime() - startNanos) / 1000));
+    }
+
+    /**
+     * Replaces the values of the redacted parameters in a raw query string, keeping the others for replay.
+     */
+    private String redact(String query) {
+        if (redactedParameters.isEmpty()) {
+            return query;
+        }
+        StringBuilder redacted = new StringBuilder(query.length());
+        for (String parameter : query.split("&", -1)) {
+            if (redacted.length() > 0) {
+                redacted.append('&');
+            }
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            if (redactedParameters.contains(name.toLowerCase(Locale.ROOT))) {
+                redacted.append(name).append('=').append(REDACTED);
+            } else {
+                redacted.append(parameter);
+            }
+        }
+        return redacted.toString();
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String client = request.getHeader(clientHeader);
+        if (client != null && !client.isEmpty()) {
+            return client;
+        }
+        String forwardedFor = request.getHeader(FORWARDED_FOR_HEADER);
+        if (forwardedFor != null && !forwardedFor.isEmpty()) {
+            int comma = forwardedFor.indexOf(',');
+            return (comma < 0 ? forwardedFor : forwardedFor.substring(0, comma)).trim();
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,284 @@
+package com.saber.taxiconfig.capture;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The format of captured traffic files: a gzip stream of a header (magic, version, start time) followed by records.
+ * A record stores its arrival time as a zigzag varint delta to the previous record, then the client, method, URI,
+ * content type and body as varint length prefixed bytes, and finally the captured status and duration as varints.
+ * Records are written when their response completes, so arrival times are not strictly increasing within a file.
+ */
+public final class TrafficLog {
+
+    static final int MAGIC = 0x54524346;
+    static final int VERSION = 1;
+    static final String FILE_PREFIX = "traffic-";
+    static final String FILE_SUFFIX = ".log.gz";
+
+    private TrafficLog() {
+    }
+
+    /**
+     * Opens capture files for reading in arrival order without loading them: directories of capture files are read
+     * file by file in name order, and the given paths are merged by arrival time.
+     * Records are written when their response completes, so each path is re-sorted through a buffer holding the
+     * records that arrived within reorderWindow of the latest completion read. A request that took longer than the
+     * window comes out late, right after the records that completed with it.
+     * A truncated tail, left by a service that did not shut down cleanly, ends its file without failing the read.
+     * @param paths The capture files or directories.
+     * @param reorderWindow How far back arrivals are re-sorted, at least the longest captured request duration.
+     * @return Reader The records in arrival order, to be closed once read.
+     * @throws IOException if a directory cannot be listed.
+     */
+    public static Reader open(List<Path> paths, Duration reorderWindow) throws IOException {
+        List<Source> sources = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            List<Path> files;
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> children = Files.list(path)) {
+                    files = children.filter(p -> p.getFileName().toString().startsWith(FILE_PREFIX))
+                            .filter(p -> p.getFileName().toString().endsWith(FILE_SUFFIX))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+            } else {
+                files = List.of(path);
+            }
+            sources.add(new Source(files, TimeUnit.NANOSECONDS.toMicros(reorderWindow.toNanos())));
+        }
+        return new Reader(sources);
+    }
+
+    /**
+     * Appends a record.
+     * @param out The stream of the current file.
+     * @param request The record.
+     * @param previousArrivalMicros The arrival time of the previous record, or the file start time.
+     * @return int The number of bytes written, before compression.
+     */
+    static int write(DataOutputStream out, CapturedRequest request, long previousArrivalMicros) throws IOException {
+        int before = out.size();
+        writeVarLong(out, zigzag(request.getArrivalMicros() - previousArrivalMicros));
+        writeString(out, request.getClientId());
+        writeString(out, request.getMethod());
+        writeString(out, request.getUri());
+        writeString(out, request.getContentType());
+        writeBytes(out, request.getBody());
+        writeVarLong(out, request.getStatus());
+        writeVarLong(out, request.getDurationMicros());
+        return out.size() - before;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        writeVarLong(out, value.length);
+        out.write(value);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Corrupt record length " + length);
+        }
+        byte[] value = new byte[(int) length];
+        in.readFully(value);
+        return value;
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * The records of some capture files in arrival order. Read failures surface as UncheckedIOException.
+     */
+    public static final class Reader implements Iterator<CapturedRequest>, Closeable {
+
+        // Sources by the arrival time of their next record.
+        private final PriorityQueue<Source> heads = new PriorityQueue<>(
+                (a, b) -> Long.compare(a.peek().getArrivalMicros(), b.peek().getArrivalMicros()));
+        private final List<Source> sources;
+
+        private Reader(List<Source> sources) {
+            this.sources = sources;
+            for (Source source : sources) {
+                if (source.peek() != null) {
+                    heads.add(source);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !heads.isEmpty();
+        }
+
+        @Override
+        public CapturedRequest next() {
+            Source source = heads.poll();
+            if (source == null) {
+                throw new NoSuchElementException();
+            }
+            CapturedRequest request = source.poll();
+            if (source.peek() != null) {
+                heads.add(source);
+            }
+            return request;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (Source source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * The records of one capture file or directory, re-sorted by arrival within the reorder window.
+     */
+    private static final class Source implements Closeable {
+
+        private final Iterator<Path> files;
+        private final long windowMicros;
+        // By arrival, then read order, so requests arriving in the same microsecond keep their file order.
+        private final PriorityQueue<Buffered> buffer = new PriorityQueue<>((a, b) ->
+                a.request.getArrivalMicros() != b.request.getArrivalMicros()
+                        ? Long.compare(a.request.getArrivalMicros(), b.request.getArrivalMicros())
+                        : Long.compare(a.sequence, b.sequence));
+        private DataInputStream in;
+        private long arrivalMicros;
+        private long sequence;
+        // The latest completion time read so far.
+        private long completedMicros;
+        private boolean exhausted;
+
+        private Source(List<Path> files, long windowMicros) {
+            this.files = files.iterator();
+            this.windowMicros = windowMicros;
+        }
+
+        CapturedRequest peek() {
+            fill();
+            return buffer.isEmpty() ? null : buffer.peek().request;
+        }
+
+        CapturedRequest poll() {
+            fill();
+            return buffer.isEmpty() ? null : buffer.poll().request;
+        }
+
+        /**
+         * Reads until the earliest buffered record can no longer be preceded by one still unread.
+         */
+        private void fill() {
+            while (!exhausted && (buffer.isEmpty()
+                    || buffer.peek().request.getArrivalMicros() > completedMicros - windowMicros)) {
+                try {
+                    CapturedRequest request = readNext();
+                    if (request == null) {
+                        exhausted = true;
+                    } else {
+                        buffer.add(new Buffered(request, sequence++));
+                        completedMicros = Math.max(completedMicros,
+                                request.getArrivalMicros() + request.getDurationMicros());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private CapturedRequest readNext() throws IOException {
+            while (true) {
+                if (in == null) {
+                    if (!files.hasNext()) {
+                        return null;
+                    }
+                    Path file = files.next();
+                    in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))));
+                    if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                        close();
+                        throw new IOException(file + " is not a traffic capture file");
+                    }
+                    arrivalMicros = in.readLong();
+                }
+                try {
+                    arrivalMicros += unzigzag(readVarLong(in));
+                    return new CapturedRequest(arrivalMicros, readString(in), readString(in), readString(in),
+                            readString(in), readBytes(in), (int) readVarLong(in), readVarLong(in));
+                } catch (EOFException e) {
+                    close();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+                in = null;
+            }
+        }
+    }
+
+    private static final class Buffered {
+        private final CapturedRequest request;
+        private final long sequence;
+
+        private Buffered(CapturedRequest request, long sequence) {
+            this.request = request;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.saber.taxiconfig.capture;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes captured requests to rotating gzip files in the background.
+ * Requests are handed over through a bounded queue and dropped, not waited for, when the disk cannot keep up,
+ * so capturing never slows down the requests being captured. Files are flushed every flush interval so that
+ * a capture can be copied while the service is still running.
+ */
+public class TrafficLogWriter implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrafficLogWriter.class);
+
+    private final Path directory;
+    private final long maxFileBytes;
+    private final long flushMillis;
+    private final BlockingQueue<CapturedRequest> queue;
+    private final Thread thread;
+    private final Counter recorded;
+    private final Counter dropped;
+    private final Counter skipped;
+    // Arrival times are taken from the monotonic clock, anchored to the wall clock once.
+    private final long baseEpochMicros = System.currentTimeMillis() * 1000;
+    private final long baseNanos = System.nanoTime();
+    private volatile boolean closed;
+    private DataOutputStream out;
+    private long fileBytes;
+    private long previousArrivalMicros;
+
+    /**
+     * @param directory The directory the capture files are written to.
+     * @param maxFileBytes The size, before compression, after which a new file is started.
+     * @param queueCapacity The number of requests that may wait to be written before new ones are dropped.
+     * @param flushMillis How often buffered records are flushed to disk.
+     * @param meterRegistry The registry of the capture metrics.
+     */
+    public TrafficLogWriter(Path directory, long maxFileBytes, int queueCapacity, long flushMillis,
+                            MeterRegistry meterRegistry) throws IOException {
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.flushMillis = flushMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        Files.createDirectories(directory);
+        this.recorded = meterRegistry.counter("traffic.capture.recorded");
+        this.dropped = meterRegistry.counter("traffic.capture.dropped");
+        this.skipped = meterRegistry.counter("traffic.capture.skipped");
+        Gauge.builder("traffic.capture.pending", queue, BlockingQueue::size).register(meterRegistry);
+        this.thread = new Thread(this::run, "traffic-capture");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return long The current time in microseconds since the epoch, from a monotonic clock.
+     */
+    public long nowMicros() {
+        return baseEpochMicros + (System.nanoTime() - baseNanos) / 1000;
+    }
+
+    /**
+     * Queues a request to be written, dropping it if the queue is full.
+     * @param request The captured request.
+     */
+    public void record(CapturedRequest request) {
+        if (closed || !queue.offer(request)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Counts a request that was deliberately not captured, such as one whose body is too large.
+     */
+    public void skip() {
+        skipped.increment();
+    }
+
+    /**
+     * Writes the queued requests and closes the current file.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (!closed || !queue.isEmpty()) {
+            try {
+                CapturedRequest request = queue.poll(flushMillis, TimeUnit.MILLISECONDS);
+                if (request == null) {
+                    if (out != null) {
+                        out.flush();
+                    }
+                    continue;
+                }
+                if (out == null || fileBytes >= maxFileBytes) {
+                    rotate();
+                }
+                fileBytes += TrafficLog.write(out, request, previousArrivalMicros);
+                previousArrivalMicros = request.getArrivalMicros();
+                recorded.increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                // Give up on the current file, the next request starts a new one.
+                LOGGER.error("Failed to write captured traffic", e);
+                closeFile();
+            }
+        }
+        closeFile();
+    }
+
+    private void rotate() throws IOException {
+        closeFile();
+        long startMicros = nowMicros();
+        Path file = directory.resolve(TrafficLog.FILE_PREFIX + startMicros + TrafficLog.FILE_SUFFIX);
+        out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(file), 8192, true)));
+        out.writeInt(TrafficLog.MAGIC);
+        out.writeByte(TrafficLog.VERSION);
+        out.writeLong(startMicros);
+        fileBytes = out.size();
+        previousArrivalMicros = startMicros;
+        LOGGER.info("Capturing traffic to {}", file);
+    }
+
+    private void closeFile() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            LOGGER.warn("Failed to close traffic capture file", e);
+        }
+        out = null;
+    }
+}
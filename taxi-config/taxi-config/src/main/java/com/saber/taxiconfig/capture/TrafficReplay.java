@@ -0,0 +1,230 @@
+package com.saber.taxiconfig.capture;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-issues captured traffic against a test deployment and reports latency percentiles and error rates,
+ * per endpoint and overall, next to the latencies seen when the traffic was captured.
+ * Requests are sent at their captured offsets divided by the speed factor. The requests of one client are sent one
+ * after the other, as the client did, so a slow deployment delays that client's later requests; how late requests
+ * went out is reported as the schedule lag. A speed of 0 sends every request as soon as its client is free.
+ * The capture is streamed as it is replayed, see {@link TrafficLog#open} for the reorder window.
+ * Run with: java -cp taxi-config.jar com.saber.taxiconfig.capture.TrafficReplay
+ * [--speed 1] [--timeout-seconds 30] [--client-header X-Client-Id] [--reorder-window-seconds 60]
+ * http://test-host:8080 capture/...
+ */
+public class TrafficReplay {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+    private final String baseUrl;
+    private final double speed;
+    private final Duration timeout;
+    private final String clientHeader;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final Stats total = new Stats();
+    private final Stats lag = new Stats();
+
+    TrafficReplay(String baseUrl, double speed, Duration timeout, String clientHeader) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.speed = speed;
+        this.timeout = timeout;
+        this.clientHeader = clientHeader;
+    }
+
+    public static void main(String[] args) throws Exception {
+        double speed = 1;
+        long timeoutSeconds = 30;
+        String clientHeader = "X-Client-Id";
+        long reorderWindowSeconds = 60;
+        List<String> positional = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--speed":
+                    speed = Double.parseDouble(args[++i]);
+                    break;
+                case "--timeout-seconds":
+                    timeoutSeconds = Long.parseLong(args[++i]);
+                    break;
+                case "--client-header":
+                    clientHeader = args[++i];
+                    break;
+                case "--reorder-window-seconds":
+                    reorderWindowSeconds = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    positional.add(args[i]);
+            }
+        }
+        if (positional.size() < 2 || speed < 0) {
+            System.err.println("Usage: TrafficReplay [--speed 1] [--timeout-seconds 30] [--client-header X-Client-Id]"
+                    + " [--reorder-window-seconds 60] <base url> <capture file or directory>...");
+            System.exit(2);
+        }
+        List<Path> paths = new ArrayList<>();
+        positional.subList(1, positional.size()).forEach(p -> paths.add(Paths.get(p)));
+        System.out.printf("Replaying %s against %s at %s%n", paths, positional.get(0),
+                speed == 0 ? "full speed" : speed + "x");
+        try (TrafficLog.Reader requests = TrafficLog.open(paths, Duration.ofSeconds(reorderWindowSeconds))) {
+            new TrafficReplay(positional.get(0), speed, Duration.ofSeconds(timeoutSeconds), clientHeader)
+                    .replay(requests);
+        }
+    }
+
+    void replay(Iterator<CapturedRequest> requests) {
+        if (!requests.hasNext()) {
+            return;
+        }
+        Map<String, CompletableFuture<Void>> clients = new HashMap<>();
+        long firstArrivalMicros = 0;
+        long startNanos = System.nanoTime();
+        int count = 0;
+        while (requests.hasNext()) {
+            CapturedRequest request = requests.next();
+            if (count == 0) {
+                firstArrivalMicros = request.getArrivalMicros();
+            }
+            long dueNanos = speed == 0 ? startNanos : startNanos
+                    + (long) ((request.getArrivalMicros() - firstArrivalMicros) * 1000 / speed);
+            long waitNanos;
+            while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+            // Chained behind the previous request of the same client, which keeps that client's order.
+            CompletableFuture<Void> previous = clients.getOrDefault(request.getClientId(),
+                    CompletableFuture.completedFuture(null));
+            clients.put(request.getClientId(), previous.thenCompose(v -> send(request, dueNanos)));
+            count++;
+        }
+        CompletableFuture.allOf(clients.values().toArray(new CompletableFuture[0])).join();
+        report(count, (System.nanoTime() - startNanos) / 1e9);
+    }
+
+    private CompletableFuture<Void> send(CapturedRequest request, long dueNanos) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + request.getUri()))
+                .timeout(timeout)
+                .header(clientHeader, request.getClientId())
+                .method(request.getMethod(), request.getBody().length == 0 ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(request.getBody()));
+        if (!request.getContentType().isEmpty()) {
+            builder.header("Content-Type", request.getContentType());
+        }
+        long sentNanos = System.nanoTime();
+        lag.add(Math.max(0, (sentNanos - dueNanos) / 1000));
+        Stats endpoint = stats.computeIfAbsent(endpointOf(request), e -> new Stats());
+        return httpClient.sendAsync(builder.build(), HttpResponse.BodyHandlers.discarding())
+                .handle((response, failure) -> {
+                    long micros = (System.nanoTime() - sentNanos) / 1000;
+                    int status = failure == null ? response.statusCode() : 0;
+                    endpoint.add(micros, status, request);
+                    total.add(micros, status, request);
+                    return null;
+                });
+    }
+
+    private void report(int count, double seconds) {
+        System.out.printf("%,d requests in %.1f s, %.0f requests/s%n", count, seconds, count / seconds);
+        System.out.printf("%-45s %9s %8s %8s %8s %8s %8s %7s %7s %10s%n", "endpoint", "requests", "p50 ms",
+                "p90 ms", "p99 ms", "p99.9 ms", "max ms", "4xx %", "error %", "was p99 ms");
+        new TreeMap<>(stats).forEach((endpoint, s) -> s.print(endpoint));
+        total.print("total");
+        long[] lagMicros = lag.latencies();
+        System.out.printf("schedule lag p50 %.1f ms, p99 %.1f ms, max %.1f ms%n", percentile(lagMicros, 0.5) / 1e3,
+                percentile(lagMicros, 0.99) / 1e3, lagMicros.length == 0 ? 0 : lagMicros[lagMicros.length - 1] / 1e3);
+    }
+
+    /**
+     * Groups requests by method and path, with the segments that look like IDs replaced, so that
+     * /taxis/42/status and /taxis/43/status are reported together.
+     */
+    static String endpointOf(CapturedRequest request) {
+        String path = request.getUri();
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        StringBuilder endpoint = new StringBuilder(request.getMethod()).append(' ');
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            endpoint.append('/').append(segment.chars().anyMatch(Character::isDigit) ? "{id}" : segment);
+        }
+        return endpoint.toString();
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.max(0, (int) Math.ceil(percentile * sorted.length) - 1)];
+    }
+
+    /**
+     * Latencies and outcomes of one endpoint, or of every request.
+     */
+    private static final class Stats {
+
+        private long[] latencies = new long[1024];
+        private long[] capturedLatencies = new long[1024];
+        private int count;
+        private int clientErrors;
+        private int errors;
+
+        synchronized void add(long micros) {
+            add(micros, 200, null);
+        }
+
+        synchronized void add(long micros, int status, CapturedRequest request) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+                capturedLatencies = Arrays.copyOf(capturedLatencies, count * 2);
+            }
+            latencies[count] = micros;
+            capturedLatencies[count] = request == null ? 0 : request.getDurationMicros();
+            count++;
+            if (status >= 400 && status < 500) {
+                clientErrors++;
+            } else if (status == 0 || status >= 500) {
+                // Timeouts and connection failures count as errors alongside 5xx.
+                errors++;
+            }
+        }
+
+        synchronized long[] latencies() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        synchronized void print(String name) {
+            long[] sorted = latencies();
+            long[] captured = Arrays.copyOf(capturedLatencies, count);
+            Arrays.sort(captured);
+            StringBuilder line = new StringBuilder(String.format("%-45s %9d", name, count));
+            for (double percentile : PERCENTILES) {
+                line.append(String.format(" %8.1f", percentile(sorted, percentile) / 1e3));
+            }
+            line.append(String.format(" %8.1f %7.2f %7.2f %10.1f", sorted.length == 0 ? 0 : sorted[count - 1] / 1e3,
+                    100.0 * clientErrors / count, 100.0 * errors / count, percentile(captured, 0.99) / 1e3));
+            System.out.println(line);
+        }
+    }
+}
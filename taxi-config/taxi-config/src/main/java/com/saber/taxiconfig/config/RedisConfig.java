@@ -7,6 +7,10 @@
 package com.saber.taxiconfig.config;
 
 
+import com.saber.taxiconfig.hedge.HedgedRedisReader;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
@@ -14,12 +18,26 @@ import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactor
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
 @Configuration
 public class RedisConfig {
 
     // Constant defining the Redis channel for accepted events.
     public static final String ACCEPTED_EVENT_CHANNEL = "accepted_event_channel";
 
+    // Constant defining the Redis channel for taxi zone entry and exit events.
+    public static final String GEOFENCE_EVENT_CHANNEL = "geofence_event_channel";
+
+    // Constant defining the Redis channel for booking offers pushed to, and withdrawn from, drivers.
+    public static final String DISPATCH_OFFER_CHANNEL = "dispatch_offer_channel";
+
+    // Constant defining the Redis channel for taxi registrations and status changes, as JSON arrays of changes.
+    public static final String TAXI_CHANGE_CHANNEL = "taxi_change_channel";
+
     @Bean
     public LettuceConnectionFactory redisConnectionFactory(){
 
@@ -31,4 +49,22 @@ public class RedisConfig {
             ReactiveRedisConnectionFactory connectionFactory){
         return new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.string());
     }
+
+    /**
+     * Hedged reader for geo searches, spreading them over the primary and the replicas listed in
+     * taxi.redis.read-replicas (host:port, comma separated). The replicas use the other spring.redis settings.
+     */
+    @Bean
+    public HedgedRedisReader hedgedRedisReader(ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+                                               MeterRegistry meterRegistry, RedisProperties redisProperties,
+                                               @Value("${taxi.redis.read-replicas:}") String readReplicas,
+                                               @Value("${taxi.redis.hedge.percentile:0.95}") double percentile,
+                                               @Value("${taxi.redis.hedge.window:1024}") int window,
+                                               @Value("${taxi.redis.hedge.min-delay-ms:2}") long minDelayMillis,
+                                               @Value("${taxi.redis.hedge.max-delay-ms:100}") long maxDelayMillis) {
+        List<String> replicas = Arrays.stream(readReplicas.split(","))
+                .map(String::trim).filter(r -> !r.isEmpty()).collect(Collectors.toList());
+        return new HedgedRedisReader(reactiveRedisTemplate, replicas, redisProperties, percentile, window,
+                Duration.ofMillis(minDelayMillis), Duration.ofMillis(maxDelayMillis), meterRegistry);
+    }
 }
@@ -0,0 +1,205 @@
+package com.saber.taxiconfig.hedge;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Runs read-only queries against the primary and its read replicas with hedging.
+ * A query goes to the node with the lowest recent latency; if it has not answered within that node's
+ * adaptive latency percentile, the same query is sent to the next best node, the first answer wins and the
+ * other request is cancelled. Without replicas, queries go to the primary only and are never hedged.
+ * A failed read counts as taking the maximum hedging delay, so a node that is down is ranked last rather than
+ * first for failing fast.
+ * Only use it for queries where a replica lagging a little behind is acceptable, such as geo searches.
+ * Replicas are connected with the database, credentials, SSL and timeouts of the spring.redis properties,
+ * only host and port come from the replica list.
+ */
+public class HedgedRedisReader implements DisposableBean {
+
+    // A node is tried at random this often, so a node that was slow once gets a chance to prove it recovered.
+    private static final double EXPLORE_RATE = 0.02;
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<LettuceConnectionFactory> replicaFactories = new ArrayList<>();
+    private final Duration minDelay;
+    private final Duration maxDelay;
+    private final Counter reads;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+
+    /**
+     * @param primary The template of the primary.
+     * @param replicas The replicas as host:port, may be empty.
+     * @param redisProperties The connection settings shared by the replicas.
+     * @param percentile The latency percentile after which a read is hedged, such as 0.95.
+     * @param window The number of recent reads the percentile is computed over.
+     * @param minDelay The lower bound of the hedging delay.
+     * @param maxDelay The upper bound of the hedging delay.
+     * @param meterRegistry The registry of the hedge metrics.
+     */
+    public HedgedRedisReader(ReactiveRedisTemplate<String, String> primary, List<String> replicas,
+                             RedisProperties redisProperties, double percentile, int window, Duration minDelay, Duration maxDelay,
+                             MeterRegistry meterRegistry) {
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        nodes.add(new Node("primary", primary, percentile, window, minDelay, maxDelay, meterRegistry));
+        for (String replica : replicas) {
+            String[] hostPort = replica.trim().split(":");
+            LettuceConnectionFactory factory = replicaFactory(hostPort[0],
+                    hostPort.length > 1 ? Integer.parseInt(hostPort[1]) : 6379, redisProperties);
+            factory.afterPropertiesSet();
+            replicaFactories.add(factory);
+            nodes.add(new Node(replica.trim(), new ReactiveRedisTemplate<>(factory, RedisSerializationContext.string()),
+                    percentile, window, minDelay, maxDelay, meterRegistry));
+        }
+        this.reads = meterRegistry.counter("redis.hedge.reads");
+        this.hedges = meterRegistry.counter("redis.hedge.hedged");
+        this.hedgeWins = meterRegistry.counter("redis.hedge.wins");
+    }
+
+    /**
+     * Runs a read-only query, hedged when replicas are configured.
+     * @param query The query to run against the chosen node.
+     * @return Flux<T> A reactive type that emits the results of whichever request answered first.
+     */
+    public <T> Flux<T> read(Function<ReactiveRedisTemplate<String, String>, Flux<T>> query) {
+        reads.increment();
+        if (nodes.size() == 1) {
+            return timed(nodes.get(0), query).flatMapIterable(r -> r);
+        }
+        Node[] ranked = rank();
+        Node first = ranked[0];
+        Node second = ranked[1];
+        long delayNanos = Math.max(minDelay.toNanos(),
+                Math.min(maxDelay.toNanos(), first.latency.percentileNanos()));
+
+        Mono<List<T>> primaryRead = timed(first, query);
+        Mono<List<T>> hedgedRead = Mono.delay(Duration.ofNanos(delayNanos))
+                .doOnNext(t -> hedges.increment())
+                .then(timed(second, query))
+                .doOnNext(r -> hedgeWins.increment());
+        // The first list wins and the other request is cancelled. An error only surfaces if both fail.
+        return Mono.firstWithValue(primaryRead, hedgedRead).flatMapIterable(r -> r);
+    }
+
+    @Override
+    public void destroy() {
+        replicaFactories.forEach(LettuceConnectionFactory::destroy);
+    }
+
+    private static LettuceConnectionFactory replicaFactory(String host, int port, RedisProperties redisProperties) {
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(host, port);
+        configuration.setDatabase(redisProperties.getDatabase());
+        configuration.setUsername(redisProperties.getUsername());
+        configuration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder client = LettuceClientConfiguration.builder();
+        if (redisProperties.isSsl()) {
+            client.useSsl();
+        }
+        if (redisProperties.getTimeout() != null) {
+            client.commandTimeout(redisProperties.getTimeout());
+        }
+        if (redisProperties.getClientName() != null) {
+            client.clientName(redisProperties.getClientName());
+        }
+        return new LettuceConnectionFactory(configuration, client.build());
+    }
+
+    /**
+     * Orders the nodes by recent mean latency, occasionally putting a random node first.
+     */
+    private Node[] rank() {
+        Node[] ranked = nodes.toArray(new Node[0]);
+        double[] means = new double[ranked.length];
+        for (int i = 0; i < ranked.length; i++) {
+            means[i] = ranked[i].latency.ewmaNanos();
+        }
+        // Few nodes, a selection of the best two is enough.
+        for (int i = 0; i < 2; i++) {
+            int best = i;
+            for (int j = i + 1; j < ranked.length; j++) {
+                if (means[j] < means[best]) {
+                    best = j;
+                }
+            }
+            swap(ranked, means, i, best);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < EXPLORE_RATE) {
+            swap(ranked, means, 0, random.nextInt(ranked.length));
+        }
+        return ranked;
+    }
+
+    private <T> Mono<List<T>> timed(Node node, Function<ReactiveRedisTemplate<String, String>, Flux<T>> query) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            // Recorded once: a failed read is also cancelled once the other request has answered.
+            return query.apply(node.template).collectList()
+                    .doFinally(signal -> {
+                        if (signal == SignalType.ON_ERROR) {
+                            node.recordFailure(System.nanoTime() - start);
+                        } else {
+                            node.record(System.nanoTime() - start);
+                        }
+                    });
+        });
+    }
+
+    private static void swap(Node[] nodes, double[] means, int i, int j) {
+        Node node = nodes[i];
+        nodes[i] = nodes[j];
+        nodes[j] = node;
+        double mean = means[i];
+        means[i] = means[j];
+        means[j] = mean;
+    }
+
+    private static final class Node {
+        private final ReactiveRedisTemplate<String, String> template;
+        private final NodeLatency latency;
+        private final long failureNanos;
+        private final Timer timer;
+
+        private Node(String name, ReactiveRedisTemplate<String, String> template, double percentile, int window,
+                     Duration initialLatency, Duration failureLatency, MeterRegistry meterRegistry) {
+            this.template = template;
+            this.latency = new NodeLatency(window, percentile, initialLatency.toNanos());
+            this.failureNanos = failureLatency.toNanos();
+            this.timer = meterRegistry.timer("redis.hedge.node.latency", "node", name);
+        }
+
+        private void record(long nanos) {
+            latency.record(nanos);
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        /**
+         * A node that is down fails within microseconds, which must not rank it as the fastest. Failures count as
+         * taking at least the longest hedging delay, so the node drops behind every healthy one.
+         */
+        private void recordFailure(long nanos) {
+            latency.record(Math.max(nanos, failureNanos));
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.saber.taxiconfig.hedge;
+
+import java.util.Arrays;
+
+/**
+ * Recent read latencies of one Redis node: an exponentially weighted mean used to rank nodes, and a
+ * percentile over a sliding window of samples used as the hedging delay.
+ */
+final class NodeLatency {
+
+    private static final double EWMA_WEIGHT = 0.1;
+
+    // The percentile is recomputed every this many samples rather than on every read.
+    private static final int RECOMPUTE_EVERY = 128;
+
+    private final long[] window;
+    private final double percentile;
+    private int next;
+    private int count;
+    private double ewmaNanos;
+    private volatile long percentileNanos;
+
+    NodeLatency(int windowSize, double percentile, long initialNanos) {
+        this.window = new long[windowSize];
+        this.percentile = percentile;
+        this.ewmaNanos = initialNanos;
+        this.percentileNanos = initialNanos;
+    }
+
+    /**
+     * Records a latency. Reads cancelled because the other request won are recorded with the time they had
+     * already taken, a lower bound that is enough to rank a slow node behind a fast one.
+     */
+    synchronized void record(long nanos) {
+        ewmaNanos += EWMA_WEIGHT * (nanos - ewmaNanos);
+        window[next] = nanos;
+        next = (next + 1) % window.length;
+        count++;
+        if (count % RECOMPUTE_EVERY == 0) {
+            long[] sorted = Arrays.copyOf(window, Math.min(count, window.length));
+            Arrays.sort(sorted);
+            percentileNanos = sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))];
+        }
+    }
+
+    synchronized double ewmaNanos() {
+        return ewmaNanos;
+    }
+
+    long percentileNanos() {
+        return percentileNanos;
+    }
+}
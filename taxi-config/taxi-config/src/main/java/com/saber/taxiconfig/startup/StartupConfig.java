@@ -0,0 +1,35 @@
+package com.saber.taxiconfig.startup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Startup support shared by the services: the startup timing report, and the beans that must stay eager when the
+ * prod profile turns on spring.main.lazy-initialization.
+ */
+@Configuration
+public class StartupConfig {
+
+    /**
+     * Keeps beans with @Scheduled methods eager, their schedules are only registered when the bean is created,
+     * so lazily they would not run until something else happened to need the bean.
+     */
+    @Bean
+    public static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null && !MethodIntrospector.selectMethods(beanType,
+                (MethodIntrospector.MetadataLookup<Scheduled>) method ->
+                        AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class)).isEmpty();
+    }
+
+    @Bean
+    public StartupReport startupReport(MeterRegistry meterRegistry,
+                                       @Value("${taxi.startup.exit-when-ready:false}") boolean exitWhenReady) {
+        return new StartupReport(meterRegistry, exitWhenReady);
+    }
+}
@@ -0,0 +1,124 @@
+package com.saber.taxiconfig.startup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.web.context.support.ServletRequestHandledEvent;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Logs how long each startup phase took once the application is ready, and how long after the JVM started the
+ * first request was served, so time-to-first-request can be compared across releases.
+ * Phases are the top level steps recorded by a {@link BufferingApplicationStartup}, which the services install in
+ * their main method, plus the time the JVM took to reach it. The same figures are published as the
+ * application.startup.phase and application.first-request.time gauges, next to the application.started.time and
+ * application.ready.time gauges Spring Boot already publishes.
+ * With taxi.startup.exit-when-ready the application exits once ready, which is how the AppCDS training run ends.
+ */
+public class StartupReport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupReport.class);
+
+    // Enough for every step of both services, a few thousand beans included.
+    public static final int BUFFER_CAPACITY = 10000;
+
+    private static final String JVM_PHASE = "jvm";
+    private static final String BEAN_INSTANTIATE_STEP = "spring.beans.instantiate";
+    private static final int SLOWEST_BEANS = 10;
+
+    private final MeterRegistry meterRegistry;
+    private final boolean exitWhenReady;
+    private final AtomicBoolean firstRequestServed = new AtomicBoolean();
+
+    public StartupReport(MeterRegistry meterRegistry, boolean exitWhenReady) {
+        this.meterRegistry = meterRegistry;
+        this.exitWhenReady = exitWhenReady;
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+        long readyMillis = System.currentTimeMillis() - jvmStartMillis;
+        ApplicationStartup applicationStartup = context.getApplicationStartup();
+        if (applicationStartup instanceof BufferingApplicationStartup) {
+            report(((BufferingApplicationStartup) applicationStartup).getBufferedTimeline(), jvmStartMillis,
+                    readyMillis);
+        } else {
+            LOGGER.info("Ready {} ms after JVM start, no startup steps were recorded", readyMillis);
+        }
+        if (exitWhenReady) {
+            LOGGER.info("Exiting as taxi.startup.exit-when-ready is set");
+            System.exit(SpringApplication.exit(context));
+        }
+    }
+
+    @EventListener
+    public void onRequestHandled(ServletRequestHandledEvent event) {
+        // Probes would otherwise count as the first request.
+        if (event.getRequestUrl().startsWith("/actuator") || !firstRequestServed.compareAndSet(false, true)) {
+            return;
+        }
+        long millis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        TimeGauge.builder("application.first-request.time", () -> millis, TimeUnit.MILLISECONDS)
+                .description("Time from JVM start until the first request was served")
+                .register(meterRegistry);
+        LOGGER.info("First request {} served {} ms after JVM start", event.getRequestUrl(), millis);
+    }
+
+    private void report(StartupTimeline timeline, long jvmStartMillis, long readyMillis) {
+        Map<String, Long> phases = new LinkedHashMap<>();
+        phases.put(JVM_PHASE, timeline.getStartTime().toEpochMilli() - jvmStartMillis);
+        List<StartupTimeline.TimelineEvent> beans = new ArrayList<>();
+        for (StartupTimeline.TimelineEvent event : timeline.getEvents()) {
+            StartupStep step = event.getStartupStep();
+            if (step.getParentId() == null) {
+                phases.merge(step.getName(), event.getDuration().toMillis(), Long::sum);
+            } else if (BEAN_INSTANTIATE_STEP.equals(step.getName())) {
+                beans.add(event);
+            }
+        }
+
+        StringBuilder report = new StringBuilder("Ready ").append(readyMillis).append(" ms after JVM start");
+        phases.forEach((phase, millis) -> {
+            report.append("\n  ").append(phase).append(": ").append(millis).append(" ms");
+            TimeGauge.builder("application.startup.phase", () -> millis, TimeUnit.MILLISECONDS)
+                    .tag("phase", phase)
+                    .description("Time spent in a startup phase")
+                    .register(meterRegistry);
+        });
+        // Inclusive of the dependencies each bean created, which is where the time of a slow chain shows up.
+        beans.sort(Comparator.comparing(StartupTimeline.TimelineEvent::getDuration, Comparator.reverseOrder()));
+        report.append("\n  slowest beans:");
+        beans.stream().limit(SLOWEST_BEANS).forEach(bean -> report.append("\n    ")
+                .append(beanName(bean.getStartupStep())).append(": ")
+                .append(bean.getDuration().toMillis()).append(" ms"));
+        LOGGER.info(report.toString());
+    }
+
+    private static String beanName(StartupStep step) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if ("beanName".equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return "?";
+    }
+}
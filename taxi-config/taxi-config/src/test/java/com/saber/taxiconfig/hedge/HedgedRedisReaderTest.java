@@ -0,0 +1,100 @@
+package com.saber.taxiconfig.hedge;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class HedgedRedisReaderTest {
+
+    private static final Duration MIN_DELAY = Duration.ofMillis(2);
+    private static final Duration MAX_DELAY = Duration.ofMillis(50);
+
+    @SuppressWarnings("unchecked")
+    private final ReactiveRedisTemplate<String, String> primary = mock(ReactiveRedisTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // The replica is never connected to, the queries below only look at which template they were given.
+    private final HedgedRedisReader reader = new HedgedRedisReader(primary, List.of("localhost:6399"),
+            new RedisProperties(), 0.95, 1024, MIN_DELAY, MAX_DELAY, meterRegistry);
+
+    @AfterEach
+    void tearDown() {
+        reader.destroy();
+    }
+
+    @Test
+    void withoutReplicasReadsAreNeverHedged() {
+        HedgedRedisReader primaryOnly = new HedgedRedisReader(primary, List.of(), new RedisProperties(), 0.95, 1024,
+                MIN_DELAY, MAX_DELAY, meterRegistry);
+        Function<ReactiveRedisTemplate<String, String>, Flux<String>> slow =
+                t -> Mono.delay(Duration.ofMillis(20)).thenMany(Flux.just("primary"));
+
+        assertEquals(List.of("primary"), primaryOnly.read(slow).collectList().block());
+        assertEquals(0, meterRegistry.counter("redis.hedge.hedged").count());
+    }
+
+    @Test
+    void fasterNodeIsReadFirst() {
+        Function<ReactiveRedisTemplate<String, String>, Flux<String>> query = t -> t == primary
+                ? Mono.delay(Duration.ofMillis(20)).thenMany(Flux.just("primary")) : Flux.just("replica");
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(List.of("replica"), reader.read(query).collectList().block());
+        }
+        // Only the first read, and the occasional exploring one, start on the slow primary.
+        assertTrue(meterRegistry.counter("redis.hedge.hedged").count() < 20);
+    }
+
+    @Test
+    void nodeThatFailsFastIsNotRankedFirst() {
+        AtomicBoolean primaryDown = new AtomicBoolean();
+        RedisConnectionFailureException down = new RedisConnectionFailureException("primary is down");
+        // A healthy node takes a network round trip, a node that is down fails without one.
+        Function<ReactiveRedisTemplate<String, String>, Flux<String>> query = t -> t != primary
+                ? Mono.delay(Duration.ofMillis(1)).thenMany(Flux.just("replica"))
+                : primaryDown.get() ? Flux.error(down)
+                : Flux.just("primary");
+        // Run the failure path once on another reader, so class loading does not make the first failure below slow.
+        primaryDown.set(true);
+        HedgedRedisReader warmUp = new HedgedRedisReader(primary, List.of("localhost:6399"), new RedisProperties(),
+                0.95, 1024, MIN_DELAY, MAX_DELAY, new SimpleMeterRegistry());
+        for (int i = 0; i < 20; i++) {
+            warmUp.read(query).collectList().block();
+        }
+        warmUp.destroy();
+        primaryDown.set(false);
+        for (int i = 0; i < 20; i++) {
+            reader.read(query).collectList().block();
+        }
+
+        primaryDown.set(true);
+        double hedgedBefore = meterRegistry.counter("redis.hedge.hedged").count();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(List.of("replica"), reader.read(query).collectList().block());
+        }
+        // Recording the failures as fast reads would keep every read starting on the primary and hedge all 100.
+        assertTrue(meterRegistry.counter("redis.hedge.hedged").count() - hedgedBefore < 20);
+    }
+
+    @Test
+    void failureOfBothNodesSurfaces() {
+        Function<ReactiveRedisTemplate<String, String>, Flux<String>> query =
+                t -> Flux.error(new RedisConnectionFailureException("down"));
+
+        assertTrue(reader.read(query).collectList()
+                .onErrorReturn(List.of("failed")).block().contains("failed"));
+    }
+}
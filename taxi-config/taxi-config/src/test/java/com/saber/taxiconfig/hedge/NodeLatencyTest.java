@@ -0,0 +1,53 @@
+package com.saber.taxiconfig.hedge;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class NodeLatencyTest {
+
+    @Test
+    void startsFromTheInitialLatency() {
+        NodeLatency latency = new NodeLatency(128, 0.95, 2_000_000);
+
+        assertEquals(2_000_000, latency.ewmaNanos());
+        assertEquals(2_000_000, latency.percentileNanos());
+    }
+
+    @Test
+    void meanMovesATenthOfTheWayToEachSample() {
+        NodeLatency latency = new NodeLatency(128, 0.95, 0);
+
+        latency.record(1000);
+        assertEquals(100, latency.ewmaNanos(), 1e-9);
+        latency.record(1000);
+        assertEquals(190, latency.ewmaNanos(), 1e-9);
+    }
+
+    @Test
+    void percentileIsRecomputedEvery128Samples() {
+        NodeLatency latency = new NodeLatency(1024, 0.95, 7);
+        for (int i = 1; i < 128; i++) {
+            latency.record(i);
+        }
+        assertEquals(7, latency.percentileNanos());
+
+        latency.record(128);
+        // floor(0.95 * 128) = 121, the 122nd smallest of 1..128.
+        assertEquals(122, latency.percentileNanos());
+    }
+
+    @Test
+    void percentileOnlyCoversTheWindow() {
+        NodeLatency latency = new NodeLatency(128, 0.5, 0);
+        for (int i = 0; i < 128; i++) {
+            latency.record(1_000_000);
+        }
+        assertEquals(1_000_000, latency.percentileNanos());
+
+        for (int i = 0; i < 128; i++) {
+            latency.record(10);
+        }
+        assertEquals(10, latency.percentileNanos());
+    }
+}
@@ -0,0 +1,36 @@
+package com.springboot.taximodel.dto.request;
+
+import com.springboot.taximodel.enums.DispatchOfferStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DispatchOfferDTO {
+
+    private String taxiBookingId;
+
+    // The driver the offer was pushed to.
+    private String taxiId;
+
+    private TaxiType taxiType;
+
+    private LocationDTO start;
+
+    private LocationDTO end;
+
+    // Straight-line distance from the taxi to the pickup when the offer was made.
+    private Double distanceKm;
+
+    private DispatchOfferStatus status;
+
+    private Date offeredTime;
+
+    // Offers left unanswered past this time are discarded.
+    private Date expiresTime;
+}
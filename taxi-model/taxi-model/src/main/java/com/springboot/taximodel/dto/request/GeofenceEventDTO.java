@@ -0,0 +1,25 @@
+package com.springboot.taximodel.dto.request;
+
+import com.springboot.taximodel.enums.GeofenceTransition;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GeofenceEventDTO {
+
+    private String taxiId;
+
+    private String zoneId;
+
+    // The kind of zone, for example AIRPORT, STATION or RESTRICTED, as given in the zones file.
+    private String category;
+
+    private GeofenceTransition transition;
+
+    private Date time = new Date();
+}
@@ -23,4 +23,7 @@ public class TaxiBookedEventDTO {
     private Long customerId;
 
     private TaxiType taxiType;
+
+    // The scheduled pickup time of a ride booked in advance, null for a ride wanted now.
+    private Date startTime;
 }
@@ -0,0 +1,24 @@
+package com.springboot.taximodel.dto.request;
+
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxiChangedEventDTO {
+
+    private String taxiId;
+
+    private TaxiType taxiType;
+
+    private TaxiStatus taxiStatus;
+
+    // When the change was written to Redis, replicas use it to drop stale changes and to measure their lag.
+    private Date time = new Date();
+}
@@ -15,4 +15,7 @@ public class TaxiRegisterEventDTO {
     private String taxiId = UUID.randomUUID().toString();
 
     private TaxiType taxiType;
+
+    // Optional initial position, the taxi is added to the geo set and heatmap with it right away.
+    private LocationDTO location;
 }
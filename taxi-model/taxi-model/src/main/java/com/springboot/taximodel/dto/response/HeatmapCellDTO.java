@@ -0,0 +1,21 @@
+package com.springboot.taximodel.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HeatmapCellDTO {
+
+    private Long cell;
+
+    private Double latitude;
+
+    private Double longitude;
+
+    private Long availableTaxis;
+
+    private Long openBookings;
+}
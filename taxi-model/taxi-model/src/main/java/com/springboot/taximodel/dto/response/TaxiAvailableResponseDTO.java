@@ -10,4 +10,7 @@ import lombok.NoArgsConstructor;
 public class TaxiAvailableResponseDTO {
 
     private String taxiId;
+
+    // Estimated road travel time to the pickup, only set when ranking by ETA.
+    private Double etaSeconds;
 }
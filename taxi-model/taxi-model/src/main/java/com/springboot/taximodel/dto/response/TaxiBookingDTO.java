@@ -0,0 +1,42 @@
+package com.springboot.taximodel.dto.response;
+
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.enums.TaxiBookingStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxiBookingDTO {
+
+    private String taxiBookingId;
+
+    private LocationDTO start;
+
+    private Date startTime;
+
+    private LocationDTO end;
+
+    private Date endTime;
+
+    private Date bookedTime;
+
+    private Date acceptedTime;
+
+    private Long customerId;
+
+    private TaxiBookingStatus bookingStatus;
+
+    private String reasonToCancel;
+
+    private Date cancelTime;
+
+    private String taxiId;
+
+    private TaxiType taxiType;
+}
@@ -0,0 +1,21 @@
+package com.springboot.taximodel.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxiBookingHistoryResponseDTO {
+
+    private Long customerId;
+
+    // Most recent first.
+    private List<TaxiBookingDTO> bookings;
+
+    // Pass as "before" to fetch the next page, null on the last page. Opaque, currently "<score>:<last booking ID>".
+    private String nextCursor;
+}
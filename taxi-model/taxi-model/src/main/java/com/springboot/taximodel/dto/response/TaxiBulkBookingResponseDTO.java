@@ -0,0 +1,23 @@
+package com.springboot.taximodel.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxiBulkBookingResponseDTO {
+
+    private Long received;
+
+    private Long booked;
+
+    private Long rejected;
+
+    private Long elapsedMillis;
+
+    private List<TaxiBulkBookingResultDTO> results;
+}
@@ -0,0 +1,17 @@
+package com.springboot.taximodel.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxiBulkRegisterErrorDTO {
+
+    private Long row;
+
+    private String taxiId;
+
+    private String message;
+}
@@ -0,0 +1,25 @@
+package com.springboot.taximodel.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxiBulkRegisterResponseDTO {
+
+    private Long received;
+
+    private Long registered;
+
+    private Long rejected;
+
+    private Long elapsedMillis;
+
+    private Double taxisPerSecond;
+
+    private List<TaxiBulkRegisterErrorDTO> errors;
+}
@@ -0,0 +1,17 @@
+package com.springboot.taximodel.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxiBulkStatusResponseDTO {
+
+    private List<TaxiStatusDTO> updated;
+
+    private List<String> notFound;
+}
@@ -10,4 +10,7 @@ import lombok.NoArgsConstructor;
 public class TaxiLocationUpdatedEventResponseDTO {
 
     private String taxiId;
+
+    // Recommended seconds until the next location update, based on the taxi's status, speed and local demand.
+    private Integer reportIntervalSeconds;
 }
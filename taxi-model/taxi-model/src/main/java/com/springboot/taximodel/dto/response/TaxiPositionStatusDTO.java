@@ -0,0 +1,23 @@
+package com.springboot.taximodel.dto.response;
+
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxiPositionStatusDTO {
+
+    private String taxiId;
+
+    private TaxiType taxiType;
+
+    private TaxiStatus status;
+
+    // Last reported position, null if the taxi has not reported one yet.
+    private LocationDTO location;
+}
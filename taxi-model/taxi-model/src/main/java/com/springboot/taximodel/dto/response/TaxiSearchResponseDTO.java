@@ -0,0 +1,19 @@
+package com.springboot.taximodel.dto.response;
+
+import com.springboot.taximodel.enums.TaxiType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TaxiSearchResponseDTO {
+
+    private String taxiId;
+
+    private TaxiType taxiType;
+
+    // Straight-line distance to the search location in kilometers.
+    private Double distance;
+}
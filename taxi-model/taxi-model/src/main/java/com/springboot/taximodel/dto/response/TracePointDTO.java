@@ -0,0 +1,19 @@
+package com.springboot.taximodel.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TracePointDTO {
+
+    private Double latitude;
+
+    private Double longitude;
+
+    private Date time;
+}
@@ -0,0 +1,19 @@
+package com.springboot.taximodel.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TripTraceResponseDTO {
+
+    private String taxiBookingId;
+
+    private Double distanceMeters;
+
+    private List<TracePointDTO> points;
+}
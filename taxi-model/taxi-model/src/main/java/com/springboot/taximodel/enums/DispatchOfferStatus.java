@@ -0,0 +1,5 @@
+package com.springboot.taximodel.enums;
+
+public enum DispatchOfferStatus {
+    OFFERED, WITHDRAWN;
+}
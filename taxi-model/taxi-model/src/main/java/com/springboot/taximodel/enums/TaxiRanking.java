@@ -0,0 +1,5 @@
+package com.springboot.taximodel.enums;
+
+public enum TaxiRanking {
+    DISTANCE, ETA;
+}
@@ -0,0 +1,213 @@
+package com.springboot.taximodel.util;
+
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Binary columnar encoding of a snapshot of the whole fleet, as served by the taxi service snapshot endpoint.
+ * A snapshot is a header (magic, version, snapshot time in epoch millis) followed by blocks of taxis of one type.
+ * A block starts with its taxi count as a varint (0 ends the snapshot) and the TaxiType ordinal, followed by four
+ * columns: taxi IDs, statuses, latitudes and longitudes. Canonical UUID taxi IDs are packed into 16 bytes behind a
+ * 0 marker, other IDs are UTF-8 prefixed by their length + 1. A status is its TaxiStatus ordinal + 1, 0 if unknown.
+ * Coordinates are in microdegrees, each a zig-zag varint delta to the previous taxi of the block, which stays
+ * small because writers sort a block by geohash. The service gzips the whole stream.
+ */
+public final class FleetSnapshotCodec {
+
+    public static final int MAGIC = 0x54585331;
+    public static final int VERSION = 1;
+
+    private static final double SCALE = 1e6;
+
+    private static final TaxiType[] TAXI_TYPES = TaxiType.values();
+    private static final TaxiStatus[] TAXI_STATUSES = TaxiStatus.values();
+
+    private FleetSnapshotCodec() {
+    }
+
+    /**
+     * Receives the taxis of a snapshot as they are decoded.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void taxi(String taxiId, TaxiType taxiType, TaxiStatus taxiStatus, double latitude, double longitude);
+    }
+
+    /**
+     * Decodes a snapshot, one block at a time.
+     * @param in The uncompressed snapshot.
+     * @param visitor Receives every taxi of the snapshot.
+     * @return long The snapshot time in epoch millis.
+     * @throws IOException if the stream is not a complete snapshot.
+     */
+    public static long read(InputStream in, Visitor visitor) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC || data.readUnsignedByte() != VERSION) {
+            throw new IOException("Not a fleet snapshot");
+        }
+        long epochMillis = data.readLong();
+        int count;
+        while ((count = (int) readVarLong(data)) > 0) {
+            TaxiType taxiType = TAXI_TYPES[data.readUnsignedByte()];
+            String[] taxiIds = new String[count];
+            for (int i = 0; i < count; i++) {
+                taxiIds[i] = readTaxiId(data);
+            }
+            TaxiStatus[] statuses = new TaxiStatus[count];
+            for (int i = 0; i < count; i++) {
+                int status = data.readUnsignedByte();
+                statuses[i] = status == 0 ? null : TAXI_STATUSES[status - 1];
+            }
+            long[] latitudes = readCoordinates(data, count);
+            long[] longitudes = readCoordinates(data, count);
+            for (int i = 0; i < count; i++) {
+                visitor.taxi(taxiIds[i], taxiType, statuses[i], latitudes[i] / SCALE, longitudes[i] / SCALE);
+            }
+        }
+        return epochMillis;
+    }
+
+    private static String readTaxiId(DataInputStream data) throws IOException {
+        int length = (int) readVarLong(data);
+        if (length == 0) {
+            return new UUID(data.readLong(), data.readLong()).toString();
+        }
+        byte[] id = new byte[length - 1];
+        data.readFully(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private static long[] readCoordinates(DataInputStream data, int count) throws IOException {
+        long[] coordinates = new long[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long v = readVarLong(data);
+            previous += (v >>> 1) ^ -(v & 1);
+            coordinates[i] = previous;
+        }
+        return coordinates;
+    }
+
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new EOFException("Corrupt varint");
+    }
+
+    /**
+     * Incremental encoder of a snapshot. Not thread safe.
+     */
+    public static final class Writer {
+
+        private final DataOutputStream out;
+
+        /**
+         * Writes the snapshot header.
+         * @param out The stream to write to, buffered by the caller.
+         * @param epochMillis The snapshot time.
+         */
+        public Writer(OutputStream out, long epochMillis) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.out.writeInt(MAGIC);
+            this.out.writeByte(VERSION);
+            this.out.writeLong(epochMillis);
+        }
+
+        /**
+         * Writes a block of taxis of one type, best sorted by geohash so the coordinate deltas stay small.
+         * @param taxiType The type of every taxi of the block.
+         * @param taxiIds The taxi IDs.
+         * @param statuses The taxi statuses, null elements for unknown statuses.
+         * @param latitudes The latitudes in degrees.
+         * @param longitudes The longitudes in degrees.
+         * @param count The number of taxis of the block, taken from the start of the arrays.
+         */
+        public void writeBlock(TaxiType taxiType, String[] taxiIds, TaxiStatus[] statuses, double[] latitudes,
+                               double[] longitudes, int count) throws IOException {
+            if (count == 0) {
+                return;
+            }
+            writeVarLong(count);
+            out.writeByte(taxiType.ordinal());
+            for (int i = 0; i < count; i++) {
+                writeTaxiId(taxiIds[i]);
+            }
+            for (int i = 0; i < count; i++) {
+                out.writeByte(statuses[i] == null ? 0 : statuses[i].ordinal() + 1);
+            }
+            writeCoordinates(latitudes, count);
+            writeCoordinates(longitudes, count);
+        }
+
+        /**
+         * Ends the snapshot and flushes it.
+         */
+        public void finish() throws IOException {
+            writeVarLong(0);
+            out.flush();
+        }
+
+        private void writeTaxiId(String taxiId) throws IOException {
+            if (isCanonicalUuid(taxiId)) {
+                UUID uuid = UUID.fromString(taxiId);
+                writeVarLong(0);
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+                return;
+            }
+            byte[] id = taxiId.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(id.length + 1L);
+            out.write(id);
+        }
+
+        private void writeCoordinates(double[] coordinates, int count) throws IOException {
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                long value = Math.round(coordinates[i] * SCALE);
+                long delta = value - previous;
+                writeVarLong((delta << 1) ^ (delta >> 63));
+                previous = value;
+            }
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        /**
+         * Only lower case, hyphenated UUIDs are packed, as they are the only ones that decode back unchanged.
+         */
+        private static boolean isCanonicalUuid(String id) {
+            if (id.length() != 36) {
+                return false;
+            }
+            for (int i = 0; i < 36; i++) {
+                char c = id.charAt(i);
+                boolean hyphen = i == 8 || i == 13 || i == 18 || i == 23;
+                if (hyphen ? c != '-' : !((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.springboot.taximodel.util;
+
+/**
+ * Geohash cells compatible with the scores Redis stores in geo sets.
+ * Redis encodes a position as a 52-bit interleaved geohash (26 bits per axis, latitude on the even bits), so a cell
+ * at a given precision is simply the top bits of that score. Cells can therefore be derived both from coordinates
+ * and directly from ZSCAN scores, without a GEOPOS per member.
+ */
+public final class GeoCell {
+
+    public static final double MIN_LATITUDE = -85.05112878;
+    public static final double MAX_LATITUDE = 85.05112878;
+    public static final double MIN_LONGITUDE = -180;
+    public static final double MAX_LONGITUDE = 180;
+
+    public static final int HASH_BITS_PER_AXIS = 26;
+
+    // 15 bits per axis gives cells of about 1.2 km by 0.6 km at the equator.
+    public static final int DEFAULT_BITS_PER_AXIS = 15;
+
+    private GeoCell() {
+    }
+
+    /**
+     * Computes the 52-bit geohash Redis uses as the score of a geo set member.
+     * @param longitude The longitude in degrees.
+     * @param latitude The latitude in degrees.
+     * @return long The interleaved geohash.
+     */
+    public static long hash(double longitude, double latitude) {
+        return interleave(axisOffset(latitude, MIN_LATITUDE, MAX_LATITUDE, HASH_BITS_PER_AXIS),
+                axisOffset(longitude, MIN_LONGITUDE, MAX_LONGITUDE, HASH_BITS_PER_AXIS));
+    }
+
+    /**
+     * Computes the cell of a position.
+     * @param longitude The longitude in degrees.
+     * @param latitude The latitude in degrees.
+     * @param bitsPerAxis The precision of the cell.
+     * @return long The cell ID.
+     */
+    public static long cellOf(double longitude, double latitude, int bitsPerAxis) {
+        return cellOfHash(hash(longitude, latitude), bitsPerAxis);
+    }
+
+    /**
+     * Computes the cell of a geo set score.
+     * @param hash The 52-bit geohash, as returned by ZSCAN on a geo set.
+     * @param bitsPerAxis The precision of the cell.
+     * @return long The cell ID.
+     */
+    public static long cellOfHash(long hash, int bitsPerAxis) {
+        return hash >>> (2 * (HASH_BITS_PER_AXIS - bitsPerAxis));
+    }
+
+    /**
+     * Enumerates the cells covering a bounding box, in O(number of cells).
+     * @param minLongitude The west edge of the box.
+     * @param minLatitude The south edge of the box.
+     * @param maxLongitude The east edge of the box.
+     * @param maxLatitude The north edge of the box.
+     * @param bitsPerAxis The precision of the cells.
+     * @param maxCells The maximum number of cells the caller accepts.
+     * @return long[] The cell IDs.
+     * @throws IllegalArgumentException if the box covers more than maxCells cells.
+     */
+    public static long[] cellsIn(double minLongitude, double minLatitude, double maxLongitude, double maxLatitude,
+                                 int bitsPerAxis, int maxCells) {
+        long minLat = axisOffset(minLatitude, MIN_LATITUDE, MAX_LATITUDE, bitsPerAxis);
+        long maxLat = axisOffset(maxLatitude, MIN_LATITUDE, MAX_LATITUDE, bitsPerAxis);
+        long minLon = axisOffset(minLongitude, MIN_LONGITUDE, MAX_LONGITUDE, bitsPerAxis);
+        long maxLon = axisOffset(maxLongitude, MIN_LONGITUDE, MAX_LONGITUDE, bitsPerAxis);
+        long count = (maxLat - minLat + 1) * (maxLon - minLon + 1);
+        if (maxLat < minLat || maxLon < minLon || count > maxCells) {
+            throw new IllegalArgumentException("Bounding box covers " + count + " cells, at most " + maxCells
+                    + " are allowed");
+        }
+        long[] cells = new long[(int) count];
+        int i = 0;
+        for (long lat = minLat; lat <= maxLat; lat++) {
+            for (long lon = minLon; lon <= maxLon; lon++) {
+                cells[i++] = interleave(lat, lon);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Decodes the centre of a cell.
+     * @param cell The cell ID.
+     * @param bitsPerAxis The precision of the cell.
+     * @return double[] The longitude and latitude of the cell centre.
+     */
+    public static double[] centre(long cell, int bitsPerAxis) {
+        double cells = 1L << bitsPerAxis;
+        double latitude = MIN_LATITUDE + (deinterleave(cell) + 0.5) * (MAX_LATITUDE - MIN_LATITUDE) / cells;
+        double longitude = MIN_LONGITUDE + (deinterleave(cell >>> 1) + 0.5) * (MAX_LONGITUDE - MIN_LONGITUDE) / cells;
+        return new double[]{longitude, latitude};
+    }
+
+    private static long axisOffset(double value, double min, double max, int bits) {
+        double clamped = Math.min(max, Math.max(min, value));
+        long offset = (long) ((clamped - min) / (max - min) * (1L << bits));
+        // The upper bound itself belongs to the last cell.
+        return Math.min(offset, (1L << bits) - 1);
+    }
+
+    private static long interleave(long latitudeOffset, long longitudeOffset) {
+        return spread(latitudeOffset) | (spread(longitudeOffset) << 1);
+    }
+
+    private static long spread(long value) {
+        long x = value & 0xffffffffL;
+        x = (x | (x << 16)) & 0x0000ffff0000ffffL;
+        x = (x | (x << 8)) & 0x00ff00ff00ff00ffL;
+        x = (x | (x << 4)) & 0x0f0f0f0f0f0f0f0fL;
+        x = (x | (x << 2)) & 0x3333333333333333L;
+        x = (x | (x << 1)) & 0x5555555555555555L;
+        return x;
+    }
+
+    private static long deinterleave(long value) {
+        long x = value & 0x5555555555555555L;
+        x = (x | (x >>> 1)) & 0x3333333333333333L;
+        x = (x | (x >>> 2)) & 0x0f0f0f0f0f0f0f0fL;
+        x = (x | (x >>> 4)) & 0x00ff00ff00ff00ffL;
+        x = (x | (x >>> 8)) & 0x0000ffff0000ffffL;
+        x = (x | (x >>> 16)) & 0x00000000ffffffffL;
+        return x;
+    }
+}
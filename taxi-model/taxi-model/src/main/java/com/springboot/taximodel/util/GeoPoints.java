@@ -0,0 +1,82 @@
+package com.springboot.taximodel.util;
+
+import org.springframework.data.geo.Point;
+
+import java.util.List;
+
+/**
+ * A batch of positions stored as parallel primitive arrays rather than as Point objects, so distance kernels
+ * stream through contiguous memory. The sines and cosines the kernels need are computed once per position
+ * here instead of once per pair.
+ */
+public final class GeoPoints {
+
+    final double[] latitudes;
+    final double[] longitudes;
+    final double[] sinLatitudes;
+    final double[] cosLatitudes;
+    final double[] sinLongitudes;
+    final double[] cosLongitudes;
+    final double[] latitudeRadians;
+    final double[] longitudeRadians;
+
+    private GeoPoints(double[] latitudes, double[] longitudes) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Expected as many latitudes as longitudes");
+        }
+        int n = latitudes.length;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.sinLatitudes = new double[n];
+        this.cosLatitudes = new double[n];
+        this.sinLongitudes = new double[n];
+        this.cosLongitudes = new double[n];
+        this.latitudeRadians = new double[n];
+        this.longitudeRadians = new double[n];
+        for (int i = 0; i < n; i++) {
+            double phi = Math.toRadians(latitudes[i]);
+            double lambda = Math.toRadians(longitudes[i]);
+            latitudeRadians[i] = phi;
+            longitudeRadians[i] = lambda;
+            sinLatitudes[i] = Math.sin(phi);
+            cosLatitudes[i] = Math.cos(phi);
+            sinLongitudes[i] = Math.sin(lambda);
+            cosLongitudes[i] = Math.cos(lambda);
+        }
+    }
+
+    /**
+     * @param latitudes The latitudes in degrees. The array is kept, not copied.
+     * @param longitudes The longitudes in degrees, as many as latitudes. The array is kept, not copied.
+     * @return GeoPoints The positions.
+     */
+    public static GeoPoints of(double[] latitudes, double[] longitudes) {
+        return new GeoPoints(latitudes, longitudes);
+    }
+
+    /**
+     * @param points Spring Data points, x being the longitude and y the latitude as stored in the geo sets.
+     * @return GeoPoints The positions.
+     */
+    public static GeoPoints fromPoints(List<Point> points) {
+        double[] latitudes = new double[points.size()];
+        double[] longitudes = new double[points.size()];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = points.get(i).getY();
+            longitudes[i] = points.get(i).getX();
+        }
+        return new GeoPoints(latitudes, longitudes);
+    }
+
+    public int size() {
+        return latitudes.length;
+    }
+
+    public double getLatitude(int i) {
+        return latitudes[i];
+    }
+
+    public double getLongitude(int i) {
+        return longitudes[i];
+    }
+}
@@ -0,0 +1,26 @@
+package com.springboot.taximodel.util;
+
+import com.springboot.taximodel.enums.TaxiType;
+
+/**
+ * Redis keys of the supply/demand heatmap shared by the taxi and booking services.
+ * Every heatmap is a hash from {@link GeoCell} ID to count, at {@link GeoCell#DEFAULT_BITS_PER_AXIS} precision.
+ */
+public final class HeatmapKeys {
+
+    // Hash from taxi ID to the cell the taxi was last counted in.
+    public static final String TAXI_CELLS = "Heatmap:TaxiCell";
+
+    public static final int BITS_PER_AXIS = GeoCell.DEFAULT_BITS_PER_AXIS;
+
+    private HeatmapKeys() {
+    }
+
+    public static String availableTaxis(TaxiType taxiType) {
+        return "Heatmap:" + taxiType + ":Taxis";
+    }
+
+    public static String openBookings(TaxiType taxiType) {
+        return "Heatmap:" + taxiType + ":Bookings";
+    }
+}
@@ -0,0 +1,291 @@
+package com.springboot.taximodel.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads location pings straight into primitive coordinates, for the location update hot path.
+ * A ping body is a LocationDTO JSON object, or "latitude,longitude" text on driver connections. Parsing works on a
+ * byte buffer owned by the thread and produces no Strings, boxed Doubles or DTOs, so a ping creates no garbage here.
+ * Use {@link #forCurrentThread()} and read the coordinates before parsing the next ping on the same thread.
+ */
+public final class LocationPayloadParser {
+
+    public static final int MAX_PAYLOAD_BYTES = 1024;
+
+    private static final ThreadLocal<LocationPayloadParser> PARSERS =
+            ThreadLocal.withInitial(LocationPayloadParser::new);
+
+    private static final byte[] LATITUDE = "latitude".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LONGITUDE = "longitude".getBytes(StandardCharsets.US_ASCII);
+
+    // Powers of ten that are exact doubles, so mantissa / 10^n is correctly rounded.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final byte[] buffer = new byte[MAX_PAYLOAD_BYTES];
+    private int length;
+    private int position;
+    private double latitude;
+    private double longitude;
+
+    private LocationPayloadParser() {
+    }
+
+    /**
+     * @return LocationPayloadParser The parser owned by the calling thread.
+     */
+    public static LocationPayloadParser forCurrentThread() {
+        return PARSERS.get();
+    }
+
+    /**
+     * Reads a LocationDTO JSON body, for example {"latitude": 51.5, "longitude": -0.12}. Other fields are skipped.
+     * @param inputStream The request body.
+     * @return LocationPayloadParser This parser, holding the parsed coordinates.
+     * @throws IOException if the body cannot be read.
+     * @throws IllegalArgumentException if the body is not a valid location or exceeds MAX_PAYLOAD_BYTES.
+     */
+    public LocationPayloadParser readJson(InputStream inputStream) throws IOException {
+        length = 0;
+        int read;
+        while ((read = inputStream.read(buffer, length, buffer.length - length)) > 0) {
+            length += read;
+            if (length == buffer.length && inputStream.read() >= 0) {
+                throw new IllegalArgumentException("Location body exceeds " + MAX_PAYLOAD_BYTES + " bytes");
+            }
+        }
+        parseJson();
+        return this;
+    }
+
+    /**
+     * Parses a "latitude,longitude" text frame.
+     * @param payload The frame.
+     * @return LocationPayloadParser This parser, holding the parsed coordinates.
+     * @throws IllegalArgumentException if the frame is not a valid location.
+     */
+    public LocationPayloadParser parseText(CharSequence payload) {
+        if (payload.length() > buffer.length) {
+            throw new IllegalArgumentException("Location frame exceeds " + MAX_PAYLOAD_BYTES + " bytes");
+        }
+        length = payload.length();
+        for (int i = 0; i < length; i++) {
+            char c = payload.charAt(i);
+            buffer[i] = c < 128 ? (byte) c : (byte) '?';
+        }
+        position = 0;
+        skipWhitespace();
+        latitude = parseNumber();
+        skipWhitespace();
+        expect(',');
+        skipWhitespace();
+        longitude = parseNumber();
+        skipWhitespace();
+        if (position != length) {
+            throw invalid();
+        }
+        validate();
+        return this;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    private void parseJson() {
+        position = 0;
+        boolean hasLatitude = false;
+        boolean hasLongitude = false;
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() != '}') {
+            while (true) {
+                expect('"');
+                int keyStart = position;
+                int keyEnd = skipStringBody();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (keyEquals(keyStart, keyEnd, LATITUDE) && peek() != 'n') {
+                    latitude = parseNumber();
+                    hasLatitude = true;
+                } else if (keyEquals(keyStart, keyEnd, LONGITUDE) && peek() != 'n') {
+                    longitude = parseNumber();
+                    hasLongitude = true;
+                } else {
+                    skipValue();
+                }
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                    skipWhitespace();
+                    continue;
+                }
+                break;
+            }
+        }
+        expect('}');
+        if (!hasLatitude || !hasLongitude) {
+            throw new IllegalArgumentException("Location requires latitude and longitude");
+        }
+        validate();
+    }
+
+    private void validate() {
+        if (!(latitude >= GeoCell.MIN_LATITUDE && latitude <= GeoCell.MAX_LATITUDE
+                && longitude >= GeoCell.MIN_LONGITUDE && longitude <= GeoCell.MAX_LONGITUDE)) {
+            throw new IllegalArgumentException("Location is out of range");
+        }
+    }
+
+    private double parseNumber() {
+        int start = position;
+        boolean negative = false;
+        if (peek() == '-') {
+            negative = true;
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        while (isDigit(peek())) {
+            exact &= digits < 18 || mantissa == 0;
+            mantissa = mantissa * 10 + (buffer[position++] - '0');
+            digits++;
+        }
+        if (peek() == '.') {
+            position++;
+            while (isDigit(peek())) {
+                exact &= digits < 18 || mantissa == 0;
+                mantissa = mantissa * 10 + (buffer[position++] - '0');
+                digits++;
+                exponent--;
+            }
+        }
+        if (digits == 0) {
+            throw invalid();
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            position++;
+            boolean negativeExponent = peek() == '-';
+            if (peek() == '-' || peek() == '+') {
+                position++;
+            }
+            int value = 0;
+            if (!isDigit(peek())) {
+                throw invalid();
+            }
+            while (isDigit(peek())) {
+                value = Math.min(value * 10 + (buffer[position++] - '0'), 1000);
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        if (!exact || mantissa >= MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+            // Rare in practice; fall back to the JDK for correct rounding.
+            return Double.parseDouble(new String(buffer, start, position - start, StandardCharsets.US_ASCII));
+        }
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    private void skipValue() {
+        int b = peek();
+        if (b == '"') {
+            position++;
+            skipStringBody();
+            return;
+        }
+        if (b == '{' || b == '[') {
+            int depth = 0;
+            do {
+                b = next();
+                if (b == '"') {
+                    skipStringBody();
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+            return;
+        }
+        // A number, true, false or null.
+        while (position < length && buffer[position] != ',' && buffer[position] != '}'
+                && !isWhitespace(buffer[position])) {
+            position++;
+        }
+    }
+
+    /**
+     * Skips to just after the closing quote of a string whose opening quote was consumed.
+     * @return int The position of the closing quote.
+     */
+    private int skipStringBody() {
+        while (true) {
+            int b = next();
+            if (b == '\\') {
+                next();
+            } else if (b == '"') {
+                return position - 1;
+            }
+        }
+    }
+
+    private boolean keyEquals(int start, int end, byte[] key) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buffer[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (position < length && isWhitespace(buffer[position])) {
+            position++;
+        }
+    }
+
+    private void expect(char c) {
+        if (next() != c) {
+            throw invalid();
+        }
+    }
+
+    private int peek() {
+        return position < length ? buffer[position] : -1;
+    }
+
+    private int next() {
+        if (position >= length) {
+            throw invalid();
+        }
+        return buffer[position++];
+    }
+
+    private static boolean isDigit(int b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private static IllegalArgumentException invalid() {
+        return new IllegalArgumentException("Malformed location");
+    }
+}
@@ -0,0 +1,160 @@
+package com.springboot.taximodel.util;
+
+import com.springboot.taximodel.dto.response.TracePointDTO;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compact text encoding for GPS traces, based on the Google encoded polyline algorithm.
+ * Every point is stored as three zig-zag varints in the polyline alphabet (latitude and longitude at 1e-5 degree
+ * precision, time in seconds), each as a delta to the previous point, so a point usually takes 6 to 9 bytes.
+ * A trace is written as a sequence of self-contained chunks separated by {@link #CHUNK_SEPARATOR}; the first
+ * point of every chunk is absolute, which lets chunks from different writers be appended to the same string.
+ */
+public final class TraceCodec {
+
+    // Not part of the polyline alphabet (63..126), so it can never appear inside a chunk.
+    public static final char CHUNK_SEPARATOR = ';';
+
+    private static final double PRECISION = 1e5;
+
+    private TraceCodec() {
+    }
+
+    /**
+     * Decodes a trace made of one or more chunks, ordered by time.
+     * @param encoded The encoded trace, may be null or empty.
+     * @return List<TracePointDTO> The decoded points.
+     */
+    public static List<TracePointDTO> decode(String encoded) {
+        List<TracePointDTO> points = new ArrayList<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return points;
+        }
+        int index = 0;
+        int length = encoded.length();
+        while (index < length) {
+            long latitude = 0;
+            long longitude = 0;
+            long seconds = 0;
+            // Deltas restart at zero at the start of every chunk.
+            while (index < length && encoded.charAt(index) != CHUNK_SEPARATOR) {
+                long[] value = new long[1];
+                index = readValue(encoded, index, value);
+                latitude += value[0];
+                index = readValue(encoded, index, value);
+                longitude += value[0];
+                index = readValue(encoded, index, value);
+                seconds += value[0];
+                points.add(new TracePointDTO(latitude / PRECISION, longitude / PRECISION, new Date(seconds * 1000)));
+            }
+            index++;
+        }
+        points.sort(Comparator.comparing(TracePointDTO::getTime));
+        return points;
+    }
+
+    /**
+     * Sums the great circle distance along a decoded trace.
+     * @param points The decoded trace points, in order.
+     * @return double The travelled distance in meters.
+     */
+    public static double distanceMeters(List<TracePointDTO> points) {
+        double distance = 0;
+        for (int i = 1; i < points.size(); i++) {
+            TracePointDTO from = points.get(i - 1);
+            TracePointDTO to = points.get(i);
+            distance += haversineMeters(from.getLatitude(), from.getLongitude(), to.getLatitude(), to.getLongitude());
+        }
+        return distance;
+    }
+
+    private static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * 6_371_008.8 * Math.asin(Math.sqrt(a));
+    }
+
+    private static int readValue(String encoded, int index, long[] value) {
+        long result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = encoded.charAt(index++) - 63;
+            result |= (long) (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+        value[0] = (result & 1) != 0 ? ~(result >> 1) : (result >> 1);
+        return index;
+    }
+
+    private static void writeValue(StringBuilder out, long value) {
+        long v = value < 0 ? ~(value << 1) : (value << 1);
+        while (v >= 0x20) {
+            out.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        out.append((char) (v + 63));
+    }
+
+    /**
+     * Incremental encoder for one chunk of a trace. Not thread safe.
+     */
+    public static final class Encoder {
+
+        private final StringBuilder chunk = new StringBuilder(256);
+        private long previousLatitude;
+        private long previousLongitude;
+        private long previousSeconds;
+        private int points;
+
+        /**
+         * Appends a point to the current chunk.
+         * @param latitude The latitude in degrees.
+         * @param longitude The longitude in degrees.
+         * @param epochMillis The time of the fix.
+         */
+        public void add(double latitude, double longitude, long epochMillis) {
+            long lat = Math.round(latitude * PRECISION);
+            long lon = Math.round(longitude * PRECISION);
+            long seconds = epochMillis / 1000;
+            writeValue(chunk, lat - previousLatitude);
+            writeValue(chunk, lon - previousLongitude);
+            writeValue(chunk, seconds - previousSeconds);
+            previousLatitude = lat;
+            previousLongitude = lon;
+            previousSeconds = seconds;
+            points++;
+        }
+
+        /**
+         * @return int The number of points in the current chunk.
+         */
+        public int size() {
+            return points;
+        }
+
+        /**
+         * Completes the current chunk and starts a new one.
+         * @return String The encoded chunk terminated by the chunk separator, or null if it holds no points.
+         */
+        public String drain() {
+            if (points == 0) {
+                return null;
+            }
+            String encoded = chunk.append(CHUNK_SEPARATOR).toString();
+            chunk.setLength(0);
+            previousLatitude = 0;
+            previousLongitude = 0;
+            previousSeconds = 0;
+            points = 0;
+            return encoded;
+        }
+    }
+}
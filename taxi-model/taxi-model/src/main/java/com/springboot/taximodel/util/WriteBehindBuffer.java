@@ -0,0 +1,162 @@
+package com.springboot.taximodel.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded buffer of pending writes that coalesces them per entity: a newer state of an entity already waiting
+ * replaces the older one in place, so a burst of changes to one entity costs a single write when flushed.
+ * Entities are drained in the order they first became dirty. When the buffer is full, changes to entities that
+ * are not already waiting are refused rather than blocking the caller.
+ * @param <K> The entity key type.
+ * @param <V> The entity state type.
+ */
+public final class WriteBehindBuffer<K, V> {
+
+    private final int capacity;
+    private final Map<K, Pending<V>> pending = new LinkedHashMap<>();
+    private long coalesced;
+    private long rejected;
+    private long retriesDropped;
+
+    public WriteBehindBuffer(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Records the latest state of an entity.
+     * @param key The entity key.
+     * @param value The entity state.
+     * @return boolean false if the buffer is full and the state was dropped.
+     */
+    public synchronized boolean offer(K key, V value) {
+        Pending<V> existing = pending.get(key);
+        if (existing != null) {
+            existing.value = value;
+            coalesced++;
+            return true;
+        }
+        if (pending.size() >= capacity) {
+            rejected++;
+            return false;
+        }
+        pending.put(key, new Pending<>(value, System.currentTimeMillis()));
+        return true;
+    }
+
+    /**
+     * Puts back states that failed to flush, unless a newer state of the same entity arrived in the meantime.
+     * @param key The entity key.
+     * @param value The state that failed to flush.
+     * @param since When the state first became pending, to keep the lag accurate.
+     * @return boolean false if the buffer is full and the state was dropped; a state superseded by a newer one
+     * is not dropped, the newer one is written instead.
+     */
+    public synchronized boolean retry(K key, V value, long since) {
+        if (pending.containsKey(key)) {
+            return true;
+        }
+        if (pending.size() >= capacity) {
+            retriesDropped++;
+            return false;
+        }
+        pending.put(key, new Pending<>(value, since));
+        return true;
+    }
+
+    /**
+     * Removes up to max of the oldest pending entries.
+     * @param max The maximum number of entries to remove.
+     * @return List<Entry<K, V>> The removed entries, oldest first.
+     */
+    public synchronized List<Entry<K, V>> drain(int max) {
+        List<Entry<K, V>> drained = new ArrayList<>(Math.min(max, pending.size()));
+        Iterator<Map.Entry<K, Pending<V>>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && drained.size() < max) {
+            Map.Entry<K, Pending<V>> next = iterator.next();
+            drained.add(new Entry<>(next.getKey(), next.getValue().value, next.getValue().since));
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    /**
+     * @return int The number of entities waiting to be written.
+     */
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * @return long How long, in milliseconds, the oldest pending entity has been waiting, 0 if none is.
+     */
+    public synchronized long lagMillis() {
+        // Retried states keep their original age but go to the back, so the oldest is not necessarily first.
+        long oldest = Long.MAX_VALUE;
+        for (Pending<V> p : pending.values()) {
+            oldest = Math.min(oldest, p.since);
+        }
+        return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+    }
+
+    /**
+     * @return long The number of states that replaced an older pending state of the same entity.
+     */
+    public synchronized long coalesced() {
+        return coalesced;
+    }
+
+    /**
+     * @return long The number of states dropped because the buffer was full.
+     */
+    public synchronized long rejected() {
+        return rejected;
+    }
+
+    /**
+     * @return long The number of failed states dropped instead of retried because the buffer was full.
+     */
+    public synchronized long retriesDropped() {
+        return retriesDropped;
+    }
+
+    private static final class Pending<V> {
+        private V value;
+        private final long since;
+
+        private Pending(V value, long since) {
+            this.value = value;
+            this.since = since;
+        }
+    }
+
+    /**
+     * A drained entity state.
+     */
+    public static final class Entry<K, V> {
+        private final K key;
+        private final V value;
+        private final long since;
+
+        private Entry(K key, V value, long since) {
+            this.key = key;
+            this.value = value;
+            this.since = since;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public long getSince() {
+            return since;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.springboot.taximodel.benchmark;
+
+import com.springboot.taximodel.util.DistanceMatrix;
+import com.springboot.taximodel.util.GeoPoints;
+
+import java.util.Random;
+
+/**
+ * Times the distance matrix kernels at 1k x 1k and 10k x 10k positions spread over a city sized area,
+ * for the full matrix (1k only, 10k would need 800 MB) and for a top-10 search per row.
+ * Run with: java -cp <test classpath> com.springboot.taximodel.benchmark.DistanceMatrixBenchmark
+ */
+public class DistanceMatrixBenchmark {
+
+    private static final int K = 10;
+
+    // Keeps the results reachable so the JIT cannot drop the work.
+    private static double sink;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        for (int size : new int[]{1_000, 10_000}) {
+            GeoPoints bookings = randomPoints(random, size);
+            GeoPoints taxis = randomPoints(random, size);
+            int iterations = size == 1_000 ? 50 : 3;
+            for (DistanceMatrix.Metric metric : DistanceMatrix.Metric.values()) {
+                if (size == 1_000) {
+                    double millis = time(iterations, () ->
+                            sink += DistanceMatrix.compute(bookings, taxis, metric)[size - 1]);
+                    report(size, metric, "full", millis);
+                }
+                double millis = time(iterations, () ->
+                        sink += DistanceMatrix.nearest(bookings, taxis, K, metric).distance(size - 1, 0));
+                report(size, metric, "top-" + K, millis);
+            }
+        }
+        System.out.println("cores=" + Runtime.getRuntime().availableProcessors() + " sink=" + sink);
+    }
+
+    private static GeoPoints randomPoints(Random random, int size) {
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = 51.3 + random.nextDouble() * 0.4;
+            longitudes[i] = -0.5 + random.nextDouble() * 0.7;
+        }
+        return GeoPoints.of(latitudes, longitudes);
+    }
+
+    private static double time(int iterations, Runnable run) {
+        for (int i = 0; i < iterations; i++) {
+            run.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            run.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+    private static void report(int size, DistanceMatrix.Metric metric, String kind, double millis) {
+        System.out.printf("%,d x %,d %-15s %-6s %9.1f ms %6.2f ns/pair%n", size, size, metric, kind, millis,
+                millis * 1e6 / ((double) size * size));
+    }
+}
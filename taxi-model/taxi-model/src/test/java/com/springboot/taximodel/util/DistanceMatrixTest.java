@@ -0,0 +1,100 @@
+package com.springboot.taximodel.util;
+
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class DistanceMatrixTest {
+
+    @Test
+    public void haversineMatchesAKnownDistance() {
+        GeoPoints equator = GeoPoints.of(new double[]{0}, new double[]{0});
+        GeoPoints oneDegreeNorth = GeoPoints.of(new double[]{1}, new double[]{0});
+
+        double[] matrix = DistanceMatrix.compute(equator, oneDegreeNorth, DistanceMatrix.Metric.HAVERSINE);
+
+        assertEquals(matrix[0], Math.toRadians(1) * DistanceMatrix.EARTH_RADIUS_METERS, 1e-6);
+    }
+
+    @Test
+    public void equirectangularIsCloseToHaversineAtDispatchRange() {
+        GeoPoints rows = randomPoints(new Random(1), 50, 0.2);
+        GeoPoints columns = randomPoints(new Random(2), 80, 0.2);
+
+        double[] haversine = DistanceMatrix.compute(rows, columns, DistanceMatrix.Metric.HAVERSINE);
+        double[] equirectangular = DistanceMatrix.compute(rows, columns, DistanceMatrix.Metric.EQUIRECTANGULAR);
+
+        for (int i = 0; i < haversine.length; i++) {
+            assertEquals(equirectangular[i], haversine[i], haversine[i] * 1e-3 + 1e-6);
+        }
+    }
+
+    @Test
+    public void nearestMatchesSortingTheFullMatrix() {
+        for (DistanceMatrix.Metric metric : DistanceMatrix.Metric.values()) {
+            // Small enough to stay on the calling thread.
+            assertNearestMatchesBruteForce(randomPoints(new Random(3), 20, 0.5),
+                    randomPoints(new Random(4), 300, 0.5), 7, metric);
+            // Above the parallel threshold, so rows are split across the fork-join pool.
+            assertNearestMatchesBruteForce(randomPoints(new Random(5), 400, 0.5),
+                    randomPoints(new Random(6), 500, 0.5), 10, metric);
+        }
+    }
+
+    @Test
+    public void kIsCappedAtTheNumberOfColumns() {
+        GeoPoints rows = randomPoints(new Random(7), 5, 0.5);
+        GeoPoints columns = randomPoints(new Random(8), 3, 0.5);
+
+        DistanceMatrix.Nearest nearest = DistanceMatrix.nearest(rows, columns, 10, DistanceMatrix.Metric.HAVERSINE);
+
+        assertEquals(nearest.getK(), 3);
+        assertNearestMatchesBruteForce(rows, columns, 10, DistanceMatrix.Metric.HAVERSINE);
+    }
+
+    @Test
+    public void kMustBePositive() {
+        GeoPoints points = randomPoints(new Random(9), 2, 0.5);
+        assertThrows(IllegalArgumentException.class,
+                () -> DistanceMatrix.nearest(points, points, 0, DistanceMatrix.Metric.HAVERSINE));
+    }
+
+    private static void assertNearestMatchesBruteForce(GeoPoints rows, GeoPoints columns, int k,
+                                                       DistanceMatrix.Metric metric) {
+        double[] matrix = DistanceMatrix.compute(rows, columns, metric);
+        DistanceMatrix.Nearest nearest = DistanceMatrix.nearest(rows, columns, k, metric);
+        int n = columns.size();
+        assertEquals(nearest.getK(), Math.min(k, n));
+        for (int i = 0; i < rows.size(); i++) {
+            int row = i;
+            Integer[] expected = IntStream.range(0, n).boxed()
+                    .sorted(Comparator.comparingDouble(j -> matrix[row * n + j])).toArray(Integer[]::new);
+            for (int rank = 0; rank < nearest.getK(); rank++) {
+                assertEquals(nearest.index(i, rank), (int) expected[rank],
+                        metric + " row " + i + " rank " + rank + " of " + Arrays.toString(expected));
+                assertEquals(nearest.distance(i, rank), matrix[i * n + expected[rank]], 1e-6);
+            }
+            for (int rank = 1; rank < nearest.getK(); rank++) {
+                assertTrue(nearest.distance(i, rank - 1) <= nearest.distance(i, rank));
+            }
+        }
+    }
+
+    // Random positions within the given number of degrees around central Berlin.
+    private static GeoPoints randomPoints(Random random, int size, double spread) {
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = 52.5 + (random.nextDouble() - 0.5) * spread;
+            longitudes[i] = 13.4 + (random.nextDouble() - 0.5) * spread;
+        }
+        return GeoPoints.of(latitudes, longitudes);
+    }
+}
@@ -0,0 +1,110 @@
+package com.springboot.taximodel.util;
+
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class FleetSnapshotCodecTest {
+
+    @Test
+    public void roundTripsEveryColumn() throws IOException {
+        String[] taxiIds = {"0f8fad5b-d9cb-469f-a165-70867728950e", "0F8FAD5B-D9CB-469F-A165-70867728950E",
+                "taxi-42", "tàxi-ünïcode"};
+        TaxiStatus[] statuses = {TaxiStatus.AVAILABLE, null, TaxiStatus.OCCUPIED, TaxiStatus.AVAILABLE};
+        double[] latitudes = {52.520008, -33.868820, 0, 89.999999};
+        double[] longitudes = {13.404954, 151.209296, -179.999999, 0.000001};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FleetSnapshotCodec.Writer writer = new FleetSnapshotCodec.Writer(out, 1234567890123L);
+        writer.writeBlock(TaxiType.MINI, taxiIds, statuses, latitudes, longitudes, taxiIds.length);
+        writer.finish();
+
+        List<Object[]> taxis = new ArrayList<>();
+        long epochMillis = FleetSnapshotCodec.read(new ByteArrayInputStream(out.toByteArray()),
+                (taxiId, taxiType, taxiStatus, latitude, longitude) ->
+                        taxis.add(new Object[]{taxiId, taxiType, taxiStatus, latitude, longitude}));
+
+        assertEquals(epochMillis, 1234567890123L);
+        assertEquals(taxis.size(), taxiIds.length);
+        for (int i = 0; i < taxiIds.length; i++) {
+            assertEquals(taxis.get(i)[0], taxiIds[i]);
+            assertEquals(taxis.get(i)[1], TaxiType.MINI);
+            assertEquals(taxis.get(i)[2], statuses[i]);
+            assertEquals((double) taxis.get(i)[3], latitudes[i], 1e-9);
+            assertEquals((double) taxis.get(i)[4], longitudes[i], 1e-9);
+        }
+        assertNull(taxis.get(1)[2]);
+    }
+
+    @Test
+    public void packsCanonicalUuidsIntoSixteenBytes() throws IOException {
+        String uuid = "0f8fad5b-d9cb-469f-a165-70867728950e";
+        int canonical = blockBytes(uuid);
+        int upperCase = blockBytes(uuid.toUpperCase());
+
+        // A 0 marker and two longs, against a length and the 36 characters.
+        assertEquals(upperCase - canonical, 37 - 17);
+    }
+
+    @Test
+    public void readsBlocksOfEveryTypeAndSkipsEmptyOnes() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FleetSnapshotCodec.Writer writer = new FleetSnapshotCodec.Writer(out, 0);
+        for (TaxiType taxiType : TaxiType.values()) {
+            writer.writeBlock(taxiType, new String[0], new TaxiStatus[0], new double[0], new double[0], 0);
+            writer.writeBlock(taxiType, new String[]{taxiType + "-1", taxiType + "-2", "unused"},
+                    new TaxiStatus[]{TaxiStatus.AVAILABLE, TaxiStatus.AVAILABLE, TaxiStatus.AVAILABLE},
+                    new double[]{1, 2, 3}, new double[]{4, 5, 6}, 2);
+        }
+        writer.finish();
+
+        List<String> taxiIds = new ArrayList<>();
+        FleetSnapshotCodec.read(new ByteArrayInputStream(out.toByteArray()),
+                (taxiId, taxiType, taxiStatus, latitude, longitude) -> {
+                    assertTrue(taxiId.startsWith(taxiType.toString()));
+                    taxiIds.add(taxiId);
+                });
+
+        assertEquals(taxiIds.size(), TaxiType.values().length * 2);
+    }
+
+    @Test
+    public void rejectsOtherStreams() {
+        byte[] notASnapshot = "not a fleet snapshot".getBytes();
+        assertThrows(IOException.class, () -> FleetSnapshotCodec.read(new ByteArrayInputStream(notASnapshot),
+                (taxiId, taxiType, taxiStatus, latitude, longitude) -> { }));
+    }
+
+    @Test
+    public void rejectsTruncatedSnapshots() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FleetSnapshotCodec.Writer writer = new FleetSnapshotCodec.Writer(out, 0);
+        writer.writeBlock(TaxiType.MINI, new String[]{"taxi-1"}, new TaxiStatus[]{TaxiStatus.AVAILABLE},
+                new double[]{52.5}, new double[]{13.4}, 1);
+        writer.finish();
+        byte[] truncated = Arrays.copyOf(out.toByteArray(), out.size() - 3);
+
+        assertThrows(IOException.class, () -> FleetSnapshotCodec.read(new ByteArrayInputStream(truncated),
+                (taxiId, taxiType, taxiStatus, latitude, longitude) -> { }));
+    }
+
+    private static int blockBytes(String taxiId) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FleetSnapshotCodec.Writer writer = new FleetSnapshotCodec.Writer(out, 0);
+        writer.writeBlock(TaxiType.MINI, new String[]{taxiId}, new TaxiStatus[]{TaxiStatus.AVAILABLE},
+                new double[]{52.5}, new double[]{13.4}, 1);
+        writer.finish();
+        return out.size();
+    }
+}
@@ -0,0 +1,66 @@
+package com.springboot.taximodel.util;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class GeoCellTest {
+
+    @Test
+    public void hashMatchesTheScoresRedisStoresInGeoSets() {
+        // ZSCORE after GEOADD on Redis 6.2.
+        assertEquals(GeoCell.hash(13.4, 52.5), 3673983793218339L);
+        assertEquals(GeoCell.hash(-122.4194, 37.7749), 1367859919124626L);
+        assertEquals(GeoCell.hash(151.2093, -33.8688), 3252046221964352L);
+        assertEquals(GeoCell.hash(0, 0), 3377699720527872L);
+    }
+
+    @Test
+    public void cellIsTheTopBitsOfTheHash() {
+        long hash = GeoCell.hash(13.4, 52.5);
+        assertEquals(GeoCell.cellOf(13.4, 52.5, 15), hash >>> 22);
+        assertEquals(GeoCell.cellOfHash(hash, 15), GeoCell.cellOf(13.4, 52.5, 15));
+        assertEquals(GeoCell.cellOfHash(hash, GeoCell.HASH_BITS_PER_AXIS), hash);
+    }
+
+    @Test
+    public void centreLiesInItsCell() {
+        long cell = GeoCell.cellOf(79.865072, 6.927610, 15);
+        double[] centre = GeoCell.centre(cell, 15);
+        assertEquals(GeoCell.cellOf(centre[0], centre[1], 15), cell);
+        // A cell is 360 / 2^15 degrees of longitude wide.
+        assertEquals(centre[0], 79.865072, 360d / (1 << 15));
+    }
+
+    @Test
+    public void boundsBelongToTheOuterCells() {
+        assertEquals(GeoCell.cellOf(GeoCell.MAX_LONGITUDE, GeoCell.MAX_LATITUDE, 2), (1L << 4) - 1);
+        assertEquals(GeoCell.cellOf(GeoCell.MIN_LONGITUDE, GeoCell.MIN_LATITUDE, 2), 0);
+        // Latitudes beyond the Web Mercator bounds are clamped.
+        assertEquals(GeoCell.cellOf(0, 90, 15), GeoCell.cellOf(0, GeoCell.MAX_LATITUDE, 15));
+    }
+
+    @Test
+    public void cellsInCoverTheBox() {
+        long[] cells = GeoCell.cellsIn(79.80, 6.90, 79.90, 6.95, 15, 10_000);
+        assertTrue(cells.length > 1);
+        for (double longitude = 79.80; longitude <= 79.90; longitude += 0.01) {
+            for (double latitude = 6.90; latitude <= 6.95; latitude += 0.01) {
+                long cell = GeoCell.cellOf(longitude, latitude, 15);
+                boolean covered = false;
+                for (long c : cells) {
+                    covered |= c == cell;
+                }
+                assertTrue(covered, longitude + "," + latitude);
+            }
+        }
+    }
+
+    @Test
+    public void cellsInRejectsBoxesWithTooManyCells() {
+        assertThrows(IllegalArgumentException.class, () -> GeoCell.cellsIn(-10, -10, 10, 10, 15, 10_000));
+        assertThrows(IllegalArgumentException.class, () -> GeoCell.cellsIn(10, 10, -10, -10, 15, 10_000));
+    }
+}
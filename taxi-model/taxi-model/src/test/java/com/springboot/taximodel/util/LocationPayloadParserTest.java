@@ -0,0 +1,78 @@
+package com.springboot.taximodel.util;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+public class LocationPayloadParserTest {
+
+    @Test
+    public void readsJsonAndSkipsOtherFields() throws IOException {
+        LocationPayloadParser location = readJson(
+                "{ \"name\": \"a \\\"quoted\\\" }\", \"meta\": {\"x\": [1, {\"y\": 2}]}, \"flag\": true,"
+                        + " \"longitude\": -0.127758, \"latitude\": 51.507351, \"extra\": null }");
+        assertEquals(location.getLatitude(), 51.507351);
+        assertEquals(location.getLongitude(), -0.127758);
+    }
+
+    @Test
+    public void parsesTextFrames() {
+        LocationPayloadParser location = LocationPayloadParser.forCurrentThread().parseText(" 6.927610 , 79.865072 ");
+        assertEquals(location.getLatitude(), 6.92761);
+        assertEquals(location.getLongitude(), 79.865072);
+    }
+
+    @Test
+    public void matchesDoubleParseDouble() {
+        Random random = new Random(42);
+        LocationPayloadParser parser = LocationPayloadParser.forCurrentThread();
+        for (int i = 0; i < 100_000; i++) {
+            String latitude = Double.toString(random.nextDouble() * 170 - 85);
+            String longitude = Double.toString(random.nextDouble() * 360 - 180);
+            parser.parseText(latitude + "," + longitude);
+            assertEquals(parser.getLatitude(), Double.parseDouble(latitude), latitude);
+            assertEquals(parser.getLongitude(), Double.parseDouble(longitude), longitude);
+        }
+        // Exponents and long mantissas take the JDK fallback.
+        parser.parseText("5.1507351e1,-1.27758E-1");
+        assertEquals(parser.getLatitude(), 51.507351);
+        assertEquals(parser.getLongitude(), -0.127758);
+        parser.parseText("51.50735100000000000000001,0");
+        assertEquals(parser.getLatitude(), 51.50735100000000000000001);
+    }
+
+    @Test
+    public void rejectsMalformedLocations() {
+        LocationPayloadParser parser = LocationPayloadParser.forCurrentThread();
+        assertThrows(IllegalArgumentException.class, () -> readJson("{\"latitude\": 51.5}"));
+        assertThrows(IllegalArgumentException.class, () -> readJson("{\"latitude\": 51.5, \"longitude\": null}"));
+        assertThrows(IllegalArgumentException.class, () -> readJson("{\"latitude\": 51.5, \"longitude\": -0.1"));
+        assertThrows(IllegalArgumentException.class, () -> readJson("[51.5, -0.1]"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseText("51.5"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseText("51.5,-0.1,3"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseText("-,1"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseText("1e,1"));
+    }
+
+    @Test
+    public void rejectsOutOfRangeAndOversizedLocations() {
+        LocationPayloadParser parser = LocationPayloadParser.forCurrentThread();
+        assertThrows(IllegalArgumentException.class, () -> parser.parseText("86,0"));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseText("0,180.5"));
+        String padding = " ".repeat(LocationPayloadParser.MAX_PAYLOAD_BYTES);
+        assertThrows(IllegalArgumentException.class,
+                () -> readJson("{\"latitude\": 1, \"longitude\": 2}" + padding));
+        assertThrows(IllegalArgumentException.class, () -> parser.parseText(padding + "1,2"));
+    }
+
+    private static LocationPayloadParser readJson(String body) throws IOException {
+        return LocationPayloadParser.forCurrentThread()
+                .readJson(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,73 @@
+package com.springboot.taximodel.util;
+
+import com.springboot.taximodel.dto.response.TracePointDTO;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TraceCodecTest {
+
+    @Test
+    public void decodesWhatWasEncoded() {
+        TraceCodec.Encoder encoder = new TraceCodec.Encoder();
+        encoder.add(6.92761, 79.865072, 1_600_000_000_000L);
+        encoder.add(6.92712, 79.86611, 1_600_000_005_000L);
+        encoder.add(-33.86785, 151.20732, 1_600_000_009_000L);
+        assertEquals(encoder.size(), 3);
+
+        List<TracePointDTO> points = TraceCodec.decode(encoder.drain());
+
+        assertEquals(points.size(), 3);
+        assertPoint(points.get(0), 6.92761, 79.86507, 1_600_000_000_000L);
+        assertPoint(points.get(1), 6.92712, 79.86611, 1_600_000_005_000L);
+        assertPoint(points.get(2), -33.86785, 151.20732, 1_600_000_009_000L);
+    }
+
+    @Test
+    public void drainStartsANewSelfContainedChunk() {
+        TraceCodec.Encoder encoder = new TraceCodec.Encoder();
+        assertNull(encoder.drain());
+        encoder.add(51.5, -0.12, 2_000_000L);
+        String first = encoder.drain();
+        assertEquals(encoder.size(), 0);
+        encoder.add(51.6, -0.13, 1_000_000L);
+        String second = encoder.drain();
+
+        assertEquals(first.charAt(first.length() - 1), TraceCodec.CHUNK_SEPARATOR);
+        // Chunks from different writers may be appended in any order, points come back ordered by time.
+        List<TracePointDTO> points = TraceCodec.decode(first + second);
+        assertEquals(points.size(), 2);
+        assertPoint(points.get(0), 51.6, -0.13, 1_000_000L);
+        assertPoint(points.get(1), 51.5, -0.12, 2_000_000L);
+    }
+
+    @Test
+    public void decodesNothingFromAnEmptyTrace() {
+        assertTrue(TraceCodec.decode(null).isEmpty());
+        assertTrue(TraceCodec.decode("").isEmpty());
+    }
+
+    @Test
+    public void sumsTheDistanceAlongTheTrace() {
+        TraceCodec.Encoder encoder = new TraceCodec.Encoder();
+        encoder.add(0, 0, 0);
+        encoder.add(1, 0, 60_000);
+        encoder.add(1, 1, 120_000);
+        List<TracePointDTO> points = TraceCodec.decode(encoder.drain());
+
+        // One degree of latitude, then one degree of longitude close to the equator.
+        assertEquals(TraceCodec.distanceMeters(points), 111_195 + 111_178, 10);
+        assertEquals(TraceCodec.distanceMeters(Arrays.asList(points.get(0))), 0, 0);
+    }
+
+    private static void assertPoint(TracePointDTO point, double latitude, double longitude, long epochMillis) {
+        assertEquals(point.getLatitude(), latitude, 1e-5);
+        assertEquals(point.getLongitude(), longitude, 1e-5);
+        assertEquals(point.getTime().getTime(), epochMillis);
+    }
+}
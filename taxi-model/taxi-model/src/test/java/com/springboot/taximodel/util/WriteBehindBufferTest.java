@@ -0,0 +1,85 @@
+package com.springboot.taximodel.util;
+
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class WriteBehindBufferTest {
+
+    @Test
+    public void coalescesChangesPerEntityInFirstDirtyOrder() {
+        WriteBehindBuffer<String, Integer> buffer = new WriteBehindBuffer<>(10);
+        buffer.offer("a", 1);
+        buffer.offer("b", 1);
+        buffer.offer("a", 2);
+        buffer.offer("a", 3);
+
+        List<WriteBehindBuffer.Entry<String, Integer>> drained = buffer.drain(10);
+        assertEquals(drained.size(), 2);
+        assertEquals(drained.get(0).getKey(), "a");
+        assertEquals(drained.get(0).getValue(), Integer.valueOf(3));
+        assertEquals(drained.get(1).getKey(), "b");
+        assertEquals(buffer.coalesced(), 2);
+        assertEquals(buffer.size(), 0);
+    }
+
+    @Test
+    public void drainsAtMostMaxOldestFirst() {
+        WriteBehindBuffer<String, Integer> buffer = new WriteBehindBuffer<>(10);
+        for (int i = 0; i < 5; i++) {
+            buffer.offer("taxi-" + i, i);
+        }
+        List<WriteBehindBuffer.Entry<String, Integer>> drained = buffer.drain(3);
+        assertEquals(drained.size(), 3);
+        assertEquals(drained.get(2).getKey(), "taxi-2");
+        assertEquals(buffer.size(), 2);
+        assertEquals(buffer.drain(3).get(0).getKey(), "taxi-3");
+    }
+
+    @Test
+    public void refusesNewEntitiesWhenFullButStillCoalesces() {
+        WriteBehindBuffer<String, Integer> buffer = new WriteBehindBuffer<>(2);
+        assertTrue(buffer.offer("a", 1));
+        assertTrue(buffer.offer("b", 1));
+        assertFalse(buffer.offer("c", 1));
+        assertTrue(buffer.offer("a", 2));
+        assertEquals(buffer.rejected(), 1);
+        assertEquals(buffer.size(), 2);
+    }
+
+    @Test
+    public void retryKeepsTheNewerStateAndCountsDrops() {
+        WriteBehindBuffer<String, Integer> buffer = new WriteBehindBuffer<>(2);
+        buffer.offer("a", 1);
+        buffer.offer("b", 1);
+        List<WriteBehindBuffer.Entry<String, Integer>> failed = buffer.drain(2);
+
+        // A newer state of a arrived while the flush was failing.
+        buffer.offer("a", 2);
+        buffer.offer("c", 1);
+        assertTrue(buffer.retry("a", failed.get(0).getValue(), failed.get(0).getSince()));
+        assertFalse(buffer.retry("b", failed.get(1).getValue(), failed.get(1).getSince()));
+        assertEquals(buffer.retriesDropped(), 1);
+
+        List<WriteBehindBuffer.Entry<String, Integer>> drained = buffer.drain(10);
+        assertEquals(drained.size(), 2);
+        assertEquals(drained.get(0).getValue(), Integer.valueOf(2));
+        assertEquals(drained.get(1).getKey(), "c");
+    }
+
+    @Test
+    public void retriedStateKeepsItsAge() throws InterruptedException {
+        WriteBehindBuffer<String, Integer> buffer = new WriteBehindBuffer<>(10);
+        assertEquals(buffer.lagMillis(), 0);
+        buffer.offer("a", 1);
+        WriteBehindBuffer.Entry<String, Integer> failed = buffer.drain(1).get(0);
+        Thread.sleep(20);
+        buffer.offer("b", 1);
+        assertTrue(buffer.retry("a", failed.getValue(), failed.getSince()));
+        assertTrue(buffer.lagMillis() >= 20);
+    }
+}
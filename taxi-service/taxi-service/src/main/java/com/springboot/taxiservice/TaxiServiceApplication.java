@@ -1,9 +1,14 @@
 package com.springboot.taxiservice;
 
+import com.saber.taxiconfig.capture.TrafficCaptureConfig;
 import com.saber.taxiconfig.config.RedisConfig;
+import com.saber.taxiconfig.startup.StartupConfig;
+import com.saber.taxiconfig.startup.StartupReport;
 import com.springboot.taximodel.enums.TaxiStatus;
 import com.springboot.taximodel.enums.TaxiType;
 import com.springboot.taximodel.util.LocationGenerator;
+import com.springboot.taxiservice.cluster.PartitionedTaxiStore;
+import com.springboot.taxiservice.listener.DispatchOfferMessageListener;
 import com.springboot.taxiservice.listener.TaxiBookingAcceptedEventMessageListener;
 import com.springboot.taxiservice.model.Taxi;
 import com.springboot.taxiservice.repo.TaxiRepository;
@@ -11,34 +16,48 @@ import com.springboot.taxiservice.service.TaxiService;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.data.redis.listener.PatternTopic;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.UUID;
 
 @SpringBootApplication
-@Import({RedisConfig.class})
+@EnableScheduling
+@Import({RedisConfig.class, TrafficCaptureConfig.class, StartupConfig.class})
 public class TaxiServiceApplication {
 
 	public static void main(String[] args) {
 
-		SpringApplication.run(TaxiServiceApplication.class, args);
+		SpringApplication application = new SpringApplication(TaxiServiceApplication.class);
+		// Records the startup steps for the StartupReport and the actuator startup endpoint.
+		application.setApplicationStartup(new BufferingApplicationStartup(StartupReport.BUFFER_CAPACITY));
+		application.run(args);
 	}
 
 	/**
 	 * Bean definition for an ApplicationRunner that initializes taxi data in the application.
+	 * Only active with the "dev" profile, as it wipes the existing fleet before seeding.
+	 * mvn spring-boot:run enables that profile, a packaged jar needs --spring.profiles.active=dev.
+	 * Seeding runs in the background so that it does not delay readiness.
 	 * @param taxiRepository The repository interface for managing Taxi entities.
 	 * @param taxiService The service responsible for business logic related to taxis.
 	 * @return ApplicationRunner An ApplicationRunner instance that performs initialization tasks when the application starts.
 	 */
 	@Bean
+	@Profile("dev")
 	public ApplicationRunner applicationRunner(TaxiRepository taxiRepository, TaxiService taxiService){
 
 		// Return an ApplicationRunner that performs tasks when the application starts.
-		return args -> {
+		return args -> Mono.fromRunnable(() -> {
 			// Clear all existing taxi data from the repository.
 			taxiRepository.deleteAll();
 
@@ -53,7 +72,7 @@ public class TaxiServiceApplication {
 				taxiService.updateLocation(t.getTaxiId(),
 						LocationGenerator.getLocation(79.865072, 6.927610, 3000)).subscribe();
 			});
-		};
+		}).subscribeOn(Schedulers.boundedElastic()).subscribe();
 	}
 
 	/**
@@ -61,18 +80,24 @@ public class TaxiServiceApplication {
 	 * @param connectionFactory The RedisConnectionFactory to be used for connecting to Redis.
 	 * @param taxiBookingAcceptedEventMessageListener The message listener responsible for
 	 *                         handling accepted taxi booking events.
+	 * @param partitionedTaxiStore The owned taxi state, invalidated when taxis change outside their owner.
+	 * @param dispatchOfferMessageListener The listener relaying booking offers to connected drivers.
 	 * @return RedisMessageListenerContainer A configured Redis message listener container
 	 * that listens to messages from Redis channels.
 	 */
 	@Bean
 	public RedisMessageListenerContainer container(RedisConnectionFactory connectionFactory,
-				TaxiBookingAcceptedEventMessageListener taxiBookingAcceptedEventMessageListener){
+				TaxiBookingAcceptedEventMessageListener taxiBookingAcceptedEventMessageListener,
+				PartitionedTaxiStore partitionedTaxiStore,
+				DispatchOfferMessageListener dispatchOfferMessageListener){
 
 		RedisMessageListenerContainer container = new RedisMessageListenerContainer();
 		container.setConnectionFactory(connectionFactory);
 		// Add the taxiBookingAcceptedEventMessageListener to listen for messages on the specified Redis channel.
 		container.addMessageListener(taxiBookingAcceptedEventMessageListener,
 				new PatternTopic(RedisConfig.ACCEPTED_EVENT_CHANNEL));
+		container.addMessageListener(partitionedTaxiStore, new ChannelTopic(PartitionedTaxiStore.INVALIDATION_CHANNEL));
+		container.addMessageListener(dispatchOfferMessageListener, new ChannelTopic(RedisConfig.DISPATCH_OFFER_CHANNEL));
 		return container;
 	}
 
@@ -0,0 +1,95 @@
+package com.springboot.taxiservice.cluster;
+
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.dto.response.ErrorDTO;
+import com.springboot.taximodel.dto.response.TaxiStatusDTO;
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taxiservice.exception.TaxiIdNotFoundException;
+import com.springboot.taxiservice.model.Taxi;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Sends requests for taxis owned by another instance to that instance's internal cluster endpoints,
+ * which always apply them locally, so instances with briefly different views of the ring cannot bounce
+ * a request between them.
+ */
+@Component
+public class ClusterForwarder {
+
+    private final WebClient webClient;
+    private final Duration timeout;
+    private final Counter forwarded;
+
+    public ClusterForwarder(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry,
+                            @Value("${taxi.cluster.forward-timeout-ms:2000}") long timeoutMillis) {
+        this.webClient = webClientBuilder.build();
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.forwarded = meterRegistry.counter("taxi.cluster.forwarded");
+    }
+
+    /**
+     * @param ownerUrl The base URL of the owning instance.
+     * @param taxiId The ID of the taxi.
+     * @param latitude The new latitude.
+     * @param longitude The new longitude.
+     * @return Mono<Integer> A reactive type that emits the report interval recommended by the owner once it has
+     * applied the update.
+     */
+    public Mono<Integer> updateLocation(String ownerUrl, String taxiId, double latitude, double longitude) {
+        forwarded.increment();
+        return webClient.put().uri(ownerUrl + "/cluster/taxis/{taxiId}/location", taxiId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new LocationDTO(latitude, longitude, null))
+                .retrieve()
+                .onStatus(HttpStatus.BAD_REQUEST::equals, ClusterForwarder::toException)
+                .bodyToMono(Integer.class)
+                .timeout(timeout);
+    }
+
+    /**
+     * @param ownerUrl The base URL of the owning instance.
+     * @param taxiId The ID of the taxi.
+     * @param taxiStatus The new status.
+     * @return Mono<Taxi> A reactive type that emits the taxi as updated by its owner.
+     */
+    public Mono<Taxi> updateTaxiStatus(String ownerUrl, String taxiId, TaxiStatus taxiStatus) {
+        forwarded.increment();
+        return webClient.put().uri(ownerUrl + "/cluster/taxis/{taxiId}/status?taxiStatus={taxiStatus}",
+                        taxiId, taxiStatus)
+                .retrieve()
+                .onStatus(HttpStatus.BAD_REQUEST::equals, ClusterForwarder::toException)
+                .bodyToMono(Taxi.class)
+                .timeout(timeout);
+    }
+
+    /**
+     * @param ownerUrl The base URL of the owning instance.
+     * @param taxiId The ID of the taxi.
+     * @return Mono<TaxiStatus> A reactive type that emits the status held by the owner.
+     */
+    public Mono<TaxiStatus> getTaxiStatus(String ownerUrl, String taxiId) {
+        forwarded.increment();
+        return webClient.get().uri(ownerUrl + "/cluster/taxis/{taxiId}/status", taxiId)
+                .retrieve()
+                .onStatus(HttpStatus.BAD_REQUEST::equals, ClusterForwarder::toException)
+                .bodyToMono(TaxiStatusDTO.class)
+                .timeout(timeout)
+                .map(TaxiStatusDTO::getStatus);
+    }
+
+    // The owner answers an unknown taxi with the ErrorDTO of BaseController.
+    private static Mono<? extends Throwable> toException(ClientResponse response) {
+        return response.bodyToMono(ErrorDTO.class)
+                .map(error -> new TaxiIdNotFoundException(error.getMessage()));
+    }
+}
@@ -0,0 +1,185 @@
+package com.springboot.taxiservice.cluster;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Lightweight cluster membership kept in Redis, enabled with taxi.cluster.enabled.
+ * Every instance heartbeats its ID into a sorted set scored by the expiry of its lease, and its base URL into a
+ * hash. The live members are those whose lease has not expired; they are hashed onto a {@link ConsistentHashRing}
+ * that decides which instance owns which taxis. An instance that cannot renew its lease stops claiming any
+ * ownership until it can.
+ * Ownership is not fenced. Each instance rebuilds its ring on its own heartbeat, so while a member joins or leaves
+ * two instances may both serve a partition for up to one heartbeat interval, and an instance paused past its lease
+ * (a GC pause, or clock skew against the lease expiry) keeps serving until it next checks. Redis stays consistent
+ * because every write is a script applied there, the last writer wins; what an overlap costs is in-memory state
+ * on the old owner that is stale until the rebalance or the change invalidation drops it.
+ */
+@Component
+public class ClusterMembership {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClusterMembership.class);
+
+    static final String MEMBERS_KEY = "Cluster:Members";
+
+    static final String ADDRESSES_KEY = "Cluster:Addresses";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final boolean enabled;
+    private final String instanceId;
+    private final String advertisedUrl;
+    private final long leaseMillis;
+    private final int partitions;
+    private final int virtualNodes;
+    private final List<Consumer<ConsistentHashRing>> ringListeners = new CopyOnWriteArrayList<>();
+    private volatile ConsistentHashRing ring;
+    private volatile Map<String, String> addresses = Map.of();
+    private volatile long leaseExpiry;
+
+    public ClusterMembership(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                             @Value("${taxi.cluster.enabled:false}") boolean enabled,
+                             @Value("${taxi.cluster.instance-id:}") String instanceId,
+                             @Value("${taxi.cluster.advertised-url:}") String advertisedUrl,
+                             @Value("${taxi.cluster.lease-ms:5000}") long leaseMillis,
+                             @Value("${taxi.cluster.partitions:256}") int partitions,
+                             @Value("${taxi.cluster.virtual-nodes:64}") int virtualNodes) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.enabled = enabled;
+        this.instanceId = instanceId == null || instanceId.isBlank() ? UUID.randomUUID().toString() : instanceId;
+        this.advertisedUrl = advertisedUrl;
+        this.leaseMillis = leaseMillis;
+        this.partitions = partitions;
+        this.virtualNodes = virtualNodes;
+        this.ring = new ConsistentHashRing(List.of(), partitions, virtualNodes);
+        if (enabled && (advertisedUrl == null || advertisedUrl.isBlank())) {
+            throw new IllegalStateException("taxi.cluster.advertised-url is required when taxi.cluster.enabled is set");
+        }
+        Gauge.builder("taxi.cluster.members", this, m -> m.ring.getMembers().size()).register(meterRegistry);
+    }
+
+    /**
+     * @return boolean true if taxis are partitioned across instances.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return String The ID of this instance.
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /**
+     * @return int The number of partitions taxis are split into.
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Registers a callback run on the heartbeat thread whenever the set of live members changes.
+     * @param listener The callback, given the new ring.
+     */
+    public void addRingListener(Consumer<ConsistentHashRing> listener) {
+        ringListeners.add(listener);
+    }
+
+    /**
+     * @param partition The partition.
+     * @return boolean true if this instance holds a valid lease and owns the partition.
+     */
+    public boolean isLocal(int partition) {
+        return hasLease() && instanceId.equals(ring.ownerOf(partition));
+    }
+
+    /**
+     * Resolves where requests for a taxi must be sent.
+     * @param taxiId The ID of the taxi.
+     * @return String The base URL of the owning instance, or null if this instance owns the taxi or ownership is
+     * currently unknown, in which case the request is served here against Redis.
+     */
+    public String remoteOwnerUrl(String taxiId) {
+        if (!enabled || !hasLease()) {
+            return null;
+        }
+        String owner = ring.ownerOf(ConsistentHashRing.partitionOf(taxiId, partitions));
+        if (owner == null || owner.equals(instanceId)) {
+            return null;
+        }
+        return addresses.get(owner);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        heartbeat();
+    }
+
+    /**
+     * Renews the lease of this instance, evicts members whose lease expired and rebuilds the ring on any change.
+     */
+    @Scheduled(fixedDelayString = "${taxi.cluster.heartbeat-ms:1000}")
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        boolean lapsed = !hasLease();
+        try {
+            stringRedisTemplate.opsForHash().put(ADDRESSES_KEY, instanceId, advertisedUrl);
+            stringRedisTemplate.opsForZSet().add(MEMBERS_KEY, instanceId, now + leaseMillis);
+            leaseExpiry = now + leaseMillis;
+
+            Set<String> expired = stringRedisTemplate.opsForZSet().rangeByScore(MEMBERS_KEY, 0, now);
+            if (expired != null && !expired.isEmpty()) {
+                stringRedisTemplate.opsForZSet().removeRangeByScore(MEMBERS_KEY, 0, now);
+                stringRedisTemplate.opsForHash().delete(ADDRESSES_KEY, expired.toArray());
+            }
+            Set<String> live = stringRedisTemplate.opsForZSet().rangeByScore(MEMBERS_KEY, now, Double.MAX_VALUE);
+            List<String> members = live == null ? List.of() : new ArrayList<>(live);
+            members.sort(null);
+            // After a lapse other instances may have owned our taxis meanwhile, so it counts as a change too.
+            if (lapsed || !members.equals(ring.getMembers())) {
+                addresses = new HashMap<>(stringRedisTemplate.<String, String>opsForHash().entries(ADDRESSES_KEY));
+                ring = new ConsistentHashRing(members, partitions, virtualNodes);
+                LOGGER.info("Cluster membership changed, {} live members: {}", members.size(), members);
+                ringListeners.forEach(l -> l.accept(ring));
+            }
+        } catch (RuntimeException e) {
+            // Keep the old ring, the lease check stops this instance from claiming ownership once it lapses.
+            LOGGER.error("Error while renewing cluster lease", e);
+        }
+    }
+
+    @PreDestroy
+    public void leave() {
+        if (enabled) {
+            // Let the others take over now rather than after the lease expires.
+            stringRedisTemplate.opsForZSet().remove(MEMBERS_KEY, instanceId);
+            stringRedisTemplate.opsForHash().delete(ADDRESSES_KEY, instanceId);
+        }
+    }
+
+    private boolean hasLease() {
+        return System.currentTimeMillis() < leaseExpiry;
+    }
+}
@@ -0,0 +1,116 @@
+package com.springboot.taxiservice.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable consistent hash ring assigning a fixed number of partitions to cluster members.
+ * Every member is placed on the ring at several virtual points, and a partition belongs to the member owning
+ * the first point at or after the partition's own hash. When a member joins or leaves, only the partitions
+ * adjacent to its points change owner. The owner of every partition is resolved once when the ring is built,
+ * so a lookup is an array read.
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> members;
+    private final String[] partitionOwners;
+
+    /**
+     * Builds the ring.
+     * @param members The live member IDs. Every instance must see the same set to agree on ownership.
+     * @param partitions The number of partitions.
+     * @param virtualNodes The number of ring points per member.
+     */
+    public ConsistentHashRing(Collection<String> members, int partitions, int virtualNodes) {
+        this.members = List.copyOf(members);
+        this.partitionOwners = new String[partitions];
+        if (members.isEmpty()) {
+            return;
+        }
+
+        int points = this.members.size() * virtualNodes;
+        long[] hashes = new long[points];
+        String[] owners = new String[points];
+        Integer[] order = new Integer[points];
+        int p = 0;
+        for (String member : this.members) {
+            for (int v = 0; v < virtualNodes; v++) {
+                hashes[p] = hash(member + "#" + v);
+                owners[p] = member;
+                order[p] = p;
+                p++;
+            }
+        }
+        // Ties are broken by member ID so every instance builds the same ring.
+        Arrays.sort(order, (a, b) -> hashes[a] != hashes[b] ? Long.compare(hashes[a], hashes[b])
+                : owners[a].compareTo(owners[b]));
+        long[] sortedHashes = new long[points];
+        String[] sortedOwners = new String[points];
+        for (int i = 0; i < points; i++) {
+            sortedHashes[i] = hashes[order[i]];
+            sortedOwners[i] = owners[order[i]];
+        }
+
+        for (int partition = 0; partition < partitions; partition++) {
+            int i = Arrays.binarySearch(sortedHashes, mix(partition));
+            if (i < 0) {
+                i = -i - 1;
+            }
+            partitionOwners[partition] = sortedOwners[i == points ? 0 : i];
+        }
+    }
+
+    /**
+     * Maps a taxi ID to its partition. Stable across JVMs, String.hashCode is part of the language spec.
+     * @param taxiId The ID of the taxi.
+     * @param partitions The number of partitions.
+     * @return int The partition of the taxi.
+     */
+    public static int partitionOf(String taxiId, int partitions) {
+        return (int) Long.remainderUnsigned(mix(taxiId.hashCode()), partitions);
+    }
+
+    /**
+     * @param partition The partition.
+     * @return String The member owning the partition, or null if the ring has no members.
+     */
+    public String ownerOf(int partition) {
+        return partitionOwners[partition];
+    }
+
+    /**
+     * @return List<String> The members of the ring.
+     */
+    public List<String> getMembers() {
+        return members;
+    }
+
+    /**
+     * @return int The number of partitions.
+     */
+    public int getPartitions() {
+        return partitionOwners.length;
+    }
+
+    // 64-bit FNV-1a over the UTF-8 bytes, finished with a mix so close IDs spread over the ring.
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    // The finalizer of MurmurHash3.
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
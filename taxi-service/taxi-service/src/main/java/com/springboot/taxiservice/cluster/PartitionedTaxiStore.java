@@ -0,0 +1,426 @@
+package com.springboot.taxiservice.cluster;
+
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taxiservice.exception.TaxiIdNotFoundException;
+import com.springboot.taxiservice.exception.TaxiPartitionOverloadedException;
+import com.springboot.taxiservice.geofence.GeofenceService;
+import com.springboot.taxiservice.model.Taxi;
+import com.springboot.taxiservice.persistence.TaxiWriteBehind;
+import com.springboot.taxiservice.repo.TaxiRepository;
+import com.springboot.taxiservice.service.TaxiChangePublisher;
+import com.springboot.taxiservice.service.TaxiFieldStore;
+import com.springboot.taxiservice.service.TaxiHeatmapService;
+import com.springboot.taxiservice.service.ReportIntervalAdvisor;
+import com.springboot.taxiservice.service.TaxiMetadataCache;
+import com.springboot.taxiservice.service.TripTraceRecorder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authoritative in-memory state of the taxis this instance owns, when taxi.cluster.enabled is set.
+ * Every partition is bound to one worker thread, so all updates of a taxi are applied in order without locks.
+ * A request completes as soon as the in-memory state has changed; the Redis writes follow on the same worker,
+ * which keeps them in order per taxi while Redis serves as the write-behind store and the hand-over point
+ * between owners. State is loaded from Redis on first use, off the worker so a slow read does not stall the
+ * partition; requests for the taxi queue up behind the load and run in arrival order once it is handed back.
+ * State is dropped whenever a partition changes owner. A partition whose worker queue is full turns requests away
+ * with a TaxiPartitionOverloadedException, answered as 503 with a Retry-After header.
+ * Ownership is not fenced: see {@link ClusterMembership} for when two instances may briefly both serve a taxi.
+ */
+@Component
+public class PartitionedTaxiStore implements MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedTaxiStore.class);
+
+    // Seconds a client is asked to wait when a partition turns it away, the worker queue drains much faster.
+    private static final long OVERLOADED_RETRY_AFTER_SECONDS = 1;
+
+    // Channel on which taxi IDs changed outside their owner are published, one ID per line.
+    public static final String INVALIDATION_CHANNEL = "taxi_state_invalidated_channel";
+
+    private final ClusterMembership clusterMembership;
+    private final TaxiRepository taxiRepository;
+    private final TaxiMetadataCache taxiMetadataCache;
+    private final TaxiHeatmapService taxiHeatmapService;
+    private final TripTraceRecorder tripTraceRecorder;
+    private final GeofenceService geofenceService;
+    private final TaxiWriteBehind taxiWriteBehind;
+    private final ReportIntervalAdvisor reportIntervalAdvisor;
+    private final TaxiFieldStore taxiFieldStore;
+    private final TaxiChangePublisher taxiChangePublisher;
+    private final Partition[] partitions;
+    private final ExecutorService[] workers;
+    private final Counter rejected;
+
+    public PartitionedTaxiStore(ClusterMembership clusterMembership, TaxiRepository taxiRepository,
+                                TaxiMetadataCache taxiMetadataCache, TaxiHeatmapService taxiHeatmapService,
+                                TripTraceRecorder tripTraceRecorder, GeofenceService geofenceService,
+                                TaxiWriteBehind taxiWriteBehind, ReportIntervalAdvisor reportIntervalAdvisor,
+                                TaxiFieldStore taxiFieldStore, TaxiChangePublisher taxiChangePublisher,
+                                MeterRegistry meterRegistry,
+                                @Value("${taxi.cluster.worker-threads:0}") int workerThreads,
+                                @Value("${taxi.cluster.worker-queue-capacity:10000}") int queueCapacity) {
+        this.clusterMembership = clusterMembership;
+        this.taxiRepository = taxiRepository;
+        this.taxiMetadataCache = taxiMetadataCache;
+        this.taxiHeatmapService = taxiHeatmapService;
+        this.tripTraceRecorder = tripTraceRecorder;
+        this.geofenceService = geofenceService;
+        this.taxiWriteBehind = taxiWriteBehind;
+        this.reportIntervalAdvisor = reportIntervalAdvisor;
+        this.taxiFieldStore = taxiFieldStore;
+        this.taxiChangePublisher = taxiChangePublisher;
+        this.rejected = meterRegistry.counter("taxi.cluster.worker.rejected");
+        if (!clusterMembership.isEnabled()) {
+            this.partitions = new Partition[0];
+            this.workers = new ExecutorService[0];
+            return;
+        }
+
+        int threads = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        this.workers = new ExecutorService[threads];
+        for (int i = 0; i < threads; i++) {
+            String name = "taxi-partition-" + i;
+            workers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), r -> new Thread(r, name));
+        }
+        this.partitions = new Partition[clusterMembership.getPartitions()];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(workers[i % threads]);
+        }
+        clusterMembership.addRingListener(this::rebalance);
+        Gauge.builder("taxi.cluster.owned.taxis", this, PartitionedTaxiStore::ownedTaxis).register(meterRegistry);
+    }
+
+    /**
+     * @param taxiId The ID of the taxi.
+     * @return boolean true if this instance currently owns the taxi and serves it from memory.
+     */
+    public boolean owns(String taxiId) {
+        return partitions.length > 0 && clusterMembership.isLocal(partitionOf(taxiId));
+    }
+
+    /**
+     * Applies a location fix to an owned taxi, then moves it in its geo set and heatmap cell.
+     * The report interval is recommended from the in-memory status and the cell demand seen on the previous fix,
+     * so the answer does not wait for Redis.
+     * @param taxiId The ID of the taxi.
+     * @param latitude The new latitude.
+     * @param longitude The new longitude.
+     * @return Mono<Integer> A reactive type that emits the recommended report interval once the in-memory state
+     * is updated.
+     */
+    public Mono<Integer> updateLocation(String taxiId, double latitude, double longitude) {
+        return submit(taxiId, (state, result) -> {
+            state.latitude = latitude;
+            state.longitude = longitude;
+            tripTraceRecorder.record(taxiId, latitude, longitude);
+            geofenceService.check(taxiId, latitude, longitude);
+            result.complete(reportIntervalAdvisor.advise(taxiId, latitude, longitude,
+                    state.taxiStatus == TaxiStatus.AVAILABLE));
+            taxiHeatmapService.moveTaxi(taxiId, state.taxiType, longitude, latitude)
+                    .subscribe(demand -> reportIntervalAdvisor.recordDemand(taxiId,
+                                    TaxiHeatmapService.openBookings(demand), TaxiHeatmapService.availableTaxis(demand)),
+                            e -> LOGGER.error("Error while storing location of taxi {}", taxiId, e));
+        });
+    }
+
+    /**
+     * Changes the status of an owned taxi, then writes its status field to Redis and adjusts the available taxi
+     * heatmap.
+     * @param taxiId The ID of the taxi.
+     * @param taxiStatus The new status.
+     * @return Mono<Taxi> A reactive type that emits the updated taxi once the in-memory state is updated.
+     */
+    public Mono<Taxi> updateStatus(String taxiId, TaxiStatus taxiStatus) {
+        return submit(taxiId, (state, result) -> {
+            TaxiStatus previousStatus = state.taxiStatus;
+            state.taxiStatus = taxiStatus;
+            if (taxiStatus == TaxiStatus.AVAILABLE) {
+                // The trip is over once the taxi is available again.
+                tripTraceRecorder.stop(taxiId);
+            }
+            Taxi taxi = new Taxi(taxiId, state.taxiType, taxiStatus);
+            result.complete(taxi);
+            taxiWriteBehind.enqueue(taxi);
+            if (previousStatus != taxiStatus) {
+                // The script adjusts the heatmap only if the status in Redis really changed.
+                taxiFieldStore.writeStatus(taxiId, state.taxiType, taxiStatus)
+                        .subscribe(r -> {
+                            if (r == TaxiFieldStore.CHANGED) {
+                                taxiChangePublisher.publish(taxi);
+                            }
+                        }, e -> LOGGER.error("Error while storing status of taxi {}", taxiId, e));
+            }
+        });
+    }
+
+    /**
+     * Reads the status of an owned taxi from memory.
+     * @param taxiId The ID of the taxi.
+     * @return Mono<TaxiStatus> A reactive type that emits the status of the taxi.
+     */
+    public Mono<TaxiStatus> getStatus(String taxiId) {
+        return submit(taxiId, (state, result) -> result.complete(state.taxiStatus));
+    }
+
+    /**
+     * Drops the in-memory state of taxis changed in Redis by another path, such as a bulk status update,
+     * so their owner reloads them on next use. A load already in flight is repeated.
+     * @param message The message listing the taxi IDs, one per line.
+     */
+    @Override
+    public void onMessage(Message message, @Nullable byte[] pattern) {
+        if (partitions.length == 0) {
+            return;
+        }
+        for (String taxiId : new String(message.getBody(), StandardCharsets.UTF_8).split("\n")) {
+            if (!taxiId.isEmpty()) {
+                Partition partition = partitions[partitionOf(taxiId)];
+                execute(partition, () -> {
+                    partition.taxis.remove(taxiId);
+                    PendingLoad pending = partition.loading.get(taxiId);
+                    if (pending != null) {
+                        pending.stale = true;
+                    }
+                    partition.publishSize();
+                });
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+        for (ExecutorService worker : workers) {
+            // Let queued Redis writes drain before the connection factory goes away.
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Clears every partition this instance owned or now owns. Ring changes are rare, and clearing also the kept
+     * partitions covers a lapsed lease, during which another instance may have owned them.
+     */
+    private void rebalance(ConsistentHashRing ring) {
+        String self = clusterMembership.getInstanceId();
+        int cleared = 0;
+        for (int i = 0; i < partitions.length; i++) {
+            Partition partition = partitions[i];
+            boolean owned = self.equals(ring.ownerOf(i));
+            if (owned || partition.owned) {
+                partition.owned = owned;
+                execute(partition, () -> {
+                    partition.taxis.clear();
+                    partition.loading.values().forEach(pending -> pending.stale = true);
+                    partition.publishSize();
+                });
+                cleared++;
+            }
+        }
+        LOGGER.info("Rebalanced taxi partitions, {} cleared", cleared);
+    }
+
+    private <T> Mono<T> submit(String taxiId, Action<T> action) {
+        Partition partition = partitions[partitionOf(taxiId)];
+        CompletableFuture<T> result = new CompletableFuture<>();
+        boolean accepted = execute(partition, () -> {
+            TaxiState state = partition.taxis.get(taxiId);
+            if (state != null) {
+                apply(taxiId, state, action, result);
+                return;
+            }
+            PendingLoad pending = partition.loading.get(taxiId);
+            if (pending == null) {
+                pending = new PendingLoad();
+                partition.loading.put(taxiId, pending);
+                load(partition, taxiId, pending);
+            }
+            pending.waiting.add(new Waiting<>(action, result));
+        });
+        if (!accepted) {
+            result.completeExceptionally(new TaxiPartitionOverloadedException("Taxi partition is overloaded, retry later",
+                    OVERLOADED_RETRY_AFTER_SECONDS));
+        }
+        return Mono.fromFuture(result);
+    }
+
+    private static <T> void apply(String taxiId, TaxiState state, Action<T> action, CompletableFuture<T> result) {
+        try {
+            action.apply(state, result);
+        } catch (RuntimeException e) {
+            if (!result.completeExceptionally(e)) {
+                // The caller already has its answer, only the Redis write failed.
+                LOGGER.error("Error while writing state of taxi {}", taxiId, e);
+            }
+        }
+    }
+
+    /**
+     * Reads a taxi from Redis on a blocking-friendly thread and hands the result back to the partition worker.
+     */
+    private void load(Partition partition, String taxiId, PendingLoad pending) {
+        Mono.fromCallable(() -> taxiRepository.findById(taxiId))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(taxi -> handBack(partition, () -> loaded(partition, taxiId, pending, taxi, null)),
+                        e -> handBack(partition, () -> loaded(partition, taxiId, pending, Optional.empty(), e)));
+    }
+
+    /**
+     * Runs on the worker: installs the loaded state and runs the requests that waited for it, in order.
+     */
+    private void loaded(Partition partition, String taxiId, PendingLoad pending, Optional<Taxi> taxi,
+                        Throwable error) {
+        if (pending.stale) {
+            // Invalidated or rebalanced while loading, the read may predate the change.
+            pending.stale = false;
+            load(partition, taxiId, pending);
+            return;
+        }
+        partition.loading.remove(taxiId);
+        if (error != null || taxi.isEmpty()) {
+            RuntimeException failure = error == null ? new TaxiIdNotFoundException("Taxi Id " + taxiId + " Not Found")
+                    : error instanceof RuntimeException ? (RuntimeException) error : new IllegalStateException(error);
+            pending.waiting.forEach(w -> w.result.completeExceptionally(failure));
+            return;
+        }
+        taxiMetadataCache.put(taxiId, taxi.get().getTaxiType());
+        TaxiState state = new TaxiState();
+        state.taxiType = taxi.get().getTaxiType();
+        state.taxiStatus = taxi.get().getTaxiStatus();
+        partition.taxis.put(taxiId, state);
+        partition.publishSize();
+        pending.waiting.forEach(w -> w.applyTo(taxiId, state));
+    }
+
+    /**
+     * Queues a task for the worker from another thread. The task is also drained before every other task, so it
+     * runs even if the worker queue is full, which only happens while the worker has tasks to run.
+     */
+    private void handBack(Partition partition, Runnable task) {
+        partition.handBacks.add(task);
+        try {
+            partition.worker.execute(() -> runHandBacks(partition));
+        } catch (RejectedExecutionException e) {
+            // Picked up by the next queued task.
+        }
+    }
+
+    private boolean execute(Partition partition, Runnable task) {
+        try {
+            partition.worker.execute(() -> {
+                runHandBacks(partition);
+                task.run();
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    private static void runHandBacks(Partition partition) {
+        Runnable handBack;
+        while ((handBack = partition.handBacks.poll()) != null) {
+            handBack.run();
+        }
+    }
+
+    private int partitionOf(String taxiId) {
+        return ConsistentHashRing.partitionOf(taxiId, partitions.length);
+    }
+
+    private int ownedTaxis() {
+        int owned = 0;
+        for (Partition partition : partitions) {
+            // The maps themselves are only safe to read on their workers.
+            owned += partition.size;
+        }
+        return owned;
+    }
+
+    @FunctionalInterface
+    private interface Action<T> {
+        void apply(TaxiState state, CompletableFuture<T> result);
+    }
+
+    /**
+     * The taxis of one partition, only ever touched on its worker thread.
+     */
+    private static final class Partition {
+        private final ExecutorService worker;
+        private final Map<String, TaxiState> taxis = new HashMap<>();
+        private final Map<String, PendingLoad> loading = new HashMap<>();
+        // Loads completed on other threads, waiting to be applied on the worker.
+        private final Queue<Runnable> handBacks = new ConcurrentLinkedQueue<>();
+        private volatile boolean owned;
+        // The size of taxis as of the last change, for readers on other threads.
+        private volatile int size;
+
+        private Partition(ExecutorService worker) {
+            this.worker = worker;
+        }
+
+        private void publishSize() {
+            size = taxis.size();
+        }
+    }
+
+    /**
+     * A load in flight and the requests waiting for it, only touched on the partition's worker thread.
+     */
+    private static final class PendingLoad {
+        private final List<Waiting<?>> waiting = new ArrayList<>();
+        private boolean stale;
+    }
+
+    private static final class Waiting<T> {
+        private final Action<T> action;
+        private final CompletableFuture<T> result;
+
+        private Waiting(Action<T> action, CompletableFuture<T> result) {
+            this.action = action;
+            this.result = result;
+        }
+
+        private void applyTo(String taxiId, TaxiState state) {
+            apply(taxiId, state, action, result);
+        }
+    }
+
+    private static final class TaxiState {
+        private TaxiType taxiType;
+        private TaxiStatus taxiStatus;
+        private double latitude;
+        private double longitude;
+    }
+}
@@ -6,7 +6,10 @@
 package com.springboot.taxiservice.controller;
 
 import com.springboot.taximodel.dto.response.ErrorDTO;
+import com.springboot.taxiservice.exception.TaxiAlreadyRegisteredException;
 import com.springboot.taxiservice.exception.TaxiIdNotFoundException;
+import com.springboot.taxiservice.exception.TaxiPartitionOverloadedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -30,4 +33,44 @@ public class BaseController {
         return new ResponseEntity<ErrorDTO>(new ErrorDTO(e.getMessage(),
                 HttpStatus.BAD_REQUEST.value()), HttpStatus.BAD_REQUEST);
     }
+
+    /**
+     * Handles IllegalArgumentException raised by request validation and returns an appropriate error response.
+     * @param e The IllegalArgumentException thrown for an invalid request.
+     * @return ResponseEntity<ErrorDTO> A response entity containing an ErrorDTO object
+     * with the error message and status code,
+     * and an HTTP status code of BAD_REQUEST.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorDTO> handleIllegalArgumentException(IllegalArgumentException e){
+        return new ResponseEntity<ErrorDTO>(new ErrorDTO(e.getMessage(),
+                HttpStatus.BAD_REQUEST.value()), HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles TaxiAlreadyRegisteredException and returns an appropriate error response.
+     * @param e The TaxiAlreadyRegisteredException thrown when a taxi ID is registered twice.
+     * @return ResponseEntity<ErrorDTO> A response entity containing an ErrorDTO object
+     * with the error message and status code,
+     * and an HTTP status code of CONFLICT.
+     */
+    @ExceptionHandler(TaxiAlreadyRegisteredException.class)
+    public ResponseEntity<ErrorDTO> handleTaxiAlreadyRegisteredException(TaxiAlreadyRegisteredException e){
+        return new ResponseEntity<ErrorDTO>(new ErrorDTO(e.getMessage(),
+                HttpStatus.CONFLICT.value()), HttpStatus.CONFLICT);
+    }
+
+    /**
+     * Handles TaxiPartitionOverloadedException and returns an appropriate error response.
+     * @param e The TaxiPartitionOverloadedException thrown when a taxi partition turns work away.
+     * @return ResponseEntity<ErrorDTO> A response entity containing an ErrorDTO object
+     * with the error message and status code, a Retry-After header,
+     * and an HTTP status code of SERVICE_UNAVAILABLE.
+     */
+    @ExceptionHandler(TaxiPartitionOverloadedException.class)
+    public ResponseEntity<ErrorDTO> handleTaxiPartitionOverloadedException(TaxiPartitionOverloadedException e){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(new ErrorDTO(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE.value()));
+    }
 }
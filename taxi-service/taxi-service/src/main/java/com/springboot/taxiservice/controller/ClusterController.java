@@ -0,0 +1,69 @@
+package com.springboot.taxiservice.controller;
+
+import com.springboot.taximodel.dto.response.TaxiStatusDTO;
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.util.LocationPayloadParser;
+import com.springboot.taxiservice.model.Taxi;
+import com.springboot.taxiservice.service.TaxiService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Internal endpoints receiving the requests other instances forward to the owner of a taxi.
+ * They are applied here without looking at the ring again.
+ */
+@RequestMapping("/cluster/taxis")
+@RestController
+public class ClusterController {
+
+    private final TaxiService taxiService;
+
+    public ClusterController(TaxiService taxiService) {
+
+        this.taxiService = taxiService;
+    }
+
+    /**
+     * Endpoint to apply a forwarded location update.
+     * @param taxiId The ID of the taxi.
+     * @param inputStream The LocationDTO JSON request body.
+     * @return Mono<Integer> A reactive type that emits the recommended report interval once the update is applied.
+     * @throws IOException if the request body cannot be read.
+     */
+    @PutMapping("/{taxiId}/location")
+    public Mono<Integer> updateLocation(@PathVariable("taxiId") String taxiId, InputStream inputStream)
+            throws IOException {
+        LocationPayloadParser location = LocationPayloadParser.forCurrentThread().readJson(inputStream);
+        return taxiService.applyLocation(taxiId, location.getLatitude(), location.getLongitude());
+    }
+
+    /**
+     * Endpoint to apply a forwarded status update.
+     * @param taxiId The ID of the taxi.
+     * @param taxiStatus The new status.
+     * @return Mono<Taxi> A reactive type that emits the updated taxi.
+     */
+    @PutMapping("/{taxiId}/status")
+    public Mono<Taxi> updateTaxiStatus(@PathVariable("taxiId") String taxiId,
+                                       @RequestParam("taxiStatus") TaxiStatus taxiStatus) {
+        return taxiService.applyTaxiStatus(taxiId, taxiStatus);
+    }
+
+    /**
+     * Endpoint to read the status of a taxi owned by this instance.
+     * @param taxiId The ID of the taxi.
+     * @return Mono<TaxiStatusDTO> A reactive type that emits the taxi ID and its status.
+     */
+    @GetMapping("/{taxiId}/status")
+    public Mono<TaxiStatusDTO> getTaxiStatus(@PathVariable("taxiId") String taxiId) {
+        return taxiService.readTaxiStatus(taxiId).map(s -> new TaxiStatusDTO(taxiId, s));
+    }
+}
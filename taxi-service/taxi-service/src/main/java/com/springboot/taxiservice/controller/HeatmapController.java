@@ -0,0 +1,44 @@
+package com.springboot.taxiservice.controller;
+
+import com.springboot.taximodel.dto.response.HeatmapCellDTO;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taxiservice.service.TaxiHeatmapService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+@RequestMapping("/heatmap")
+@RestController
+public class HeatmapController {
+
+    private final TaxiHeatmapService taxiHeatmapService;
+
+    public HeatmapController(TaxiHeatmapService taxiHeatmapService) {
+
+        this.taxiHeatmapService = taxiHeatmapService;
+    }
+
+    /**
+     * Endpoint to get the available taxi and open booking counts per geo cell within a viewport.
+     * @param taxiType The type of taxi. MINI,NANO,VAN;
+     * @param minLatitude The south edge of the viewport.
+     * @param minLongitude The west edge of the viewport.
+     * @param maxLatitude The north edge of the viewport.
+     * @param maxLongitude The east edge of the viewport.
+     * @return Mono<List<HeatmapCellDTO>> A reactive type that emits the non-empty cells of the viewport,
+     * with the coordinates of each cell centre.
+     */
+    @GetMapping
+    public Mono<List<HeatmapCellDTO>> getHeatmap(
+            @RequestParam("type") TaxiType taxiType,
+            @RequestParam("minLatitude") Double minLatitude,
+            @RequestParam("minLongitude") Double minLongitude,
+            @RequestParam("maxLatitude") Double maxLatitude,
+            @RequestParam("maxLongitude") Double maxLongitude) {
+        return taxiHeatmapService.getHeatmap(taxiType, minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+}
@@ -5,36 +5,60 @@
  ************End*******************************************/
 package com.springboot.taxiservice.controller;
 
-import com.springboot.taximodel.dto.request.LocationDTO;
 import com.springboot.taximodel.dto.request.TaxiRegisterEventDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkRegisterResponseDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkStatusResponseDTO;
 import com.springboot.taximodel.dto.response.TaxiAvailableResponseDTO;
 import com.springboot.taximodel.dto.response.TaxiLocationUpdatedEventResponseDTO;
+import com.springboot.taximodel.dto.response.TaxiPositionStatusDTO;
 import com.springboot.taximodel.dto.response.TaxiRegisterEventResponseDTO;
+import com.springboot.taximodel.dto.response.TaxiSearchResponseDTO;
 import com.springboot.taximodel.dto.response.TaxiStatusDTO;
+import com.springboot.taximodel.enums.TaxiRanking;
 import com.springboot.taximodel.enums.TaxiStatus;
 import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.LocationPayloadParser;
+import com.springboot.taxiservice.service.TaxiBulkRegistrationService;
+import com.springboot.taxiservice.service.FleetSnapshotService;
+import com.springboot.taxiservice.service.TaxiBulkStatusService;
 import com.springboot.taxiservice.service.TaxiService;
 import org.springframework.data.geo.GeoResult;
 import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Set;
+
 @RequestMapping("/taxis")
 @RestController
 public class TaxiController {
 
     private final TaxiService taxiService;
+    private final TaxiBulkRegistrationService taxiBulkRegistrationService;
+    private final TaxiBulkStatusService taxiBulkStatusService;
+    private final FleetSnapshotService fleetSnapshotService;
 
-    public TaxiController(TaxiService taxiService) {
+    public TaxiController(TaxiService taxiService, TaxiBulkRegistrationService taxiBulkRegistrationService,
+                          TaxiBulkStatusService taxiBulkStatusService, FleetSnapshotService fleetSnapshotService) {
 
         this.taxiService = taxiService;
+        this.taxiBulkRegistrationService = taxiBulkRegistrationService;
+        this.taxiBulkStatusService = taxiBulkStatusService;
+        this.fleetSnapshotService = fleetSnapshotService;
     }
 
     /**
      * Endpoint to register a new taxi.
      * @param taxiRegisterEventDTO The data transfer object containing the details needed to register a new taxi,
-     * such as taxi ID and taxi type.
+     * such as taxi ID, taxi type and an optional initial location.
      * @return Mono<TaxiRegisterEventResponseDTO> A reactive type that emits a TaxiRegisterEventResponseDTO object
      * containing the taxi ID after the registration is complete.
      */
@@ -46,6 +70,30 @@ public class TaxiController {
                 new TaxiRegisterEventResponseDTO(t.getTaxiId()));
     }
 
+    /**
+     * Endpoint to register a whole fleet of taxis from a CSV file (taxiId,taxiType[,latitude,longitude]).
+     * @param inputStream The CSV request body, read as a stream so large fleets are never fully buffered.
+     * @return Mono<TaxiBulkRegisterResponseDTO> A reactive type that emits the import summary,
+     * including per-row errors and throughput.
+     * @throws IOException if the request body cannot be read.
+     */
+    @PostMapping(value = "/bulk", consumes = "text/csv")
+    public Mono<TaxiBulkRegisterResponseDTO> registerBulkCsv(InputStream inputStream) throws IOException {
+        return Mono.just(taxiBulkRegistrationService.importCsv(inputStream));
+    }
+
+    /**
+     * Endpoint to register a whole fleet of taxis from newline delimited TaxiRegisterEventDTO JSON objects.
+     * @param inputStream The NDJSON request body, read as a stream so large fleets are never fully buffered.
+     * @return Mono<TaxiBulkRegisterResponseDTO> A reactive type that emits the import summary,
+     * including per-row errors and throughput.
+     * @throws IOException if the request body cannot be read.
+     */
+    @PostMapping(value = "/bulk", consumes = "application/x-ndjson")
+    public Mono<TaxiBulkRegisterResponseDTO> registerBulkNdjson(InputStream inputStream) throws IOException {
+        return Mono.just(taxiBulkRegistrationService.importNdjson(inputStream));
+    }
+
     /**
      * Endpoint to get the status of a taxi based on its ID.
      * @param taxiId The ID of the taxi whose status is to be retrieved.
@@ -73,19 +121,45 @@ public class TaxiController {
                 new TaxiStatusDTO(t.getTaxiId(), t.getTaxiStatus()));
     }
 
+    /**
+     * Endpoint to get the status and last position of many taxis at once.
+     * @param taxiIds The IDs of the taxis.
+     * @return Flux<TaxiPositionStatusDTO> A reactive type that emits the status, type and last position of every
+     * taxi that exists, in request order.
+     */
+    @PostMapping("/status/query")
+    public Flux<TaxiPositionStatusDTO> getTaxiStatuses(@RequestBody List<String> taxiIds) {
+        return Flux.fromIterable(taxiBulkStatusService.getStatuses(taxiIds));
+    }
+
+    /**
+     * Endpoint to update the status of many taxis at once, for example at a shift change.
+     * @param changes The taxi ID and new status of each taxi.
+     * @return Mono<TaxiBulkStatusResponseDTO> A reactive type that emits the applied statuses
+     * and the taxi IDs that were not found.
+     */
+    @PutMapping("/status")
+    public Mono<TaxiBulkStatusResponseDTO> updateTaxiStatuses(@RequestBody List<TaxiStatusDTO> changes) {
+        return Mono.just(taxiBulkStatusService.updateStatuses(changes));
+    }
+
     /**
      * Endpoint to update the location of a taxi based on its ID.
      * @param taxiId The ID of the taxi whose location is to be updated.
-     * @param locationDTO The data transfer object containing the new location details (latitude and longitude).
+     * @param inputStream The LocationDTO JSON request body (latitude and longitude), parsed straight into
+     * primitive coordinates since this endpoint receives every GPS ping.
      * @return Mono<TaxiLocationUpdatedEventResponseDTO> A reactive type that emits a TaxiLocationUpdatedEventResponseDTO
-     * object containing the taxi ID after the location update is complete.
+     * object containing the taxi ID and the recommended seconds until the next update, after the location update
+     * is complete.
+     * @throws IOException if the request body cannot be read.
      */
     @PutMapping("/{taxiId}/location")
     public Mono<TaxiLocationUpdatedEventResponseDTO> updateLocation(
-            @PathVariable("taxiId") String taxiId, @RequestBody LocationDTO locationDTO){
+            @PathVariable("taxiId") String taxiId, InputStream inputStream) throws IOException {
+        LocationPayloadParser location = LocationPayloadParser.forCurrentThread().readJson(inputStream);
         // Update the taxi location using the taxiService and map the result to a TaxiLocationUpdatedEventResponseDTO.
-        return taxiService.updateLocation(taxiId, locationDTO).map(t ->
-                new TaxiLocationUpdatedEventResponseDTO(taxiId));
+        return taxiService.updateLocation(taxiId, location.getLatitude(), location.getLongitude()).map(interval ->
+                new TaxiLocationUpdatedEventResponseDTO(taxiId, interval));
     }
 
 
@@ -95,6 +169,9 @@ public class TaxiController {
      * @param latitude The latitude of the center point for the search radius.
      * @param longitude The longitude of the center point for the search radius.
      * @param radius The radius (in kilometers) within which to search for available taxis. Defaults to 1 km if not provided.
+     * @param rankBy DISTANCE (default) to return every taxi in the radius, or ETA to return the taxis with the
+     * shortest estimated road travel time to the location first.
+     * @param limit The maximum number of taxis returned when ranking by ETA. Defaults to 10.
      * @return Flux<TaxiAvailableResponseDTO> A reactive type that emits a stream of TaxiAvailableResponseDTO objects,
      * representing the available taxis within the specified radius.
      */
@@ -103,14 +180,56 @@ public class TaxiController {
             @RequestParam("type") TaxiType taxiType,
             @RequestParam("latitude") Double latitude,
             @RequestParam("longitute") Double longitute,
-            @RequestParam(value = "radius", defaultValue = "1") Double radius){
+            @RequestParam(value = "radius", defaultValue = "1") Double radius,
+            @RequestParam(value = "rankBy", defaultValue = "DISTANCE") TaxiRanking rankBy,
+            @RequestParam(value = "limit", defaultValue = "10") Integer limit){
+
+        if (rankBy == TaxiRanking.ETA) {
+            return taxiService.getAvailableTaxisByEta(taxiType, latitude, longitute, radius, limit);
+        }
 
         // Retrieve available taxis from the taxiService based on the given parameters.
         Flux<GeoResult<RedisGeoCommands.GeoLocation<String>>>
                 availableTaxiFlux = taxiService.getAvailableTaxis(taxiType, latitude, longitute, radius);
 
         // Map each GeoResult to a TaxiAvailableResponseDTO, extracting the taxi's name from the GeoLocation.
-        return availableTaxiFlux.map(r -> new TaxiAvailableResponseDTO(r.getContent().getName()));
+        return availableTaxiFlux.map(r -> new TaxiAvailableResponseDTO(r.getContent().getName(), null));
+    }
+
+    /**
+     * Endpoint to search available taxis of several types within a given radius from a specified location.
+     * @param taxiTypes The types of taxi to search for, comma separated. MINI,NANO,VAN;
+     * @param latitude The latitude of the center point for the search radius.
+     * @param longitude The longitude of the center point for the search radius.
+     * @param radius The radius (in kilometers) within which to search for available taxis. Defaults to 1 km if not provided.
+     * @param limit The maximum number of taxis to return across all types. Defaults to 20.
+     * @return Flux<TaxiSearchResponseDTO> A reactive type that emits the nearest taxis of all requested types,
+     * in order of increasing distance.
+     */
+    @GetMapping("/search")
+    public Flux<TaxiSearchResponseDTO> searchAvailableTaxis(
+            @RequestParam("types") Set<TaxiType> taxiTypes,
+            @RequestParam("latitude") Double latitude,
+            @RequestParam("longitude") Double longitude,
+            @RequestParam(value = "radius", defaultValue = "1") Double radius,
+            @RequestParam(value = "limit", defaultValue = "20") Integer limit) {
+        return taxiService.searchAvailableTaxis(taxiTypes, latitude, longitude, radius, limit);
+    }
+
+    /**
+     * Endpoint to download the position and status of every taxi at once, for map dashboards and offline analytics.
+     * The snapshot is streamed while the geo sets are scanned, in the gzipped FleetSnapshotCodec format,
+     * which FleetSnapshotCodec.read decodes.
+     * @return ResponseEntity<StreamingResponseBody> The gzipped snapshot, or 429 Too Many Requests if
+     * taxi.snapshot.max-concurrent snapshots are already being streamed.
+     */
+    @GetMapping("/snapshot")
+    public ResponseEntity<StreamingResponseBody> getSnapshot() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"fleet-" + System.currentTimeMillis() + ".snapshot.gz\"")
+                .body(fleetSnapshotService.snapshot());
     }
 
 }
@@ -0,0 +1,32 @@
+package com.springboot.taxiservice.controller;
+
+import com.springboot.taximodel.dto.response.TripTraceResponseDTO;
+import com.springboot.taxiservice.service.TripTraceRecorder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RequestMapping("/traces")
+@RestController
+public class TripTraceController {
+
+    private final TripTraceRecorder tripTraceRecorder;
+
+    public TripTraceController(TripTraceRecorder tripTraceRecorder) {
+
+        this.tripTraceRecorder = tripTraceRecorder;
+    }
+
+    /**
+     * Endpoint to get the recorded GPS trace of a booking.
+     * @param taxiBookingId The ID of the booking whose trace is to be retrieved.
+     * @return Mono<TripTraceResponseDTO> A reactive type that emits the decoded trace points, ordered by time,
+     * and the travelled distance.
+     */
+    @GetMapping("/{taxiBookingId}")
+    public Mono<TripTraceResponseDTO> getTrace(@PathVariable("taxiBookingId") String taxiBookingId) {
+        return tripTraceRecorder.getTrace(taxiBookingId);
+    }
+}
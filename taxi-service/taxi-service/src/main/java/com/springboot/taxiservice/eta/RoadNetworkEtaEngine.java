@@ -0,0 +1,321 @@
+package com.springboot.taxiservice.eta;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Travel time estimates over a road network contraction hierarchy built offline by {@link RoadNetworkIndexBuilder}.
+ * The index file is memory mapped rather than read, so startup cost does not grow with the network size.
+ * A many-to-one query runs one backward upward search from the target and one forward upward search per source,
+ * each touching only a few hundred nodes.
+ * The engine is disabled unless taxi.eta.index-file is set.
+ */
+@Component
+public class RoadNetworkEtaEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoadNetworkEtaEngine.class);
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    // Speed assumed to cover the gap between a position and its nearest road node.
+    private static final double SNAP_SPEED_METERS_PER_SECOND = 5;
+
+    private static final double METERS_PER_DEGREE = 111_195;
+
+    private final IntBuffer index;
+    private final int nodeCount;
+    private final int latitudesOffset;
+    private final int longitudesOffset;
+    private final int forwardOffsets;
+    private final int forwardTargets;
+    private final int forwardWeights;
+    private final int backwardOffsets;
+    private final int backwardTargets;
+    private final int backwardWeights;
+    private final int cellOrder;
+    private final int cellKeys;
+    private final ThreadLocal<SearchSpace> searchSpaces;
+
+    public RoadNetworkEtaEngine(@Value("${taxi.eta.index-file:}") String indexFile) {
+        if (indexFile == null || indexFile.isBlank()) {
+            this.index = null;
+            this.nodeCount = 0;
+            this.latitudesOffset = this.longitudesOffset = 0;
+            this.forwardOffsets = this.forwardTargets = this.forwardWeights = 0;
+            this.backwardOffsets = this.backwardTargets = this.backwardWeights = 0;
+            this.cellOrder = this.cellKeys = 0;
+            this.searchSpaces = null;
+            return;
+        }
+
+        Path path = Paths.get(indexFile);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            this.index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to map road network index " + path, e);
+        }
+        if (index.get(0) != RoadNetworkIndexFormat.MAGIC || index.get(1) != RoadNetworkIndexFormat.VERSION) {
+            throw new IllegalStateException("Unsupported road network index " + path);
+        }
+        this.nodeCount = index.get(2);
+        int forwardEdges = index.get(3);
+        int backwardEdges = index.get(4);
+        this.latitudesOffset = RoadNetworkIndexFormat.HEADER_INTS;
+        this.longitudesOffset = latitudesOffset + nodeCount;
+        this.forwardOffsets = longitudesOffset + nodeCount;
+        this.forwardTargets = forwardOffsets + nodeCount + 1;
+        this.forwardWeights = forwardTargets + forwardEdges;
+        this.backwardOffsets = forwardWeights + forwardEdges;
+        this.backwardTargets = backwardOffsets + nodeCount + 1;
+        this.backwardWeights = backwardTargets + backwardEdges;
+        this.cellOrder = backwardWeights + backwardEdges;
+        this.cellKeys = cellOrder + nodeCount;
+        this.searchSpaces = ThreadLocal.withInitial(() -> new SearchSpace(nodeCount));
+        LOGGER.info("Mapped road network index {} with {} nodes", path, nodeCount);
+    }
+
+    /**
+     * @return boolean true if a road network index has been loaded.
+     */
+    public boolean isAvailable() {
+        return index != null;
+    }
+
+    /**
+     * Estimates the travel time from many sources to one target.
+     * @param targetLatitude The latitude of the target, usually the pickup location.
+     * @param targetLongitude The longitude of the target.
+     * @param sourceLatitudes The latitudes of the sources, usually taxi positions.
+     * @param sourceLongitudes The longitudes of the sources.
+     * @return double[] The travel time in seconds per source, Double.POSITIVE_INFINITY if it cannot reach the target.
+     */
+    public double[] travelTimesTo(double targetLatitude, double targetLongitude,
+                                  double[] sourceLatitudes, double[] sourceLongitudes) {
+        double[] seconds = new double[sourceLatitudes.length];
+        Arrays.fill(seconds, Double.POSITIVE_INFINITY);
+        if (!isAvailable()) {
+            return seconds;
+        }
+        int target = nearestNode(targetLatitude, targetLongitude);
+        if (target < 0) {
+            return seconds;
+        }
+        double targetSnap = snapSeconds(target, targetLatitude, targetLongitude);
+
+        SearchSpace space = searchSpaces.get();
+        upwardSearch(space.backward, target, backwardOffsets, backwardTargets, backwardWeights, INFINITY, null);
+        try {
+            for (int i = 0; i < sourceLatitudes.length; i++) {
+                int source = nearestNode(sourceLatitudes[i], sourceLongitudes[i]);
+                if (source < 0) {
+                    continue;
+                }
+                int best = upwardSearch(space.forward, source, forwardOffsets, forwardTargets, forwardWeights,
+                        INFINITY, space.backward);
+                space.forward.reset();
+                if (best < INFINITY) {
+                    seconds[i] = best / 10d + targetSnap + snapSeconds(source, sourceLatitudes[i], sourceLongitudes[i]);
+                }
+            }
+        } finally {
+            space.backward.reset();
+        }
+        return seconds;
+    }
+
+    /**
+     * Runs a Dijkstra search restricted to upward edges.
+     * When a settled backward search is given, returns the shortest meeting distance with it.
+     */
+    private int upwardSearch(Search search, int start, int offsets, int targets, int weights,
+                             int best, Search meet) {
+        search.distance[start] = 0;
+        search.touched.add(start);
+        search.heap.push(0, start);
+        while (!search.heap.isEmpty()) {
+            long head = search.heap.pop();
+            int distance = (int) (head >>> 32);
+            int u = (int) head;
+            if (distance > search.distance[u]) {
+                continue;
+            }
+            if (meet != null) {
+                // Both searches only climb, so nothing cheaper than the best meeting point is left.
+                if (distance >= best) {
+                    break;
+                }
+                int backward = meet.distance[u];
+                if (backward < INFINITY && distance + backward < best) {
+                    best = distance + backward;
+                }
+            }
+            int end = index.get(offsets + u + 1);
+            for (int e = index.get(offsets + u); e < end; e++) {
+                int w = index.get(targets + e);
+                int candidate = distance + index.get(weights + e);
+                if (candidate < search.distance[w]) {
+                    if (search.distance[w] == INFINITY) {
+                        search.touched.add(w);
+                    }
+                    search.distance[w] = candidate;
+                    search.heap.push(candidate, w);
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the nearest road node in the grid cell of a position and its eight neighbours.
+     * @return int The node index, or -1 if there is no node nearby.
+     */
+    int nearestNode(double latitude, double longitude) {
+        int centre = RoadNetworkIndexFormat.cellKey(latitude, longitude);
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        int nearest = -1;
+        double nearestDistance = Double.MAX_VALUE;
+        for (int row = -1; row <= 1; row++) {
+            for (int column = -1; column <= 1; column++) {
+                int key = centre + row * 36_000 + column;
+                for (int i = firstCellIndex(key); i < nodeCount && index.get(cellKeys + i) == key; i++) {
+                    int node = index.get(cellOrder + i);
+                    double dLat = nodeLatitude(node) - latitude;
+                    double dLon = (nodeLongitude(node) - longitude) * cosLatitude;
+                    double distance = dLat * dLat + dLon * dLon;
+                    if (distance < nearestDistance) {
+                        nearestDistance = distance;
+                        nearest = node;
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    private int firstCellIndex(int key) {
+        int low = 0;
+        int high = nodeCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (index.get(cellKeys + middle) < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private double snapSeconds(int node, double latitude, double longitude) {
+        double dLat = nodeLatitude(node) - latitude;
+        double dLon = (nodeLongitude(node) - longitude) * Math.cos(Math.toRadians(latitude));
+        return Math.sqrt(dLat * dLat + dLon * dLon) * METERS_PER_DEGREE / SNAP_SPEED_METERS_PER_SECOND;
+    }
+
+    private double nodeLatitude(int node) {
+        return index.get(latitudesOffset + node) / RoadNetworkIndexFormat.COORDINATE_SCALE;
+    }
+
+    private double nodeLongitude(int node) {
+        return index.get(longitudesOffset + node) / RoadNetworkIndexFormat.COORDINATE_SCALE;
+    }
+
+    /**
+     * Per-thread search state, reused across queries so a query allocates only its result array.
+     */
+    private static final class SearchSpace {
+        private final Search forward;
+        private final Search backward;
+
+        private SearchSpace(int nodeCount) {
+            this.forward = new Search(nodeCount);
+            this.backward = new Search(nodeCount);
+        }
+    }
+
+    private static final class Search {
+        private final int[] distance;
+        private final RoadNetworkIndexBuilder.IntList touched = new RoadNetworkIndexBuilder.IntList();
+        private final LongHeap heap = new LongHeap();
+
+        private Search(int nodeCount) {
+            this.distance = new int[nodeCount];
+            Arrays.fill(distance, INFINITY);
+        }
+
+        private void reset() {
+            for (int i = 0; i < touched.size(); i++) {
+                distance[touched.get(i)] = INFINITY;
+            }
+            touched.clear();
+            heap.clear();
+        }
+    }
+
+    /**
+     * Binary min-heap of (distance, node) pairs packed into longs.
+     */
+    private static final class LongHeap {
+        private long[] values = new long[64];
+        private int size;
+
+        private void push(int distance, int node) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            long value = ((long) distance << 32) | (node & 0xffffffffL);
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (values[parent] <= value) {
+                    break;
+                }
+                values[i] = values[parent];
+                i = parent;
+            }
+            values[i] = value;
+        }
+
+        private long pop() {
+            long head = values[0];
+            long last = values[--size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && values[child + 1] < values[child]) {
+                    child++;
+                }
+                if (values[child] >= last) {
+                    break;
+                }
+                values[i] = values[child];
+                i = child;
+            }
+            values[i] = last;
+            return head;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.springboot.taxiservice.eta;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Offline builder of the contraction hierarchy used by {@link RoadNetworkEtaEngine}.
+ * Reads a road network extract and writes a memory-mappable index, see {@link RoadNetworkIndexFormat}.
+ * The extract is a text file with one record per line:
+ * <pre>
+ * N &lt;nodeId&gt; &lt;latitude&gt; &lt;longitude&gt;
+ * E &lt;fromNodeId&gt; &lt;toNodeId&gt; &lt;travelSeconds&gt; [oneway]
+ * </pre>
+ * Edges are bidirectional unless the oneway flag is 1. Lines starting with # are ignored.
+ * <p>
+ * Usage: {@code java -cp taxi-service.jar -Dloader.main=com.springboot.taxiservice.eta.RoadNetworkIndexBuilder
+ * org.springframework.boot.loader.PropertiesLauncher <extract> <index>}
+ */
+public final class RoadNetworkIndexBuilder {
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+
+    // Bounds the witness searches, a missed witness only adds a superfluous shortcut.
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private int nodeCount;
+    private int[] latitudes;
+    private int[] longitudes;
+    private IntList[] outTargets;
+    private IntList[] outWeights;
+    private IntList[] inSources;
+    private IntList[] inWeights;
+    private int[] rank;
+    private int[] contractedNeighbours;
+    private int[] depth;
+
+    // Witness search workspace, reset through the touched list after every search.
+    private int[] witnessDistance;
+    private final IntList witnessTouched = new IntList();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: RoadNetworkIndexBuilder <extract> <index>");
+            System.exit(1);
+        }
+        long started = System.nanoTime();
+        RoadNetworkIndexBuilder builder = new RoadNetworkIndexBuilder();
+        builder.read(Paths.get(args[0]));
+        builder.contract();
+        builder.write(Paths.get(args[1]));
+        System.out.printf("Indexed %d nodes in %d ms%n", builder.nodeCount, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    void read(Path extract) throws IOException {
+        Map<Long, Integer> nodeIndexes = new HashMap<>();
+        IntList nodeLatitudes = new IntList();
+        IntList nodeLongitudes = new IntList();
+        IntList edgeFrom = new IntList();
+        IntList edgeTo = new IntList();
+        IntList edgeWeight = new IntList();
+
+        try (BufferedReader reader = Files.newBufferedReader(extract, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.trim().split("\\s+");
+                if ("N".equals(fields[0])) {
+                    nodeIndexes.put(Long.parseLong(fields[1]), nodeLatitudes.size());
+                    nodeLatitudes.add((int) Math.round(Double.parseDouble(fields[2]) * RoadNetworkIndexFormat.COORDINATE_SCALE));
+                    nodeLongitudes.add((int) Math.round(Double.parseDouble(fields[3]) * RoadNetworkIndexFormat.COORDINATE_SCALE));
+                } else if ("E".equals(fields[0])) {
+                    Integer from = nodeIndexes.get(Long.parseLong(fields[1]));
+                    Integer to = nodeIndexes.get(Long.parseLong(fields[2]));
+                    if (from == null || to == null || from.equals(to)) {
+                        continue;
+                    }
+                    int weight = Math.max(1, (int) Math.round(Double.parseDouble(fields[3]) * 10));
+                    boolean oneway = fields.length > 4 && "1".equals(fields[4]);
+                    edgeFrom.add(from);
+                    edgeTo.add(to);
+                    edgeWeight.add(weight);
+                    if (!oneway) {
+                        edgeFrom.add(to);
+                        edgeTo.add(from);
+                        edgeWeight.add(weight);
+                    }
+                }
+            }
+        }
+
+        init(nodeLatitudes.toArray(), nodeLongitudes.toArray());
+        for (int i = 0; i < edgeFrom.size(); i++) {
+            addEdge(edgeFrom.get(i), edgeTo.get(i), edgeWeight.get(i));
+        }
+    }
+
+    void init(int[] latitudes, int[] longitudes) {
+        this.nodeCount = latitudes.length;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.outTargets = new IntList[nodeCount];
+        this.outWeights = new IntList[nodeCount];
+        this.inSources = new IntList[nodeCount];
+        this.inWeights = new IntList[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            outTargets[v] = new IntList();
+            outWeights[v] = new IntList();
+            inSources[v] = new IntList();
+            inWeights[v] = new IntList();
+        }
+        this.rank = new int[nodeCount];
+        Arrays.fill(rank, -1);
+        this.contractedNeighbours = new int[nodeCount];
+        this.depth = new int[nodeCount];
+        this.witnessDistance = new int[nodeCount];
+        Arrays.fill(witnessDistance, INFINITY);
+    }
+
+    /**
+     * Adds a directed edge, keeping only the cheapest of parallel edges.
+     */
+    void addEdge(int from, int to, int weight) {
+        IntList targets = outTargets[from];
+        for (int i = 0; i < targets.size(); i++) {
+            if (targets.get(i) == to) {
+                if (weight < outWeights[from].get(i)) {
+                    outWeights[from].set(i, weight);
+                    IntList sources = inSources[to];
+                    for (int j = 0; j < sources.size(); j++) {
+                        if (sources.get(j) == from) {
+                            inWeights[to].set(j, weight);
+                        }
+                    }
+                }
+                return;
+            }
+        }
+        targets.add(to);
+        outWeights[from].add(weight);
+        inSources[to].add(from);
+        inWeights[to].add(weight);
+    }
+
+    /**
+     * Contracts all nodes in order of increasing importance (edge difference, contracted neighbours and
+     * hierarchy depth), with lazy priority updates.
+     */
+    void contract() {
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Math.max(1, nodeCount),
+                (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        for (int v = 0; v < nodeCount; v++) {
+            queue.add(new long[]{priority(v), v});
+        }
+        int nextRank = 0;
+        while (!queue.isEmpty()) {
+            long[] head = queue.poll();
+            int v = (int) head[1];
+            long current = priority(v);
+            if (!queue.isEmpty() && current > queue.peek()[0]) {
+                queue.add(new long[]{current, v});
+                continue;
+            }
+            contractNode(v, true);
+            rank[v] = nextRank++;
+            for (int i = 0; i < outTargets[v].size(); i++) {
+                int w = outTargets[v].get(i);
+                contractedNeighbours[w]++;
+                depth[w] = Math.max(depth[w], depth[v] + 1);
+            }
+            for (int i = 0; i < inSources[v].size(); i++) {
+                int u = inSources[v].get(i);
+                contractedNeighbours[u]++;
+                depth[u] = Math.max(depth[u], depth[v] + 1);
+            }
+        }
+    }
+
+    private long priority(int v) {
+        int shortcuts = contractNode(v, false);
+        int removed = 0;
+        for (int i = 0; i < outTargets[v].size(); i++) {
+            if (rank[outTargets[v].get(i)] < 0) {
+                removed++;
+            }
+        }
+        for (int i = 0; i < inSources[v].size(); i++) {
+            if (rank[inSources[v].get(i)] < 0) {
+                removed++;
+            }
+        }
+        return 2L * (shortcuts - removed) + contractedNeighbours[v] + depth[v];
+    }
+
+    /**
+     * Finds the shortcuts needed to contract a node, adding them if requested.
+     * @return int The number of shortcuts.
+     */
+    private int contractNode(int v, boolean addShortcuts) {
+        int maxOut = 0;
+        for (int i = 0; i < outTargets[v].size(); i++) {
+            if (rank[outTargets[v].get(i)] < 0) {
+                maxOut = Math.max(maxOut, outWeights[v].get(i));
+            }
+        }
+        int shortcuts = 0;
+        // Copy the in-edges first, adding shortcuts may grow the lists being iterated.
+        int[] sources = inSources[v].toArray();
+        int[] sourceWeights = inWeights[v].toArray();
+        int[] targets = outTargets[v].toArray();
+        int[] targetWeights = outWeights[v].toArray();
+        for (int i = 0; i < sources.length; i++) {
+            int u = sources[i];
+            if (rank[u] >= 0) {
+                continue;
+            }
+            witnessSearch(u, v, sourceWeights[i] + maxOut);
+            for (int j = 0; j < targets.length; j++) {
+                int w = targets[j];
+                if (w == u || rank[w] >= 0) {
+                    continue;
+                }
+                int viaV = sourceWeights[i] + targetWeights[j];
+                if (witnessDistance[w] > viaV) {
+                    shortcuts++;
+                    if (addShortcuts) {
+                        addEdge(u, w, viaV);
+                    }
+                }
+            }
+            resetWitnessSearch();
+        }
+        return shortcuts;
+    }
+
+    private void witnessSearch(int source, int excluded, int maxDistance) {
+        PriorityQueue<long[]> heap = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        witnessDistance[source] = 0;
+        witnessTouched.add(source);
+        heap.add(new long[]{0, source});
+        int settled = 0;
+        while (!heap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+            long[] head = heap.poll();
+            int u = (int) head[1];
+            if (head[0] > witnessDistance[u]) {
+                continue;
+            }
+            if (head[0] > maxDistance) {
+                break;
+            }
+            settled++;
+            IntList targets = outTargets[u];
+            for (int i = 0; i < targets.size(); i++) {
+                int w = targets.get(i);
+                if (w == excluded || rank[w] >= 0) {
+                    continue;
+                }
+                int distance = witnessDistance[u] + outWeights[u].get(i);
+                if (distance < witnessDistance[w]) {
+                    if (witnessDistance[w] == INFINITY) {
+                        witnessTouched.add(w);
+                    }
+                    witnessDistance[w] = distance;
+                    heap.add(new long[]{distance, w});
+                }
+            }
+        }
+    }
+
+    private void resetWitnessSearch() {
+        for (int i = 0; i < witnessTouched.size(); i++) {
+            witnessDistance[witnessTouched.get(i)] = INFINITY;
+        }
+        witnessTouched.clear();
+    }
+
+    void write(Path index) throws IOException {
+        // Split every edge into the upward forward graph or the reversed upward backward graph.
+        IntList[] forwardTargets = new IntList[nodeCount];
+        IntList[] forwardWeights = new IntList[nodeCount];
+        IntList[] backwardTargets = new IntList[nodeCount];
+        IntList[] backwardWeights = new IntList[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            forwardTargets[v] = new IntList();
+            forwardWeights[v] = new IntList();
+            backwardTargets[v] = new IntList();
+            backwardWeights[v] = new IntList();
+        }
+        for (int u = 0; u < nodeCount; u++) {
+            for (int i = 0; i < outTargets[u].size(); i++) {
+                int w = outTargets[u].get(i);
+                int weight = outWeights[u].get(i);
+                if (rank[u] < rank[w]) {
+                    forwardTargets[u].add(w);
+                    forwardWeights[u].add(weight);
+                } else {
+                    backwardTargets[w].add(u);
+                    backwardWeights[w].add(weight);
+                }
+            }
+        }
+
+        long[] cells = new long[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            int key = RoadNetworkIndexFormat.cellKey(latitudes[v] / RoadNetworkIndexFormat.COORDINATE_SCALE,
+                    longitudes[v] / RoadNetworkIndexFormat.COORDINATE_SCALE);
+            cells[v] = ((long) key << 32) | v;
+        }
+        Arrays.sort(cells);
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(index), 1 << 16))) {
+            out.writeInt(RoadNetworkIndexFormat.MAGIC);
+            out.writeInt(RoadNetworkIndexFormat.VERSION);
+            out.writeInt(nodeCount);
+            out.writeInt(totalSize(forwardTargets));
+            out.writeInt(totalSize(backwardTargets));
+            writeInts(out, latitudes);
+            writeInts(out, longitudes);
+            writeGraph(out, forwardTargets, forwardWeights);
+            writeGraph(out, backwardTargets, backwardWeights);
+            for (long cell : cells) {
+                out.writeInt((int) cell);
+            }
+            for (long cell : cells) {
+                out.writeInt((int) (cell >>> 32));
+            }
+        }
+    }
+
+    private static int totalSize(IntList[] lists) {
+        int size = 0;
+        for (IntList list : lists) {
+            size += list.size();
+        }
+        return size;
+    }
+
+    private static void writeGraph(DataOutputStream out, IntList[] targets, IntList[] weights) throws IOException {
+        int offset = 0;
+        for (IntList list : targets) {
+            out.writeInt(offset);
+            offset += list.size();
+        }
+        out.writeInt(offset);
+        for (IntList list : targets) {
+            writeInts(out, list.toArray());
+        }
+        for (IntList list : weights) {
+            writeInts(out, list.toArray());
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Minimal growable list of primitive ints.
+     */
+    static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.springboot.taxiservice.eta;
+
+/**
+ * Layout of the binary road network index written by {@link RoadNetworkIndexBuilder}
+ * and memory mapped by {@link RoadNetworkEtaEngine}.
+ *
+ * <pre>
+ * int    magic, version, nodeCount, forwardEdgeCount, backwardEdgeCount
+ * int[]  latitudes[nodeCount], longitudes[nodeCount]        (1e-6 degrees)
+ * int[]  forwardOffsets[nodeCount + 1]                       (upward edges, forward search)
+ * int[]  forwardTargets[forwardEdgeCount], forwardWeights[forwardEdgeCount]
+ * int[]  backwardOffsets[nodeCount + 1]                      (reversed upward edges, backward search)
+ * int[]  backwardTargets[backwardEdgeCount], backwardWeights[backwardEdgeCount]
+ * int[]  cellOrder[nodeCount]                                (node indexes sorted by grid cell)
+ * int[]  cellKeys[nodeCount]                                 (grid cell of cellOrder[i], ascending)
+ * </pre>
+ * All values are big endian ints, weights are travel times in deciseconds.
+ */
+final class RoadNetworkIndexFormat {
+
+    static final int MAGIC = 0x54584348;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_INTS = 5;
+
+    static final double COORDINATE_SCALE = 1e6;
+
+    // Grid cell size used for snapping positions to the nearest node, roughly 1.1 km of latitude.
+    static final double CELL_DEGREES = 0.01;
+
+    private RoadNetworkIndexFormat() {
+    }
+
+    /**
+     * Computes the grid cell of a position. Cells are packed as (latitude row, longitude column) in one int.
+     */
+    static int cellKey(double latitude, double longitude) {
+        int row = (int) Math.floor((latitude + 90) / CELL_DEGREES);
+        int column = (int) Math.floor((longitude + 180) / CELL_DEGREES);
+        return row * 36_000 + column;
+    }
+}
@@ -0,0 +1,12 @@
+package com.springboot.taxiservice.exception;
+
+/**
+ * Custom exception thrown when a taxi is registered with the ID of a taxi that is already registered.
+ */
+public class TaxiAlreadyRegisteredException extends RuntimeException{
+
+    public TaxiAlreadyRegisteredException(String message){
+
+        super(message);
+    }
+}
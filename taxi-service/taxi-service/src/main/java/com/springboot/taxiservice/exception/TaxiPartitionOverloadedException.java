@@ -0,0 +1,20 @@
+package com.springboot.taxiservice.exception;
+
+/**
+ * Custom exception thrown when a taxi partition has more queued work than it accepts, so the request is
+ * turned away instead of waiting. Clients should retry after the given number of seconds.
+ */
+public class TaxiPartitionOverloadedException extends RuntimeException{
+
+    private final long retryAfterSeconds;
+
+    public TaxiPartitionOverloadedException(String message, long retryAfterSeconds){
+
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,152 @@
+package com.springboot.taxiservice.geofence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saber.taxiconfig.config.RedisConfig;
+import com.springboot.taximodel.dto.request.GeofenceEventDTO;
+import com.springboot.taximodel.enums.GeofenceTransition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks which zones (airports, stations, restricted areas) each taxi is in, and publishes an event on
+ * RedisConfig.GEOFENCE_EVENT_CHANNEL whenever a taxi enters or leaves one.
+ * Zones are loaded once from the JSON file in taxi.geofence.zones-file, an array of
+ * {"id": "...", "category": "...", "polygon": [[longitude, latitude], ...]}; the engine is disabled while it is unset.
+ * A check is an R-tree descent plus a ray cast on the few candidate polygons.
+ * The zones each taxi is in are kept in the ZONES_KEY hash rather than in this instance, and swapped atomically by
+ * swap-geofence.lua, so fixes of one taxi may reach any instance and each transition is still published once.
+ */
+@Service
+public class GeofenceService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeofenceService.class);
+
+    /**
+     * Hash of the zone IDs, newline separated, per taxi currently inside at least one zone.
+     */
+    public static final String ZONES_KEY = "Geofence:Taxis";
+
+    private static final String SEPARATOR = "\n";
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ZoneRTree zoneTree;
+    private final Map<String, GeofenceZone> zonesById = new HashMap<>();
+    private final ThreadLocal<int[]> searchResults;
+    private final RedisScript<String> swapGeofenceScript =
+            RedisScript.of(new ClassPathResource("scripts/swap-geofence.lua"), String.class);
+
+    public GeofenceService(ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+                           @Value("${taxi.geofence.zones-file:}") String zonesFile) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.zoneTree = new ZoneRTree(zonesFile == null || zonesFile.isBlank()
+                ? List.of() : loadZones(Paths.get(zonesFile)));
+        this.searchResults = ThreadLocal.withInitial(() -> new int[zoneTree.size()]);
+        for (int i = 0; i < zoneTree.size(); i++) {
+            zonesById.put(zoneTree.zone(i).id, zoneTree.zone(i));
+        }
+        if (zoneTree.size() > 0) {
+            LOGGER.info("Loaded {} geofence zones from {}", zoneTree.size(), zonesFile);
+        }
+    }
+
+    /**
+     * Checks a location fix against the zones and publishes the entries and exits since the previous fix.
+     * @param taxiId The ID of the taxi.
+     * @param latitude The latitude of the fix.
+     * @param longitude The longitude of the fix.
+     */
+    public void check(String taxiId, double latitude, double longitude) {
+        if (zoneTree.size() == 0) {
+            return;
+        }
+        int[] found = searchResults.get();
+        int count = zoneTree.search(longitude, latitude, found);
+        String current = count == 0 ? "" : join(found, count);
+        // Fixes of one taxi are sent in order on the shared connection, so the swaps apply in order too.
+        reactiveRedisTemplate.execute(swapGeofenceScript, List.of(ZONES_KEY), List.of(taxiId, current))
+                .subscribe(previous -> publishTransitions(taxiId, split(previous), split(current)),
+                        e -> LOGGER.error("Error while checking the geofences of taxi {}", taxiId, e));
+    }
+
+    private void publishTransitions(String taxiId, List<String> previous, List<String> current) {
+        for (String zoneId : previous) {
+            if (!current.contains(zoneId)) {
+                publish(taxiId, zonesById.get(zoneId), GeofenceTransition.EXIT);
+            }
+        }
+        for (String zoneId : current) {
+            if (!previous.contains(zoneId)) {
+                publish(taxiId, zonesById.get(zoneId), GeofenceTransition.ENTER);
+            }
+        }
+    }
+
+    private void publish(String taxiId, GeofenceZone zone, GeofenceTransition transition) {
+        if (zone == null) {
+            // A zone recorded before the zones file was changed.
+            return;
+        }
+        try {
+            String event = objectMapper.writeValueAsString(
+                    new GeofenceEventDTO(taxiId, zone.id, zone.category, transition, new Date()));
+            reactiveRedisTemplate.convertAndSend(RedisConfig.GEOFENCE_EVENT_CHANNEL, event)
+                    .subscribe(r -> { }, e -> LOGGER.error("Error while sending message to Channel {}",
+                            RedisConfig.GEOFENCE_EVENT_CHANNEL, e));
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Error while sending message to Channel {}", RedisConfig.GEOFENCE_EVENT_CHANNEL, e);
+        }
+    }
+
+    private String join(int[] zones, int count) {
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                ids.append(SEPARATOR);
+            }
+            ids.append(zoneTree.zone(zones[i]).id);
+        }
+        return ids.toString();
+    }
+
+    private static List<String> split(String ids) {
+        return ids.isEmpty() ? List.of() : List.of(ids.split(SEPARATOR));
+    }
+
+    private List<GeofenceZone> loadZones(Path path) {
+        List<GeofenceZone> zones = new ArrayList<>();
+        try {
+            for (JsonNode zone : objectMapper.readTree(path.toFile())) {
+                JsonNode polygon = zone.get("polygon");
+                double[] longitudes = new double[polygon.size()];
+                double[] latitudes = new double[polygon.size()];
+                for (int i = 0; i < polygon.size(); i++) {
+                    longitudes[i] = polygon.get(i).get(0).asDouble();
+                    latitudes[i] = polygon.get(i).get(1).asDouble();
+                }
+                zones.add(new GeofenceZone(zone.get("id").asText(), zone.path("category").asText(null),
+                        longitudes, latitudes));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to load geofence zones " + path, e);
+        }
+        return zones;
+    }
+}
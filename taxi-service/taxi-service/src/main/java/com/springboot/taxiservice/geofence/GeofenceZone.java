@@ -0,0 +1,58 @@
+package com.springboot.taxiservice.geofence;
+
+/**
+ * A zone polygon, kept as primitive coordinate arrays so containment checks allocate nothing.
+ * The ring is implicitly closed, the last vertex connects back to the first.
+ */
+final class GeofenceZone {
+
+    final String id;
+    final String category;
+    final double[] longitudes;
+    final double[] latitudes;
+    final double minLongitude;
+    final double minLatitude;
+    final double maxLongitude;
+    final double maxLatitude;
+
+    GeofenceZone(String id, String category, double[] longitudes, double[] latitudes) {
+        if (longitudes.length < 3 || longitudes.length != latitudes.length) {
+            throw new IllegalArgumentException("Zone " + id + " needs a polygon of at least 3 vertices");
+        }
+        this.id = id;
+        this.category = category;
+        this.longitudes = longitudes;
+        this.latitudes = latitudes;
+        double minLon = Double.MAX_VALUE, minLat = Double.MAX_VALUE;
+        double maxLon = -Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        for (int i = 0; i < longitudes.length; i++) {
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+            minLat = Math.min(minLat, latitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+        }
+        this.minLongitude = minLon;
+        this.minLatitude = minLat;
+        this.maxLongitude = maxLon;
+        this.maxLatitude = maxLat;
+    }
+
+    /**
+     * Even-odd ray casting test. Zones are small enough for planar geometry on degrees.
+     * @param longitude The longitude of the point.
+     * @param latitude The latitude of the point.
+     * @return boolean true if the point lies inside the polygon.
+     */
+    boolean contains(double longitude, double latitude) {
+        boolean inside = false;
+        for (int i = 0, j = longitudes.length - 1; i < longitudes.length; j = i++) {
+            double yi = latitudes[i];
+            double yj = latitudes[j];
+            if ((yi > latitude) != (yj > latitude)
+                    && longitude < (longitudes[j] - longitudes[i]) * (latitude - yi) / (yj - yi) + longitudes[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+}
@@ -0,0 +1,123 @@
+package com.springboot.taxiservice.geofence;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Static R-tree over zone bounding boxes, bulk loaded with Sort-Tile-Recursive packing.
+ * Each level is a set of flat coordinate arrays; node i of a level covers entries
+ * [i * NODE_CAPACITY, (i + 1) * NODE_CAPACITY) of the level below, so there are no node objects to chase.
+ */
+final class ZoneRTree {
+
+    private static final int NODE_CAPACITY = 16;
+
+    private final GeofenceZone[] zones;
+    // Level 0 holds the zone boxes in packed order, the last level holds the root.
+    private final double[][] minLongitudes;
+    private final double[][] minLatitudes;
+    private final double[][] maxLongitudes;
+    private final double[][] maxLatitudes;
+
+    ZoneRTree(List<GeofenceZone> zoneList) {
+        this.zones = pack(zoneList);
+        int levels = 1;
+        for (int n = zones.length; n > 1; n = (n + NODE_CAPACITY - 1) / NODE_CAPACITY) {
+            levels++;
+        }
+        minLongitudes = new double[levels][];
+        minLatitudes = new double[levels][];
+        maxLongitudes = new double[levels][];
+        maxLatitudes = new double[levels][];
+
+        minLongitudes[0] = new double[zones.length];
+        minLatitudes[0] = new double[zones.length];
+        maxLongitudes[0] = new double[zones.length];
+        maxLatitudes[0] = new double[zones.length];
+        for (int i = 0; i < zones.length; i++) {
+            minLongitudes[0][i] = zones[i].minLongitude;
+            minLatitudes[0][i] = zones[i].minLatitude;
+            maxLongitudes[0][i] = zones[i].maxLongitude;
+            maxLatitudes[0][i] = zones[i].maxLatitude;
+        }
+        for (int level = 1; level < levels; level++) {
+            int children = minLongitudes[level - 1].length;
+            int nodes = (children + NODE_CAPACITY - 1) / NODE_CAPACITY;
+            minLongitudes[level] = new double[nodes];
+            minLatitudes[level] = new double[nodes];
+            maxLongitudes[level] = new double[nodes];
+            maxLatitudes[level] = new double[nodes];
+            for (int node = 0; node < nodes; node++) {
+                double minLon = Double.MAX_VALUE, minLat = Double.MAX_VALUE;
+                double maxLon = -Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+                for (int c = node * NODE_CAPACITY; c < Math.min(children, (node + 1) * NODE_CAPACITY); c++) {
+                    minLon = Math.min(minLon, minLongitudes[level - 1][c]);
+                    minLat = Math.min(minLat, minLatitudes[level - 1][c]);
+                    maxLon = Math.max(maxLon, maxLongitudes[level - 1][c]);
+                    maxLat = Math.max(maxLat, maxLatitudes[level - 1][c]);
+                }
+                minLongitudes[level][node] = minLon;
+                minLatitudes[level][node] = minLat;
+                maxLongitudes[level][node] = maxLon;
+                maxLatitudes[level][node] = maxLat;
+            }
+        }
+    }
+
+    int size() {
+        return zones.length;
+    }
+
+    GeofenceZone zone(int index) {
+        return zones[index];
+    }
+
+    /**
+     * Finds the zones containing a point.
+     * @param longitude The longitude of the point.
+     * @param latitude The latitude of the point.
+     * @param result Receives the indexes of the containing zones, in ascending order; must hold size() entries.
+     * @return int The number of containing zones.
+     */
+    int search(double longitude, double latitude, int[] result) {
+        if (zones.length == 0) {
+            return 0;
+        }
+        int top = minLongitudes.length - 1;
+        return search(top, 0, longitude, latitude, result, 0);
+    }
+
+    private int search(int level, int node, double longitude, double latitude, int[] result, int count) {
+        if (longitude < minLongitudes[level][node] || longitude > maxLongitudes[level][node]
+                || latitude < minLatitudes[level][node] || latitude > maxLatitudes[level][node]) {
+            return count;
+        }
+        if (level == 0) {
+            if (zones[node].contains(longitude, latitude)) {
+                result[count++] = node;
+            }
+            return count;
+        }
+        int end = Math.min(minLongitudes[level - 1].length, (node + 1) * NODE_CAPACITY);
+        for (int child = node * NODE_CAPACITY; child < end; child++) {
+            count = search(level - 1, child, longitude, latitude, result, count);
+        }
+        return count;
+    }
+
+    /**
+     * Orders the zones by Sort-Tile-Recursive: vertical slices by box centre longitude, then by latitude within each.
+     */
+    private static GeofenceZone[] pack(List<GeofenceZone> zoneList) {
+        GeofenceZone[] sorted = zoneList.toArray(new GeofenceZone[0]);
+        Arrays.sort(sorted, Comparator.comparingDouble(z -> z.minLongitude + z.maxLongitude));
+        int leaves = (sorted.length + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceSize = (int) Math.ceil(Math.sqrt(leaves)) * NODE_CAPACITY;
+        for (int start = 0; start < sorted.length; start += sliceSize) {
+            Arrays.sort(sorted, start, Math.min(sorted.length, start + sliceSize),
+                    Comparator.comparingDouble(z -> z.minLatitude + z.maxLatitude));
+        }
+        return sorted;
+    }
+}
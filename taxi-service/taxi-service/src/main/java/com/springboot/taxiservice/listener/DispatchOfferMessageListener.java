@@ -0,0 +1,42 @@
+package com.springboot.taxiservice.listener;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.taximodel.dto.request.DispatchOfferDTO;
+import com.springboot.taxiservice.websocket.DriverSessionRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Relays booking offers and their withdrawals from the booking service to drivers connected over WebSocket.
+ * Every instance receives every offer; only the one holding the driver's session delivers it.
+ */
+@Component
+public class DispatchOfferMessageListener implements MessageListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DispatchOfferMessageListener.class);
+
+    private final DriverSessionRegistry driverSessionRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public DispatchOfferMessageListener(DriverSessionRegistry driverSessionRegistry) {
+        this.driverSessionRegistry = driverSessionRegistry;
+    }
+
+    @Override
+    public void onMessage(Message message, @Nullable byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            DispatchOfferDTO offer = objectMapper.readValue(payload, DispatchOfferDTO.class);
+            driverSessionRegistry.send(offer.getTaxiId(), payload);
+        } catch (IOException e) {
+            LOGGER.error("Error while relaying dispatch offer", e);
+        }
+    }
+}
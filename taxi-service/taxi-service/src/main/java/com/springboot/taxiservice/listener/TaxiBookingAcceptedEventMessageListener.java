@@ -12,7 +12,9 @@ package com.springboot.taxiservice.listener;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.springboot.taximodel.dto.request.TaxiBookingAcceptedEventDTO;
 import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taxiservice.cluster.ClusterMembership;
 import com.springboot.taxiservice.service.TaxiService;
+import com.springboot.taxiservice.service.TripTraceRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.Message;
@@ -28,11 +30,16 @@ public class TaxiBookingAcceptedEventMessageListener implements MessageListener
     private static final Logger LOGGER = LoggerFactory.getLogger(TaxiBookingAcceptedEventMessageListener.class);
 
     public final TaxiService taxiService;
+    public final TripTraceRecorder tripTraceRecorder;
+    public final ClusterMembership clusterMembership;
     public final ObjectMapper objectMapper = new ObjectMapper();
 
-    public TaxiBookingAcceptedEventMessageListener(TaxiService taxiService){
+    public TaxiBookingAcceptedEventMessageListener(TaxiService taxiService, TripTraceRecorder tripTraceRecorder,
+                                                   ClusterMembership clusterMembership){
 
         this.taxiService = taxiService;
+        this.tripTraceRecorder = tripTraceRecorder;
+        this.clusterMembership = clusterMembership;
     }
 
 
@@ -48,10 +55,18 @@ public class TaxiBookingAcceptedEventMessageListener implements MessageListener
             TaxiBookingAcceptedEventDTO taxiBookingAcceptedEventDTO = objectMapper
                     .readValue(new String(message.getBody()), TaxiBookingAcceptedEventDTO.class);
 
+            // Every instance receives the event, only the owner of the taxi applies it.
+            if (clusterMembership.remoteOwnerUrl(taxiBookingAcceptedEventDTO.getTaxiId()) != null) {
+                return;
+            }
             // Log the accepted event.
             LOGGER.info("Accepted Event {}", taxiBookingAcceptedEventDTO);
             // Update the status of the taxi to OCCUPIED using the taxiService.
-            taxiService.updateTaxiStatus(taxiBookingAcceptedEventDTO.getTaxiId(), TaxiStatus.OCCUPIED);
+            taxiService.applyTaxiStatus(taxiBookingAcceptedEventDTO.getTaxiId(), TaxiStatus.OCCUPIED)
+                    .subscribe(t -> { }, e -> LOGGER.error("Error while updating taxi status", e));
+            // Start recording the trip trace of the taxi for this booking.
+            tripTraceRecorder.start(taxiBookingAcceptedEventDTO.getTaxiId(),
+                    taxiBookingAcceptedEventDTO.getTaxiBookingId());
         }catch (IOException e){
             // Log any errors that occur during the process.
             LOGGER.error("Error while updating taxi status", e);
@@ -16,12 +16,15 @@ import org.springframework.data.redis.core.RedisHash;
 import java.io.Serializable;
 
 
-@RedisHash("Taxi")
+@RedisHash(Taxi.KEYSPACE)
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
 public class Taxi implements Serializable {
 
+    // Keyspace of the taxi hashes, also the name of the set indexing all taxi IDs.
+    public static final String KEYSPACE = "Taxi";
+
 /*
 This is the main domain model, which will store the taxiid, TaxiType,
 and TaxiStatus of an actual physical taxi
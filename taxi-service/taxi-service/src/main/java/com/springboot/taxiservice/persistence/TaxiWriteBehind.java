@@ -0,0 +1,130 @@
+package com.springboot.taxiservice.persistence;
+
+import com.springboot.taximodel.util.WriteBehindBuffer;
+import com.springboot.taxiservice.model.Taxi;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Copies taxi registrations and status changes to the relational store behind the request path.
+ * Changes are coalesced per taxi in a bounded buffer, so a taxi flipping status many times between flushes
+ * costs one row write, and flushed on a schedule with batched upserts. Redis stays the system of record.
+ */
+@Component
+public class TaxiWriteBehind {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaxiWriteBehind.class);
+
+    // H2 upsert; see schema.sql for the table.
+    private static final String UPSERT = "MERGE INTO taxi (taxi_id, taxi_type, taxi_status, updated_at) "
+            + "KEY (taxi_id) VALUES (?, ?, ?, ?)";
+
+    private static final int[] ROW_TYPES = {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final WriteBehindBuffer<String, Taxi> buffer;
+    private final int batchSize;
+    private final Counter written;
+    private final Counter failed;
+    private final Timer flushTimer;
+
+    public TaxiWriteBehind(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                           @Value("${taxi.write-behind.capacity:200000}") int capacity,
+                           @Value("${taxi.write-behind.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buffer = new WriteBehindBuffer<>(capacity);
+        this.batchSize = batchSize;
+        this.written = meterRegistry.counter("taxi.write-behind.written");
+        this.failed = meterRegistry.counter("taxi.write-behind.failed");
+        this.flushTimer = meterRegistry.timer("taxi.write-behind.flush");
+        Gauge.builder("taxi.write-behind.pending", buffer, WriteBehindBuffer::size)
+                .description("Taxis waiting to be written").register(meterRegistry);
+        Gauge.builder("taxi.write-behind.lag", buffer, WriteBehindBuffer::lagMillis)
+                .description("Age of the oldest unwritten taxi change").baseUnit("milliseconds")
+                .register(meterRegistry);
+        FunctionCounter.builder("taxi.write-behind.coalesced", buffer, WriteBehindBuffer::coalesced)
+                .register(meterRegistry);
+        FunctionCounter.builder("taxi.write-behind.rejected", buffer, WriteBehindBuffer::rejected)
+                .description("Changes dropped because the buffer was full").register(meterRegistry);
+        FunctionCounter.builder("taxi.write-behind.retries-dropped", buffer, WriteBehindBuffer::retriesDropped)
+                .description("Failed changes dropped instead of retried because the buffer was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the current state of a taxi. Never blocks.
+     * @param taxi The taxi as saved to Redis.
+     */
+    public void enqueue(Taxi taxi) {
+        // Copy, the caller may keep mutating its instance.
+        Taxi snapshot = new Taxi(taxi.getTaxiId(), taxi.getTaxiType(), taxi.getTaxiStatus());
+        if (!buffer.offer(snapshot.getTaxiId(), snapshot)) {
+            LOGGER.warn("Write-behind buffer full, taxi {} not persisted", snapshot.getTaxiId());
+        }
+    }
+
+    /**
+     * Writes all pending taxis in batches of taxi.write-behind.batch-size.
+     */
+    @Scheduled(fixedDelayString = "${taxi.write-behind.flush-interval-ms:1000}")
+    public void flush() {
+        List<WriteBehindBuffer.Entry<String, Taxi>> batch;
+        while (!(batch = buffer.drain(batchSize)).isEmpty()) {
+            if (!write(batch)) {
+                // Leave the rest for the next run rather than hammering a failing database.
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private boolean write(List<WriteBehindBuffer.Entry<String, Taxi>> batch) {
+        List<Object[]> rows = new ArrayList<>(batch.size());
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (WriteBehindBuffer.Entry<String, Taxi> entry : batch) {
+            Taxi taxi = entry.getValue();
+            rows.add(new Object[]{taxi.getTaxiId(),
+                    taxi.getTaxiType() == null ? null : taxi.getTaxiType().name(),
+                    taxi.getTaxiStatus() == null ? null : taxi.getTaxiStatus().name(),
+                    now});
+        }
+        try {
+            flushTimer.record(() -> jdbcTemplate.batchUpdate(UPSERT, rows, ROW_TYPES));
+            written.increment(batch.size());
+            return true;
+        } catch (DataAccessException e) {
+            LOGGER.error("Error while writing {} taxis, will retry", batch.size(), e);
+            failed.increment(batch.size());
+            int dropped = 0;
+            for (WriteBehindBuffer.Entry<String, Taxi> entry : batch) {
+                if (!buffer.retry(entry.getKey(), entry.getValue(), entry.getSince())) {
+                    dropped++;
+                }
+            }
+            if (dropped > 0) {
+                LOGGER.warn("Write-behind buffer full, {} failed taxis dropped instead of retried", dropped);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.springboot.taxiservice.service;
+
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.FleetSnapshotCodec;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taxiservice.model.Taxi;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams the position and status of every taxi in the {@link FleetSnapshotCodec} format, gzipped.
+ * Each geo set is walked with ZSCAN one page at a time; positions are decoded from the geohash scores and the
+ * statuses of a page are read from the Taxi hashes in one pipelined round trip. Only one page is held in memory,
+ * and since pages are written to the blocking response stream, a slow client slows the scan down rather than
+ * letting it buffer. Taxis that never reported a position are not part of the snapshot, and like any SCAN,
+ * a taxi may rarely be listed twice if Redis resizes the geo set during the walk.
+ */
+@Service
+public class FleetSnapshotService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FleetSnapshotService.class);
+
+    private static final String TAXI_STATUS_FIELD = "taxiStatus";
+
+    private static final int BUFFER_BYTES = 65536;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Semaphore permits;
+    private final Timer snapshots;
+    private final int pageSize;
+
+    public FleetSnapshotService(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                                @Value("${taxi.snapshot.page-size:1000}") int pageSize,
+                                @Value("${taxi.snapshot.max-concurrent:2}") int maxConcurrent) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.pageSize = pageSize;
+        this.permits = new Semaphore(maxConcurrent);
+        this.snapshots = meterRegistry.timer("taxi.snapshot");
+    }
+
+    /**
+     * Returns the body that streams a snapshot in one of the taxi.snapshot.max-concurrent snapshot slots.
+     * The slot is only taken once the body runs, so a request abandoned before that holds none; the check up front
+     * just answers most requests over the limit before the response is started.
+     * @return StreamingResponseBody The body writing the gzipped snapshot, holding a slot while it does.
+     * @throws ResponseStatusException with 429 Too Many Requests if every slot is taken, from this method or
+     * from the body before it writes anything.
+     */
+    public StreamingResponseBody snapshot() {
+        if (permits.availablePermits() == 0) {
+            throw tooManySnapshots();
+        }
+        return out -> {
+            if (!permits.tryAcquire()) {
+                throw tooManySnapshots();
+            }
+            try {
+                snapshots.record(() -> write(out));
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    private static ResponseStatusException tooManySnapshots() {
+        return new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many fleet snapshots in progress");
+    }
+
+    private void write(OutputStream out) {
+        long start = System.currentTimeMillis();
+        long taxis = 0;
+        // Taxi IDs and fixed-point coordinates barely compress, favour speed over ratio.
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_BYTES) {
+            {
+                def.setLevel(Deflater.BEST_SPEED);
+            }
+        }) {
+            BufferedOutputStream buffered = new BufferedOutputStream(gzip, BUFFER_BYTES);
+            FleetSnapshotCodec.Writer writer = new FleetSnapshotCodec.Writer(buffered, start);
+            Page page = new Page(pageSize);
+            for (TaxiType taxiType : TaxiType.values()) {
+                try (Cursor<ZSetOperations.TypedTuple<String>> cursor = stringRedisTemplate.opsForZSet()
+                        .scan(taxiType.toString(), ScanOptions.scanOptions().count(pageSize).build())) {
+                    while (cursor.hasNext()) {
+                        page.members.add(cursor.next());
+                        if (page.members.size() == pageSize) {
+                            taxis += writePage(taxiType, page, writer);
+                        }
+                    }
+                }
+                taxis += writePage(taxiType, page, writer);
+            }
+            writer.finish();
+        } catch (IOException e) {
+            // Most likely the client went away, there is nobody left to report the error to.
+            LOGGER.warn("Fleet snapshot aborted after {} taxis: {}", taxis, e.getMessage());
+            return;
+        }
+        LOGGER.info("Streamed fleet snapshot of {} taxis in {} ms", taxis, System.currentTimeMillis() - start);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int writePage(TaxiType taxiType, Page page, FleetSnapshotCodec.Writer writer) throws IOException {
+        List<ZSetOperations.TypedTuple<String>> members = page.members;
+        if (members.isEmpty()) {
+            return 0;
+        }
+        // Neighbouring geohashes are neighbouring positions, which keeps the coordinate deltas small.
+        members.sort(Comparator.comparingDouble(ZSetOperations.TypedTuple::getScore));
+        List<Object> statuses = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            members.forEach(m -> stringConnection.hGet(Taxi.KEYSPACE + ":" + m.getValue(), TAXI_STATUS_FIELD));
+            return null;
+        });
+        int count = 0;
+        for (int i = 0; i < members.size(); i++) {
+            String status = (String) statuses.get(i);
+            if (status == null) {
+                // Left behind in the geo set by a taxi that no longer exists.
+                continue;
+            }
+            double[] position = GeoCell.centre(members.get(i).getScore().longValue(), GeoCell.HASH_BITS_PER_AXIS);
+            page.taxiIds[count] = members.get(i).getValue();
+            page.statuses[count] = TaxiStatus.valueOf(status);
+            page.longitudes[count] = position[0];
+            page.latitudes[count] = position[1];
+            count++;
+        }
+        writer.writeBlock(taxiType, page.taxiIds, page.statuses, page.latitudes, page.longitudes, count);
+        members.clear();
+        return count;
+    }
+
+    /**
+     * The scanned members of one page and the columns they are encoded from, reused from page to page.
+     */
+    private static final class Page {
+        private final List<ZSetOperations.TypedTuple<String>> members;
+        private final String[] taxiIds;
+        private final TaxiStatus[] statuses;
+        private final double[] latitudes;
+        private final double[] longitudes;
+
+        private Page(int size) {
+            members = new ArrayList<>(size);
+            taxiIds = new String[size];
+            statuses = new TaxiStatus[size];
+            latitudes = new double[size];
+            longitudes = new double[size];
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.springboot.taxiservice.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recommends to each taxi when to send its next location fix, so that driver apps report often where precision
+ * matters for dispatch and back off where it does not.
+ * The interval aims at a distance between fixes: taxi.report-interval.available-spacing-meters for available taxis,
+ * shrunk by the demand pressure (open bookings per available taxi) of their cell, and
+ * taxi.report-interval.occupied-spacing-meters for taxis on a trip. It is that distance over the speed derived from
+ * the previous fix, bounded by min-seconds and by a per status cap that a stationary taxi gets.
+ * Taxis that sent nothing for taxi.report-interval.idle-expiry-seconds are forgotten, so drivers going off shift
+ * do not accumulate; a forgotten taxi starts over as if it had no previous fix.
+ */
+@Component
+public class ReportIntervalAdvisor {
+
+    private static final double METERS_PER_DEGREE = 111_320;
+
+    // Below this a taxi is considered to be standing still.
+    private static final double STATIONARY_METERS_PER_SECOND = 0.5;
+
+    // A previous fix older than this says little about the current speed.
+    private static final long MAX_FIX_AGE_NANOS = 300_000_000_000L;
+
+    private final Map<String, LastFix> lastFixes = new ConcurrentHashMap<>();
+    private final DistributionSummary advised;
+    private final int minSeconds;
+    private final int availableMaxSeconds;
+    private final int occupiedMaxSeconds;
+    private final double availableSpacingMeters;
+    private final double occupiedSpacingMeters;
+    private final long idleExpiryNanos;
+
+    public ReportIntervalAdvisor(MeterRegistry meterRegistry,
+                                 @Value("${taxi.report-interval.min-seconds:2}") int minSeconds,
+                                 @Value("${taxi.report-interval.available-max-seconds:30}") int availableMaxSeconds,
+                                 @Value("${taxi.report-interval.occupied-max-seconds:60}") int occupiedMaxSeconds,
+                                 @Value("${taxi.report-interval.available-spacing-meters:150}")
+                                         double availableSpacingMeters,
+                                 @Value("${taxi.report-interval.occupied-spacing-meters:300}")
+                                         double occupiedSpacingMeters,
+                                 @Value("${taxi.report-interval.idle-expiry-seconds:600}") long idleExpirySeconds) {
+        this.minSeconds = minSeconds;
+        this.availableMaxSeconds = availableMaxSeconds;
+        this.occupiedMaxSeconds = occupiedMaxSeconds;
+        this.availableSpacingMeters = availableSpacingMeters;
+        this.occupiedSpacingMeters = occupiedSpacingMeters;
+        this.idleExpiryNanos = TimeUnit.SECONDS.toNanos(idleExpirySeconds);
+        this.advised = DistributionSummary.builder("taxi.report-interval.advised")
+                .baseUnit("seconds")
+                .description("Recommended seconds until the next location fix")
+                .register(meterRegistry);
+        Gauge.builder("taxi.report-interval.taxis", lastFixes, Map::size)
+                .description("Taxis whose previous fix is kept to advise their next report interval")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Recommends the next report interval from a fix and the demand of the cell it falls in.
+     * @param taxiId The ID of the taxi.
+     * @param latitude The latitude of the fix.
+     * @param longitude The longitude of the fix.
+     * @param available Whether the taxi is available for bookings.
+     * @param openBookings The open bookings of the taxi's type in its cell.
+     * @param availableTaxis The available taxis of the taxi's type in its cell.
+     * @return int The recommended number of seconds until the next fix.
+     */
+    public int advise(String taxiId, double latitude, double longitude, boolean available,
+                      long openBookings, long availableTaxis) {
+        LastFix lastFix = lastFixes.computeIfAbsent(taxiId, id -> new LastFix());
+        double pressure = (double) openBookings / Math.max(1, availableTaxis);
+        synchronized (lastFix) {
+            lastFix.pressure = pressure;
+            return advise(lastFix, latitude, longitude, available, pressure);
+        }
+    }
+
+    /**
+     * Recommends the next report interval of a taxi whose cell demand is not read on this fix, such as an owned
+     * taxi served from memory, using the demand seen on its previous fix.
+     * @param taxiId The ID of the taxi.
+     * @param latitude The latitude of the fix.
+     * @param longitude The longitude of the fix.
+     * @param available Whether the taxi is available for bookings.
+     * @return int The recommended number of seconds until the next fix.
+     */
+    public int advise(String taxiId, double latitude, double longitude, boolean available) {
+        LastFix lastFix = lastFixes.computeIfAbsent(taxiId, id -> new LastFix());
+        synchronized (lastFix) {
+            return advise(lastFix, latitude, longitude, available, lastFix.pressure);
+        }
+    }
+
+    /**
+     * Records the cell demand of a taxi once it is known, for the next call to
+     * {@link #advise(String, double, double, boolean)}.
+     * @param taxiId The ID of the taxi.
+     * @param openBookings The open bookings of the taxi's type in its cell.
+     * @param availableTaxis The available taxis of the taxi's type in its cell.
+     */
+    public void recordDemand(String taxiId, long openBookings, long availableTaxis) {
+        LastFix lastFix = lastFixes.computeIfAbsent(taxiId, id -> new LastFix());
+        synchronized (lastFix) {
+            lastFix.pressure = (double) openBookings / Math.max(1, availableTaxis);
+            lastFix.touchedNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Forgets the taxis not heard from within the idle expiry.
+     */
+    @Scheduled(fixedDelayString = "${taxi.report-interval.expiry-interval-ms:60000}")
+    public void expireIdle() {
+        long now = System.nanoTime();
+        lastFixes.values().removeIf(lastFix -> {
+            synchronized (lastFix) {
+                return now - lastFix.touchedNanos > idleExpiryNanos;
+            }
+        });
+    }
+
+    private int advise(LastFix lastFix, double latitude, double longitude, boolean available, double pressure) {
+        long now = System.nanoTime();
+        double speed = Double.NaN;
+        if (lastFix.nanos != 0 && now - lastFix.nanos < MAX_FIX_AGE_NANOS) {
+            double seconds = (now - lastFix.nanos) / 1e9;
+            speed = distanceMeters(lastFix.latitude, lastFix.longitude, latitude, longitude) / seconds;
+        }
+        lastFix.latitude = latitude;
+        lastFix.longitude = longitude;
+        lastFix.nanos = now;
+        lastFix.touchedNanos = now;
+
+        double spacing = occupiedSpacingMeters;
+        double cap = occupiedMaxSeconds;
+        if (available) {
+            // The more bookings compete for each available taxi here, the fresher its position needs to be.
+            spacing = availableSpacingMeters / (1 + pressure);
+            cap = availableMaxSeconds / (1 + pressure);
+        }
+        double interval;
+        if (Double.isNaN(speed)) {
+            // No recent fix to derive a speed from, ask for the next one soon.
+            interval = minSeconds;
+        } else if (speed < STATIONARY_METERS_PER_SECOND) {
+            interval = cap;
+        } else {
+            interval = spacing / speed;
+        }
+        int seconds = (int) Math.round(Math.max(minSeconds, Math.min(cap, interval)));
+        advised.record(seconds);
+        return seconds;
+    }
+
+    private static double distanceMeters(double latitude1, double longitude1, double latitude2, double longitude2) {
+        // Equirectangular, fixes are at most a few kilometers apart.
+        double x = (longitude2 - longitude1) * Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+        double y = latitude2 - latitude1;
+        return Math.sqrt(x * x + y * y) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * The previous fix of a taxi and the demand pressure last seen around it.
+     */
+    private static final class LastFix {
+        private double latitude;
+        private double longitude;
+        private long nanos;
+        private double pressure;
+        // The last fix or demand recorded, for the idle expiry.
+        private long touchedNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,310 @@
+package com.springboot.taxiservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.dto.request.TaxiRegisterEventDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkRegisterErrorDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkRegisterResponseDTO;
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taximodel.util.HeatmapKeys;
+import com.springboot.taxiservice.exception.TaxiAlreadyRegisteredException;
+import com.springboot.taxiservice.model.Taxi;
+import com.springboot.taxiservice.persistence.TaxiWriteBehind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.RedisConverter;
+import org.springframework.data.redis.core.convert.RedisData;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Imports a whole fleet of taxis from a CSV or NDJSON stream.
+ * Rows are validated and de-duplicated while reading, and written to Redis in pipelined batches
+ * using the same hash layout the TaxiRepository uses, so imported taxis are indistinguishable
+ * from taxis registered one by one, which go through the same script.
+ */
+@Service
+public class TaxiBulkRegistrationService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaxiBulkRegistrationService.class);
+
+    // Redis GEOADD only accepts latitudes within the Web Mercator bounds.
+    private static final double MAX_GEO_LATITUDE = 85.05112878;
+
+    // Upper bound on the number of row errors returned, the counters still cover every row.
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisConverter redisConverter;
+    private final TaxiMetadataCache taxiMetadataCache;
+    private final TaxiWriteBehind taxiWriteBehind;
+    private final TaxiChangePublisher taxiChangePublisher;
+    private final ObjectMapper objectMapper;
+    private final RedisScript<Long> registerTaxiScript =
+            RedisScript.of(new ClassPathResource("scripts/register-taxi.lua"), Long.class);
+    private final int batchSize;
+
+    public TaxiBulkRegistrationService(StringRedisTemplate stringRedisTemplate, RedisConverter redisConverter,
+                                       TaxiMetadataCache taxiMetadataCache, TaxiWriteBehind taxiWriteBehind,
+                                       TaxiChangePublisher taxiChangePublisher, ObjectMapper objectMapper,
+                                       @Value("${taxi.bulk.batch-size:500}") int batchSize) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisConverter = redisConverter;
+        this.taxiMetadataCache = taxiMetadataCache;
+        this.taxiWriteBehind = taxiWriteBehind;
+        this.taxiChangePublisher = taxiChangePublisher;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Reads taxis from a CSV stream (taxiId,taxiType[,latitude,longitude]) and registers them.
+     * A leading header row starting with "taxiId" is skipped.
+     * @param inputStream The CSV request body.
+     * @return TaxiBulkRegisterResponseDTO The import summary including per-row errors and throughput.
+     * @throws IOException if the stream cannot be read.
+     */
+    public TaxiBulkRegisterResponseDTO importCsv(InputStream inputStream) throws IOException {
+        return importRows(inputStream, this::parseCsvRow);
+    }
+
+    /**
+     * Reads taxis from a newline delimited JSON stream of TaxiRegisterEventDTOs and registers them.
+     * @param inputStream The NDJSON request body.
+     * @return TaxiBulkRegisterResponseDTO The import summary including per-row errors and throughput.
+     * @throws IOException if the stream cannot be read.
+     */
+    public TaxiBulkRegisterResponseDTO importNdjson(InputStream inputStream) throws IOException {
+        return importRows(inputStream, this::parseJsonRow);
+    }
+
+    /**
+     * Registers a single taxi with the same register-taxi.lua check-and-write the import uses, so neither path
+     * ever overwrites a taxi that is already registered.
+     * @param taxiRegisterEventDTO The taxi to register, with an optional initial location.
+     * @return Taxi The registered taxi.
+     * @throws IllegalArgumentException if the taxi ID or type is missing or the location is out of range.
+     * @throws TaxiAlreadyRegisteredException if a taxi with the same ID is already registered.
+     */
+    public Taxi register(TaxiRegisterEventDTO taxiRegisterEventDTO) {
+        validate(taxiRegisterEventDTO);
+        Long result = stringRedisTemplate.execute(registerTaxiScript, getKeys(taxiRegisterEventDTO),
+                getArgs(taxiRegisterEventDTO).toArray());
+        if (!Long.valueOf(1).equals(result)) {
+            throw new TaxiAlreadyRegisteredException("Taxi Id " + taxiRegisterEventDTO.getTaxiId()
+                    + " already registered");
+        }
+        Taxi taxi = registered(taxiRegisterEventDTO);
+        taxiChangePublisher.publish(taxi);
+        return taxi;
+    }
+
+    private TaxiBulkRegisterResponseDTO importRows(InputStream inputStream, RowParser rowParser) throws IOException {
+        long started = System.nanoTime();
+        ImportState state = new ImportState();
+        List<TaxiRegisterEventDTO> batch = new ArrayList<>(batchSize);
+        List<Long> batchRows = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            String line;
+            long row = 0;
+            while ((line = reader.readLine()) != null) {
+                row++;
+                if (line.isBlank() || (row == 1 && line.regionMatches(true, 0, "taxiId", 0, 6))) {
+                    continue;
+                }
+                state.received++;
+                try {
+                    TaxiRegisterEventDTO taxiRegisterEventDTO = rowParser.parse(line);
+                    validate(taxiRegisterEventDTO);
+                    // Drop repeated taxi IDs within the same import, the first occurrence wins.
+                    if (!state.seenTaxiIds.add(taxiRegisterEventDTO.getTaxiId())) {
+                        state.reject(row, taxiRegisterEventDTO.getTaxiId(), "Duplicate taxi id in import");
+                        continue;
+                    }
+                    batch.add(taxiRegisterEventDTO);
+                    batchRows.add(row);
+                } catch (IllegalArgumentException | JsonProcessingException e) {
+                    state.reject(row, null, e.getMessage());
+                }
+
+                if (batch.size() == batchSize) {
+                    writeBatch(batch, batchRows, state);
+                    batch.clear();
+                    batchRows.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, batchRows, state);
+        }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+        double taxisPerSecond = state.registered * 1000d / elapsedMillis;
+        LOGGER.info("Bulk import registered {} of {} taxis in {} ms ({} taxis/s)",
+                state.registered, state.received, elapsedMillis, Math.round(taxisPerSecond));
+        return new TaxiBulkRegisterResponseDTO(state.received, state.registered, state.rejected,
+                elapsedMillis, taxisPerSecond, state.errors);
+    }
+
+    /**
+     * Writes one batch in a single pipelined round trip of register-taxi.lua, which checks and writes each taxi
+     * atomically, so a taxi registered concurrently by another request is never overwritten.
+     */
+    private void writeBatch(List<TaxiRegisterEventDTO> batch, List<Long> batchRows, ImportState state) {
+        String sha = stringRedisTemplate.execute((RedisCallback<String>) connection ->
+                ((StringRedisConnection) connection).scriptLoad(registerTaxiScript.getScriptAsString()));
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            batch.forEach(t -> registerTaxi(stringConnection, sha, t));
+            return null;
+        });
+
+        List<Taxi> registered = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            TaxiRegisterEventDTO t = batch.get(i);
+            if (!Long.valueOf(1).equals(results.get(i))) {
+                state.reject(batchRows.get(i), t.getTaxiId(), "Taxi already registered");
+                continue;
+            }
+            registered.add(registered(t));
+        }
+        taxiChangePublisher.publishAll(registered);
+        state.registered += registered.size();
+    }
+
+    private void registerTaxi(StringRedisConnection connection, String sha, TaxiRegisterEventDTO taxiRegisterEventDTO) {
+        List<String> keys = getKeys(taxiRegisterEventDTO);
+        List<String> keysAndArgs = new ArrayList<>(keys);
+        keysAndArgs.addAll(getArgs(taxiRegisterEventDTO));
+        connection.evalSha(sha, ReturnType.INTEGER, keys.size(), keysAndArgs.toArray(new String[0]));
+    }
+
+    private Taxi registered(TaxiRegisterEventDTO taxiRegisterEventDTO) {
+        Taxi taxi = new Taxi(taxiRegisterEventDTO.getTaxiId(), taxiRegisterEventDTO.getTaxiType(), TaxiStatus.AVAILABLE);
+        taxiMetadataCache.put(taxi.getTaxiId(), taxi.getTaxiType());
+        taxiWriteBehind.enqueue(taxi);
+        return taxi;
+    }
+
+    private static List<String> getKeys(TaxiRegisterEventDTO taxiRegisterEventDTO) {
+        TaxiType taxiType = taxiRegisterEventDTO.getTaxiType();
+        List<String> keys = new ArrayList<>();
+        keys.add(Taxi.KEYSPACE + ":" + taxiRegisterEventDTO.getTaxiId());
+        keys.add(Taxi.KEYSPACE);
+        if (taxiRegisterEventDTO.getLocation() != null) {
+            keys.add(taxiType.toString());
+            keys.add(HeatmapKeys.TAXI_CELLS);
+            keys.add(HeatmapKeys.availableTaxis(taxiType));
+            keys.addAll(TaxiHeatmapService.reconcileKeys(taxiType));
+        }
+        return keys;
+    }
+
+    private List<String> getArgs(TaxiRegisterEventDTO taxiRegisterEventDTO) {
+        Taxi taxi = new Taxi(taxiRegisterEventDTO.getTaxiId(), taxiRegisterEventDTO.getTaxiType(), TaxiStatus.AVAILABLE);
+        LocationDTO location = taxiRegisterEventDTO.getLocation();
+
+        List<String> args = new ArrayList<>();
+        args.add(taxi.getTaxiId());
+        args.add(location == null ? "" : location.getLongitude().toString());
+        args.add(location == null ? "" : location.getLatitude().toString());
+        args.add(location == null ? "" : Long.toString(GeoCell.cellOf(location.getLongitude(),
+                location.getLatitude(), HeatmapKeys.BITS_PER_AXIS)));
+        // Let the mapping converter produce the hash so the layout matches TaxiRepository.save.
+        RedisData redisData = new RedisData();
+        redisConverter.write(taxi, redisData);
+        redisData.getBucket().rawMap().forEach((field, value) -> {
+            args.add(new String(field, StandardCharsets.UTF_8));
+            args.add(new String(value, StandardCharsets.UTF_8));
+        });
+        return args;
+    }
+
+    private TaxiRegisterEventDTO parseCsvRow(String line) {
+        String[] columns = line.split(",", -1);
+        if (columns.length != 2 && columns.length != 4) {
+            throw new IllegalArgumentException("Expected taxiId,taxiType[,latitude,longitude]");
+        }
+        TaxiRegisterEventDTO taxiRegisterEventDTO = new TaxiRegisterEventDTO();
+        taxiRegisterEventDTO.setTaxiId(columns[0].trim());
+        taxiRegisterEventDTO.setTaxiType(parseTaxiType(columns[1].trim()));
+        if (columns.length == 4 && !columns[2].isBlank() && !columns[3].isBlank()) {
+            try {
+                taxiRegisterEventDTO.setLocation(new LocationDTO(Double.valueOf(columns[2].trim()),
+                        Double.valueOf(columns[3].trim()), null));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid coordinates");
+            }
+        }
+        return taxiRegisterEventDTO;
+    }
+
+    private TaxiRegisterEventDTO parseJsonRow(String line) throws JsonProcessingException {
+        return objectMapper.readValue(line, TaxiRegisterEventDTO.class);
+    }
+
+    private TaxiType parseTaxiType(String value) {
+        try {
+            return TaxiType.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown taxi type " + value);
+        }
+    }
+
+    private void validate(TaxiRegisterEventDTO taxiRegisterEventDTO) {
+        if (taxiRegisterEventDTO.getTaxiId() == null || taxiRegisterEventDTO.getTaxiId().isBlank()) {
+            throw new IllegalArgumentException("Missing taxi id");
+        }
+        if (taxiRegisterEventDTO.getTaxiType() == null) {
+            throw new IllegalArgumentException("Missing taxi type");
+        }
+        LocationDTO location = taxiRegisterEventDTO.getLocation();
+        if (location != null) {
+            if (location.getLatitude() == null || location.getLongitude() == null
+                    || Math.abs(location.getLatitude()) > MAX_GEO_LATITUDE
+                    || Math.abs(location.getLongitude()) > 180) {
+                throw new IllegalArgumentException("Location out of range");
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowParser {
+        TaxiRegisterEventDTO parse(String line) throws JsonProcessingException;
+    }
+
+    private static final class ImportState {
+        private final Set<String> seenTaxiIds = new HashSet<>();
+        private final List<TaxiBulkRegisterErrorDTO> errors = new ArrayList<>();
+        private long received;
+        private long registered;
+        private long rejected;
+
+        private void reject(long row, String taxiId, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new TaxiBulkRegisterErrorDTO(row, taxiId, message));
+            }
+        }
+    }
+}
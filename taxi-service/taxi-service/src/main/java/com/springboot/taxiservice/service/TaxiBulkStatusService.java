@@ -0,0 +1,262 @@
+package com.springboot.taxiservice.service;
+
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkStatusResponseDTO;
+import com.springboot.taximodel.dto.response.TaxiPositionStatusDTO;
+import com.springboot.taximodel.dto.response.TaxiStatusDTO;
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taxiservice.cluster.ClusterMembership;
+import com.springboot.taxiservice.cluster.PartitionedTaxiStore;
+import com.springboot.taxiservice.model.Taxi;
+import com.springboot.taxiservice.persistence.TaxiWriteBehind;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and changes the status of many taxis at once, for dispatch dashboards and shift changes.
+ * Each batch of taxi.bulk.batch-size taxis costs one pipelined read, and for changes one pipelined run of
+ * set-taxi-status.lua per taxi, the script single status changes use, which also adjusts the available taxi heatmap.
+ * Changes only read the types of taxis missing from the TaxiMetadataCache beforehand.
+ */
+@Service
+public class TaxiBulkStatusService {
+
+    private static final String TAXI_TYPE_FIELD = "taxiType";
+    private static final String TAXI_STATUS_FIELD = "taxiStatus";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TaxiMetadataCache taxiMetadataCache;
+    private final TripTraceRecorder tripTraceRecorder;
+    private final TaxiWriteBehind taxiWriteBehind;
+    private final TaxiChangePublisher taxiChangePublisher;
+    private final ClusterMembership clusterMembership;
+    private final TaxiFieldStore taxiFieldStore;
+    private final int batchSize;
+    private final int maxTaxis;
+
+    public TaxiBulkStatusService(StringRedisTemplate stringRedisTemplate, TaxiMetadataCache taxiMetadataCache,
+                                 TripTraceRecorder tripTraceRecorder, TaxiWriteBehind taxiWriteBehind,
+                                 ClusterMembership clusterMembership, TaxiChangePublisher taxiChangePublisher,
+                                 TaxiFieldStore taxiFieldStore,
+                                 @Value("${taxi.bulk.batch-size:500}") int batchSize,
+                                 @Value("${taxi.bulk.max-status-taxis:10000}") int maxTaxis) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.taxiMetadataCache = taxiMetadataCache;
+        this.tripTraceRecorder = tripTraceRecorder;
+        this.taxiWriteBehind = taxiWriteBehind;
+        this.clusterMembership = clusterMembership;
+        this.taxiChangePublisher = taxiChangePublisher;
+        this.taxiFieldStore = taxiFieldStore;
+        this.batchSize = batchSize;
+        this.maxTaxis = maxTaxis;
+    }
+
+    /**
+     * Reads the status and last position of many taxis.
+     * When the types of a batch are cached the positions are read in the same round trip as the statuses,
+     * otherwise a second pipelined GEOPOS follows for the taxis whose type was not known.
+     * @param taxiIds The IDs of the taxis.
+     * @return List<TaxiPositionStatusDTO> The taxis that exist, in request order.
+     * @throws IllegalArgumentException if more than taxi.bulk.max-status-taxis taxis are requested.
+     */
+    public List<TaxiPositionStatusDTO> getStatuses(List<String> taxiIds) {
+        checkSize(taxiIds.size());
+        List<TaxiPositionStatusDTO> statuses = new ArrayList<>(taxiIds.size());
+        for (int start = 0; start < taxiIds.size(); start += batchSize) {
+            readBatch(taxiIds.subList(start, Math.min(taxiIds.size(), start + batchSize)), statuses);
+        }
+        return statuses;
+    }
+
+    /**
+     * Applies many status changes. Unknown taxis are reported rather than failing the whole request,
+     * and when a taxi appears more than once its last change wins.
+     * @param changes The new status per taxi.
+     * @return TaxiBulkStatusResponseDTO The applied statuses and the IDs that were not found.
+     * @throws IllegalArgumentException if more than taxi.bulk.max-status-taxis changes are given.
+     */
+    public TaxiBulkStatusResponseDTO updateStatuses(List<TaxiStatusDTO> changes) {
+        checkSize(changes.size());
+        Map<String, TaxiStatus> lastChanges = new LinkedHashMap<>();
+        for (TaxiStatusDTO change : changes) {
+            if (change.getTaxiId() == null || change.getStatus() == null) {
+                throw new IllegalArgumentException("Every change requires a taxiId and a status");
+            }
+            lastChanges.put(change.getTaxiId(), change.getStatus());
+        }
+        List<String> taxiIds = new ArrayList<>(lastChanges.keySet());
+        TaxiBulkStatusResponseDTO response = new TaxiBulkStatusResponseDTO(new ArrayList<>(), new ArrayList<>());
+        for (int start = 0; start < taxiIds.size(); start += batchSize) {
+            writeBatch(taxiIds.subList(start, Math.min(taxiIds.size(), start + batchSize)), lastChanges, response);
+        }
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readBatch(List<String> taxiIds, List<TaxiPositionStatusDTO> statuses) {
+        List<TaxiType> cachedTypes = new ArrayList<>(taxiIds.size());
+        taxiIds.forEach(id -> cachedTypes.add(taxiMetadataCache.getTaxiType(id).orElse(null)));
+
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            taxiIds.forEach(id -> stringConnection.hMGet(getTaxiKey(id), TAXI_TYPE_FIELD, TAXI_STATUS_FIELD));
+            for (int i = 0; i < taxiIds.size(); i++) {
+                if (cachedTypes.get(i) != null) {
+                    stringConnection.geoPos(cachedTypes.get(i).toString(), taxiIds.get(i));
+                }
+            }
+            return null;
+        });
+
+        // Positions of taxis whose type was only learnt from their hash need a second round trip.
+        List<TaxiType> types = new ArrayList<>(taxiIds.size());
+        List<Integer> uncached = new ArrayList<>();
+        for (int i = 0; i < taxiIds.size(); i++) {
+            List<String> fields = (List<String>) results.get(i);
+            TaxiType taxiType = fields.get(0) == null ? null : TaxiType.valueOf(fields.get(0));
+            types.add(taxiType);
+            if (taxiType != null && cachedTypes.get(i) == null) {
+                taxiMetadataCache.put(taxiIds.get(i), taxiType);
+                uncached.add(i);
+            }
+        }
+        List<Object> uncachedPositions = uncached.isEmpty() ? List.of()
+                : stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                    uncached.forEach(i -> stringConnection.geoPos(types.get(i).toString(), taxiIds.get(i)));
+                    return null;
+                });
+
+        int cachedPosition = taxiIds.size();
+        int uncachedPosition = 0;
+        for (int i = 0; i < taxiIds.size(); i++) {
+            List<Point> position = null;
+            if (cachedTypes.get(i) != null) {
+                position = (List<Point>) results.get(cachedPosition++);
+            } else if (types.get(i) != null) {
+                position = (List<Point>) uncachedPositions.get(uncachedPosition++);
+            }
+            if (types.get(i) == null) {
+                continue;
+            }
+            String status = ((List<String>) results.get(i)).get(1);
+            statuses.add(new TaxiPositionStatusDTO(taxiIds.get(i), types.get(i),
+                    status == null ? null : TaxiStatus.valueOf(status), toLocation(position)));
+        }
+    }
+
+    private void writeBatch(List<String> taxiIds, Map<String, TaxiStatus> changes, TaxiBulkStatusResponseDTO response) {
+        // The type of a taxi never changes, so it can be read ahead of the write without racing other updates.
+        List<TaxiType> knownTypes = new ArrayList<>(taxiIds.size());
+        List<String> uncached = new ArrayList<>();
+        for (String taxiId : taxiIds) {
+            TaxiType taxiType = taxiMetadataCache.getTaxiType(taxiId).orElse(null);
+            knownTypes.add(taxiType);
+            if (taxiType == null) {
+                uncached.add(taxiId);
+            }
+        }
+        List<Object> uncachedTypes = uncached.isEmpty() ? List.of()
+                : stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                    StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                    uncached.forEach(id -> stringConnection.hGet(getTaxiKey(id), TAXI_TYPE_FIELD));
+                    return null;
+                });
+
+        List<String> found = new ArrayList<>(taxiIds.size());
+        List<TaxiType> types = new ArrayList<>(taxiIds.size());
+        List<TaxiStatus> statuses = new ArrayList<>(taxiIds.size());
+        int uncachedPosition = 0;
+        for (int i = 0; i < taxiIds.size(); i++) {
+            TaxiType taxiType = knownTypes.get(i);
+            if (taxiType == null) {
+                String storedType = (String) uncachedTypes.get(uncachedPosition++);
+                taxiType = storedType == null ? null : TaxiType.valueOf(storedType);
+            }
+            if (taxiType == null) {
+                response.getNotFound().add(taxiIds.get(i));
+                continue;
+            }
+            found.add(taxiIds.get(i));
+            types.add(taxiType);
+            statuses.add(changes.get(taxiIds.get(i)));
+        }
+        if (found.isEmpty()) {
+            return;
+        }
+
+        // Each status is compared, written and counted in the heatmap by one script run, so concurrent single
+        // updates cannot slip in between the read and the write.
+        List<Object> results = taxiFieldStore.writeStatuses(found, types, statuses);
+
+        List<Taxi> changed = new ArrayList<>(found.size());
+        List<String> written = new ArrayList<>(found.size());
+        IllegalStateException failure = null;
+        for (int i = 0; i < found.size(); i++) {
+            String taxiId = found.get(i);
+            Object result = results.get(i);
+            if (!(result instanceof Long)) {
+                // Finish the bookkeeping of the taxis that were changed before failing the request.
+                if (failure == null) {
+                    failure = new IllegalStateException("Unable to change the status of taxi " + taxiId,
+                            (Throwable) result);
+                }
+                continue;
+            }
+            if ((Long) result == TaxiFieldStore.NOT_FOUND) {
+                // Removed since its type was read.
+                response.getNotFound().add(taxiId);
+                continue;
+            }
+            TaxiStatus taxiStatus = statuses.get(i);
+            Taxi taxi = new Taxi(taxiId, types.get(i), taxiStatus);
+            taxiMetadataCache.put(taxiId, types.get(i));
+            taxiWriteBehind.enqueue(taxi);
+            written.add(taxiId);
+            if ((Long) result == TaxiFieldStore.CHANGED) {
+                changed.add(taxi);
+            }
+            if (taxiStatus == TaxiStatus.AVAILABLE) {
+                // The trip is over once the taxi is available again.
+                tripTraceRecorder.stop(taxiId);
+            }
+            response.getUpdated().add(new TaxiStatusDTO(taxiId, taxiStatus));
+        }
+        if (clusterMembership.isEnabled() && !written.isEmpty()) {
+            // The owners hold these taxis in memory, have them reload the new statuses from Redis.
+            stringRedisTemplate.convertAndSend(PartitionedTaxiStore.INVALIDATION_CHANNEL, String.join("\n", written));
+        }
+        // One message for the whole batch.
+        taxiChangePublisher.publishAll(changed);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void checkSize(int size) {
+        if (size > maxTaxis) {
+            throw new IllegalArgumentException("At most " + maxTaxis + " taxis are allowed per request");
+        }
+    }
+
+    private static LocationDTO toLocation(List<Point> position) {
+        if (position == null || position.isEmpty() || position.get(0) == null) {
+            return null;
+        }
+        return new LocationDTO(position.get(0).getY(), position.get(0).getX(), null);
+    }
+
+    private static String getTaxiKey(String taxiId) {
+        return Taxi.KEYSPACE + ":" + taxiId;
+    }
+}
@@ -0,0 +1,64 @@
+package com.springboot.taxiservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.saber.taxiconfig.config.RedisConfig;
+import com.springboot.taximodel.dto.request.TaxiChangedEventDTO;
+import com.springboot.taxiservice.model.Taxi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Publishes taxi registrations and status changes on RedisConfig.TAXI_CHANGE_CHANNEL once they are in Redis,
+ * so other services can keep a local replica of taxi type and status instead of asking this service.
+ * A bulk change is published as one message, the payload is always a JSON array of changes.
+ * Pub/sub does not deliver to disconnected subscribers, replicas resync from the Taxi hashes to cover that.
+ */
+@Component
+public class TaxiChangePublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaxiChangePublisher.class);
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public TaxiChangePublisher(ReactiveRedisTemplate<String, String> reactiveRedisTemplate) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+    }
+
+    /**
+     * @param taxi The taxi as written to Redis.
+     */
+    public void publish(Taxi taxi) {
+        publishAll(Collections.singletonList(taxi));
+    }
+
+    /**
+     * @param taxis The taxis as written to Redis.
+     */
+    public void publishAll(Collection<Taxi> taxis) {
+        if (taxis.isEmpty()) {
+            return;
+        }
+        Date now = new Date();
+        List<TaxiChangedEventDTO> changes = new ArrayList<>(taxis.size());
+        taxis.forEach(t -> changes.add(
+                new TaxiChangedEventDTO(t.getTaxiId(), t.getTaxiType(), t.getTaxiStatus(), now)));
+        try {
+            String event = objectMapper.writeValueAsString(changes);
+            reactiveRedisTemplate.convertAndSend(RedisConfig.TAXI_CHANGE_CHANNEL, event)
+                    .subscribe(r -> { }, e -> LOGGER.error("Error while sending message to Channel {}",
+                            RedisConfig.TAXI_CHANGE_CHANNEL, e));
+        } catch (JsonProcessingException e) {
+            LOGGER.error("Error while sending message to Channel {}", RedisConfig.TAXI_CHANGE_CHANNEL, e);
+        }
+    }
+}
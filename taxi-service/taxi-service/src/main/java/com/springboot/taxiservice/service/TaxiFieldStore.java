@@ -0,0 +1,130 @@
+package com.springboot.taxiservice.service;
+
+import com.springboot.taximodel.enums.TaxiStatus;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.HeatmapKeys;
+import com.springboot.taxiservice.model.Taxi;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes single fields of the Taxi hashes. TaxiRepository.save deletes and rewrites the whole hash
+ * and its index entries, which is a lot of work to flip one enum, and findById reads every field to return one.
+ */
+@Component
+public class TaxiFieldStore {
+
+    private static final String TAXI_TYPE_FIELD = "taxiType";
+    private static final String TAXI_STATUS_FIELD = "taxiStatus";
+
+    /**
+     * Result of {@link #writeStatus(String, TaxiType, TaxiStatus)} when the status changed.
+     */
+    public static final long CHANGED = 1;
+
+    /**
+     * Result of {@link #writeStatus(String, TaxiType, TaxiStatus)} when the taxi does not exist.
+     */
+    public static final long NOT_FOUND = -1;
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScript<Long> setStatusScript =
+            RedisScript.of(new ClassPathResource("scripts/set-taxi-status.lua"), Long.class);
+
+    public TaxiFieldStore(ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+                          StringRedisTemplate stringRedisTemplate) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    /**
+     * @param taxiId The ID of the taxi.
+     * @return Mono<TaxiStatus> A reactive type that emits the status of the taxi, or completes empty if the taxi
+     * does not exist.
+     */
+    public Mono<TaxiStatus> readStatus(String taxiId) {
+        return reactiveRedisTemplate.<String, String>opsForHash()
+                .get(getTaxiKey(taxiId), TAXI_STATUS_FIELD)
+                .map(TaxiStatus::valueOf);
+    }
+
+    /**
+     * @param taxiId The ID of the taxi.
+     * @return TaxiType The type of the taxi, null if the taxi does not exist.
+     */
+    public TaxiType readType(String taxiId) {
+        Object taxiType = stringRedisTemplate.opsForHash().get(getTaxiKey(taxiId), TAXI_TYPE_FIELD);
+        return taxiType == null ? null : TaxiType.valueOf((String) taxiType);
+    }
+
+    /**
+     * Sets the status field of a taxi, guarded on its current value in the same script: the available taxi heatmap
+     * is only adjusted if the availability really changed, however many updates race.
+     * @param taxiId The ID of the taxi.
+     * @param taxiType The type of the taxi, which selects its heatmap.
+     * @param taxiStatus The new status.
+     * @return Mono<Long> A reactive type that emits {@link #CHANGED}, 0 if the taxi already had the status,
+     * or {@link #NOT_FOUND}.
+     */
+    public Mono<Long> writeStatus(String taxiId, TaxiType taxiType, TaxiStatus taxiStatus) {
+        return reactiveRedisTemplate.execute(setStatusScript, getKeys(taxiId, taxiType),
+                List.of(taxiId, taxiStatus.name()))
+                .next();
+    }
+
+    /**
+     * Sets the status field of many taxis in one pipelined round trip of the same script as
+     * {@link #writeStatus(String, TaxiType, TaxiStatus)}, sent by SHA so the script text is not repeated per taxi.
+     * Each taxi is still changed atomically on its own.
+     * @param taxiIds The IDs of the taxis.
+     * @param taxiTypes The type of each taxi, in the same order.
+     * @param taxiStatuses The new status of each taxi, in the same order.
+     * @return List<Object> Per taxi and in order, the result {@link #writeStatus(String, TaxiType, TaxiStatus)}
+     * would have emitted, or the exception Redis failed it with.
+     */
+    public List<Object> writeStatuses(List<String> taxiIds, List<TaxiType> taxiTypes, List<TaxiStatus> taxiStatuses) {
+        String sha = stringRedisTemplate.execute((RedisCallback<String>) connection ->
+                ((StringRedisConnection) connection).scriptLoad(setStatusScript.getScriptAsString()));
+        try {
+            return stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection stringConnection = (StringRedisConnection) connection;
+                for (int i = 0; i < taxiIds.size(); i++) {
+                    List<String> keysAndArgs = getKeys(taxiIds.get(i), taxiTypes.get(i));
+                    int keyCount = keysAndArgs.size();
+                    keysAndArgs.add(taxiIds.get(i));
+                    keysAndArgs.add(taxiStatuses.get(i).name());
+                    stringConnection.evalSha(sha, ReturnType.INTEGER, keyCount, keysAndArgs.toArray(new String[0]));
+                }
+                return null;
+            });
+        } catch (RedisPipelineException e) {
+            // The results of the other taxis are still there, next to the failures.
+            return e.getPipelineResult();
+        }
+    }
+
+    private static List<String> getKeys(String taxiId, TaxiType taxiType) {
+        List<String> keys = new ArrayList<>(5);
+        keys.add(getTaxiKey(taxiId));
+        keys.add(HeatmapKeys.TAXI_CELLS);
+        keys.add(HeatmapKeys.availableTaxis(taxiType));
+        keys.addAll(TaxiHeatmapService.reconcileKeys(taxiType));
+        return keys;
+    }
+
+    private static String getTaxiKey(String taxiId) {
+        return Taxi.KEYSPACE + ":" + taxiId;
+    }
+}
@@ -0,0 +1,236 @@
+package com.springboot.taxiservice.service;
+
+import com.springboot.taximodel.dto.response.HeatmapCellDTO;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taximodel.util.HeatmapKeys;
+import com.springboot.taxiservice.model.Taxi;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains per (TaxiType, geo cell) counts of available taxis as location and status events happen,
+ * and serves them together with the open booking counts kept by the booking service.
+ * A periodic reconciliation pass rebuilds the counts from the geo sets to correct any drift. It counts the geo set
+ * into a separate hash page by page, and while it runs the scripts that move taxis, change their status or register
+ * them apply their change to that hash as well, for taxis it has already counted. The rebuilt hash is therefore
+ * current when it replaces the live counts, and no concurrent update is lost in the swap.
+ */
+@Service
+public class TaxiHeatmapService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaxiHeatmapService.class);
+
+    private static final String RECONCILE_LOCK_KEY = "Heatmap:Reconcile:Taxis";
+
+    private static final int RECONCILE_PAGE_SIZE = 1000;
+
+    // Turns a geo set score into a cell, see GeoCell.cellOfHash.
+    private static final long CELL_DIVISOR = 1L << (2 * (GeoCell.HASH_BITS_PER_AXIS - HeatmapKeys.BITS_PER_AXIS));
+
+    // The move script packs each cell count into 20 bits.
+    private static final long CELL_COUNT_MASK = (1L << 20) - 1;
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisScript<Long> moveTaxiScript =
+            RedisScript.of(new ClassPathResource("scripts/move-taxi.lua"), Long.class);
+    private final RedisScript<Long> reconcileTaxisScript =
+            RedisScript.of(new ClassPathResource("scripts/reconcile-taxis.lua"), Long.class);
+    private final RedisScript<Long> finishReconcileScript =
+            RedisScript.of(new ClassPathResource("scripts/finish-reconcile.lua"), Long.class);
+    private final Map<TaxiType, List<String>> moveTaxiKeys = new EnumMap<>(TaxiType.class);
+    private final int maxCells;
+    private final Duration reconcileInterval;
+
+    public TaxiHeatmapService(ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+                              StringRedisTemplate stringRedisTemplate,
+                              @Value("${taxi.heatmap.max-cells:10000}") int maxCells,
+                              @Value("${taxi.heatmap.reconcile-interval-ms:300000}") long reconcileIntervalMillis) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.maxCells = maxCells;
+        this.reconcileInterval = Duration.ofMillis(reconcileIntervalMillis);
+        for (TaxiType taxiType : TaxiType.values()) {
+            List<String> keys = new ArrayList<>(List.of(taxiType.toString(), HeatmapKeys.TAXI_CELLS,
+                    HeatmapKeys.availableTaxis(taxiType), HeatmapKeys.openBookings(taxiType)));
+            keys.addAll(reconcileKeys(taxiType));
+            moveTaxiKeys.put(taxiType, List.copyOf(keys));
+        }
+    }
+
+    /**
+     * Stores the new position of a taxi and moves it between heatmap cells if it is available,
+     * in a single scripted round trip that replaces the plain GEOADD. The script keys shared by every taxi of a
+     * type are built once, only the taxi hash key is added per call.
+     * The same round trip reads the demand of the new cell, see {@link #isAvailable(long)},
+     * {@link #openBookings(long)} and {@link #availableTaxis(long)}.
+     * @param taxiId The ID of the taxi.
+     * @param taxiType The type of the taxi.
+     * @param longitude The new longitude.
+     * @param latitude The new latitude.
+     * @return Mono<Long> A reactive type that emits the packed cell demand once the position is stored.
+     */
+    public Mono<Long> moveTaxi(String taxiId, TaxiType taxiType, double longitude, double latitude) {
+        long cell = GeoCell.cellOf(longitude, latitude, HeatmapKeys.BITS_PER_AXIS);
+        List<String> typeKeys = moveTaxiKeys.get(taxiType);
+        List<String> keys = new ArrayList<>(typeKeys.size() + 1);
+        keys.addAll(typeKeys);
+        keys.add(Taxi.KEYSPACE + ":" + taxiId);
+        return reactiveRedisTemplate.execute(moveTaxiScript, keys,
+                List.of(Double.toString(longitude), Double.toString(latitude), taxiId, Long.toString(cell)))
+                .next();
+    }
+
+    /**
+     * @param cellDemand The result of {@link #moveTaxi(String, TaxiType, double, double)}.
+     * @return boolean true if the moved taxi is available.
+     */
+    public static boolean isAvailable(long cellDemand) {
+        return (cellDemand & 1) != 0;
+    }
+
+    /**
+     * @param cellDemand The result of {@link #moveTaxi(String, TaxiType, double, double)}.
+     * @return long The open bookings of the taxi's type in its new cell.
+     */
+    public static long openBookings(long cellDemand) {
+        return (cellDemand >>> 1) & CELL_COUNT_MASK;
+    }
+
+    /**
+     * @param cellDemand The result of {@link #moveTaxi(String, TaxiType, double, double)}.
+     * @return long The available taxis of the taxi's type in its new cell.
+     */
+    public static long availableTaxis(long cellDemand) {
+        return (cellDemand >>> 21) & CELL_COUNT_MASK;
+    }
+
+    /**
+     * Reads the available taxi and open booking counts of every cell in a bounding box.
+     * @param taxiType The type of taxi.
+     * @param minLatitude The south edge of the box.
+     * @param minLongitude The west edge of the box.
+     * @param maxLatitude The north edge of the box.
+     * @param maxLongitude The east edge of the box.
+     * @return Mono<List<HeatmapCellDTO>> A reactive type that emits the non-empty cells of the box.
+     * @throws IllegalArgumentException if the box covers more than taxi.heatmap.max-cells cells.
+     */
+    public Mono<List<HeatmapCellDTO>> getHeatmap(TaxiType taxiType, double minLatitude, double minLongitude,
+                                                 double maxLatitude, double maxLongitude) {
+        long[] cells = GeoCell.cellsIn(minLongitude, minLatitude, maxLongitude, maxLatitude,
+                HeatmapKeys.BITS_PER_AXIS, maxCells);
+        List<String> fields = Arrays.stream(cells).mapToObj(Long::toString).collect(Collectors.toList());
+
+        // Both hashes are read with one HMGET each, issued concurrently.
+        return Mono.zip(
+                reactiveRedisTemplate.<String, String>opsForHash().multiGet(HeatmapKeys.availableTaxis(taxiType), fields),
+                reactiveRedisTemplate.<String, String>opsForHash().multiGet(HeatmapKeys.openBookings(taxiType), fields))
+                .map(counts -> {
+                    List<HeatmapCellDTO> heatmap = new ArrayList<>();
+                    for (int i = 0; i < cells.length; i++) {
+                        long taxis = parseCount(counts.getT1().get(i));
+                        long bookings = parseCount(counts.getT2().get(i));
+                        if (taxis > 0 || bookings > 0) {
+                            double[] centre = GeoCell.centre(cells[i], HeatmapKeys.BITS_PER_AXIS);
+                            heatmap.add(new HeatmapCellDTO(cells[i], centre[1], centre[0], taxis, bookings));
+                        }
+                    }
+                    return heatmap;
+                });
+    }
+
+    /**
+     * @param taxiType The type of taxi.
+     * @return List<String> The keys of the heatmap being rebuilt by a reconciliation and of the set of taxis already
+     * counted into it, which every script changing the available taxi heatmap takes after its own keys.
+     * The set only exists while a reconciliation runs.
+     */
+    static List<String> reconcileKeys(TaxiType taxiType) {
+        String key = HeatmapKeys.availableTaxis(taxiType);
+        return List.of(key + ":rebuild", key + ":rebuild:counted");
+    }
+
+    /**
+     * Rebuilds the available taxi counts from the geo sets. Only one replica reconciles per interval.
+     */
+    @Scheduled(fixedDelayString = "${taxi.heatmap.reconcile-interval-ms:300000}",
+            initialDelayString = "${taxi.heatmap.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.opsForValue()
+                .setIfAbsent(RECONCILE_LOCK_KEY, "1", reconcileInterval))) {
+            return;
+        }
+        for (TaxiType taxiType : TaxiType.values()) {
+            List<String> rebuildKeys = reconcileKeys(taxiType);
+            // The counted set doubles as the marker the other scripts check; the empty ID is never a taxi.
+            stringRedisTemplate.delete(rebuildKeys);
+            stringRedisTemplate.opsForSet().add(rebuildKeys.get(1), "");
+
+            long available = 0;
+            List<String> page = new ArrayList<>(RECONCILE_PAGE_SIZE);
+            try (Cursor<ZSetOperations.TypedTuple<String>> cursor = stringRedisTemplate.opsForZSet()
+                    .scan(taxiType.toString(), ScanOptions.scanOptions().count(RECONCILE_PAGE_SIZE).build())) {
+                while (cursor.hasNext()) {
+                    page.add(cursor.next().getValue());
+                    if (page.size() == RECONCILE_PAGE_SIZE) {
+                        available += countPage(taxiType, rebuildKeys, page);
+                        page.clear();
+                    }
+                }
+            }
+            if (!page.isEmpty()) {
+                available += countPage(taxiType, rebuildKeys, page);
+            }
+            List<String> swapKeys = new ArrayList<>(rebuildKeys.size() + 1);
+            swapKeys.add(HeatmapKeys.availableTaxis(taxiType));
+            swapKeys.addAll(rebuildKeys);
+            Long cells = stringRedisTemplate.execute(finishReconcileScript, swapKeys);
+            LOGGER.info("Reconciled {} heatmap: {} available taxis scanned, {} cells with available taxis",
+                    taxiType, available, cells);
+        }
+    }
+
+    /**
+     * Counts the available taxis of one ZSCAN page into the rebuilt heatmap in one script run, which also refreshes
+     * the cell each taxi is counted in.
+     * @return long The number of available taxis counted.
+     */
+    private long countPage(TaxiType taxiType, List<String> rebuildKeys, List<String> taxiIds) {
+        List<String> keys = new ArrayList<>(4 + taxiIds.size());
+        keys.add(taxiType.toString());
+        keys.add(HeatmapKeys.TAXI_CELLS);
+        keys.addAll(rebuildKeys);
+        List<String> args = new ArrayList<>(1 + taxiIds.size());
+        args.add(Long.toString(CELL_DIVISOR));
+        for (String taxiId : taxiIds) {
+            keys.add(Taxi.KEYSPACE + ":" + taxiId);
+            args.add(taxiId);
+        }
+        Long counted = stringRedisTemplate.execute(reconcileTaxisScript, keys, args.toArray());
+        return counted == null ? 0 : counted;
+    }
+
+    private static long parseCount(String count) {
+        return count == null ? 0 : Math.max(0, Long.parseLong(count));
+    }
+}
@@ -0,0 +1,44 @@
+package com.springboot.taxiservice.service;
+
+import com.springboot.taximodel.enums.TaxiType;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process cache of immutable taxi metadata.
+ * A taxi's type never changes after registration, so it can be cached without invalidation and saves a
+ * hash read on every location update. It is filled by the startup warm-up and by registrations.
+ */
+@Component
+public class TaxiMetadataCache {
+
+    private final Map<String, TaxiType> taxiTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Records the type of a taxi.
+     * @param taxiId The ID of the taxi.
+     * @param taxiType The type the taxi was registered with.
+     */
+    public void put(String taxiId, TaxiType taxiType) {
+        taxiTypes.put(taxiId, taxiType);
+    }
+
+    /**
+     * Looks up the type of a taxi.
+     * @param taxiId The ID of the taxi.
+     * @return Optional<TaxiType> The cached type, or empty if the taxi has not been seen yet.
+     */
+    public Optional<TaxiType> getTaxiType(String taxiId) {
+        return Optional.ofNullable(taxiTypes.get(taxiId));
+    }
+
+    /**
+     * @return int The number of taxis currently cached.
+     */
+    public int size() {
+        return taxiTypes.size();
+    }
+}
@@ -5,71 +5,163 @@
  ************End*******************************************/
 package com.springboot.taxiservice.service;
 
-import com.springboot.taximodel.converter.LocationToPointConverter;
+import com.saber.taxiconfig.hedge.HedgedRedisReader;
 import com.springboot.taximodel.dto.request.LocationDTO;
 import com.springboot.taximodel.dto.request.TaxiRegisterEventDTO;
 import com.springboot.taximodel.enums.TaxiStatus;
 import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.dto.response.TaxiAvailableResponseDTO;
+import com.springboot.taximodel.dto.response.TaxiSearchResponseDTO;
+import com.springboot.taxiservice.cluster.ClusterForwarder;
+import com.springboot.taxiservice.cluster.ClusterMembership;
+import com.springboot.taxiservice.cluster.PartitionedTaxiStore;
+import com.springboot.taxiservice.eta.RoadNetworkEtaEngine;
+import com.springboot.taxiservice.exception.TaxiAlreadyRegisteredException;
 import com.springboot.taxiservice.exception.TaxiIdNotFoundException;
+import com.springboot.taxiservice.geofence.GeofenceService;
 import com.springboot.taxiservice.model.Taxi;
-import com.springboot.taxiservice.repo.TaxiRepository;
+import com.springboot.taxiservice.persistence.TaxiWriteBehind;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.geo.*;
 import org.springframework.data.redis.connection.RedisGeoCommands;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.reactivestreams.Publisher;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class TaxiService {
     private final ReactiveRedisTemplate<String, String>reactiveRedisTemplate;
-    private final TaxiRepository taxiRepository;
-    private final LocationToPointConverter locationToPointConverter = new LocationToPointConverter();
+    private final TaxiBulkRegistrationService taxiBulkRegistrationService;
+    private final TaxiMetadataCache taxiMetadataCache;
+    private final TripTraceRecorder tripTraceRecorder;
+    private final TaxiHeatmapService taxiHeatmapService;
+    private final RoadNetworkEtaEngine roadNetworkEtaEngine;
+    private final GeofenceService geofenceService;
+    private final TaxiWriteBehind taxiWriteBehind;
+    private final ClusterMembership clusterMembership;
+    private final ClusterForwarder clusterForwarder;
+    private final PartitionedTaxiStore partitionedTaxiStore;
+    private final HedgedRedisReader hedgedRedisReader;
+    private final ReportIntervalAdvisor reportIntervalAdvisor;
+    private final TaxiFieldStore taxiFieldStore;
+    private final TaxiChangePublisher taxiChangePublisher;
+    private final int etaCandidates;
+    private final int maxLimit;
 
     public TaxiService(ReactiveRedisTemplate<String, String>
-                               reactiveRedisTemplate, TaxiRepository taxiRepository) {
+                               reactiveRedisTemplate, TaxiBulkRegistrationService taxiBulkRegistrationService,
+                       TaxiMetadataCache taxiMetadataCache, TripTraceRecorder tripTraceRecorder,
+                       TaxiHeatmapService taxiHeatmapService, RoadNetworkEtaEngine roadNetworkEtaEngine,
+                       GeofenceService geofenceService, TaxiWriteBehind taxiWriteBehind,
+                       ClusterMembership clusterMembership, ClusterForwarder clusterForwarder,
+                       PartitionedTaxiStore partitionedTaxiStore, HedgedRedisReader hedgedRedisReader,
+                       ReportIntervalAdvisor reportIntervalAdvisor, TaxiFieldStore taxiFieldStore,
+                       TaxiChangePublisher taxiChangePublisher,
+                       @Value("${taxi.eta.candidates:50}") int etaCandidates,
+                       @Value("${taxi.search.max-limit:100}") int maxLimit) {
         this.reactiveRedisTemplate = reactiveRedisTemplate;
-        this.taxiRepository = taxiRepository;
+        this.taxiBulkRegistrationService = taxiBulkRegistrationService;
+        this.taxiMetadataCache = taxiMetadataCache;
+        this.tripTraceRecorder = tripTraceRecorder;
+        this.taxiHeatmapService = taxiHeatmapService;
+        this.roadNetworkEtaEngine = roadNetworkEtaEngine;
+        this.geofenceService = geofenceService;
+        this.taxiWriteBehind = taxiWriteBehind;
+        this.clusterMembership = clusterMembership;
+        this.clusterForwarder = clusterForwarder;
+        this.partitionedTaxiStore = partitionedTaxiStore;
+        this.hedgedRedisReader = hedgedRedisReader;
+        this.reportIntervalAdvisor = reportIntervalAdvisor;
+        this.taxiFieldStore = taxiFieldStore;
+        this.taxiChangePublisher = taxiChangePublisher;
+        this.etaCandidates = etaCandidates;
+        this.maxLimit = maxLimit;
     }
 
     /**
      * Registers a new Taxi and returns a Mono<Taxi> that emits the saved Taxi object.
+     * The taxi is written by register-taxi.lua like the bulk import, so an ID that is already registered is
+     * rejected instead of resetting that taxi to AVAILABLE behind the heatmap's back.
      *
      * @param taxiRegisterEventDTO The data transfer object containing the details needed to register a new taxi.
-     *                             This includes the taxi ID and taxi type.
+     *                             This includes the taxi ID, taxi type and an optional initial location.
      * @return Mono<Taxi> A reactive type that emits the saved Taxi object once the registration is complete.
+     * @throws TaxiAlreadyRegisteredException if a taxi with the same ID is already registered.
      */
     public Mono<Taxi> register(TaxiRegisterEventDTO taxiRegisterEventDTO) {
-        Taxi taxi = new Taxi(
-                taxiRegisterEventDTO.getTaxiId(),    // Get the taxi ID from the DTO
-                taxiRegisterEventDTO.getTaxiType(),  // Get the taxi type from the DTO
-                TaxiStatus.AVAILABLE);               // Set the taxi status to AVAILABLE
-        return Mono.just(taxiRepository.save(taxi));
+        return Mono.fromCallable(() -> taxiBulkRegistrationService.register(taxiRegisterEventDTO));
     }
 
     /**
-     * Updates the location of an existing Taxi and returns a Mono<Taxi> that emits the updated Taxi object.
+     * Updates the location of an existing Taxi and returns a Mono<Integer> that emits the recommended
+     * number of seconds until the taxi's next location fix.
      *
      * @param taxiId The ID of the taxi whose location is to be updated.
      * @param locationDTO The data transfer object containing the new location details for the taxi.
-     * @return Mono<Taxi> A reactive type that emits the updated Taxi object once the location update is complete.
+     * @return Mono<Integer> A reactive type that emits the recommended report interval once the location update
+     * is complete.
      * @throws TaxiIdNotFoundException if no Taxi is found with the given ID.
      */
-    public Mono<Taxi> updateLocation(String taxiId, LocationDTO locationDTO){
-        Optional<Taxi> taxiOptional = taxiRepository.findById(taxiId);
-        // Check if the Taxi object is present.
-        if (taxiOptional.isPresent()){
-            Taxi taxi = taxiOptional.get();
-            return reactiveRedisTemplate.opsForGeo()
-                    .add(taxi.getTaxiType()
-                    .toString(),
-                    locationToPointConverter.convert(locationDTO), taxiId.toString()).flatMap(l -> Mono.just(taxi));
-        } else {
-            // Throw an exception if the Taxi with the given ID is not found.
-            throw getTaxiIdNotFoundException(taxiId);
+    public Mono<Integer> updateLocation(String taxiId, LocationDTO locationDTO){
+        return updateLocation(taxiId, locationDTO.getLatitude(), locationDTO.getLongitude());
+    }
+
+    /**
+     * Updates the location of an existing Taxi from primitive coordinates, the path taken by every ping.
+     * The taxi type is resolved from the TaxiMetadataCache, so a known taxi costs a single scripted GEOADD
+     * that also moves the taxi between heatmap cells, without a Taxi, Point or boxed coordinate being created.
+     * With taxi.cluster.enabled, a taxi owned by another instance is forwarded to it instead.
+     * The script also reports the taxi's status and the demand of its cell, from which the ReportIntervalAdvisor
+     * recommends when the next fix is worth sending.
+     *
+     * @param taxiId The ID of the taxi whose location is to be updated.
+     * @param latitude The new latitude.
+     * @param longitude The new longitude.
+     * @return Mono<Integer> A reactive type that emits the recommended report interval once the location update
+     * is complete.
+     * @throws TaxiIdNotFoundException if no Taxi is found with the given ID.
+     */
+    public Mono<Integer> updateLocation(String taxiId, double latitude, double longitude){
+        String ownerUrl = clusterMembership.remoteOwnerUrl(taxiId);
+        if (ownerUrl != null) {
+            // Another instance owns the taxi and applies the fix to its in-memory state.
+            return clusterForwarder.updateLocation(ownerUrl, taxiId, latitude, longitude);
+        }
+        return applyLocation(taxiId, latitude, longitude);
+    }
+
+    /**
+     * Applies a location update on this instance, from memory if it owns the taxi and from Redis otherwise.
+     *
+     * @param taxiId The ID of the taxi whose location is to be updated.
+     * @param latitude The new latitude.
+     * @param longitude The new longitude.
+     * @return Mono<Integer> A reactive type that emits the recommended report interval once the location update
+     * is complete.
+     * @throws TaxiIdNotFoundException if no Taxi is found with the given ID.
+     */
+    public Mono<Integer> applyLocation(String taxiId, double latitude, double longitude){
+        if (partitionedTaxiStore.owns(taxiId)) {
+            return partitionedTaxiStore.updateLocation(taxiId, latitude, longitude);
         }
+        TaxiType taxiType = resolveTaxiType(taxiId);
+        // Buffer the fix into the trip trace if the taxi is on a trip, the trace is flushed in the background.
+        tripTraceRecorder.record(taxiId, latitude, longitude);
+        // Publish zone entries and exits against the zones recorded for the taxi in Redis.
+        geofenceService.check(taxiId, latitude, longitude);
+        return taxiHeatmapService.moveTaxi(taxiId, taxiType, longitude, latitude)
+                .map(demand -> reportIntervalAdvisor.advise(taxiId, latitude, longitude,
+                        TaxiHeatmapService.isAvailable(demand), TaxiHeatmapService.openBookings(demand),
+                        TaxiHeatmapService.availableTaxis(demand)));
     }
 
 
@@ -84,10 +176,98 @@ public class TaxiService {
      */
     public Flux<GeoResult<RedisGeoCommands.GeoLocation<String>>>
             getAvailableTaxis(TaxiType taxiType, Double latitude, Double longitude, Double radius){
-            return reactiveRedisTemplate.opsForGeo().radius(
-                    taxiType.toString(),
-                    new Circle(new Point(longitude, latitude),   // Define the search area with the specified location and radius
-                            new Distance(radius, Metrics.KILOMETERS)));
+            Circle area = new Circle(new Point(longitude, latitude),   // Define the search area with the specified location and radius
+                    new Distance(radius, Metrics.KILOMETERS));
+            // Hedged across the read replicas, a slow node no longer sets the tail latency.
+            return hedgedRedisReader.read(template -> template.opsForGeo().radius(taxiType.toString(), area));
+    }
+
+
+    /**
+     * Searches available Taxis of several types at once, nearest first.
+     * The geo set of every type is queried concurrently for its nearest {@code limit} taxis, and the distance
+     * ordered results are k-way merged into one stream, so the latency is that of the slowest type.
+     * @param taxiTypes The types of taxi to search for.
+     * @param latitude The latitude of the center point for the search radius.
+     * @param longitude The longitude of the center point for the search radius.
+     * @param radius The radius (in kilometers) within which to search for available taxis.
+     * @param limit The maximum number of taxis to return across all types.
+     * @return Flux<TaxiSearchResponseDTO> A reactive type that emits the taxis in order of increasing distance.
+     * @throws IllegalArgumentException if the limit is not between 1 and taxi.search.max-limit.
+     */
+    @SuppressWarnings("unchecked")
+    public Flux<TaxiSearchResponseDTO> searchAvailableTaxis(Set<TaxiType> taxiTypes, Double latitude,
+                                                            Double longitude, Double radius, int limit) {
+        if (limit < 1 || limit > maxLimit) {
+            return Flux.error(new IllegalArgumentException("limit must be between 1 and " + maxLimit));
+        }
+        Circle area = new Circle(new Point(longitude, latitude), new Distance(radius, Metrics.KILOMETERS));
+        // No type can contribute more than the global limit, so each query is capped at it.
+        RedisGeoCommands.GeoRadiusCommandArgs args = RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
+                .includeDistance().sortAscending().limit(limit);
+
+        Publisher<TaxiSearchResponseDTO>[] shards = taxiTypes.stream()
+                .map(taxiType -> hedgedRedisReader.read(template -> template.opsForGeo()
+                                .radius(taxiType.toString(), area, args))
+                        .map(r -> new TaxiSearchResponseDTO(r.getContent().getName(), taxiType,
+                                r.getDistance().getValue())))
+                .toArray(Publisher[]::new);
+        return Flux.mergeComparing(Comparator.comparing(TaxiSearchResponseDTO::getDistance), shards)
+                .take(limit);
+    }
+
+
+    /**
+     * Retrieves available Taxis of a specified type ranked by estimated road travel time to a specified location.
+     * The nearest candidates by straight-line distance are fetched in one GEORADIUS and re-ranked with the
+     * RoadNetworkEtaEngine; without a road network index the ranking falls back to straight-line distance.
+     * The searches are CPU bound, so they run on the parallel scheduler rather than the Redis I/O thread.
+     * @param taxiType The type of taxi to search for.
+     * @param latitude The latitude of the pickup location.
+     * @param longitude The longitude of the pickup location.
+     * @param radius The radius (in kilometers) within which to search for available taxis.
+     * @param limit The maximum number of taxis to return.
+     * @return Flux<TaxiAvailableResponseDTO> A reactive type that emits the taxis in order of increasing ETA.
+     * @throws IllegalArgumentException if the limit is not between 1 and taxi.search.max-limit.
+     */
+    public Flux<TaxiAvailableResponseDTO> getAvailableTaxisByEta(TaxiType taxiType, Double latitude,
+                                                                 Double longitude, Double radius, int limit) {
+        if (limit < 1 || limit > maxLimit) {
+            return Flux.error(new IllegalArgumentException("limit must be between 1 and " + maxLimit));
+        }
+        RedisGeoCommands.GeoRadiusCommandArgs args = RedisGeoCommands.GeoRadiusCommandArgs.newGeoRadiusArgs()
+                .includeCoordinates().sortAscending()
+                .limit(roadNetworkEtaEngine.isAvailable() ? Math.max(limit, etaCandidates) : limit);
+        Circle area = new Circle(new Point(longitude, latitude), new Distance(radius, Metrics.KILOMETERS));
+        return hedgedRedisReader.read(template -> template.opsForGeo().radius(taxiType.toString(), area, args))
+                .collectList()
+                .publishOn(Schedulers.parallel())
+                .flatMapIterable(candidates -> rankByEta(candidates, latitude, longitude, limit));
+    }
+
+    private List<TaxiAvailableResponseDTO> rankByEta(List<GeoResult<RedisGeoCommands.GeoLocation<String>>> candidates,
+                                                     double latitude, double longitude, int limit) {
+        List<TaxiAvailableResponseDTO> ranked = new ArrayList<>(candidates.size());
+        if (!roadNetworkEtaEngine.isAvailable()) {
+            candidates.forEach(c -> ranked.add(new TaxiAvailableResponseDTO(c.getContent().getName(), null)));
+            return ranked;
+        }
+        double[] latitudes = new double[candidates.size()];
+        double[] longitudes = new double[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            Point point = candidates.get(i).getContent().getPoint();
+            latitudes[i] = point.getY();
+            longitudes[i] = point.getX();
+        }
+        double[] etaSeconds = roadNetworkEtaEngine.travelTimesTo(latitude, longitude, latitudes, longitudes);
+        for (int i = 0; i < candidates.size(); i++) {
+            // Taxis off the road network keep their place behind every reachable taxi.
+            ranked.add(new TaxiAvailableResponseDTO(candidates.get(i).getContent().getName(),
+                    Double.isInfinite(etaSeconds[i]) ? null : etaSeconds[i]));
+        }
+        ranked.sort(Comparator.comparing(TaxiAvailableResponseDTO::getEtaSeconds,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        return ranked.subList(0, Math.min(limit, ranked.size()));
     }
 
 
@@ -98,14 +278,26 @@ public class TaxiService {
      * @throws TaxiIdNotFoundException if no Taxi is found with the given ID.
      */
     public Mono<TaxiStatus> getTaxiStatus(String taxiId){
-        Optional<Taxi> taxiOptional = taxiRepository.findById(taxiId);
-        // Check if the Taxi object is present.
-        if (taxiOptional.isPresent()){
-            Taxi taxi = taxiOptional.get();
-            return Mono.just(taxi.getTaxiStatus());
-        }else{
-            throw getTaxiIdNotFoundException(taxiId);
+        String ownerUrl = clusterMembership.remoteOwnerUrl(taxiId);
+        if (ownerUrl != null) {
+            return clusterForwarder.getTaxiStatus(ownerUrl, taxiId);
+        }
+        return readTaxiStatus(taxiId);
+    }
+
+    /**
+     * Reads the status of a Taxi on this instance, from memory if it owns the taxi and from Redis otherwise.
+     * @param taxiId The ID of the taxi whose status is to be retrieved.
+     * @return Mono<TaxiStatus> A reactive type that emits the status of the Taxi if found.
+     * @throws TaxiIdNotFoundException if no Taxi is found with the given ID.
+     */
+    public Mono<TaxiStatus> readTaxiStatus(String taxiId){
+        if (partitionedTaxiStore.owns(taxiId)) {
+            return partitionedTaxiStore.getStatus(taxiId);
         }
+        // Only the status field is read, not the whole Taxi hash.
+        return taxiFieldStore.readStatus(taxiId)
+                .switchIfEmpty(Mono.error(() -> getTaxiIdNotFoundException(taxiId)));
     }
 
 
@@ -117,17 +309,62 @@ public class TaxiService {
      * @throws TaxiIdNotFoundException if no Taxi is found with the given ID.
      */
     public Mono<Taxi> updateTaxiStatus(String taxiId, TaxiStatus taxiStatus) {
-        Optional<Taxi> taxiOptional = taxiRepository.findById(taxiId);
-        // Check if the Taxi object is present.
-        if (taxiOptional.isPresent()) {
-            Taxi taxi = taxiOptional.get();
-            // Update the Taxi's status with the new status (OCCUPIED, AVAILABLE).
-            taxi.setTaxiStatus(taxiStatus);
-            return Mono.just(taxiRepository.save(taxi));
-        } else {
-            // Throw an exception if the Taxi with the given ID is not found.
+        String ownerUrl = clusterMembership.remoteOwnerUrl(taxiId);
+        if (ownerUrl != null) {
+            return clusterForwarder.updateTaxiStatus(ownerUrl, taxiId, taxiStatus);
+        }
+        return applyTaxiStatus(taxiId, taxiStatus);
+    }
+
+    /**
+     * Applies a status update on this instance, from memory if it owns the taxi and from Redis otherwise.
+     * @param taxiId The ID of the taxi whose status is to be updated.
+     * @param taxiStatus The new status to be set for the taxi.
+     * @return Mono<Taxi> A reactive type that emits the updated Taxi object once the status update is complete.
+     * @throws TaxiIdNotFoundException if no Taxi is found with the given ID.
+     */
+    public Mono<Taxi> applyTaxiStatus(String taxiId, TaxiStatus taxiStatus) {
+        if (partitionedTaxiStore.owns(taxiId)) {
+            return partitionedTaxiStore.updateStatus(taxiId, taxiStatus);
+        }
+        TaxiType taxiType = resolveTaxiType(taxiId);
+        // Only the status field is written, together with the heatmap adjustment when the availability changed.
+        return taxiFieldStore.writeStatus(taxiId, taxiType, taxiStatus)
+                .map(result -> {
+                    if (result == TaxiFieldStore.NOT_FOUND) {
+                        throw getTaxiIdNotFoundException(taxiId);
+                    }
+                    if (taxiStatus == TaxiStatus.AVAILABLE) {
+                        // The trip is over once the taxi is available again.
+                        tripTraceRecorder.stop(taxiId);
+                    }
+                    Taxi taxi = new Taxi(taxiId, taxiType, taxiStatus);
+                    taxiWriteBehind.enqueue(taxi);
+                    if (result == TaxiFieldStore.CHANGED) {
+                        taxiChangePublisher.publish(taxi);
+                    }
+                    return taxi;
+                });
+    }
+
+    /**
+     * Resolves the type of a taxi, reading only its type field from Redis on a cache miss.
+     * @param taxiId The ID of the taxi.
+     * @return TaxiType The type of the taxi.
+     * @throws TaxiIdNotFoundException if no Taxi is found with the given ID.
+     */
+    public TaxiType resolveTaxiType(String taxiId) {
+        Optional<TaxiType> cachedType = taxiMetadataCache.getTaxiType(taxiId);
+        if (cachedType.isPresent()) {
+            // No capturing lambda on the hit path, it is taken by every location ping.
+            return cachedType.get();
+        }
+        TaxiType taxiType = taxiFieldStore.readType(taxiId);
+        if (taxiType == null) {
             throw getTaxiIdNotFoundException(taxiId);
         }
+        taxiMetadataCache.put(taxiId, taxiType);
+        return taxiType;
     }
 
     private TaxiIdNotFoundException getTaxiIdNotFoundException(String taxiId) {
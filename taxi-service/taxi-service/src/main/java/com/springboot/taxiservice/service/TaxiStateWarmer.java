@@ -0,0 +1,91 @@
+package com.springboot.taxiservice.service;
+
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taxiservice.model.Taxi;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the in-process taxi state from the existing keyspace when the service starts.
+ * The taxi ID set is walked with SSCAN so Redis is never blocked, and the metadata of each page is read
+ * in a single pipelined round trip. Spring Boot only publishes ReadinessState.ACCEPTING_TRAFFIC after all
+ * ApplicationRunners have completed, so the readiness probe stays down until the warm-up has finished.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TaxiStateWarmer implements ApplicationRunner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaxiStateWarmer.class);
+
+    private static final String TAXI_TYPE_FIELD = "taxiType";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TaxiMetadataCache taxiMetadataCache;
+    private final MeterRegistry meterRegistry;
+    private final int pageSize;
+
+    public TaxiStateWarmer(StringRedisTemplate stringRedisTemplate, TaxiMetadataCache taxiMetadataCache,
+                           MeterRegistry meterRegistry, @Value("${taxi.warmup.page-size:1000}") int pageSize) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.taxiMetadataCache = taxiMetadataCache;
+        this.meterRegistry = meterRegistry;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long started = System.nanoTime();
+        List<String> page = new ArrayList<>(pageSize);
+
+        try (Cursor<String> cursor = stringRedisTemplate.opsForSet()
+                .scan(Taxi.KEYSPACE, ScanOptions.scanOptions().count(pageSize).build())) {
+            while (cursor.hasNext()) {
+                page.add(cursor.next());
+                if (page.size() == pageSize) {
+                    loadPage(page);
+                    page.clear();
+                }
+            }
+        }
+        if (!page.isEmpty()) {
+            loadPage(page);
+        }
+
+        long elapsedNanos = System.nanoTime() - started;
+        meterRegistry.timer("taxi.warmup").record(elapsedNanos, TimeUnit.NANOSECONDS);
+        LOGGER.info("Warmed {} taxis in {} ms", taxiMetadataCache.size(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    private void loadPage(List<String> taxiIds) {
+        List<Object> taxiTypes = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection stringConnection = (StringRedisConnection) connection;
+            taxiIds.forEach(id -> stringConnection.hGet(Taxi.KEYSPACE + ":" + id, TAXI_TYPE_FIELD));
+            return null;
+        });
+
+        for (int i = 0; i < taxiIds.size(); i++) {
+            Object taxiType = taxiTypes.get(i);
+            // Skip dangling index entries whose hash has already expired or been removed.
+            if (taxiType != null) {
+                taxiMetadataCache.put(taxiIds.get(i), TaxiType.valueOf(taxiType.toString()));
+            }
+        }
+    }
+}
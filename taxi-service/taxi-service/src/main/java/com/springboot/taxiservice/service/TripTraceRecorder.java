@@ -0,0 +1,202 @@
+package com.springboot.taxiservice.service;
+
+import com.springboot.taximodel.dto.response.TracePointDTO;
+import com.springboot.taximodel.dto.response.TripTraceResponseDTO;
+import com.springboot.taximodel.util.TraceCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the GPS trace of a taxi while it is on a trip, from booking acceptance until it becomes available again.
+ * Points are delta encoded into an in-memory chunk per taxi and appended to an append-only Redis string per booking
+ * in the background, so recording adds no round trip to a location update.
+ * Which trip a taxi is on is kept in the Trace:Active hash, so every instance sees a trip end no matter which one
+ * applied the status change: append-trace.lua only appends a chunk while its trip is still the active one, and
+ * instances drop their local trace when it is not. Instances pick up trips they missed, for example after a
+ * restart, every taxi.trace.resync-interval-ms. Points another instance still buffered when the trip ended, at most
+ * one flush interval of them, are dropped. A trace started here records points right away but flushes nothing
+ * until its trip has been written to Trace:Active.
+ */
+@Service
+public class TripTraceRecorder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TripTraceRecorder.class);
+
+    private static final String TRACE_KEY_PREFIX = "Trace:";
+    private static final String ACTIVE_TRIPS_KEY = "Trace:Active";
+
+    private final ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private final Map<String, ActiveTrace> activeTraces = new ConcurrentHashMap<>();
+    private final RedisScript<Long> appendTraceScript =
+            RedisScript.of(new ClassPathResource("scripts/append-trace.lua"), Long.class);
+    private final int chunkSize;
+    private final Duration retention;
+    private final long idleTimeoutMillis;
+
+    public TripTraceRecorder(ReactiveRedisTemplate<String, String> reactiveRedisTemplate,
+                             @Value("${taxi.trace.chunk-size:60}") int chunkSize,
+                             @Value("${taxi.trace.retention-days:90}") long retentionDays,
+                             @Value("${taxi.trace.idle-timeout-minutes:30}") long idleTimeoutMinutes) {
+        this.reactiveRedisTemplate = reactiveRedisTemplate;
+        this.chunkSize = chunkSize;
+        this.retention = Duration.ofDays(retentionDays);
+        this.idleTimeoutMillis = Duration.ofMinutes(idleTimeoutMinutes).toMillis();
+    }
+
+    /**
+     * Starts recording the trace of a taxi for a booking, replacing any trace still active for that taxi.
+     * @param taxiId The ID of the taxi that accepted the booking.
+     * @param taxiBookingId The ID of the accepted booking.
+     */
+    public void start(String taxiId, String taxiBookingId) {
+        Sinks.Empty<Void> activated = Sinks.empty();
+        ActiveTrace trace = new ActiveTrace(taxiId, taxiBookingId, activated.asMono());
+        ActiveTrace previous = activeTraces.put(taxiId, trace);
+        // The previous trip's last chunk must land before the new trip replaces it in the active trips.
+        Mono<Long> flushPrevious = previous == null ? Mono.empty() : flush(previous, false);
+        flushPrevious.then(reactiveRedisTemplate.<String, String>opsForHash()
+                        .put(ACTIVE_TRIPS_KEY, taxiId, taxiBookingId))
+                // Release the flushes held back until now; if the trip never got active they end it locally.
+                .doFinally(s -> activated.tryEmitEmpty())
+                .subscribe(r -> { }, e -> LOGGER.error("Error while starting trace of booking {}",
+                        taxiBookingId, e));
+    }
+
+    /**
+     * Records a location fix if the taxi is on a trip. This is a map lookup for taxis that are not.
+     * @param taxiId The ID of the taxi.
+     * @param latitude The latitude of the fix.
+     * @param longitude The longitude of the fix.
+     */
+    public void record(String taxiId, double latitude, double longitude) {
+        ActiveTrace trace = activeTraces.get(taxiId);
+        if (trace == null) {
+            return;
+        }
+        boolean full;
+        synchronized (trace) {
+            trace.encoder.add(latitude, longitude, System.currentTimeMillis());
+            trace.lastUpdate = System.currentTimeMillis();
+            full = trace.encoder.size() >= chunkSize;
+        }
+        if (full) {
+            flush(trace, false).subscribe(r -> { }, e -> LOGGER.error("Error while flushing trace of booking {}",
+                    trace.taxiBookingId, e));
+        }
+    }
+
+    /**
+     * Stops recording the trace of a taxi and flushes the remaining points.
+     * @param taxiId The ID of the taxi whose trip has ended.
+     */
+    public void stop(String taxiId) {
+        ActiveTrace trace = activeTraces.remove(taxiId);
+        Mono<?> end = trace != null ? flush(trace, true)
+                // The trip was recorded by another instance, only end it.
+                : reactiveRedisTemplate.opsForHash().remove(ACTIVE_TRIPS_KEY, taxiId);
+        end.subscribe(r -> { }, e -> LOGGER.error("Error while ending trace of taxi {}", taxiId, e));
+    }
+
+    /**
+     * Reads and decodes the recorded trace of a booking.
+     * @param taxiBookingId The ID of the booking.
+     * @return Mono<TripTraceResponseDTO> A reactive type that emits the trace, empty if nothing was recorded.
+     */
+    public Mono<TripTraceResponseDTO> getTrace(String taxiBookingId) {
+        return reactiveRedisTemplate.opsForValue().get(TRACE_KEY_PREFIX + taxiBookingId).map(encoded -> {
+            List<TracePointDTO> points = TraceCodec.decode(encoded);
+            return new TripTraceResponseDTO(taxiBookingId, TraceCodec.distanceMeters(points), points);
+        });
+    }
+
+    /**
+     * Periodically appends buffered points of all active traces, and drops traces whose trip has ended elsewhere
+     * or that stopped receiving points, for example because another instance now receives the taxi's updates.
+     */
+    @Scheduled(fixedDelayString = "${taxi.trace.flush-interval-ms:5000}")
+    public void flushAll() {
+        long idleBefore = System.currentTimeMillis() - idleTimeoutMillis;
+        activeTraces.forEach((taxiId, trace) -> {
+            if (trace.lastUpdate < idleBefore) {
+                activeTraces.remove(taxiId, trace);
+            }
+            flush(trace, false).subscribe(r -> { }, e -> LOGGER.error("Error while flushing trace of booking {}",
+                    trace.taxiBookingId, e));
+        });
+    }
+
+    /**
+     * Periodically aligns the local traces with the active trips in Redis, starting the ones this instance missed
+     * and dropping the ones that ended while they had no points to flush.
+     */
+    @Scheduled(fixedDelayString = "${taxi.trace.resync-interval-ms:30000}")
+    public void resync() {
+        long started = System.currentTimeMillis();
+        reactiveRedisTemplate.<String, String>opsForHash().entries(ACTIVE_TRIPS_KEY)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .subscribe(activeTrips -> {
+                    activeTrips.forEach((taxiId, taxiBookingId) -> activeTraces.compute(taxiId, (id, trace) ->
+                            trace != null && trace.taxiBookingId.equals(taxiBookingId)
+                                    ? trace : new ActiveTrace(taxiId, taxiBookingId, Mono.empty())));
+                    // Traces started after the read are not in it yet.
+                    activeTraces.values().removeIf(trace -> trace.started < started
+                            && !trace.taxiBookingId.equals(activeTrips.get(trace.taxiId)));
+                }, e -> LOGGER.error("Error while reading active trips", e));
+    }
+
+    private Mono<Long> flush(ActiveTrace trace, boolean end) {
+        // Nothing is drained before the trip is in the active trips, the script would reject the chunk and the
+        // trace would be dropped along with the drained points.
+        return trace.activated.then(Mono.defer(() -> append(trace, end)));
+    }
+
+    private Mono<Long> append(ActiveTrace trace, boolean end) {
+        String chunk;
+        synchronized (trace) {
+            chunk = trace.encoder.drain();
+        }
+        if (chunk == null && !end) {
+            return Mono.empty();
+        }
+        List<String> keys = Arrays.asList(ACTIVE_TRIPS_KEY, TRACE_KEY_PREFIX + trace.taxiBookingId);
+        List<String> args = Arrays.asList(trace.taxiId, trace.taxiBookingId, chunk == null ? "" : chunk,
+                Long.toString(retention.getSeconds()), end ? "1" : "0");
+        return reactiveRedisTemplate.execute(appendTraceScript, keys, args).next()
+                .doOnNext(active -> {
+                    if (active == 0) {
+                        // The trip has ended, or was replaced, on another instance.
+                        activeTraces.remove(trace.taxiId, trace);
+                    }
+                });
+    }
+
+    private static final class ActiveTrace {
+        private final String taxiId;
+        private final String taxiBookingId;
+        // Completes once the trip is in the active trips, points are buffered but not flushed before.
+        private final Mono<Void> activated;
+        private final TraceCodec.Encoder encoder = new TraceCodec.Encoder();
+        private final long started = System.currentTimeMillis();
+        private volatile long lastUpdate = started;
+
+        private ActiveTrace(String taxiId, String taxiBookingId, Mono<Void> activated) {
+            this.taxiId = taxiId;
+            this.taxiBookingId = taxiBookingId;
+            this.activated = activated;
+        }
+    }
+}
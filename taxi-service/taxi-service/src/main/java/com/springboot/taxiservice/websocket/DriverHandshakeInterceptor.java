@@ -0,0 +1,68 @@
+package com.springboot.taxiservice.websocket;
+
+import com.springboot.taxiservice.exception.TaxiIdNotFoundException;
+import com.springboot.taxiservice.service.TaxiService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
+
+/**
+ * Authenticates a driver once per connection, during the WebSocket handshake.
+ * The driver app connects with an "Authorization: Bearer <token>" header carrying a short-lived token issued by
+ * {@link DriverTokens}; tokens are not accepted in the query string, which ends up in access and traffic logs.
+ * The channel is disabled while no secret is configured.
+ */
+@Component
+public class DriverHandshakeInterceptor implements HandshakeInterceptor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DriverHandshakeInterceptor.class);
+
+    static final String TAXI_ID_ATTRIBUTE = "taxiId";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private final TaxiService taxiService;
+    private final DriverTokens driverTokens;
+
+    public DriverHandshakeInterceptor(TaxiService taxiService, DriverTokens driverTokens) {
+        this.taxiService = taxiService;
+        this.driverTokens = driverTokens;
+        if (!driverTokens.isEnabled()) {
+            LOGGER.warn("taxi.driver.token-secret is not set, driver connections will be refused");
+        }
+    }
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        String authorization = request.getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        String taxiId = authorization != null && authorization.startsWith(BEARER_PREFIX)
+                ? driverTokens.verify(authorization.substring(BEARER_PREFIX.length())) : null;
+        if (taxiId == null) {
+            response.setStatusCode(HttpStatus.UNAUTHORIZED);
+            return false;
+        }
+        try {
+            taxiService.resolveTaxiType(taxiId);
+        } catch (TaxiIdNotFoundException e) {
+            response.setStatusCode(HttpStatus.NOT_FOUND);
+            return false;
+        }
+        attributes.put(TAXI_ID_ATTRIBUTE, taxiId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+        // Nothing to do once the connection is established.
+    }
+}
@@ -0,0 +1,72 @@
+package com.springboot.taxiservice.websocket;
+
+import com.springboot.taximodel.util.LocationPayloadParser;
+import com.springboot.taxiservice.service.TaxiService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ * Handles the long-lived connection of a driver app.
+ * Inbound text frames are location fixes in the form "latitude,longitude"; they are applied through the same
+ * TaxiService.updateLocation as the REST endpoint, without any per-ping HTTP parsing or routing.
+ * Outbound frames are dispatch offers pushed through the DriverSessionRegistry, and "interval:<seconds>"
+ * whenever the recommended report interval of the taxi changes.
+ */
+@Component
+public class DriverLocationWebSocketHandler extends TextWebSocketHandler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DriverLocationWebSocketHandler.class);
+
+    private static final String REPORT_INTERVAL_ATTRIBUTE = "reportIntervalSeconds";
+
+    private final TaxiService taxiService;
+    private final DriverSessionRegistry driverSessionRegistry;
+
+    public DriverLocationWebSocketHandler(TaxiService taxiService, DriverSessionRegistry driverSessionRegistry) {
+        this.taxiService = taxiService;
+        this.driverSessionRegistry = driverSessionRegistry;
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) {
+        driverSessionRegistry.register(taxiId(session), session);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        String taxiId = taxiId(session);
+        LocationPayloadParser location;
+        try {
+            location = LocationPayloadParser.forCurrentThread().parseText(message.getPayload());
+        } catch (IllegalArgumentException e) {
+            driverSessionRegistry.send(taxiId, "error:" + e.getMessage());
+            return;
+        }
+        try {
+            taxiService.updateLocation(taxiId, location.getLatitude(), location.getLongitude())
+                    .subscribe(interval -> {
+                        // Only changes are sent, most fixes leave the interval as it was.
+                        if (!interval.equals(session.getAttributes().put(REPORT_INTERVAL_ATTRIBUTE, interval))) {
+                            driverSessionRegistry.send(taxiId, "interval:" + interval);
+                        }
+                    }, e -> LOGGER.error("Error while updating location of taxi {}", taxiId, e));
+        } catch (RuntimeException e) {
+            LOGGER.error("Error while updating location of taxi {}", taxiId, e);
+            driverSessionRegistry.send(taxiId, "error:" + e.getMessage());
+        }
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        driverSessionRegistry.unregister(taxiId(session), session);
+    }
+
+    private static String taxiId(WebSocketSession session) {
+        return (String) session.getAttributes().get(DriverHandshakeInterceptor.TAXI_ID_ATTRIBUTE);
+    }
+}
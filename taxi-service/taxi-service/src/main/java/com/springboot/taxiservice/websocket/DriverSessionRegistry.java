@@ -0,0 +1,94 @@
+package com.springboot.taxiservice.websocket;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the open driver connections by taxi ID, so dispatch offers can be pushed on the connection
+ * the driver app already holds. Outbound messages go through a bounded send buffer per connection,
+ * a slow device can therefore never hold more than send-buffer-bytes of pending offers.
+ */
+@Component
+public class DriverSessionRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DriverSessionRegistry.class);
+
+    private final Map<String, ConcurrentWebSocketSessionDecorator> sessions = new ConcurrentHashMap<>();
+    private final int sendTimeLimitMillis;
+    private final int sendBufferBytes;
+
+    public DriverSessionRegistry(MeterRegistry meterRegistry,
+                                 @Value("${taxi.driver.send-time-limit-ms:5000}") int sendTimeLimitMillis,
+                                 @Value("${taxi.driver.send-buffer-bytes:8192}") int sendBufferBytes,
+                                 @Value("${taxi.driver.max-message-bytes:1024}") int maxMessageBytes) {
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.sendBufferBytes = sendBufferBytes;
+        // Worst case application level memory per connection: one inbound frame plus a full send buffer.
+        LOGGER.info("Driver connections buffer at most {} bytes each ({} inbound, {} outbound)",
+                maxMessageBytes + sendBufferBytes, maxMessageBytes, sendBufferBytes);
+        Gauge.builder("taxi.driver.connections", sessions, Map::size)
+                .description("Open driver connections")
+                .register(meterRegistry);
+        Gauge.builder("taxi.driver.send.buffered.bytes", sessions, s -> s.values().stream()
+                        .mapToLong(ConcurrentWebSocketSessionDecorator::getBufferSize).sum())
+                .description("Bytes waiting in the send buffers of all driver connections")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Registers the connection of a taxi, closing any previous connection of the same taxi.
+     * @param taxiId The authenticated taxi ID of the connection.
+     * @param session The WebSocket session.
+     */
+    public void register(String taxiId, WebSocketSession session) {
+        ConcurrentWebSocketSessionDecorator previous = sessions.put(taxiId,
+                new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMillis, sendBufferBytes));
+        if (previous != null && previous.isOpen()) {
+            try {
+                previous.close();
+            } catch (IOException e) {
+                LOGGER.warn("Error while closing replaced connection of taxi {}", taxiId, e);
+            }
+        }
+    }
+
+    /**
+     * Removes the connection of a taxi, unless it has already been replaced by a newer one.
+     * @param taxiId The taxi ID of the connection.
+     * @param session The WebSocket session that was closed.
+     */
+    public void unregister(String taxiId, WebSocketSession session) {
+        sessions.computeIfPresent(taxiId, (id, current) -> current.getDelegate() == session ? null : current);
+    }
+
+    /**
+     * Sends a message to a connected taxi.
+     * @param taxiId The ID of the taxi.
+     * @param payload The message, typically a JSON encoded dispatch offer.
+     * @return boolean true if the taxi is connected to this instance and the message was queued.
+     */
+    public boolean send(String taxiId, String payload) {
+        ConcurrentWebSocketSessionDecorator session = sessions.get(taxiId);
+        if (session == null || !session.isOpen()) {
+            return false;
+        }
+        try {
+            session.sendMessage(new TextMessage(payload));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Error while sending to taxi {}", taxiId, e);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.springboot.taxiservice.websocket;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+
+/**
+ * Issues and checks the short-lived tokens a driver app connects with.
+ * A token reads {@code <taxiId>.<expiry>.<signature>}, where the expiry is in epoch seconds and the signature is the
+ * base64url encoded HMAC-SHA256 of {@code <taxiId>.<expiry>} under the shared taxi.driver.token-secret.
+ * Whatever authenticates drivers holds the same secret and hands out a fresh token before each connect; a token is
+ * only checked during the handshake, so it may expire while the connection stays open.
+ */
+@Component
+public class DriverTokens {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final byte[] secret;
+    private final long ttlSeconds;
+
+    public DriverTokens(@Value("${taxi.driver.token-secret:}") String secret,
+                        @Value("${taxi.driver.token-ttl-seconds:300}") long ttlSeconds) {
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    /**
+     * @return boolean true if a secret is configured, without it no token is valid.
+     */
+    public boolean isEnabled() {
+        return secret.length > 0;
+    }
+
+    /**
+     * @param taxiId The ID of the taxi.
+     * @return String A token for the taxi, valid for taxi.driver.token-ttl-seconds.
+     * @throws IllegalStateException if no secret is configured.
+     */
+    public String issue(String taxiId) {
+        if (!isEnabled()) {
+            throw new IllegalStateException("taxi.driver.token-secret is not set");
+        }
+        String claims = taxiId + "." + (System.currentTimeMillis() / 1000 + ttlSeconds);
+        return claims + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(sign(claims));
+    }
+
+    /**
+     * Checks the signature and expiry of a token.
+     * @param token The token presented by the driver app.
+     * @return String The taxi ID the token was issued for, null if the token is invalid or expired.
+     */
+    public String verify(String token) {
+        if (!isEnabled() || token == null) {
+            return null;
+        }
+        int signatureStart = token.lastIndexOf('.');
+        int expiryStart = signatureStart > 0 ? token.lastIndexOf('.', signatureStart - 1) : -1;
+        if (expiryStart <= 0) {
+            return null;
+        }
+        String claims = token.substring(0, signatureStart);
+        try {
+            long expiry = Long.parseLong(token.substring(expiryStart + 1, signatureStart));
+            byte[] actual = Base64.getUrlDecoder().decode(token.substring(signatureStart + 1));
+            // Constant time comparison, so the signature cannot be guessed byte by byte.
+            if (!MessageDigest.isEqual(sign(claims), actual) || expiry < System.currentTimeMillis() / 1000) {
+                return null;
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return token.substring(0, expiryStart);
+    }
+
+    private byte[] sign(String claims) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+            return mac.doFinal(claims.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to sign driver token", e);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.springboot.taxiservice.websocket;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.websocket.server.ServerContainer;
+
+/**
+ * Registers the driver connection endpoint at /taxis/connect.
+ * The message buffers are kept small, since a location frame is a few dozen bytes. Most of the memory of an idle
+ * connection is Tomcat's own fixed socket and frame buffers though: DriverConnectionMemoryBenchmark measured about
+ * 53 KB of heap per connection with 1 KB message buffers, so plan for roughly 5 GB of heap per 100k drivers.
+ */
+@Configuration
+@EnableWebSocket
+public class DriverWebSocketConfig implements WebSocketConfigurer {
+
+    private final DriverLocationWebSocketHandler driverLocationWebSocketHandler;
+    private final DriverHandshakeInterceptor driverHandshakeInterceptor;
+
+    public DriverWebSocketConfig(DriverLocationWebSocketHandler driverLocationWebSocketHandler,
+                                 DriverHandshakeInterceptor driverHandshakeInterceptor) {
+        this.driverLocationWebSocketHandler = driverLocationWebSocketHandler;
+        this.driverHandshakeInterceptor = driverHandshakeInterceptor;
+    }
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(driverLocationWebSocketHandler, "/taxis/connect")
+                .addInterceptors(driverHandshakeInterceptor)
+                .setAllowedOrigins("*");
+    }
+
+    /**
+     * Applies the per-connection limits to the servlet container's WebSocket container once the servlet context is
+     * initialised, which is after Tomcat has created it. Unlike a ServletServerContainerFactoryBean this leaves
+     * environments without a WebSocket container alone, such as a mock servlet context in tests.
+     */
+    @Bean
+    public ServletContextListener webSocketContainerLimits(
+            @Value("${taxi.driver.max-message-bytes:1024}") int maxMessageBytes,
+            @Value("${taxi.driver.idle-timeout-ms:120000}") long idleTimeoutMillis) {
+        return new ServletContextListener() {
+            @Override
+            public void contextInitialized(ServletContextEvent event) {
+                ServerContainer container = (ServerContainer) event.getServletContext()
+                        .getAttribute(ServerContainer.class.getName());
+                if (container != null) {
+                    container.setDefaultMaxTextMessageBufferSize(maxMessageBytes);
+                    container.setDefaultMaxBinaryMessageBufferSize(maxMessageBytes);
+                    container.setDefaultMaxSessionIdleTimeout(idleTimeoutMillis);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,6 @@
+CREATE TABLE IF NOT EXISTS taxi (
+    taxi_id     VARCHAR(64) PRIMARY KEY,
+    taxi_type   VARCHAR(16),
+    taxi_status VARCHAR(16),
+    updated_at  TIMESTAMP NOT NULL
+);
@@ -0,0 +1,16 @@
+-- Appends a chunk to the trace of a booking, provided the taxi is still on that trip.
+-- KEYS[1] hash of active trips by taxi ID, KEYS[2] trace of the booking
+-- ARGV[1] taxi ID, ARGV[2] booking ID, ARGV[3] encoded chunk, empty for none, ARGV[4] retention in seconds,
+-- ARGV[5] 1 if the trip ends with this chunk
+-- Returns 1 if the trip was active, 0 if it had already ended or another trip replaced it.
+if redis.call('HGET', KEYS[1], ARGV[1]) ~= ARGV[2] then
+    return 0
+end
+if ARGV[3] ~= '' then
+    redis.call('APPEND', KEYS[2], ARGV[3])
+    redis.call('EXPIRE', KEYS[2], ARGV[4])
+end
+if ARGV[5] == '1' then
+    redis.call('HDEL', KEYS[1], ARGV[1])
+end
+return 1
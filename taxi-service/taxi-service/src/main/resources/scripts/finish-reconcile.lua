@@ -0,0 +1,10 @@
+-- Replaces the available taxi heatmap of a taxi type with its rebuilt counts and ends the reconciliation.
+-- KEYS[1] available taxi heatmap, KEYS[2] heatmap being rebuilt, KEYS[3] taxis counted into the rebuilt heatmap
+-- Returns the number of cells in the new heatmap.
+redis.call('DEL', KEYS[3])
+if redis.call('EXISTS', KEYS[2]) == 0 then
+    redis.call('DEL', KEYS[1])
+    return 0
+end
+redis.call('RENAME', KEYS[2], KEYS[1])
+return redis.call('HLEN', KEYS[1])
@@ -0,0 +1,28 @@
+-- Moves a taxi to a new position and keeps the available taxi heatmap in step, in one round trip.
+-- KEYS[1] geo set of the taxi type, KEYS[2] taxi cell hash, KEYS[3] available taxi heatmap,
+-- KEYS[4] open booking heatmap, KEYS[5] heatmap being rebuilt, KEYS[6] taxis counted into it, KEYS[7] taxi hash
+-- ARGV[1] longitude, ARGV[2] latitude, ARGV[3] taxi ID, ARGV[4] cell of the new position
+-- Returns the local demand the next report interval is based on, packed into one integer:
+-- bit 0 whether the taxi is available, then 20 bits each of open bookings and available taxis in its cell.
+redis.call('GEOADD', KEYS[1], ARGV[1], ARGV[2], ARGV[3])
+local available = redis.call('HGET', KEYS[7], 'taxiStatus') == 'AVAILABLE'
+local previous = redis.call('HGET', KEYS[2], ARGV[3])
+if previous ~= ARGV[4] then
+    redis.call('HSET', KEYS[2], ARGV[3], ARGV[4])
+    if available then
+        if previous then
+            redis.call('HINCRBY', KEYS[3], previous, -1)
+        end
+        redis.call('HINCRBY', KEYS[3], ARGV[4], 1)
+    end
+    -- Keep a running reconciliation in step, the taxi may already have been counted into it.
+    if redis.call('EXISTS', KEYS[6]) == 1 and available then
+        if redis.call('SADD', KEYS[6], ARGV[3]) == 0 and previous then
+            redis.call('HINCRBY', KEYS[5], previous, -1)
+        end
+        redis.call('HINCRBY', KEYS[5], ARGV[4], 1)
+    end
+end
+local bookings = math.max(0, math.min(tonumber(redis.call('HGET', KEYS[4], ARGV[4]) or '0'), 1048575))
+local taxis = math.max(0, math.min(tonumber(redis.call('HGET', KEYS[3], ARGV[4]) or '0'), 1048575))
+return (available and 1 or 0) + 2 * bookings + 2097152 * taxis
@@ -0,0 +1,22 @@
+-- Counts one page of taxis into a running reconciliation of the available taxi heatmap of a taxi type,
+-- and refreshes the cell each of them is counted in. Taxis a writer already counted into it are skipped.
+-- KEYS[1] geo set of the taxi type, KEYS[2] taxi cell hash, KEYS[3] heatmap being rebuilt,
+-- KEYS[4] taxis counted into the rebuilt heatmap, KEYS[5..] taxi hashes of the page
+-- ARGV[1] divisor turning a geo set score into a cell, ARGV[2..] taxi IDs of the page, in the order of their hashes
+-- Returns the number of available taxis counted.
+local counted = 0
+for i = 2, #ARGV do
+    local taxiId = ARGV[i]
+    if redis.call('SADD', KEYS[4], taxiId) == 1 then
+        local score = redis.call('ZSCORE', KEYS[1], taxiId)
+        if score then
+            local cell = string.format('%d', math.floor(tonumber(score) / tonumber(ARGV[1])))
+            redis.call('HSET', KEYS[2], taxiId, cell)
+            if redis.call('HGET', KEYS[i + 3], 'taxiStatus') == 'AVAILABLE' then
+                redis.call('HINCRBY', KEYS[3], cell, 1)
+                counted = counted + 1
+            end
+        end
+    end
+end
+return counted
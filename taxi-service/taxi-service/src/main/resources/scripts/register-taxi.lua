@@ -0,0 +1,21 @@
+-- Registers a taxi unless it already exists: its hash, keyspace index entry and optional initial location.
+-- A taxi registered with a location is counted as available in the heatmap cell of that location right away.
+-- KEYS[1] taxi hash, KEYS[2] taxi keyspace set, then only given with a location: KEYS[3] geo set of the taxi type,
+-- KEYS[4] taxi cell hash, KEYS[5] available taxi heatmap, KEYS[6] heatmap being rebuilt, KEYS[7] taxis counted into it
+-- ARGV[1] taxi ID, ARGV[2] longitude, ARGV[3] latitude, ARGV[4] cell of the location, all three ignored without KEYS[3],
+-- ARGV[5..] hash fields and values as written by the repository converter
+-- Returns 1 if the taxi was registered, 0 if it was already registered.
+if redis.call('SADD', KEYS[2], ARGV[1]) == 0 then
+    return 0
+end
+redis.call('HSET', KEYS[1], unpack(ARGV, 5))
+if KEYS[3] then
+    redis.call('GEOADD', KEYS[3], ARGV[2], ARGV[3], ARGV[1])
+    redis.call('HSET', KEYS[4], ARGV[1], ARGV[4])
+    redis.call('HINCRBY', KEYS[5], ARGV[4], 1)
+    -- Keep a running reconciliation in step, its scan may already have passed this taxi.
+    if redis.call('EXISTS', KEYS[7]) == 1 and redis.call('SADD', KEYS[7], ARGV[1]) == 1 then
+        redis.call('HINCRBY', KEYS[6], ARGV[4], 1)
+    end
+end
+return 1
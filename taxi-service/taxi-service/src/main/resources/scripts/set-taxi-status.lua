@@ -0,0 +1,33 @@
+-- Changes the status field of a taxi, and moves it in or out of the available taxi heatmap if its availability changed.
+-- KEYS[1] taxi hash, KEYS[2] taxi cell hash, KEYS[3] available taxi heatmap of the taxi type,
+-- KEYS[4] heatmap being rebuilt, KEYS[5] taxis counted into it
+-- ARGV[1] taxi ID, ARGV[2] new status
+-- Returns 1 if the status changed, 0 if the taxi already had it, -1 if the taxi does not exist.
+local current = redis.call('HGET', KEYS[1], 'taxiStatus')
+if not current then
+    if redis.call('EXISTS', KEYS[1]) == 0 then
+        return -1
+    end
+elseif current == ARGV[2] then
+    return 0
+end
+redis.call('HSET', KEYS[1], 'taxiStatus', ARGV[2])
+local wasAvailable = current == 'AVAILABLE'
+local isAvailable = ARGV[2] == 'AVAILABLE'
+if wasAvailable ~= isAvailable then
+    local cell = redis.call('HGET', KEYS[2], ARGV[1])
+    if cell then
+        redis.call('HINCRBY', KEYS[3], cell, isAvailable and 1 or -1)
+        -- Keep a running reconciliation in step, the taxi may already have been counted into it.
+        if redis.call('EXISTS', KEYS[5]) == 1 then
+            if redis.call('SADD', KEYS[5], ARGV[1]) == 1 then
+                if isAvailable then
+                    redis.call('HINCRBY', KEYS[4], cell, 1)
+                end
+            else
+                redis.call('HINCRBY', KEYS[4], cell, isAvailable and 1 or -1)
+            end
+        end
+    end
+end
+return 1
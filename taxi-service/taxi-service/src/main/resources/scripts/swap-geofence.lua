@@ -0,0 +1,15 @@
+-- Records the zones a taxi is in and hands back the zones it was in before, so whichever instance receives a fix
+-- publishes each entry and exit exactly once.
+-- KEYS[1] hash of the zones per taxi
+-- ARGV[1] taxi ID, ARGV[2] IDs of the zones the taxi is in now, newline separated, empty for none
+-- Returns the previous zone IDs in the same form, or nil if they did not change.
+local previous = redis.call('HGET', KEYS[1], ARGV[1]) or ''
+if previous == ARGV[2] then
+    return false
+end
+if ARGV[2] == '' then
+    redis.call('HDEL', KEYS[1], ARGV[1])
+else
+    redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+end
+return previous
@@ -0,0 +1,130 @@
+package com.springboot.taxiservice.benchmark;
+
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taxiservice.TaxiServiceApplication;
+import com.springboot.taxiservice.service.TaxiMetadataCache;
+import com.springboot.taxiservice.websocket.DriverTokens;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.websocket.server.ServerContainer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap retained per idle driver WebSocket connection on the server.
+ * Boots the taxi service on a random port, opens idle connections with plain sockets and compares the heap after a
+ * full GC before and after. The heap of the client sockets themselves is measured separately against a socket that
+ * never accepts, and subtracted. Needs the Redis the application is configured with.
+ * Run with: java -cp <test classpath> com.springboot.taxiservice.benchmark.DriverConnectionMemoryBenchmark [connections]
+ */
+public class DriverConnectionMemoryBenchmark {
+
+    private static final int WARMUP_CONNECTIONS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+
+        long clientBytes = clientSocketBytes(connections);
+
+        ConfigurableApplicationContext context = SpringApplication.run(TaxiServiceApplication.class,
+                "--server.port=0", "--taxi.driver.token-secret=benchmark", "--logging.level.root=WARN");
+        int port = Integer.parseInt(context.getEnvironment().getRequiredProperty("local.server.port"));
+        ServerContainer container = (ServerContainer) ((WebApplicationContext) context).getServletContext()
+                .getAttribute(ServerContainer.class.getName());
+        System.out.printf("Message buffers: %d bytes text, %d bytes binary%n",
+                container.getDefaultMaxTextMessageBufferSize(), container.getDefaultMaxBinaryMessageBufferSize());
+        TaxiMetadataCache taxiMetadataCache = context.getBean(TaxiMetadataCache.class);
+        DriverTokens driverTokens = context.getBean(DriverTokens.class);
+        List<String> tokens = new ArrayList<>(WARMUP_CONNECTIONS + connections);
+        for (int i = 0; i < WARMUP_CONNECTIONS + connections; i++) {
+            String taxiId = "benchmark-" + i;
+            taxiMetadataCache.put(taxiId, TaxiType.MINI);
+            tokens.add(driverTokens.issue(taxiId));
+        }
+
+        List<Socket> sockets = new ArrayList<>(WARMUP_CONNECTIONS + connections);
+        for (int i = 0; i < WARMUP_CONNECTIONS; i++) {
+            sockets.add(connect(port, tokens.get(i)));
+        }
+        long before = usedHeap();
+        for (int i = WARMUP_CONNECTIONS; i < WARMUP_CONNECTIONS + connections; i++) {
+            sockets.add(connect(port, tokens.get(i)));
+        }
+        // Let the container finish registering the sessions.
+        Thread.sleep(2000);
+        long totalBytes = usedHeap() - before;
+
+        System.out.printf("Client socket:            %.0f bytes/connection%n", (double) clientBytes / connections);
+        System.out.printf("Client and server:        %.0f bytes/connection%n", (double) totalBytes / connections);
+        System.out.printf("Server (%d connections): %.0f bytes/connection%n", connections,
+                (double) (totalBytes - clientBytes) / connections);
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        context.close();
+    }
+
+    private static long clientSocketBytes(int connections) throws IOException {
+        try (ServerSocket server = new ServerSocket()) {
+            // Connections complete in the backlog without ever being accepted.
+            server.bind(new InetSocketAddress("127.0.0.1", 0), connections);
+            List<Socket> sockets = new ArrayList<>(connections);
+            long before = usedHeap();
+            for (int i = 0; i < connections; i++) {
+                Socket socket = new Socket("127.0.0.1", server.getLocalPort());
+                socket.getInputStream();
+                socket.getOutputStream();
+                sockets.add(socket);
+            }
+            long bytes = usedHeap() - before;
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            return bytes;
+        }
+    }
+
+    private static Socket connect(int port, String token) throws IOException {
+        Socket socket = new Socket("127.0.0.1", port);
+        OutputStream out = socket.getOutputStream();
+        out.write(("GET /taxis/connect HTTP/1.1\r\n"
+                + "Host: 127.0.0.1:" + port + "\r\n"
+                + "Upgrade: websocket\r\n"
+                + "Connection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                + "Sec-WebSocket-Version: 13\r\n"
+                + "Authorization: Bearer " + token + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        InputStream in = socket.getInputStream();
+        StringBuilder response = new StringBuilder();
+        while (response.indexOf("\r\n\r\n") < 0) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Connection closed during handshake: " + response);
+            }
+            response.append((char) b);
+        }
+        if (!response.toString().startsWith("HTTP/1.1 101")) {
+            throw new IOException("Handshake refused: " + response);
+        }
+        return socket;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,111 @@
+package com.springboot.taxiservice.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.taximodel.converter.LocationToPointConverter;
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taximodel.util.HeatmapKeys;
+import com.springboot.taximodel.util.LocationPayloadParser;
+import org.springframework.data.geo.Point;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the bytes allocated per location update by the in-process part of the update path,
+ * from request body to Redis command arguments, for the previous DTO based path and the primitive one.
+ * The Redis client itself is left out, it allocates the same for both.
+ * Run with: java -cp <test classpath> com.springboot.taxiservice.benchmark.LocationUpdateAllocationBenchmark
+ */
+public class LocationUpdateAllocationBenchmark {
+
+    private static final int WARMUP_UPDATES = 2_000_000;
+    private static final int MEASURED_UPDATES = 5_000_000;
+
+    private static final byte[] BODY = "{\"latitude\":51.507351,\"longitude\":-0.127758,\"name\":null}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final String TAXI_ID = "taxi-42";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final LocationToPointConverter CONVERTER = new LocationToPointConverter();
+    private static final Map<TaxiType, List<String>> KEYS = new EnumMap<>(TaxiType.class);
+
+    // Keeps the results reachable so the JIT cannot drop the work.
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        for (TaxiType taxiType : TaxiType.values()) {
+            String available = HeatmapKeys.availableTaxis(taxiType);
+            KEYS.put(taxiType, List.of(taxiType.toString(), HeatmapKeys.TAXI_CELLS, available,
+                    HeatmapKeys.openBookings(taxiType), available + ":rebuild", available + ":rebuild:counted"));
+        }
+        ByteArrayInputStream body = new ByteArrayInputStream(BODY);
+
+        for (int i = 0; i < WARMUP_UPDATES; i++) {
+            dtoPath(body);
+            primitivePath(body);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < MEASURED_UPDATES; i++) {
+            dtoPath(body);
+        }
+        long dtoBytes = allocatedBytes() - before;
+
+        before = allocatedBytes();
+        for (int i = 0; i < MEASURED_UPDATES; i++) {
+            primitivePath(body);
+        }
+        long primitiveBytes = allocatedBytes() - before;
+
+        System.out.printf("DTO path:       %.1f bytes/update%n", (double) dtoBytes / MEASURED_UPDATES);
+        System.out.printf("Primitive path: %.1f bytes/update%n", (double) primitiveBytes / MEASURED_UPDATES);
+        System.out.println(sink);
+    }
+
+    /**
+     * Jackson binds a LocationDTO with boxed coordinates, which is converted to a Point,
+     * and the script keys and arguments are built per call.
+     */
+    private static void dtoPath(ByteArrayInputStream body) throws IOException {
+        body.reset();
+        LocationDTO locationDTO = OBJECT_MAPPER.readValue(body, LocationDTO.class);
+        Point point = CONVERTER.convert(locationDTO);
+        long cell = GeoCell.cellOf(point.getX(), point.getY(), HeatmapKeys.BITS_PER_AXIS);
+        List<String> keys = Arrays.asList(TaxiType.MINI.toString(), "Taxi:" + TAXI_ID, HeatmapKeys.TAXI_CELLS,
+                HeatmapKeys.availableTaxis(TaxiType.MINI));
+        List<String> arguments = Arrays.asList(Double.toString(point.getX()), Double.toString(point.getY()),
+                TAXI_ID, Long.toString(cell));
+        sink += keys.size() + arguments.get(0).length();
+    }
+
+    /**
+     * The body is parsed into primitives on a reused buffer, and only the taxi hash key is added per call to the
+     * script keys cached per type, as TaxiHeatmapService.moveTaxi does.
+     */
+    private static void primitivePath(ByteArrayInputStream body) throws IOException {
+        body.reset();
+        LocationPayloadParser location = LocationPayloadParser.forCurrentThread().readJson(body);
+        long cell = GeoCell.cellOf(location.getLongitude(), location.getLatitude(), HeatmapKeys.BITS_PER_AXIS);
+        List<String> typeKeys = KEYS.get(TaxiType.MINI);
+        List<String> keys = new ArrayList<>(typeKeys.size() + 1);
+        keys.addAll(typeKeys);
+        keys.add("Taxi:" + TAXI_ID);
+        List<String> arguments = List.of(Double.toString(location.getLongitude()),
+                Double.toString(location.getLatitude()), TAXI_ID, Long.toString(cell));
+        sink += keys.size() + arguments.get(0).length();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
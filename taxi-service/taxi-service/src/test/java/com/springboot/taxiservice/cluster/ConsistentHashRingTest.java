@@ -0,0 +1,95 @@
+package com.springboot.taxiservice.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int PARTITIONS = 1024;
+    private static final int VIRTUAL_NODES = 64;
+
+    @Test
+    void emptyRingHasNoOwners() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), PARTITIONS, VIRTUAL_NODES);
+
+        assertEquals(PARTITIONS, ring.getPartitions());
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            assertNull(ring.ownerOf(partition));
+        }
+    }
+
+    @Test
+    void ownersDoNotDependOnMemberOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"), PARTITIONS, VIRTUAL_NODES);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("c", "a", "b"), PARTITIONS, VIRTUAL_NODES);
+
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            assertNotNull(ring.ownerOf(partition));
+            assertEquals(ring.ownerOf(partition), reordered.ownerOf(partition));
+        }
+    }
+
+    @Test
+    void partitionsAreSpreadOverMembers() {
+        List<String> members = List.of("a", "b", "c", "d");
+        ConsistentHashRing ring = new ConsistentHashRing(members, PARTITIONS, VIRTUAL_NODES);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            counts.merge(ring.ownerOf(partition), 1, Integer::sum);
+        }
+        int fairShare = PARTITIONS / members.size();
+        for (String member : members) {
+            int count = counts.getOrDefault(member, 0);
+            assertTrue(count > fairShare / 2 && count < fairShare * 3 / 2, member + " owns " + count);
+        }
+    }
+
+    @Test
+    void joiningMemberOnlyTakesPartitions() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), PARTITIONS, VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"), PARTITIONS, VIRTUAL_NODES);
+
+        int moved = 0;
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            if (!before.ownerOf(partition).equals(after.ownerOf(partition))) {
+                assertEquals("d", after.ownerOf(partition));
+                moved++;
+            }
+        }
+        assertTrue(moved > 0 && moved < PARTITIONS / 2, moved + " partitions moved");
+    }
+
+    @Test
+    void leavingMemberOnlyGivesUpItsPartitions() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), PARTITIONS, VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "c"), PARTITIONS, VIRTUAL_NODES);
+
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            if (!before.ownerOf(partition).equals("b")) {
+                assertEquals(before.ownerOf(partition), after.ownerOf(partition));
+            }
+        }
+    }
+
+    @Test
+    void partitionOfIsStableAndInRange() {
+        for (int i = 0; i < 10_000; i++) {
+            String taxiId = "taxi-" + i;
+            int partition = ConsistentHashRing.partitionOf(taxiId, PARTITIONS);
+            assertTrue(partition >= 0 && partition < PARTITIONS);
+            assertEquals(partition, ConsistentHashRing.partitionOf(new String(taxiId), PARTITIONS));
+        }
+        // Pinned because every instance must agree: a change here moves taxis between instances on upgrade.
+        assertEquals(235, ConsistentHashRing.partitionOf("taxi-1", PARTITIONS));
+        assertEquals(907, ConsistentHashRing.partitionOf("taxi-42", PARTITIONS));
+    }
+}
@@ -0,0 +1,138 @@
+package com.springboot.taxiservice.eta;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cross-checks contraction hierarchy queries against plain Dijkstra on a synthetic grid with one-way streets.
+ */
+class RoadNetworkEtaEngineTest {
+
+    private static final int SIDE = 40;
+    private static final double SPACING_DEGREES = 0.004;
+    private static final double ORIGIN_LATITUDE = 6.9;
+    private static final double ORIGIN_LONGITUDE = 79.85;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void matchesDijkstraOnAGridWithOneWayStreets() throws IOException {
+        Random random = new Random(42);
+        int nodeCount = SIDE * SIDE;
+        int[] latitudes = new int[nodeCount];
+        int[] longitudes = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            latitudes[node] = (int) Math.round(latitude(node) * RoadNetworkIndexFormat.COORDINATE_SCALE);
+            longitudes[node] = (int) Math.round(longitude(node) * RoadNetworkIndexFormat.COORDINATE_SCALE);
+        }
+        List<int[]> edges = new ArrayList<>();
+        for (int node = 0; node < nodeCount; node++) {
+            int row = node / SIDE;
+            int column = node % SIDE;
+            if (column + 1 < SIDE) {
+                addStreet(edges, random, node, node + 1);
+            }
+            if (row + 1 < SIDE) {
+                addStreet(edges, random, node, node + SIDE);
+            }
+        }
+
+        RoadNetworkIndexBuilder builder = new RoadNetworkIndexBuilder();
+        builder.init(latitudes, longitudes);
+        edges.forEach(e -> builder.addEdge(e[0], e[1], e[2]));
+        builder.contract();
+        Path index = directory.resolve("roads.idx");
+        builder.write(index);
+        RoadNetworkEtaEngine engine = new RoadNetworkEtaEngine(index.toString());
+        assertTrue(engine.isAvailable());
+
+        int[] sources = random.ints(50, 0, nodeCount).toArray();
+        double[] sourceLatitudes = Arrays.stream(sources).mapToDouble(RoadNetworkEtaEngineTest::latitude).toArray();
+        double[] sourceLongitudes = Arrays.stream(sources).mapToDouble(RoadNetworkEtaEngineTest::longitude).toArray();
+        for (int query = 0; query < 20; query++) {
+            int target = random.nextInt(nodeCount);
+            int[] expected = dijkstraTo(target, nodeCount, edges);
+            double[] seconds = engine.travelTimesTo(latitude(target), longitude(target),
+                    sourceLatitudes, sourceLongitudes);
+            for (int i = 0; i < sources.length; i++) {
+                int deciseconds = expected[sources[i]];
+                if (deciseconds == Integer.MAX_VALUE) {
+                    assertTrue(Double.isInfinite(seconds[i]), "source " + sources[i] + " to " + target);
+                } else {
+                    // Sources and targets sit exactly on nodes, so there is no snapping time.
+                    assertEquals(deciseconds / 10d, seconds[i], 1e-6, "source " + sources[i] + " to " + target);
+                }
+            }
+        }
+    }
+
+    @Test
+    void isUnavailableWithoutAnIndex() {
+        RoadNetworkEtaEngine engine = new RoadNetworkEtaEngine("");
+        assertFalse(engine.isAvailable());
+        assertTrue(Double.isInfinite(engine.travelTimesTo(0, 0, new double[] {0}, new double[] {0})[0]));
+    }
+
+    private static void addStreet(List<int[]> edges, Random random, int a, int b) {
+        int weight = 50 + random.nextInt(600);
+        int direction = random.nextInt(5);
+        // One street in five is one-way, in either direction.
+        if (direction != 0) {
+            edges.add(new int[] {a, b, weight});
+        }
+        if (direction != 1) {
+            edges.add(new int[] {b, a, weight});
+        }
+    }
+
+    /**
+     * Plain Dijkstra over the reversed edges, giving the distance from every node to the target.
+     */
+    private static int[] dijkstraTo(int target, int nodeCount, List<int[]> edges) {
+        List<List<int[]>> incoming = new ArrayList<>();
+        for (int node = 0; node < nodeCount; node++) {
+            incoming.add(new ArrayList<>());
+        }
+        edges.forEach(e -> incoming.get(e[1]).add(e));
+        int[] distance = new int[nodeCount];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        distance[target] = 0;
+        PriorityQueue<int[]> queue = new PriorityQueue<>((x, y) -> Integer.compare(x[0], y[0]));
+        queue.add(new int[] {0, target});
+        while (!queue.isEmpty()) {
+            int[] head = queue.poll();
+            if (head[0] > distance[head[1]]) {
+                continue;
+            }
+            for (int[] e : incoming.get(head[1])) {
+                int candidate = head[0] + e[2];
+                if (candidate < distance[e[0]]) {
+                    distance[e[0]] = candidate;
+                    queue.add(new int[] {candidate, e[0]});
+                }
+            }
+        }
+        return distance;
+    }
+
+    private static double latitude(int node) {
+        return ORIGIN_LATITUDE + (node / SIDE) * SPACING_DEGREES;
+    }
+
+    private static double longitude(int node) {
+        return ORIGIN_LONGITUDE + (node % SIDE) * SPACING_DEGREES;
+    }
+}
@@ -0,0 +1,73 @@
+package com.springboot.taxiservice.geofence;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cross-checks R-tree searches against a brute-force scan of every zone.
+ */
+class ZoneRTreeTest {
+
+    @Test
+    void matchesABruteForceScan() {
+        Random random = new Random(42);
+        List<GeofenceZone> zones = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            zones.add(triangle("zone-" + i, 79.8 + random.nextDouble() * 0.2, 6.8 + random.nextDouble() * 0.2,
+                    0.001 + random.nextDouble() * 0.02, random));
+        }
+        ZoneRTree tree = new ZoneRTree(zones);
+        int[] found = new int[tree.size()];
+        int hits = 0;
+        for (int i = 0; i < 20000; i++) {
+            double longitude = 79.79 + random.nextDouble() * 0.22;
+            double latitude = 6.79 + random.nextDouble() * 0.22;
+            int count = tree.search(longitude, latitude, found);
+            List<String> expected = new ArrayList<>();
+            for (int zone = 0; zone < tree.size(); zone++) {
+                if (tree.zone(zone).contains(longitude, latitude)) {
+                    expected.add(tree.zone(zone).id);
+                }
+            }
+            String[] actual = new String[count];
+            for (int j = 0; j < count; j++) {
+                actual[j] = tree.zone(found[j]).id;
+                assertTrue(j == 0 || found[j - 1] < found[j], "results must be in ascending order");
+            }
+            assertArrayEquals(expected.toArray(new String[0]), actual);
+            hits += count;
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    void containsFollowsTheEvenOddRule() {
+        // A square with a notch cut into its top edge.
+        GeofenceZone zone = new GeofenceZone("notched", null,
+                new double[] {0, 4, 4, 3, 2, 1, 0}, new double[] {0, 0, 4, 4, 2, 4, 4});
+        ZoneRTree tree = new ZoneRTree(List.of(zone));
+        int[] found = new int[1];
+        assertEquals(1, tree.search(0.5, 3.5, found));
+        assertEquals(0, tree.search(2, 3, found));
+        assertEquals(1, tree.search(2, 1, found));
+        assertEquals(0, tree.search(5, 1, found));
+    }
+
+    @Test
+    void searchesAnEmptyTree() {
+        assertEquals(0, new ZoneRTree(List.of()).search(79.85, 6.9, new int[0]));
+    }
+
+    private static GeofenceZone triangle(String id, double longitude, double latitude, double size, Random random) {
+        return new GeofenceZone(id, "test",
+                new double[] {longitude, longitude + size, longitude + random.nextDouble() * size},
+                new double[] {latitude, latitude + random.nextDouble() * size, latitude + size});
+    }
+}
@@ -0,0 +1,176 @@
+package com.springboot.taxiservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.springboot.taximodel.dto.request.LocationDTO;
+import com.springboot.taximodel.dto.request.TaxiRegisterEventDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkRegisterErrorDTO;
+import com.springboot.taximodel.dto.response.TaxiBulkRegisterResponseDTO;
+import com.springboot.taximodel.enums.TaxiType;
+import com.springboot.taximodel.util.GeoCell;
+import com.springboot.taximodel.util.HeatmapKeys;
+import com.springboot.taxiservice.exception.TaxiAlreadyRegisteredException;
+import com.springboot.taxiservice.persistence.TaxiWriteBehind;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.convert.MappingRedisConverter;
+import org.springframework.data.redis.core.mapping.RedisMappingContext;
+import redis.embedded.RedisServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class TaxiBulkRegistrationServiceTest {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+
+    private StringRedisTemplate stringRedisTemplate;
+    private TaxiBulkRegistrationService service;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        stringRedisTemplate = new StringRedisTemplate(connectionFactory);
+        stringRedisTemplate.afterPropertiesSet();
+        stringRedisTemplate.execute(connection -> {
+            connection.flushDb();
+            return null;
+        }, true);
+        MappingRedisConverter redisConverter = new MappingRedisConverter(new RedisMappingContext());
+        redisConverter.afterPropertiesSet();
+        service = new TaxiBulkRegistrationService(stringRedisTemplate, redisConverter, new TaxiMetadataCache(),
+                mock(TaxiWriteBehind.class), mock(TaxiChangePublisher.class), new ObjectMapper(), 2);
+    }
+
+    @Test
+    void csvRegistersValidRowsAndReportsEveryInvalidRow() throws IOException {
+        TaxiBulkRegisterResponseDTO response = service.importCsv(body(
+                "taxiId,taxiType,latitude,longitude",
+                "t-1,mini,52.52,13.40",
+                "t-2,VAN",
+                "",
+                "t-1,NANO",
+                "t-3,BUS",
+                "t-4,MINI,north,east",
+                "t-5",
+                "t-6,MINI,89.9,13.40",
+                ",MINI",
+                "t-7,NANO,,"));
+
+        assertEquals(9, response.getReceived());
+        assertEquals(3, response.getRegistered());
+        assertEquals(6, response.getRejected());
+        assertEquals(List.of(
+                new TaxiBulkRegisterErrorDTO(5L, "t-1", "Duplicate taxi id in import"),
+                new TaxiBulkRegisterErrorDTO(6L, null, "Unknown taxi type BUS"),
+                new TaxiBulkRegisterErrorDTO(7L, null, "Invalid coordinates"),
+                new TaxiBulkRegisterErrorDTO(8L, null, "Expected taxiId,taxiType[,latitude,longitude]"),
+                new TaxiBulkRegisterErrorDTO(9L, null, "Location out of range"),
+                new TaxiBulkRegisterErrorDTO(10L, null, "Missing taxi id")), response.getErrors());
+
+        assertEquals("MINI", stringRedisTemplate.opsForHash().get("Taxi:t-1", "taxiType"));
+        assertEquals("AVAILABLE", stringRedisTemplate.opsForHash().get("Taxi:t-1", "taxiStatus"));
+        assertNotNull(stringRedisTemplate.opsForGeo().position("MINI", "t-1").get(0));
+        assertEquals("1", stringRedisTemplate.opsForHash().get(HeatmapKeys.availableTaxis(TaxiType.MINI),
+                Long.toString(GeoCell.cellOf(13.40, 52.52, HeatmapKeys.BITS_PER_AXIS))));
+        // Without a location a taxi is registered but not placed anywhere yet.
+        assertEquals("VAN", stringRedisTemplate.opsForHash().get("Taxi:t-2", "taxiType"));
+        assertNull(stringRedisTemplate.opsForGeo().position("VAN", "t-2").get(0));
+        assertEquals("NANO", stringRedisTemplate.opsForHash().get("Taxi:t-7", "taxiType"));
+        assertEquals(3, stringRedisTemplate.opsForSet().size("Taxi"));
+    }
+
+    @Test
+    void ndjsonReportsMalformedAndInvalidLines() throws IOException {
+        TaxiBulkRegisterResponseDTO response = service.importNdjson(body(
+                "{\"taxiId\":\"t-1\",\"taxiType\":\"NANO\",\"location\":{\"latitude\":52.5,\"longitude\":13.4}}",
+                "{\"taxiId\":\"t-2\",",
+                "{\"taxiId\":\"t-3\"}",
+                "{\"taxiId\":\"t-4\",\"taxiType\":\"VAN\",\"location\":{\"latitude\":52.5,\"longitude\":190}}",
+                "{\"taxiId\":\"t-5\",\"taxiType\":\"VAN\"}"));
+
+        assertEquals(5, response.getReceived());
+        assertEquals(2, response.getRegistered());
+        assertEquals(3, response.getRejected());
+        List<TaxiBulkRegisterErrorDTO> errors = response.getErrors();
+        assertEquals(2L, errors.get(0).getRow());
+        assertNotNull(errors.get(0).getMessage());
+        assertEquals(new TaxiBulkRegisterErrorDTO(3L, null, "Missing taxi type"), errors.get(1));
+        assertEquals(new TaxiBulkRegisterErrorDTO(4L, null, "Location out of range"), errors.get(2));
+        assertEquals(Boolean.TRUE, stringRedisTemplate.hasKey("Taxi:t-5"));
+    }
+
+    @Test
+    void importRejectsTaxisThatAreAlreadyRegistered() throws IOException {
+        service.importCsv(body("t-1,MINI"));
+
+        TaxiBulkRegisterResponseDTO response = service.importCsv(body("t-1,VAN", "t-2,VAN"));
+
+        assertEquals(1, response.getRegistered());
+        assertEquals(List.of(new TaxiBulkRegisterErrorDTO(1L, "t-1", "Taxi already registered")),
+                response.getErrors());
+        assertEquals("MINI", stringRedisTemplate.opsForHash().get("Taxi:t-1", "taxiType"));
+    }
+
+    @Test
+    void registerDoesNotResetAnOccupiedTaxi() {
+        TaxiRegisterEventDTO taxi = new TaxiRegisterEventDTO("t-1", TaxiType.MINI, new LocationDTO(52.52, 13.40, null));
+        service.register(taxi);
+        String cell = Long.toString(GeoCell.cellOf(13.40, 52.52, HeatmapKeys.BITS_PER_AXIS));
+        assertEquals("1", stringRedisTemplate.opsForHash().get(HeatmapKeys.availableTaxis(TaxiType.MINI), cell));
+        stringRedisTemplate.opsForHash().put("Taxi:t-1", "taxiStatus", "OCCUPIED");
+        stringRedisTemplate.opsForHash().put(HeatmapKeys.availableTaxis(TaxiType.MINI), cell, "0");
+
+        assertThrows(TaxiAlreadyRegisteredException.class, () -> service.register(taxi));
+        assertThrows(TaxiAlreadyRegisteredException.class,
+                () -> service.register(new TaxiRegisterEventDTO("t-1", TaxiType.VAN, null)));
+
+        assertEquals("OCCUPIED", stringRedisTemplate.opsForHash().get("Taxi:t-1", "taxiStatus"));
+        assertEquals("MINI", stringRedisTemplate.opsForHash().get("Taxi:t-1", "taxiType"));
+        assertEquals("0", stringRedisTemplate.opsForHash().get(HeatmapKeys.availableTaxis(TaxiType.MINI), cell));
+    }
+
+    @Test
+    void registerValidatesLikeTheImport() {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.register(new TaxiRegisterEventDTO("t-1", null, null)));
+        assertThrows(IllegalArgumentException.class,
+                () -> service.register(new TaxiRegisterEventDTO("t-1", TaxiType.MINI, new LocationDTO(86.0, 0.0, null))));
+        assertEquals(Boolean.FALSE, stringRedisTemplate.hasKey("Taxi:t-1"));
+    }
+
+    private static InputStream body(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,91 @@
+package com.springboot.taxiservice.service;
+
+import com.springboot.taximodel.dto.response.TripTraceResponseDTO;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class TripTraceRecorderTest {
+
+    private static RedisServer redisServer;
+    private static LettuceConnectionFactory connectionFactory;
+
+    private ReactiveRedisTemplate<String, String> reactiveRedisTemplate;
+    private TripTraceRecorder recorder;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(port);
+        redisServer.start();
+        connectionFactory = new LettuceConnectionFactory("localhost", port);
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        connectionFactory.destroy();
+        redisServer.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        reactiveRedisTemplate = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.string());
+        reactiveRedisTemplate.execute(connection -> connection.serverCommands().flushDb()).blockLast();
+        recorder = new TripTraceRecorder(reactiveRedisTemplate, 60, 1, 30);
+    }
+
+    @Test
+    void recordsTheWholeTripUntilItEnds() throws InterruptedException {
+        recorder.start("t-1", "b-1");
+        recorder.record("t-1", 52.52, 13.40);
+        recorder.record("t-1", 52.53, 13.41);
+        recorder.flushAll();
+        recorder.record("t-1", 52.54, 13.42);
+        recorder.stop("t-1");
+
+        assertEquals(3, awaitTrace("b-1", 3).getPoints().size());
+        assertEquals(Boolean.FALSE, reactiveRedisTemplate.opsForHash().hasKey("Trace:Active", "t-1").block());
+    }
+
+    @Test
+    void flushBeforeTheNextTripIsActiveKeepsItsPoints() throws InterruptedException {
+        recorder.start("t-1", "b-1");
+        recorder.record("t-1", 52.52, 13.40);
+        // The second trip only becomes active once the first one's last chunk has been appended, a flush in
+        // between must wait for it rather than have its chunk rejected.
+        recorder.start("t-1", "b-2");
+        recorder.record("t-1", 52.60, 13.50);
+        recorder.record("t-1", 52.61, 13.51);
+        recorder.flushAll();
+        recorder.stop("t-1");
+
+        assertEquals(1, awaitTrace("b-1", 1).getPoints().size());
+        assertEquals(2, awaitTrace("b-2", 2).getPoints().size());
+    }
+
+    private TripTraceResponseDTO awaitTrace(String taxiBookingId, int points) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        TripTraceResponseDTO trace = recorder.getTrace(taxiBookingId).block();
+        while ((trace == null || trace.getPoints().size() < points) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            trace = recorder.getTrace(taxiBookingId).block();
+        }
+        assertNotNull(trace);
+        return trace;
+    }
+}